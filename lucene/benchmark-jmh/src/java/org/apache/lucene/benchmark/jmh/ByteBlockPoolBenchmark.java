@@ -0,0 +1,125 @@
+package org.apache.lucene.benchmark.jmh;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.util.ByteBlockPool;
+import org.apache.lucene.util.BytesRef;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ByteBlockPool}: copying whole byte sequences in and out of
+ * the pool, and interleaved writes into many growing slices the way the
+ * in-memory postings of {@code TermsHashPerField} use it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteBlockPoolBenchmark {
+
+  private static final int BYTES_PER_STREAM = 256;
+
+  /** Number of slices that are written to in round-robin order. */
+  @Param({"16", "4096"})
+  public int streamCount;
+
+  private final ByteBlockPool pool = new ByteBlockPool(new ByteBlockPool.DirectAllocator());
+  private BytesRef[] values;
+  private int[] offsets;
+  private int[] uptos;
+  private final BytesRef scratch = new BytesRef();
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    final Random random = new Random(0xB10C + streamCount);
+    values = new BytesRef[streamCount];
+    for (int i = 0; i < streamCount; i++) {
+      final byte[] bytes = new byte[1 + random.nextInt(64)];
+      random.nextBytes(bytes);
+      values[i] = new BytesRef(bytes);
+    }
+    offsets = new int[streamCount];
+    uptos = new int[streamCount];
+  }
+
+  /** Zero-fills and reuses the pool's buffers, like a flushed {@code TermsHash}. */
+  private void resetPool() {
+    pool.reset();
+    if (pool.buffer == null) {
+      pool.nextBuffer();
+    }
+  }
+
+  @Benchmark
+  public int copy() {
+    resetPool();
+    int sum = 0;
+    for (int i = 0; i < values.length; i++) {
+      offsets[i] = pool.byteOffset + pool.byteUpto;
+      pool.copy(values[i]);
+    }
+    for (int i = 0; i < values.length; i++) {
+      scratch.offset = offsets[i];
+      scratch.length = values[i].length;
+      sum += pool.copyFrom(scratch).bytes[0];
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int writeSlices() {
+    final ByteBlockPool pool = this.pool;
+    final int[] uptos = this.uptos;
+    resetPool();
+    for (int i = 0; i < uptos.length; i++) {
+      uptos[i] = pool.byteOffset + pool.newSlice(ByteBlockPool.FIRST_LEVEL_SIZE);
+    }
+    for (int b = 0; b < BYTES_PER_STREAM; b++) {
+      for (int i = 0; i < uptos.length; i++) {
+        int upto = uptos[i];
+        byte[] bytes = pool.buffers[upto >> ByteBlockPool.BYTE_BLOCK_SHIFT];
+        int offset = upto & ByteBlockPool.BYTE_BLOCK_MASK;
+        if (bytes[offset] != 0) {
+          // end of slice; allocate a new one
+          offset = pool.allocSlice(bytes, offset);
+          bytes = pool.buffer;
+          upto = offset + pool.byteOffset;
+        }
+        bytes[offset] = (byte) b;
+        uptos[i] = upto + 1;
+      }
+    }
+    return pool.byteOffset + pool.byteUpto;
+  }
+}
@@ -0,0 +1,112 @@
+package org.apache.lucene.benchmark.jmh;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BytesRefHash}: filling a cleared hash (the indexing-time
+ * pattern of a term hash per field and segment), looking up terms that are
+ * already present, and sorting the terms for flush.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BytesRefHashBenchmark {
+
+  @Param({"1000", "100000"})
+  public int termCount;
+
+  private BytesRef[] terms;
+  private BytesRefHash filled;
+  private BytesRefHash scratch;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    final Random random = new Random(0xBEEF + termCount);
+    terms = new BytesRef[termCount];
+    for (int i = 0; i < termCount; i++) {
+      terms[i] = new BytesRef(randomTerm(random));
+    }
+    filled = new BytesRefHash();
+    for (BytesRef term : terms) {
+      filled.add(term);
+    }
+    scratch = new BytesRefHash();
+  }
+
+  static String randomTerm(Random random) {
+    final int length = 2 + random.nextInt(14);
+    final char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = (char) ('a' + random.nextInt(26));
+    }
+    return new String(chars);
+  }
+
+  @Benchmark
+  public int add() {
+    final BytesRefHash hash = scratch;
+    hash.clear();
+    hash.reinit();
+    for (BytesRef term : terms) {
+      hash.add(term);
+    }
+    return hash.size();
+  }
+
+  @Benchmark
+  public int lookup() {
+    int sum = 0;
+    for (BytesRef term : terms) {
+      // add() returns -(ord+1) for terms that are already present
+      sum += filled.add(term);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int sort() {
+    final BytesRefHash hash = scratch;
+    hash.clear();
+    hash.reinit();
+    for (BytesRef term : terms) {
+      hash.add(term);
+    }
+    return hash.sort(BytesRef.getUTF8SortedAsUnicodeComparator())[0];
+  }
+}
@@ -0,0 +1,117 @@
+package org.apache.lucene.benchmark.jmh;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RAMDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link DataInput#readVInt()} through the specialized
+ * {@link ByteArrayDataInput} and through the generic implementation used by
+ * {@link RAMDirectory}'s inputs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataInputBenchmark {
+
+  private static final int VALUE_COUNT = 1 << 16;
+
+  /** Maximum number of bytes per encoded value. */
+  @Param({"1", "2", "3", "5"})
+  public int maxBytes;
+
+  private byte[] bytes;
+  private int length;
+  private final ByteArrayDataInput byteArrayInput = new ByteArrayDataInput();
+  private Directory dir;
+  private IndexInput ramInput;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    final Random random = new Random(0x5EED + maxBytes);
+    final int bits = Math.min(31, 7 * maxBytes);
+    bytes = new byte[VALUE_COUNT * 5];
+    final ByteArrayDataOutput out = new ByteArrayDataOutput(bytes);
+    for (int i = 0; i < VALUE_COUNT; i++) {
+      // skewed towards small values, like doc and position deltas
+      out.writeVInt(random.nextInt() >>> (31 - random.nextInt(bits)));
+    }
+    length = out.getPosition();
+
+    dir = new RAMDirectory();
+    final IndexOutput output = dir.createOutput("vints", IOContext.DEFAULT);
+    output.writeBytes(bytes, 0, length);
+    output.close();
+    ramInput = dir.openInput("vints", IOContext.DEFAULT);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    ramInput.close();
+    dir.close();
+  }
+
+  @Benchmark
+  public long byteArrayDataInput() {
+    final ByteArrayDataInput in = byteArrayInput;
+    in.reset(bytes, 0, length);
+    long sum = 0;
+    for (int i = 0; i < VALUE_COUNT; i++) {
+      sum += in.readVInt();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long ramIndexInput() throws IOException {
+    final IndexInput in = ramInput;
+    in.seek(0);
+    long sum = 0;
+    for (int i = 0; i < VALUE_COUNT; i++) {
+      sum += in.readVInt();
+    }
+    return sum;
+  }
+}
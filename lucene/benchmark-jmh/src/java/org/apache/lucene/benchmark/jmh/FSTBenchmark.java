@@ -0,0 +1,135 @@
+package org.apache.lucene.benchmark.jmh;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.BytesRefFSTEnum;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+import org.apache.lucene.util.packed.PackedInts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures exact lookups in an {@link FST} mapping terms to ordinals, through
+ * {@link Util#get(FST, BytesRef)} and {@link BytesRefFSTEnum#seekExact}, for
+ * terms that are present and terms that are not.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FSTBenchmark {
+
+  private static final int LOOKUP_COUNT = 10000;
+
+  @Param({"10000", "1000000"})
+  public int termCount;
+
+  /** Whether the FST is {@link FST#pack packed}. */
+  @Param({"false", "true"})
+  public boolean packed;
+
+  private FST<Long> fst;
+  private BytesRef[] hits;
+  private BytesRef[] misses;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    final Random random = new Random(0xF57 + termCount);
+    final TreeSet<BytesRef> terms = new TreeSet<BytesRef>();
+    while (terms.size() < termCount) {
+      terms.add(new BytesRef(BytesRefHashBenchmark.randomTerm(random)));
+    }
+
+    final PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton(true);
+    final Builder<Long> builder = new Builder<Long>(FST.INPUT_TYPE.BYTE1, 0, 0, true, true,
+        Integer.MAX_VALUE, outputs, null, packed, PackedInts.COMPACT);
+    final IntsRef scratch = new IntsRef();
+    long ord = 0;
+    for (BytesRef term : terms) {
+      builder.add(Util.toIntsRef(term, scratch), ord++);
+    }
+    final FST<Long> built = builder.finish();
+    fst = packed ? built.pack(4, 100000000, PackedInts.DEFAULT) : built;
+
+    final BytesRef[] sorted = terms.toArray(new BytesRef[terms.size()]);
+    hits = new BytesRef[LOOKUP_COUNT];
+    misses = new BytesRef[LOOKUP_COUNT];
+    for (int i = 0; i < LOOKUP_COUNT; i++) {
+      hits[i] = sorted[random.nextInt(sorted.length)];
+      BytesRef miss;
+      do {
+        miss = new BytesRef(BytesRefHashBenchmark.randomTerm(random));
+      } while (terms.contains(miss));
+      misses[i] = miss;
+    }
+  }
+
+  @Benchmark
+  public long getHits() throws IOException {
+    return get(hits);
+  }
+
+  @Benchmark
+  public long getMisses() throws IOException {
+    return get(misses);
+  }
+
+  @Benchmark
+  public long seekExactHits() throws IOException {
+    final BytesRefFSTEnum<Long> fstEnum = new BytesRefFSTEnum<Long>(fst);
+    long sum = 0;
+    for (BytesRef term : hits) {
+      sum += fstEnum.seekExact(term).output;
+    }
+    return sum;
+  }
+
+  private long get(BytesRef[] terms) throws IOException {
+    final FST<Long> fst = this.fst;
+    long sum = 0;
+    for (BytesRef term : terms) {
+      final Long output = Util.get(fst, term);
+      if (output != null) {
+        sum += output;
+      }
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,104 @@
+package org.apache.lucene.benchmark.jmh;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.FixedBitSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures iteration over a {@link FixedBitSet} at various densities, through
+ * {@link FixedBitSet#nextSetBit(int)}, its {@link DocIdSetIterator} and
+ * {@link DocIdSetIterator#advance(int)} with a fixed stride.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixedBitSetBenchmark {
+
+  private static final int NUM_BITS = 1 << 20;
+
+  @Param({"0.001", "0.01", "0.1", "0.5", "0.99"})
+  public double density;
+
+  private FixedBitSet bits;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    final Random random = new Random(0xB175);
+    bits = new FixedBitSet(NUM_BITS);
+    for (int i = 0; i < NUM_BITS; i++) {
+      if (random.nextDouble() < density) {
+        bits.set(i);
+      }
+    }
+  }
+
+  @Benchmark
+  public long nextSetBit() {
+    final FixedBitSet bits = this.bits;
+    long sum = 0;
+    for (int i = bits.nextSetBit(0); i != -1; i = i + 1 < NUM_BITS ? bits.nextSetBit(i + 1) : -1) {
+      sum += i;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long iterator() throws IOException {
+    final DocIdSetIterator it = bits.iterator();
+    long sum = 0;
+    for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+      sum += doc;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long advance() throws IOException {
+    final DocIdSetIterator it = bits.iterator();
+    long sum = 0;
+    for (int doc = it.advance(0); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.advance(doc + 64)) {
+      sum += doc;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int cardinality() {
+    return bits.cardinality();
+  }
+}
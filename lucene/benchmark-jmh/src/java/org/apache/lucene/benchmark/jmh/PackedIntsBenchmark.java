@@ -0,0 +1,159 @@
+package org.apache.lucene.benchmark.jmh;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.packed.PackedInts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link PackedInts.Reader#get(int)} and the bulk
+ * {@link PackedInts.Reader#get(int, long[], int, int)} for the in-memory
+ * implementations picked by {@link PackedInts#getMutable} and for the
+ * direct (on-disk) reader returned by {@link PackedInts#getDirectReader}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackedIntsBenchmark {
+
+  private static final int VALUE_COUNT = 1 << 16;
+
+  @Param({"1", "4", "7", "8", "12", "16", "21", "24", "32", "48", "64"})
+  public int bitsPerValue;
+
+  /** Acceptable overhead ratio, see {@link PackedInts#COMPACT} and {@link PackedInts#FASTEST}. */
+  @Param({"0.0", "0.5", "7.0"})
+  public float acceptableOverheadRatio;
+
+  private PackedInts.Reader memory;
+  private PackedInts.Reader direct;
+  private Directory dir;
+  private IndexInput in;
+  private int[] randomIndexes;
+  private final long[] buffer = new long[128];
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    final Random random = new Random(0xC0FFEE + bitsPerValue);
+    final long maxValue = PackedInts.maxValue(bitsPerValue);
+    final PackedInts.Mutable mutable = PackedInts.getMutable(VALUE_COUNT, bitsPerValue, acceptableOverheadRatio);
+    dir = new RAMDirectory();
+    final IndexOutput out = dir.createOutput("packed", IOContext.DEFAULT);
+    final PackedInts.Writer writer = PackedInts.getWriter(out, VALUE_COUNT, bitsPerValue, acceptableOverheadRatio);
+    for (int i = 0; i < VALUE_COUNT; i++) {
+      final long value = bitsPerValue == 64 ? random.nextLong() : (random.nextLong() & maxValue);
+      mutable.set(i, value);
+      writer.add(value);
+    }
+    writer.finish();
+    out.close();
+    memory = mutable;
+    in = dir.openInput("packed", IOContext.DEFAULT);
+    direct = PackedInts.getDirectReader(in);
+
+    randomIndexes = new int[VALUE_COUNT];
+    for (int i = 0; i < VALUE_COUNT; i++) {
+      randomIndexes[i] = random.nextInt(VALUE_COUNT);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    in.close();
+    dir.close();
+  }
+
+  @Benchmark
+  public long memorySequential() {
+    return sequential(memory);
+  }
+
+  @Benchmark
+  public long memoryRandom() {
+    return random(memory);
+  }
+
+  @Benchmark
+  public long memoryBulk() {
+    return bulk(memory);
+  }
+
+  @Benchmark
+  public long directSequential() {
+    return sequential(direct);
+  }
+
+  @Benchmark
+  public long directRandom() {
+    return random(direct);
+  }
+
+  private static long sequential(PackedInts.Reader reader) {
+    long sum = 0;
+    for (int i = 0; i < VALUE_COUNT; i++) {
+      sum += reader.get(i);
+    }
+    return sum;
+  }
+
+  private long random(PackedInts.Reader reader) {
+    final int[] indexes = randomIndexes;
+    long sum = 0;
+    for (int i = 0; i < indexes.length; i++) {
+      sum += reader.get(indexes[i]);
+    }
+    return sum;
+  }
+
+  private long bulk(PackedInts.Reader reader) {
+    final long[] buffer = this.buffer;
+    long sum = 0;
+    for (int i = 0; i < VALUE_COUNT; ) {
+      final int read = reader.get(i, buffer, 0, Math.min(buffer.length, VALUE_COUNT - i));
+      for (int j = 0; j < read; j++) {
+        sum += buffer[j];
+      }
+      i += read;
+    }
+    return sum;
+  }
+}
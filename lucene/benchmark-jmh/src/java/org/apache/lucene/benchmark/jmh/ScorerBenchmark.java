@@ -0,0 +1,171 @@
+package org.apache.lucene.benchmark.jmh;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures top-10 searches that exercise one scorer each, over a synthetic
+ * single-segment index held in a {@link RAMDirectory}.
+ * <p>
+ * Documents have a <code>body</code> field of 50 to 200 terms drawn from a
+ * vocabulary of {@link #VOCABULARY_SIZE} terms with a log-uniform (Zipf-like)
+ * distribution, so that <code>t0</code> is the most frequent term, and a
+ * docs-only <code>category</code> field. The index is built from a fixed seed
+ * so that results are comparable across runs.
+ * <ul>
+ *  <li><code>term</code>: {@link TermQuery}, scored by <code>TermScorer</code></li>
+ *  <li><code>matchOnlyTerm</code>: {@link TermQuery} on a docs-only field,
+ *      scored by <code>MatchOnlyTermScorer</code></li>
+ *  <li><code>conjunction</code>: required {@link TermQuery} clauses, scored by
+ *      <code>ConjunctionTermScorer</code></li>
+ *  <li><code>disjunction</code>: optional clauses, scored by
+ *      <code>BooleanScorer</code></li>
+ *  <li><code>phrase</code>: {@link PhraseQuery} without slop, scored by
+ *      <code>ExactPhraseScorer</code></li>
+ *  <li><code>sloppyPhrase</code>: {@link PhraseQuery} with slop, scored by
+ *      <code>SloppyPhraseScorer</code></li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScorerBenchmark {
+
+  static final int VOCABULARY_SIZE = 10000;
+  static final int CATEGORY_COUNT = 10;
+
+  @Param({"100000"})
+  public int docCount;
+
+  @Param({"term", "matchOnlyTerm", "conjunction", "disjunction", "phrase", "sloppyPhrase"})
+  public String queryType;
+
+  private Directory dir;
+  private IndexReader reader;
+  private IndexSearcher searcher;
+  private Query query;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    dir = new RAMDirectory();
+    final IndexWriterConfig iwc = new IndexWriterConfig(Version.LUCENE_50, new WhitespaceAnalyzer(Version.LUCENE_50));
+    final IndexWriter writer = new IndexWriter(dir, iwc);
+    final Random random = new Random(0x5C0E + docCount);
+    final Document doc = new Document();
+    final Field body = new TextField("body", "", Field.Store.NO);
+    final Field category = new StringField("category", "", Field.Store.NO);
+    doc.add(body);
+    doc.add(category);
+    final StringBuilder sb = new StringBuilder();
+    final double logVocabulary = Math.log(VOCABULARY_SIZE);
+    for (int i = 0; i < docCount; i++) {
+      sb.setLength(0);
+      final int length = 50 + random.nextInt(151);
+      for (int j = 0; j < length; j++) {
+        sb.append('t').append((int) Math.exp(random.nextDouble() * logVocabulary) - 1).append(' ');
+      }
+      body.setStringValue(sb.toString());
+      category.setStringValue("c" + random.nextInt(CATEGORY_COUNT));
+      writer.addDocument(doc);
+    }
+    writer.forceMerge(1);
+    writer.close();
+
+    reader = DirectoryReader.open(dir);
+    searcher = new IndexSearcher(reader);
+    query = createQuery(queryType);
+  }
+
+  static Query createQuery(String queryType) {
+    if ("term".equals(queryType)) {
+      return new TermQuery(new Term("body", "t3"));
+    } else if ("matchOnlyTerm".equals(queryType)) {
+      return new TermQuery(new Term("category", "c3"));
+    } else if ("conjunction".equals(queryType)) {
+      final BooleanQuery bq = new BooleanQuery();
+      bq.add(new TermQuery(new Term("body", "t1")), BooleanClause.Occur.MUST);
+      bq.add(new TermQuery(new Term("body", "t20")), BooleanClause.Occur.MUST);
+      return bq;
+    } else if ("disjunction".equals(queryType)) {
+      final BooleanQuery bq = new BooleanQuery();
+      bq.add(new TermQuery(new Term("body", "t1")), BooleanClause.Occur.SHOULD);
+      bq.add(new TermQuery(new Term("body", "t20")), BooleanClause.Occur.SHOULD);
+      bq.add(new TermQuery(new Term("body", "t300")), BooleanClause.Occur.SHOULD);
+      return bq;
+    } else if ("phrase".equals(queryType) || "sloppyPhrase".equals(queryType)) {
+      final PhraseQuery pq = new PhraseQuery();
+      pq.add(new Term("body", "t1"));
+      pq.add(new Term("body", "t2"));
+      if ("sloppyPhrase".equals(queryType)) {
+        pq.setSlop(3);
+      }
+      return pq;
+    }
+    throw new IllegalArgumentException("unknown query type: " + queryType);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    reader.close();
+    dir.close();
+  }
+
+  @Benchmark
+  public int search() throws IOException {
+    return searcher.search(query, 10).totalHits;
+  }
+}
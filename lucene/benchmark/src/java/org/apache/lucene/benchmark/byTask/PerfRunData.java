@@ -23,6 +23,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.benchmark.byTask.feeds.ContentSource;
@@ -45,6 +47,7 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.NamedThreadFactory;
 
 /**
  * Data maintained by a performance test run.
@@ -99,6 +102,12 @@ public class PerfRunData implements Closeable {
   private long startTimeMillis;
 
   private final HashMap<String, Object> perfObjects = new HashMap<String, Object>();
+
+  private ExecutorService rewriteExecutor;
+  private int rewriteThreads;
+
+  private ExecutorService flushExecutor;
+  private int flushThreads;
   
   // constructor
   public PerfRunData (Config config) throws Exception {
@@ -150,6 +159,17 @@ public class PerfRunData implements Closeable {
       }
     }
     IOUtils.close(perfObjectsToClose);
+
+    synchronized (this) {
+      if (rewriteExecutor != null) {
+        rewriteExecutor.shutdown();
+        rewriteExecutor = null;
+      }
+      if (flushExecutor != null) {
+        flushExecutor.shutdown();
+        flushExecutor = null;
+      }
+    }
   }
 
   // clean old stuff, reopen 
@@ -414,6 +434,40 @@ public class PerfRunData implements Closeable {
     }
   }
 
+  /**
+   * Returns a thread pool of the given size which multi-term queries use to
+   * enumerate the terms of all segments concurrently while they are rewritten.
+   * The pool is shared by all read tasks, and replaced when a round asks for
+   * a different number of threads.
+   */
+  synchronized public ExecutorService getRewriteExecutor(int threads) {
+    if (rewriteExecutor == null || rewriteThreads != threads) {
+      if (rewriteExecutor != null) {
+        rewriteExecutor.shutdown();
+      }
+      rewriteExecutor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("rewrite"));
+      rewriteThreads = threads;
+    }
+    return rewriteExecutor;
+  }
+
+  /**
+   * Returns a thread pool of the given size which index writers use to
+   * write the parts of flushed segments concurrently. The pool is shared
+   * by all writers, and replaced when a round asks for a different number
+   * of threads.
+   */
+  synchronized public ExecutorService getFlushExecutor(int threads) {
+    if (flushExecutor == null || flushThreads != threads) {
+      if (flushExecutor != null) {
+        flushExecutor.shutdown();
+      }
+      flushExecutor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("flush"));
+      flushThreads = threads;
+    }
+    return flushExecutor;
+  }
+
   /**
    * @return Returns the queryMaker by read task type (class)
    */
@@ -18,8 +18,11 @@ package org.apache.lucene.benchmark.byTask.tasks;
  */
 
 import org.apache.lucene.benchmark.byTask.PerfRunData;
+import org.apache.lucene.benchmark.byTask.feeds.DocMaker;
 import org.apache.lucene.benchmark.byTask.utils.Config;
 import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.lucene40.Lucene40Codec;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexCommit;
 import org.apache.lucene.index.IndexDeletionPolicy;
@@ -53,7 +56,10 @@ import java.io.PrintStream;
  * org.apache.lucene.index.ConcurrentMergeScheduler),
  * concurrent.merge.scheduler.max.thread.count and
  * concurrent.merge.scheduler.max.merge.count (defaults per
- * ConcurrentMergeScheduler), default.codec </code>.
+ * ConcurrentMergeScheduler), default.codec, codec.postingsFormat (name of a
+ * {@link PostingsFormat} to use for all fields, eg <code>Block</code>),
+ * codec.idPostingsFormat (name of a {@link PostingsFormat} to use for the
+ * {@link DocMaker#ID_FIELD} field only, eg <code>BloomFilter</code>) </code>.
  * <p>
  * This task also supports a "writer.info.stream" property with the following
  * values:
@@ -141,6 +147,22 @@ public class CreateIndexTask extends PerfTask {
       }
     }
 
+    final String postingsFormat = config.get("codec.postingsFormat", null);
+    final String idPostingsFormat = config.get("codec.idPostingsFormat", null);
+    if (postingsFormat != null || idPostingsFormat != null) {
+      final PostingsFormat format = postingsFormat == null ? null : PostingsFormat.forName(postingsFormat);
+      final PostingsFormat idFormat = idPostingsFormat == null ? null : PostingsFormat.forName(idPostingsFormat);
+      iwConf.setCodec(new Lucene40Codec() {
+        @Override
+        public PostingsFormat getPostingsFormatForField(String field) {
+          if (idFormat != null && DocMaker.ID_FIELD.equals(field)) {
+            return idFormat;
+          }
+          return format == null ? super.getPostingsFormatForField(field) : format;
+        }
+      });
+    }
+
     final String mergePolicy = config.get("merge.policy",
                                           "org.apache.lucene.index.LogByteSizeMergePolicy");
     boolean isCompound = config.get("compound", true);
@@ -170,6 +192,11 @@ public class CreateIndexTask extends PerfTask {
       iwConf.setMaxBufferedDocs(maxBuffered);
       iwConf.setRAMBufferSizeMB(ramBuffer);
     }
+
+    final int flushThreads = config.get("writer.flush.threads", 0);
+    if (flushThreads > 0) {
+      iwConf.setFlushExecutor(runData.getFlushExecutor(flushThreads));
+    }
     
     return iwConf;
   }
@@ -57,6 +57,11 @@ import org.apache.lucene.util.Bits;
  * the top number of hits to collect during searching.  If
  * <code>print.hits.field</code> is set, then each hit is
  * printed along with the value of that field.</p>
+ * <p>
+ * If <code>search.rewrite.threads</code> is greater than 0, the query is
+ * rewritten by an {@link IndexSearcher} with a pool of that many threads,
+ * so that multi-term queries (wildcard, prefix, ...) enumerate the terms
+ * of all segments concurrently. Fuzzy queries are still rewritten serially.</p>
  *
  * <p>Other side effects: none.
  */
@@ -109,6 +114,10 @@ public abstract class ReadTask extends PerfTask {
     if (withSearch()) {
       res++;
       Query q = queryMaker.makeQuery();
+      if (rewriteThreads > 0) {
+        // only the rewrite runs on the executor, the search itself stays serial
+        q = new IndexSearcher(reader, getRunData().getRewriteExecutor(rewriteThreads)).rewrite(q);
+      }
       Sort sort = getSort();
       TopDocs hits = null;
       final int numHits = numHits();
@@ -248,11 +257,13 @@ public abstract class ReadTask extends PerfTask {
 
   static final int DEFAULT_SEARCH_NUM_HITS = 10;
   private int numHits;
+  private int rewriteThreads;
 
   @Override
   public void setup() throws Exception {
     super.setup();
     numHits = getRunData().getConfig().get("search.num.hits", DEFAULT_SEARCH_NUM_HITS);
+    rewriteThreads = getRunData().getConfig().get("search.rewrite.threads", 0);
   }
 
   /**
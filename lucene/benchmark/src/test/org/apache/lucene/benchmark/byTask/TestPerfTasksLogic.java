@@ -836,6 +836,106 @@ public class TestPerfTasksLogic extends BenchmarkTestCase {
     assertEquals(3, infos.size());
   }
   
+  /**
+   * Test that multi-term queries can be rewritten concurrently.
+   */
+  public void testConcurrentRewrite() throws Exception {
+    String algLines[] = {
+        "# ----- properties ",
+        "content.source=org.apache.lucene.benchmark.byTask.feeds.LineDocSource",
+        "docs.file=" + getReuters20LinesFile(),
+        "content.source.log.step=3",
+        "ram.flush.mb=-1",
+        "max.buffered=3",
+        "merge.factor=100",
+        "content.source.forever=false",
+        "directory=RAMDirectory",
+        "query.maker=" + ReutersQueryMaker.class.getName(),
+        "search.rewrite.threads=2",
+        "# ----- alg ",
+        "ResetSystemErase",
+        "CreateIndex",
+        "{ AddDoc } : *",
+        "CloseIndex",
+        "OpenReader",
+        "{ CountingSearchTest } : 30",
+        "CloseReader",
+    };
+
+    CountingSearchTestTask.numSearches = 0;
+    Benchmark benchmark = execBenchmark(algLines);
+    assertEquals(30, CountingSearchTestTask.numSearches);
+
+    SegmentInfos infos = new SegmentInfos();
+    infos.read(benchmark.getRunData().getDirectory());
+    assertTrue(infos.size() > 1);
+  }
+
+  /**
+   * Test that codec.idPostingsFormat only applies to the id field, and that
+   * updates through it replace the existing documents.
+   */
+  public void testIdPostingsFormat() throws Exception {
+    String algLines[] = {
+        "# ----- properties ",
+        "content.source=org.apache.lucene.benchmark.byTask.feeds.SingleDocSource",
+        "ram.flush.mb=-1",
+        "max.buffered=3",
+        "compound=false",
+        "directory=RAMDirectory",
+        "codec.idPostingsFormat=BloomFilter",
+        "# ----- alg ",
+        "ResetSystemErase",
+        "CreateIndex",
+        "{ AddDoc } : 20",
+        "ResetInputs",
+        "{ UpdateDoc } : 20",
+        "CloseIndex",
+    };
+
+    Benchmark benchmark = execBenchmark(algLines);
+
+    DirectoryReader r = DirectoryReader.open(benchmark.getRunData().getDirectory());
+    assertEquals(20, r.numDocs());
+    r.close();
+
+    int bloomFiles = 0;
+    for (String file : benchmark.getRunData().getDirectory().listAll()) {
+      if (file.endsWith(".blm")) {
+        bloomFiles++;
+      }
+    }
+    assertTrue(bloomFiles > 0);
+  }
+
+  public void testFlushThreads() throws Exception {
+    String algLines[] = {
+        "# ----- properties ",
+        "content.source=org.apache.lucene.benchmark.byTask.feeds.SingleDocSource",
+        "ram.flush.mb=-1",
+        "max.buffered=3",
+        "compound=false",
+        "directory=RAMDirectory",
+        "writer.flush.threads=2",
+        "# ----- alg ",
+        "ResetSystemErase",
+        "CreateIndex",
+        "{ AddDoc } : 20",
+        "CommitIndex",
+    };
+
+    Benchmark benchmark = execBenchmark(algLines);
+
+    final IndexWriter writer = benchmark.getRunData().getIndexWriter();
+    assertSame(benchmark.getRunData().getFlushExecutor(2), writer.getConfig().getFlushExecutor());
+    assertEquals(20, writer.getFlushStats().getFlushedDocCount());
+    writer.close();
+
+    DirectoryReader r = DirectoryReader.open(benchmark.getRunData().getDirectory());
+    assertEquals(20, r.numDocs());
+    r.close();
+  }
+
   /**
    * Test disabling task count (LUCENE-1136).
    */
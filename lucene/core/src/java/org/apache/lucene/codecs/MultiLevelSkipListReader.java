@@ -89,6 +89,14 @@ public abstract class MultiLevelSkipListReader {
   public int getDoc() {
     return lastDoc;
   }
+
+  /** Returns the id of the doc of the current skip entry on the lowest level,
+   *  which is the first entry whose document number is greater than or equal to
+   *  the target of the last call of {@link #skipTo(int)}, or
+   *  {@link Integer#MAX_VALUE} if there is no such entry. */
+  protected int getNextSkipDoc() {
+    return skipDoc[0];
+  }
   
   
   /** Skips entries to the first beyond the current whose document number is
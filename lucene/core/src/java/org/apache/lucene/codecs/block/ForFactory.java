@@ -0,0 +1,90 @@
+package org.apache.lucene.codecs.block;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.intblock.FixedIntBlockIndexInput;
+import org.apache.lucene.codecs.intblock.FixedIntBlockIndexOutput;
+import org.apache.lucene.codecs.sep.IntIndexInput;
+import org.apache.lucene.codecs.sep.IntIndexOutput;
+import org.apache.lucene.codecs.sep.IntStreamFactory;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * {@link IntStreamFactory} that writes fixed blocks of
+ * {@link ForUtil#BLOCK_SIZE} ints encoded with {@link ForUtil}.
+ *
+ * @lucene.experimental
+ */
+public class ForFactory extends IntStreamFactory {
+
+  @Override
+  public IntIndexInput openInput(Directory dir, String fileName, IOContext context) throws IOException {
+    final IndexInput in = dir.openInput(fileName, context);
+    boolean success = false;
+    try {
+      final FixedIntBlockIndexInput ret = new FixedIntBlockIndexInput(in) {
+        @Override
+        protected BlockReader getBlockReader(final IndexInput in, final int[] buffer) throws IOException {
+          if (blockSize != ForUtil.BLOCK_SIZE) {
+            throw new CorruptIndexException("invalid block size " + blockSize + " (expected " + ForUtil.BLOCK_SIZE + ") in " + in);
+          }
+          final long[] scratch = new long[ForUtil.BLOCK_SIZE >>> 1];
+          return new BlockReader() {
+            public void readBlock() throws IOException {
+              ForUtil.decode(in, scratch, buffer);
+            }
+          };
+        }
+      };
+      success = true;
+      return ret;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(in);
+      }
+    }
+  }
+
+  @Override
+  public IntIndexOutput createOutput(Directory dir, String fileName, IOContext context) throws IOException {
+    final IndexOutput out = dir.createOutput(fileName, context);
+    boolean success = false;
+    try {
+      final long[] scratch = new long[ForUtil.BLOCK_SIZE >>> 1];
+      final FixedIntBlockIndexOutput ret = new FixedIntBlockIndexOutput(out, ForUtil.BLOCK_SIZE) {
+        @Override
+        protected void flushBlock() throws IOException {
+          ForUtil.encode(buffer, scratch, out);
+        }
+      };
+      success = true;
+      return ret;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(out);
+      }
+    }
+  }
+}
@@ -0,0 +1,219 @@
+package org.apache.lucene.codecs.block;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+
+/**
+ * Encodes and decodes fixed size blocks of {@link #BLOCK_SIZE}
+ * ints using patched frame-of-reference (PFOR) bit packing.
+ * <p>
+ * Every block starts with a one byte token.  If all values of
+ * the block are equal, the token is {@link #ALL_VALUES_EQUAL}
+ * and the value follows as a vInt.  Otherwise the token is the
+ * number of bits <code>b</code> used to pack every value,
+ * followed by the number of exceptions, <code>2*b</code> longs
+ * holding the low <code>b</code> bits of all values and
+ * finally, for every exception, its index in the block and
+ * its remaining high bits as a vInt.  <code>b</code> is chosen
+ * so that the encoded block is as small as possible, which
+ * means that a few large values (typically large doc deltas)
+ * don't force wide packing of the whole block.
+ * <p>
+ * Values are treated as unsigned 32 bits ints.
+ *
+ * @lucene.experimental
+ */
+public final class ForUtil {
+
+  /** Number of ints per block. */
+  public static final int BLOCK_SIZE = 128;
+
+  /** Token written for blocks whose values are all equal. */
+  static final int ALL_VALUES_EQUAL = 0xFF;
+
+  private static final long[] MASKS = new long[33];
+  static {
+    for (int i = 0; i < MASKS.length; ++i) {
+      MASKS[i] = (1L << i) - 1;
+    }
+  }
+
+  private ForUtil() {} // no instance
+
+  /** Returns the number of longs required to pack
+   *  {@link #BLOCK_SIZE} values of <code>numBits</code> bits. */
+  static int numLongs(int numBits) {
+    return (BLOCK_SIZE * numBits) >>> 6;
+  }
+
+  /** Returns the number of bits required to represent
+   *  <code>v</code>, interpreted as an unsigned int. */
+  static int bitsRequired(int v) {
+    return 32 - Integer.numberOfLeadingZeros(v);
+  }
+
+  /**
+   * Encodes the first {@link #BLOCK_SIZE} values of
+   * <code>data</code> to <code>out</code>.
+   * <code>scratch</code> must have room for at least
+   * <code>{@link #BLOCK_SIZE} / 2</code> longs.
+   */
+  public static void encode(int[] data, long[] scratch, DataOutput out) throws IOException {
+    assert data.length >= BLOCK_SIZE;
+    if (isAllEqual(data)) {
+      out.writeByte((byte) ALL_VALUES_EQUAL);
+      out.writeVInt(data[0]);
+      return;
+    }
+
+    final int numBits = bestNumBits(data);
+    final long mask = MASKS[numBits];
+    int numExceptions = 0;
+    for (int i = 0; i < BLOCK_SIZE; ++i) {
+      if ((data[i] & 0xFFFFFFFFL) > mask) {
+        ++numExceptions;
+      }
+    }
+
+    out.writeByte((byte) numBits);
+    out.writeByte((byte) numExceptions);
+
+    if (numBits > 0) {
+      final int numLongs = numLongs(numBits);
+      long acc = 0;
+      int accBits = 0;
+      int upto = 0;
+      for (int i = 0; i < BLOCK_SIZE; ++i) {
+        final long v = data[i] & mask;
+        acc |= v << accBits;
+        accBits += numBits;
+        if (accBits >= 64) {
+          scratch[upto++] = acc;
+          accBits -= 64;
+          acc = accBits == 0 ? 0L : v >>> (numBits - accBits);
+        }
+      }
+      assert upto == numLongs && accBits == 0;
+      for (int i = 0; i < numLongs; ++i) {
+        out.writeLong(scratch[i]);
+      }
+    }
+
+    if (numExceptions > 0) {
+      for (int i = 0; i < BLOCK_SIZE; ++i) {
+        if ((data[i] & 0xFFFFFFFFL) > mask) {
+          out.writeByte((byte) i);
+          out.writeVInt(data[i] >>> numBits);
+        }
+      }
+    }
+  }
+
+  /**
+   * Decodes one block from <code>in</code> into the first
+   * {@link #BLOCK_SIZE} slots of <code>data</code>.
+   * <code>scratch</code> must have room for at least
+   * <code>{@link #BLOCK_SIZE} / 2</code> longs.
+   */
+  public static void decode(DataInput in, long[] scratch, int[] data) throws IOException {
+    assert data.length >= BLOCK_SIZE;
+    final int token = in.readByte() & 0xFF;
+    if (token == ALL_VALUES_EQUAL) {
+      final int v = in.readVInt();
+      for (int i = 0; i < BLOCK_SIZE; ++i) {
+        data[i] = v;
+      }
+      return;
+    }
+
+    final int numBits = token;
+    final int numExceptions = in.readByte() & 0xFF;
+
+    if (numBits == 0) {
+      for (int i = 0; i < BLOCK_SIZE; ++i) {
+        data[i] = 0;
+      }
+    } else {
+      final int numLongs = numLongs(numBits);
+      for (int i = 0; i < numLongs; ++i) {
+        scratch[i] = in.readLong();
+      }
+      unpack(scratch, numBits, data);
+    }
+
+    for (int i = 0; i < numExceptions; ++i) {
+      final int index = in.readByte() & 0xFF;
+      data[index] |= in.readVInt() << numBits;
+    }
+  }
+
+  private static void unpack(long[] packed, int numBits, int[] data) {
+    final long mask = MASKS[numBits];
+    int bitPos = 0;
+    for (int i = 0; i < BLOCK_SIZE; ++i, bitPos += numBits) {
+      final int block = bitPos >>> 6;
+      final int shift = bitPos & 63;
+      long v = packed[block] >>> shift;
+      if (shift + numBits > 64) {
+        v |= packed[block + 1] << (64 - shift);
+      }
+      data[i] = (int) (v & mask);
+    }
+  }
+
+  private static boolean isAllEqual(int[] data) {
+    final int v = data[0];
+    for (int i = 1; i < BLOCK_SIZE; ++i) {
+      if (data[i] != v) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Picks the number of bits per packed value which
+   *  minimizes the (approximate) size of the encoded block. */
+  private static int bestNumBits(int[] data) {
+    final int[] counts = new int[33];
+    int maxBits = 0;
+    for (int i = 0; i < BLOCK_SIZE; ++i) {
+      final int bits = bitsRequired(data[i]);
+      counts[bits]++;
+      maxBits = Math.max(maxBits, bits);
+    }
+
+    int bestBits = maxBits;
+    long bestSize = 8L * numLongs(maxBits);
+    for (int numBits = maxBits - 1; numBits >= 0; --numBits) {
+      long size = 8L * numLongs(numBits);
+      for (int bits = numBits + 1; bits <= maxBits; ++bits) {
+        // index byte + vInt of the high bits
+        size += counts[bits] * (1 + (bits - numBits + 6) / 7);
+      }
+      if (size < bestSize) {
+        bestSize = size;
+        bestBits = numBits;
+      }
+    }
+    return bestBits;
+  }
+}
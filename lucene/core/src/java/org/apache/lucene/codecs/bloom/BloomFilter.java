@@ -0,0 +1,163 @@
+package org.apache.lucene.codecs.bloom;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * A bloom filter over the terms of one field of a segment. The number of
+ * bits is a power of two, and the <code>k</code> bit positions of a term
+ * are derived from two 32-bit MurmurHash3 hashes of its bytes.
+ */
+final class BloomFilter {
+
+  private static final int SEED1 = 0x9747b28c;
+  private static final int SEED2 = 0x5bd1e995;
+
+  private final long[] bits;
+  private final int mask;
+  private final int hashCount;
+
+  private BloomFilter(long[] bits, int hashCount) {
+    this.bits = bits;
+    this.mask = (bits.length << 6) - 1;
+    this.hashCount = hashCount;
+  }
+
+  /**
+   * Creates a filter for the given term hashes, with about
+   * <code>bitsPerTerm</code> bits per term.
+   * @param hashes pairs of hashes, as computed by {@link #hash1} and {@link #hash2}
+   * @param numTerms number of pairs in <code>hashes</code>
+   */
+  static BloomFilter create(int[] hashes, int numTerms, int bitsPerTerm) {
+    final long numBits = Math.max(64L, (long) numTerms * bitsPerTerm);
+    // round up to a power of two, at most 2^31 bits
+    int numWords = 1;
+    while (((long) numWords << 6) < numBits && numWords < (1 << 25)) {
+      numWords <<= 1;
+    }
+    // k = ln(2) * m / n minimizes the false positive rate
+    final int hashCount = Math.max(1, Math.min(16, (int) Math.round(Math.log(2) * ((long) numWords << 6) / Math.max(1, numTerms))));
+    final BloomFilter filter = new BloomFilter(new long[numWords], hashCount);
+    for (int i = 0; i < numTerms; i++) {
+      filter.add(hashes[2*i], hashes[2*i+1]);
+    }
+    return filter;
+  }
+
+  static int hash1(BytesRef term) {
+    return murmurhash3_x86_32(term.bytes, term.offset, term.length, SEED1);
+  }
+
+  static int hash2(BytesRef term) {
+    return murmurhash3_x86_32(term.bytes, term.offset, term.length, SEED2);
+  }
+
+  private void add(int hash1, int hash2) {
+    for (int i = 0; i < hashCount; i++) {
+      final int bit = (hash1 + i * hash2) & mask;
+      bits[bit >>> 6] |= 1L << bit;
+    }
+  }
+
+  /** Returns false if the term is certainly not in the filter. */
+  boolean mayContain(BytesRef term) {
+    final int hash1 = hash1(term);
+    final int hash2 = hash2(term);
+    for (int i = 0; i < hashCount; i++) {
+      final int bit = (hash1 + i * hash2) & mask;
+      if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeVInt(hashCount);
+    out.writeVInt(bits.length);
+    for (long word : bits) {
+      out.writeLong(word);
+    }
+  }
+
+  static BloomFilter read(DataInput in) throws IOException {
+    final int hashCount = in.readVInt();
+    final long[] bits = new long[in.readVInt()];
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] = in.readLong();
+    }
+    return new BloomFilter(bits, hashCount);
+  }
+
+  /** MurmurHash3, x86 32-bit variant */
+  private static int murmurhash3_x86_32(byte[] data, int offset, int len, int seed) {
+    final int c1 = 0xcc9e2d51;
+    final int c2 = 0x1b873593;
+
+    int h1 = seed;
+    final int roundedEnd = offset + (len & 0xfffffffc);  // round down to 4 byte block
+
+    for (int i = offset; i < roundedEnd; i += 4) {
+      // little endian load order
+      int k1 = (data[i] & 0xff) | ((data[i+1] & 0xff) << 8) | ((data[i+2] & 0xff) << 16) | (data[i+3] << 24);
+      k1 *= c1;
+      k1 = Integer.rotateLeft(k1, 15);
+      k1 *= c2;
+
+      h1 ^= k1;
+      h1 = Integer.rotateLeft(h1, 13);
+      h1 = h1*5+0xe6546b64;
+    }
+
+    // tail
+    int k1 = 0;
+
+    switch(len & 0x03) {
+      case 3:
+        k1 = (data[roundedEnd + 2] & 0xff) << 16;
+        // fallthrough
+      case 2:
+        k1 |= (data[roundedEnd + 1] & 0xff) << 8;
+        // fallthrough
+      case 1:
+        k1 |= (data[roundedEnd] & 0xff);
+        k1 *= c1;
+        k1 = Integer.rotateLeft(k1, 15);
+        k1 *= c2;
+        h1 ^= k1;
+    }
+
+    // finalization
+    h1 ^= len;
+
+    // fmix(h1);
+    h1 ^= h1 >>> 16;
+    h1 *= 0x85ebca6b;
+    h1 ^= h1 >>> 13;
+    h1 *= 0xc2b2ae35;
+    h1 ^= h1 >>> 16;
+
+    return h1;
+  }
+}
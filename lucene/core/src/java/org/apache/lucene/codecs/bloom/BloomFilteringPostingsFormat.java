@@ -0,0 +1,294 @@
+package org.apache.lucene.codecs.bloom;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.codecs.FieldsConsumer;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.PostingsConsumer;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.TermStats;
+import org.apache.lucene.codecs.TermsConsumer;
+import org.apache.lucene.codecs.lucene40.Lucene40PostingsFormat;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldsEnum;
+import org.apache.lucene.index.FilterAtomicReader.FilterFieldsEnum;
+import org.apache.lucene.index.FilterAtomicReader.FilterTerms;
+import org.apache.lucene.index.FilterAtomicReader.FilterTermsEnum;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CodecUtil;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * A postings format that wraps another one and keeps a bloom filter
+ * of each field's terms in memory. {@link TermsEnum#seekExact(BytesRef, boolean)}
+ * for a term that is not in the filter returns <code>false</code>
+ * without touching the wrapped terms dictionary, which makes misses of
+ * primary-key lookups (e.g. updateDocument or real-time get on an id
+ * field) nearly free in every segment that does not hold the key.
+ * <p>
+ * The filters take about <code>bitsPerTerm</code> bits per unique term,
+ * rounded up to a power of two per field, and are best used only for
+ * fields with unique or near-unique values, typically through
+ * {@link org.apache.lucene.codecs.perfield.PerFieldPostingsFormat}.
+ * The name of the wrapped format is written into the index, so the
+ * default constructor can read segments written with any delegate.
+ *
+ * @lucene.experimental
+ */
+public final class BloomFilteringPostingsFormat extends PostingsFormat {
+
+  /** Extension of the bloom filter file */
+  static final String BLOOM_EXTENSION = "blm";
+
+  static final String CODEC_NAME = "BloomFilter";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  /** Default number of bits per term; gives a false positive rate of about 1% */
+  public static final int DEFAULT_BITS_PER_TERM = 10;
+
+  private final PostingsFormat delegate;
+  private final int bitsPerTerm;
+
+  /** Wraps {@link Lucene40PostingsFormat} with {@link #DEFAULT_BITS_PER_TERM}. */
+  public BloomFilteringPostingsFormat() {
+    this(new Lucene40PostingsFormat());
+  }
+
+  public BloomFilteringPostingsFormat(PostingsFormat delegate) {
+    this(delegate, DEFAULT_BITS_PER_TERM);
+  }
+
+  public BloomFilteringPostingsFormat(PostingsFormat delegate, int bitsPerTerm) {
+    super(CODEC_NAME);
+    if (bitsPerTerm < 1) {
+      throw new IllegalArgumentException("bitsPerTerm must be >= 1 (got " + bitsPerTerm + ")");
+    }
+    this.delegate = delegate;
+    this.bitsPerTerm = bitsPerTerm;
+  }
+
+  @Override
+  public String toString() {
+    return getName() + "(delegate=" + delegate + " bitsPerTerm=" + bitsPerTerm + ")";
+  }
+
+  @Override
+  public FieldsConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+    return new BloomFilteredFieldsConsumer(delegate.fieldsConsumer(state), state);
+  }
+
+  @Override
+  public FieldsProducer fieldsProducer(SegmentReadState state) throws IOException {
+    return new BloomFilteredFieldsProducer(state);
+  }
+
+  private final class BloomFilteredFieldsConsumer extends FieldsConsumer {
+    private final FieldsConsumer in;
+    private final SegmentWriteState state;
+    private final List<FieldInfo> fields = new ArrayList<FieldInfo>();
+    private final List<BloomFilter> filters = new ArrayList<BloomFilter>();
+
+    BloomFilteredFieldsConsumer(FieldsConsumer in, SegmentWriteState state) {
+      this.in = in;
+      this.state = state;
+    }
+
+    @Override
+    public TermsConsumer addField(FieldInfo field) throws IOException {
+      return new BloomFilteredTermsConsumer(in.addField(field), field);
+    }
+
+    @Override
+    public void close() throws IOException {
+      final String fileName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, BLOOM_EXTENSION);
+      IndexOutput out = null;
+      boolean success = false;
+      try {
+        out = state.directory.createOutput(fileName, state.context);
+        CodecUtil.writeHeader(out, CODEC_NAME, VERSION_CURRENT);
+        out.writeString(delegate.getName());
+        out.writeVInt(filters.size());
+        for (int i = 0; i < filters.size(); i++) {
+          out.writeVInt(fields.get(i).number);
+          filters.get(i).write(out);
+        }
+        success = true;
+      } finally {
+        if (success) {
+          IOUtils.close(out, in);
+        } else {
+          IOUtils.closeWhileHandlingException(out, in);
+        }
+      }
+    }
+
+    private final class BloomFilteredTermsConsumer extends TermsConsumer {
+      private final TermsConsumer in;
+      private final FieldInfo field;
+      private int[] hashes = new int[16];
+      private int numTerms;
+
+      BloomFilteredTermsConsumer(TermsConsumer in, FieldInfo field) {
+        this.in = in;
+        this.field = field;
+      }
+
+      @Override
+      public PostingsConsumer startTerm(BytesRef text) throws IOException {
+        return in.startTerm(text);
+      }
+
+      @Override
+      public void finishTerm(BytesRef text, TermStats stats) throws IOException {
+        in.finishTerm(text, stats);
+        if (2 * numTerms + 2 > hashes.length) {
+          hashes = ArrayUtil.grow(hashes, 2 * numTerms + 2);
+        }
+        hashes[2 * numTerms] = BloomFilter.hash1(text);
+        hashes[2 * numTerms + 1] = BloomFilter.hash2(text);
+        numTerms++;
+      }
+
+      @Override
+      public void finish(long sumTotalTermFreq, long sumDocFreq, int docCount) throws IOException {
+        in.finish(sumTotalTermFreq, sumDocFreq, docCount);
+        if (numTerms > 0) {
+          fields.add(field);
+          filters.add(BloomFilter.create(hashes, numTerms, bitsPerTerm));
+        }
+        hashes = null;
+      }
+
+      @Override
+      public Comparator<BytesRef> getComparator() throws IOException {
+        return in.getComparator();
+      }
+    }
+  }
+
+  private static final class BloomFilteredFieldsProducer extends FieldsProducer {
+    private final FieldsProducer in;
+    private final Map<String,BloomFilter> filters = new HashMap<String,BloomFilter>();
+
+    BloomFilteredFieldsProducer(SegmentReadState state) throws IOException {
+      final String fileName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, BLOOM_EXTENSION);
+      final IndexInput input = state.dir.openInput(fileName, state.context);
+      try {
+        CodecUtil.checkHeader(input, CODEC_NAME, VERSION_START, VERSION_CURRENT);
+        final PostingsFormat delegate = PostingsFormat.forName(input.readString());
+        final int numFields = input.readVInt();
+        for (int i = 0; i < numFields; i++) {
+          final FieldInfo fieldInfo = state.fieldInfos.fieldInfo(input.readVInt());
+          filters.put(fieldInfo.name, BloomFilter.read(input));
+        }
+        in = delegate.fieldsProducer(state);
+      } finally {
+        input.close();
+      }
+    }
+
+    @Override
+    public FieldsEnum iterator() throws IOException {
+      return new FilterFieldsEnum(in.iterator()) {
+        private String current;
+
+        @Override
+        public String next() throws IOException {
+          return current = super.next();
+        }
+
+        @Override
+        public Terms terms() throws IOException {
+          return wrap(current, super.terms());
+        }
+      };
+    }
+
+    @Override
+    public Terms terms(String field) throws IOException {
+      return wrap(field, in.terms(field));
+    }
+
+    private Terms wrap(String field, Terms terms) {
+      final BloomFilter filter = filters.get(field);
+      return terms == null || filter == null ? terms : new BloomFilteredTerms(terms, filter);
+    }
+
+    @Override
+    public int size() throws IOException {
+      return in.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  private static final class BloomFilteredTerms extends FilterTerms {
+    private final BloomFilter filter;
+
+    BloomFilteredTerms(Terms in, BloomFilter filter) {
+      super(in);
+      this.filter = filter;
+    }
+
+    @Override
+    public TermsEnum iterator(TermsEnum reuse) throws IOException {
+      if (reuse instanceof BloomFilteredTermsEnum) {
+        reuse = ((BloomFilteredTermsEnum) reuse).delegate();
+      }
+      return new BloomFilteredTermsEnum(in.iterator(reuse), filter);
+    }
+  }
+
+  private static final class BloomFilteredTermsEnum extends FilterTermsEnum {
+    private final BloomFilter filter;
+
+    BloomFilteredTermsEnum(TermsEnum in, BloomFilter filter) {
+      super(in);
+      this.filter = filter;
+    }
+
+    TermsEnum delegate() {
+      return in;
+    }
+
+    @Override
+    public boolean seekExact(BytesRef text, boolean useCache) throws IOException {
+      // a miss leaves the enum unpositioned, just like the delegate would
+      return filter.mayContain(text) && in.seekExact(text, useCache);
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package org.apache.lucene.codecs.compressing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.StoredFieldsFormat;
+import org.apache.lucene.codecs.StoredFieldsReader;
+import org.apache.lucene.codecs.StoredFieldsWriter;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.store.DataOutput; // javadocs
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.util.CodecUtil; // javadocs
+import org.apache.lucene.util.packed.PackedInts; // javadocs
+
+/**
+ * A {@link StoredFieldsFormat} that compresses documents in
+ * chunks in order to improve the compression ratio.
+ * <p>
+ * Consecutive documents are buffered until their serialized
+ * size reaches the chunk size (16 KB by default), and then
+ * compressed together with LZ4. Since documents are
+ * compressed together, highly redundant content (eg. field
+ * names shared by many documents, or repeated values) is
+ * stored much more compactly than with one document at a
+ * time. Loading a document requires decompressing its whole
+ * chunk, so larger chunks give better compression at the
+ * cost of slower random access.
+ * <p>Stored fields are represented by two files:</p>
+ * <ol>
+ * <li><p>The field index, or <tt>.fdx</tt> file, which is
+ * fully loaded in memory when the segment is opened:</p>
+ * <ul>
+ * <li>FieldIndex (.fdx) --&gt; Header, NumDocs, NumChunks, DocBases, MaxPointer, StartPointers</li>
+ * <li>Header --&gt; {@link CodecUtil#writeHeader CodecHeader}</li>
+ * <li>NumDocs, NumChunks --&gt; {@link DataOutput#writeVInt VInt}</li>
+ * <li>DocBases --&gt; the doc ID of the first document of every chunk, as
+ *     {@link PackedInts packed ints}</li>
+ * <li>MaxPointer --&gt; the end of the last chunk, as a {@link DataOutput#writeVLong VLong}</li>
+ * <li>StartPointers --&gt; the start pointer of every chunk in the
+ *     <tt>.fdt</tt> file, as {@link PackedInts packed ints}</li>
+ * </ul>
+ * </li>
+ * <li><p>The field data, or <tt>.fdt</tt> file:</p>
+ * <ul>
+ * <li>FieldData (.fdt) --&gt; Header, ChunkSize, &lt;Chunk&gt; <sup>NumChunks</sup></li>
+ * <li>Header --&gt; {@link CodecUtil#writeHeader CodecHeader}</li>
+ * <li>ChunkSize --&gt; {@link DataOutput#writeVInt VInt}</li>
+ * <li>Chunk --&gt; ChunkDocs, FieldCount <sup>ChunkDocs</sup>, DocLength <sup>ChunkDocs</sup>, CompressedDocs</li>
+ * <li>ChunkDocs, FieldCount, DocLength --&gt; {@link DataOutput#writeVInt VInt}</li>
+ * <li>CompressedDocs --&gt; the LZ4-compressed concatenation of the serialized
+ *     documents of the chunk, the uncompressed length being the sum of
+ *     the DocLengths</li>
+ * <li>Document --&gt; &lt;FieldNumAndType, Value&gt; <sup>FieldCount</sup></li>
+ * <li>FieldNumAndType --&gt; the field number shifted by 3 bits, ORed with the
+ *     type of the value (0: String, 1: BinaryValue, 2: Int, 3: Float, 4: Long,
+ *     5: Double), as a {@link DataOutput#writeVLong VLong}</li>
+ * <li>Value --&gt; String | BinaryValue | Int | Float | Long | Double</li>
+ * </ul>
+ * </li>
+ * </ol>
+ * <p>When merging segments that use this format and have no deleted
+ * documents, chunks are copied without being decompressed.</p>
+ * @lucene.experimental
+ */
+public class CompressingStoredFieldsFormat extends StoredFieldsFormat {
+
+  /** Default chunk size, in bytes. */
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 14;
+
+  private final int chunkSize;
+
+  public CompressingStoredFieldsFormat() {
+    this(DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Create a new instance which compresses chunks of
+   * approximately <code>chunkSize</code> bytes.
+   */
+  public CompressingStoredFieldsFormat(int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunkSize must be >= 1");
+    }
+    this.chunkSize = chunkSize;
+  }
+
+  @Override
+  public StoredFieldsReader fieldsReader(Directory directory, SegmentInfo si,
+      FieldInfos fn, IOContext context) throws IOException {
+    return new CompressingStoredFieldsReader(directory, si, fn, context);
+  }
+
+  @Override
+  public StoredFieldsWriter fieldsWriter(Directory directory, SegmentInfo si,
+      IOContext context) throws IOException {
+    return new CompressingStoredFieldsWriter(directory, si.name, context, chunkSize);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(chunkSize=" + chunkSize + ")";
+  }
+}
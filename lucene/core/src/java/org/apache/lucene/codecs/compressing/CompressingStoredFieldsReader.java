@@ -0,0 +1,316 @@
+package org.apache.lucene.codecs.compressing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import static org.apache.lucene.codecs.compressing.CompressingStoredFieldsWriter.*;
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.StoredFieldsReader;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.CodecUtil;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.packed.PackedInts;
+
+/**
+ * {@link StoredFieldsReader} impl for {@link CompressingStoredFieldsFormat}.
+ * <p>
+ * The chunk index is fully loaded in memory as packed ints.
+ * Every instance keeps the last decompressed chunk so that
+ * loading documents in increasing doc ID order (as
+ * IndexSearcher clients usually do) only decompresses every
+ * chunk once.
+ *
+ * @lucene.experimental
+ */
+public final class CompressingStoredFieldsReader extends StoredFieldsReader {
+
+  private final FieldInfos fieldInfos;
+  private final IndexInput fieldsStream;
+  private final int numDocs;
+  private final int numChunks;
+  private final PackedInts.Reader chunkDocBases;
+  private final PackedInts.Reader chunkStartPointers;
+  private final long maxPointer;
+  private boolean closed;
+
+  // last decompressed chunk
+  private int chunk = -1;
+  private int chunkDocBase;
+  private int chunkDocs;
+  private int[] numStoredFields = new int[0];
+  private int[] offsets = new int[1]; // start offsets, plus the end offset of the last doc
+  private byte[] bytes = new byte[0];
+  private final ByteArrayDataInput docIn = new ByteArrayDataInput();
+
+  // used by clone
+  private CompressingStoredFieldsReader(CompressingStoredFieldsReader reader) {
+    this.fieldInfos = reader.fieldInfos;
+    this.fieldsStream = (IndexInput) reader.fieldsStream.clone();
+    this.numDocs = reader.numDocs;
+    this.numChunks = reader.numChunks;
+    this.chunkDocBases = reader.chunkDocBases;
+    this.chunkStartPointers = reader.chunkStartPointers;
+    this.maxPointer = reader.maxPointer;
+    this.closed = false;
+  }
+
+  public CompressingStoredFieldsReader(Directory d, SegmentInfo si, FieldInfos fn, IOContext context) throws IOException {
+    final String segment = si.name;
+    boolean success = false;
+    fieldInfos = fn;
+    IndexInput indexStream = null;
+    try {
+      fieldsStream = d.openInput(IndexFileNames.segmentFileName(segment, "", FIELDS_EXTENSION), context);
+      indexStream = d.openInput(IndexFileNames.segmentFileName(segment, "", FIELDS_INDEX_EXTENSION), context);
+
+      CodecUtil.checkHeader(indexStream, CODEC_NAME_IDX, VERSION_START, VERSION_CURRENT);
+      CodecUtil.checkHeader(fieldsStream, CODEC_NAME_DAT, VERSION_START, VERSION_CURRENT);
+      fieldsStream.readVInt(); // chunk size, informational only
+
+      numDocs = indexStream.readVInt();
+      // Verify two sources of "maxDoc" agree:
+      if (numDocs != si.getDocCount()) {
+        throw new CorruptIndexException("doc counts differ for segment " + segment + ": fieldsReader shows " + numDocs + " but segmentInfo shows " + si.getDocCount());
+      }
+      numChunks = indexStream.readVInt();
+      chunkDocBases = PackedInts.getReader(indexStream);
+      maxPointer = indexStream.readVLong();
+      chunkStartPointers = PackedInts.getReader(indexStream);
+      if (chunkDocBases.size() != numChunks || chunkStartPointers.size() != numChunks) {
+        throw new CorruptIndexException("invalid chunk index for segment " + segment + ": expected " + numChunks + " chunks");
+      }
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(this, indexStream);
+      } else {
+        IOUtils.close(indexStream);
+      }
+    }
+  }
+
+  private void ensureOpen() throws AlreadyClosedException {
+    if (closed) {
+      throw new AlreadyClosedException("this FieldsReader is closed");
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      IOUtils.close(fieldsStream);
+      closed = true;
+    }
+  }
+
+  @Override
+  public StoredFieldsReader clone() {
+    ensureOpen();
+    return new CompressingStoredFieldsReader(this);
+  }
+
+  IndexInput getFieldsStream() {
+    return fieldsStream;
+  }
+
+  int numChunks() {
+    return numChunks;
+  }
+
+  int chunkDocBase(int chunk) {
+    return (int) chunkDocBases.get(chunk);
+  }
+
+  long chunkStartPointer(int chunk) {
+    return chunkStartPointers.get(chunk);
+  }
+
+  long chunkEndPointer(int chunk) {
+    return chunk + 1 < numChunks ? chunkStartPointers.get(chunk + 1) : maxPointer;
+  }
+
+  // binary search for the chunk which contains docID
+  private int chunkIndex(int docID) {
+    int lo = 0, hi = numChunks - 1;
+    while (lo <= hi) {
+      final int mid = (lo + hi) >>> 1;
+      final int midValue = chunkDocBase(mid);
+      if (midValue == docID) {
+        return mid;
+      } else if (midValue < docID) {
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return hi;
+  }
+
+  // decompresses the chunk which contains docID, unless it is already loaded
+  private void loadChunk(int docID) throws IOException {
+    if (docID < 0 || docID >= numDocs) {
+      throw new IllegalArgumentException("docID must be >= 0 and < maxDoc=" + numDocs + " (got docID=" + docID + ")");
+    }
+    if (chunk != -1 && docID >= chunkDocBase && docID < chunkDocBase + chunkDocs) {
+      return;
+    }
+
+    final int newChunk = chunkIndex(docID);
+    chunk = -1; // in case we hit an exception
+    fieldsStream.seek(chunkStartPointer(newChunk));
+    final int docBase = chunkDocBase(newChunk);
+    final int docs = fieldsStream.readVInt();
+    if (docID >= docBase + docs) {
+      throw new CorruptIndexException("docBase=" + docBase + ",numDocs=" + docs + ",docID=" + docID + " (resource=" + fieldsStream + ")");
+    }
+    if (numStoredFields.length < docs) {
+      numStoredFields = new int[ArrayUtil.oversize(docs, 4)];
+    }
+    if (offsets.length < docs + 1) {
+      offsets = new int[ArrayUtil.oversize(docs + 1, 4)];
+    }
+    for (int i = 0; i < docs; ++i) {
+      numStoredFields[i] = fieldsStream.readVInt();
+    }
+    offsets[0] = 0;
+    for (int i = 0; i < docs; ++i) {
+      offsets[i + 1] = offsets[i] + fieldsStream.readVInt();
+    }
+    final int totalLength = offsets[docs];
+    if (bytes.length < totalLength) {
+      bytes = new byte[ArrayUtil.oversize(totalLength, 1)];
+    }
+    LZ4.decompress(fieldsStream, totalLength, bytes, 0);
+
+    chunk = newChunk;
+    chunkDocBase = docBase;
+    chunkDocs = docs;
+  }
+
+  /** Raw serialized bytes of a document, see {@link #rawDocument}. */
+  static class RawDocument {
+    int numStoredFields;
+    byte[] bytes;
+    int offset;
+    int length;
+  }
+
+  /** Fills <code>doc</code> with the serialized bytes of
+   *  document <code>docID</code>. The bytes are only valid
+   *  until the next call to this reader. */
+  void rawDocument(int docID, RawDocument doc) throws IOException {
+    loadChunk(docID);
+    final int index = docID - chunkDocBase;
+    doc.numStoredFields = numStoredFields[index];
+    doc.bytes = bytes;
+    doc.offset = offsets[index];
+    doc.length = offsets[index + 1] - offsets[index];
+  }
+
+  @Override
+  public void visitDocument(int docID, StoredFieldVisitor visitor) throws CorruptIndexException, IOException {
+    ensureOpen();
+    loadChunk(docID);
+    final int index = docID - chunkDocBase;
+    final int numFields = numStoredFields[index];
+    docIn.reset(bytes, offsets[index], offsets[index + 1] - offsets[index]);
+
+    for (int fieldIDX = 0; fieldIDX < numFields; fieldIDX++) {
+      final long infoAndBits = docIn.readVLong();
+      final int fieldNumber = (int) (infoAndBits >>> TYPE_BITS);
+      FieldInfo fieldInfo = fieldInfos.fieldInfo(fieldNumber);
+
+      final int bits = (int) (infoAndBits & TYPE_MASK);
+      assert bits <= NUMERIC_DOUBLE: "bits=" + Integer.toHexString(bits);
+
+      switch(visitor.needsField(fieldInfo)) {
+        case YES:
+          readField(visitor, fieldInfo, bits);
+          break;
+        case NO:
+          skipField(bits);
+          break;
+        case STOP:
+          return;
+      }
+    }
+  }
+
+  private void readField(StoredFieldVisitor visitor, FieldInfo info, int bits) throws IOException {
+    switch (bits) {
+      case BYTE_ARR:
+      case STRING:
+        final int length = docIn.readVInt();
+        final byte[] data = new byte[length];
+        docIn.readBytes(data, 0, length);
+        if (bits == BYTE_ARR) {
+          visitor.binaryField(info, data, 0, length);
+        } else {
+          visitor.stringField(info, new String(data, 0, length, IOUtils.CHARSET_UTF_8));
+        }
+        break;
+      case NUMERIC_INT:
+        visitor.intField(info, docIn.readInt());
+        break;
+      case NUMERIC_FLOAT:
+        visitor.floatField(info, Float.intBitsToFloat(docIn.readInt()));
+        break;
+      case NUMERIC_LONG:
+        visitor.longField(info, docIn.readLong());
+        break;
+      case NUMERIC_DOUBLE:
+        visitor.doubleField(info, Double.longBitsToDouble(docIn.readLong()));
+        break;
+      default:
+        throw new CorruptIndexException("Unknown type flag: " + Integer.toHexString(bits));
+    }
+  }
+
+  private void skipField(int bits) throws IOException {
+    switch (bits) {
+      case BYTE_ARR:
+      case STRING:
+        final int length = docIn.readVInt();
+        docIn.skipBytes(length);
+        break;
+      case NUMERIC_INT:
+      case NUMERIC_FLOAT:
+        docIn.readInt();
+        break;
+      case NUMERIC_LONG:
+      case NUMERIC_DOUBLE:
+        docIn.readLong();
+        break;
+      default:
+        throw new CorruptIndexException("Unknown type flag: " + Integer.toHexString(bits));
+    }
+  }
+
+}
@@ -0,0 +1,354 @@
+package org.apache.lucene.codecs.compressing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.StoredFieldsReader;
+import org.apache.lucene.codecs.StoredFieldsWriter;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.MergeState;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CodecUtil;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.packed.PackedInts;
+
+/**
+ * {@link StoredFieldsWriter} impl for {@link CompressingStoredFieldsFormat}.
+ * <p>
+ * Documents are serialized into a memory buffer; once the
+ * buffer grows larger than the chunk size, the buffered
+ * documents are compressed together with {@link LZ4} and
+ * written to the fields stream as a single chunk. The doc ID
+ * and file pointer of the first document of every chunk are
+ * kept in memory and written as packed ints to the index
+ * stream when the writer is finished.
+ *
+ * @lucene.experimental
+ */
+public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
+
+  static final int STRING = 0x00;
+  static final int BYTE_ARR = 0x01;
+  static final int NUMERIC_INT = 0x02;
+  static final int NUMERIC_FLOAT = 0x03;
+  static final int NUMERIC_LONG = 0x04;
+  static final int NUMERIC_DOUBLE = 0x05;
+
+  static final int TYPE_BITS = PackedInts.bitsRequired(NUMERIC_DOUBLE);
+  static final int TYPE_MASK = (int) PackedInts.maxValue(TYPE_BITS);
+
+  static final String CODEC_NAME_IDX = "CompressingStoredFieldsIndex";
+  static final String CODEC_NAME_DAT = "CompressingStoredFieldsData";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  /** Extension of stored fields file */
+  public static final String FIELDS_EXTENSION = "fdt";
+
+  /** Extension of stored fields index file */
+  public static final String FIELDS_INDEX_EXTENSION = "fdx";
+
+  private final Directory directory;
+  private final String segment;
+  private final int chunkSize;
+  private IndexOutput fieldsStream;
+  private IndexOutput indexStream;
+
+  private final GrowableByteArrayDataOutput bufferedDocs;
+  private final int[] hashTable;
+  private int[] numStoredFields; // number of stored fields of every buffered doc
+  private int[] startOffsets; // start offset of every buffered doc in bufferedDocs
+  private int docBase; // doc ID of the first buffered doc
+  private int numBufferedDocs;
+
+  // chunk index, written on finish
+  private int[] chunkDocBases;
+  private long[] chunkStartPointers;
+  private int numChunks;
+
+  public CompressingStoredFieldsWriter(Directory directory, String segment, IOContext context, int chunkSize) throws IOException {
+    assert directory != null;
+    this.directory = directory;
+    this.segment = segment;
+    this.chunkSize = chunkSize;
+    this.bufferedDocs = new GrowableByteArrayDataOutput(chunkSize);
+    this.hashTable = new int[LZ4.HASH_TABLE_SIZE];
+    this.numStoredFields = new int[16];
+    this.startOffsets = new int[16];
+    this.chunkDocBases = new int[16];
+    this.chunkStartPointers = new long[16];
+
+    boolean success = false;
+    try {
+      fieldsStream = directory.createOutput(IndexFileNames.segmentFileName(segment, "", FIELDS_EXTENSION), context);
+      indexStream = directory.createOutput(IndexFileNames.segmentFileName(segment, "", FIELDS_INDEX_EXTENSION), context);
+
+      CodecUtil.writeHeader(fieldsStream, CODEC_NAME_DAT, VERSION_CURRENT);
+      CodecUtil.writeHeader(indexStream, CODEC_NAME_IDX, VERSION_CURRENT);
+      fieldsStream.writeVInt(chunkSize);
+      success = true;
+    } finally {
+      if (!success) {
+        abort();
+      }
+    }
+  }
+
+  @Override
+  public void startDocument(int numStoredFields) throws IOException {
+    if (numBufferedDocs > 0 && bufferedDocs.length >= chunkSize) {
+      // the previous docs are complete, compress them
+      flush();
+    }
+    if (numBufferedDocs == this.numStoredFields.length) {
+      this.numStoredFields = ArrayUtil.grow(this.numStoredFields, numBufferedDocs + 1);
+      this.startOffsets = ArrayUtil.grow(this.startOffsets, numBufferedDocs + 1);
+    }
+    this.numStoredFields[numBufferedDocs] = numStoredFields;
+    this.startOffsets[numBufferedDocs] = bufferedDocs.length;
+    ++numBufferedDocs;
+  }
+
+  /** Add a document whose fields are already serialized in
+   *  the format of this writer. */
+  void addRawDocument(int numStoredFields, byte[] bytes, int offset, int length) throws IOException {
+    startDocument(numStoredFields);
+    bufferedDocs.writeBytes(bytes, offset, length);
+  }
+
+  private void addChunk(int docBase, long startPointer) {
+    if (numChunks == chunkDocBases.length) {
+      chunkDocBases = ArrayUtil.grow(chunkDocBases, numChunks + 1);
+    }
+    if (numChunks == chunkStartPointers.length) {
+      chunkStartPointers = ArrayUtil.grow(chunkStartPointers, numChunks + 1);
+    }
+    chunkDocBases[numChunks] = docBase;
+    chunkStartPointers[numChunks] = startPointer;
+    ++numChunks;
+  }
+
+  // compresses the buffered docs into a new chunk
+  private void flush() throws IOException {
+    assert numBufferedDocs > 0;
+    addChunk(docBase, fieldsStream.getFilePointer());
+
+    // chunk header
+    fieldsStream.writeVInt(numBufferedDocs);
+    for (int i = 0; i < numBufferedDocs; ++i) {
+      fieldsStream.writeVInt(numStoredFields[i]);
+    }
+    for (int i = 0; i < numBufferedDocs; ++i) {
+      final int end = i + 1 < numBufferedDocs ? startOffsets[i + 1] : bufferedDocs.length;
+      fieldsStream.writeVInt(end - startOffsets[i]);
+    }
+
+    // compressed docs
+    LZ4.compress(bufferedDocs.bytes, 0, bufferedDocs.length, fieldsStream, hashTable);
+
+    docBase += numBufferedDocs;
+    numBufferedDocs = 0;
+    bufferedDocs.length = 0;
+  }
+
+  @Override
+  public void writeField(FieldInfo info, IndexableField field) throws IOException {
+    int bits = 0;
+    final BytesRef bytes;
+    final String string;
+
+    Number number = field.numericValue();
+    if (number != null) {
+      if (number instanceof Byte || number instanceof Short || number instanceof Integer) {
+        bits = NUMERIC_INT;
+      } else if (number instanceof Long) {
+        bits = NUMERIC_LONG;
+      } else if (number instanceof Float) {
+        bits = NUMERIC_FLOAT;
+      } else if (number instanceof Double) {
+        bits = NUMERIC_DOUBLE;
+      } else {
+        throw new IllegalArgumentException("cannot store numeric type " + number.getClass());
+      }
+      string = null;
+      bytes = null;
+    } else {
+      bytes = field.binaryValue();
+      if (bytes != null) {
+        bits = BYTE_ARR;
+        string = null;
+      } else {
+        bits = STRING;
+        string = field.stringValue();
+        if (string == null) {
+          throw new IllegalArgumentException("field " + field.name() + " is stored but does not have binaryValue, stringValue nor numericValue");
+        }
+      }
+    }
+
+    final long infoAndBits = (((long) info.number) << TYPE_BITS) | bits;
+    bufferedDocs.writeVLong(infoAndBits);
+
+    if (bytes != null) {
+      bufferedDocs.writeVInt(bytes.length);
+      bufferedDocs.writeBytes(bytes.bytes, bytes.offset, bytes.length);
+    } else if (string != null) {
+      bufferedDocs.writeString(string);
+    } else {
+      if (number instanceof Byte || number instanceof Short || number instanceof Integer) {
+        bufferedDocs.writeInt(number.intValue());
+      } else if (number instanceof Long) {
+        bufferedDocs.writeLong(number.longValue());
+      } else if (number instanceof Float) {
+        bufferedDocs.writeInt(Float.floatToIntBits(number.floatValue()));
+      } else if (number instanceof Double) {
+        bufferedDocs.writeLong(Double.doubleToLongBits(number.doubleValue()));
+      } else {
+        assert false;
+      }
+    }
+  }
+
+  @Override
+  public void abort() {
+    try {
+      close();
+    } catch (IOException ignored) {}
+    IOUtils.deleteFilesIgnoringExceptions(directory,
+        IndexFileNames.segmentFileName(segment, "", FIELDS_EXTENSION),
+        IndexFileNames.segmentFileName(segment, "", FIELDS_INDEX_EXTENSION));
+  }
+
+  @Override
+  public void finish(FieldInfos fis, int numDocs) throws IOException {
+    if (numBufferedDocs > 0) {
+      flush();
+    }
+    if (docBase != numDocs) {
+      throw new RuntimeException("fdx size mismatch: docCount is " + numDocs + " but only saw " + docBase + " file=" + fieldsStream.toString() + "; now aborting this merge to prevent index corruption");
+    }
+
+    final long maxPointer = fieldsStream.getFilePointer();
+    indexStream.writeVInt(numDocs);
+    indexStream.writeVInt(numChunks);
+    writePacked(indexStream, chunkDocBases, numChunks, numDocs);
+    indexStream.writeVLong(maxPointer);
+    final PackedInts.Writer pointersWriter = PackedInts.getWriter(indexStream, numChunks, PackedInts.bitsRequired(maxPointer), PackedInts.DEFAULT);
+    for (int i = 0; i < numChunks; ++i) {
+      pointersWriter.add(chunkStartPointers[i]);
+    }
+    pointersWriter.finish();
+  }
+
+  private static void writePacked(IndexOutput out, int[] values, int count, long maxValue) throws IOException {
+    final PackedInts.Writer writer = PackedInts.getWriter(out, count, PackedInts.bitsRequired(maxValue), PackedInts.DEFAULT);
+    for (int i = 0; i < count; ++i) {
+      writer.add(values[i]);
+    }
+    writer.finish();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      IOUtils.close(fieldsStream, indexStream);
+    } finally {
+      fieldsStream = indexStream = null;
+    }
+  }
+
+  @Override
+  public int merge(MergeState mergeState) throws IOException {
+    int docCount = 0;
+    int idx = 0;
+
+    for (MergeState.IndexReaderAndLiveDocs reader : mergeState.readers) {
+      final SegmentReader matchingSegmentReader = mergeState.matchingSegmentReaders[idx++];
+      CompressingStoredFieldsReader matchingFieldsReader = null;
+      if (matchingSegmentReader != null) {
+        final StoredFieldsReader fieldsReader = matchingSegmentReader.getFieldsReader();
+        // we can only bulk-copy if the matching reader is also a CompressingStoredFieldsReader
+        if (fieldsReader != null && fieldsReader instanceof CompressingStoredFieldsReader) {
+          matchingFieldsReader = (CompressingStoredFieldsReader) fieldsReader;
+        }
+      }
+
+      final int maxDoc = reader.reader.maxDoc();
+      final Bits liveDocs = reader.liveDocs;
+
+      if (matchingFieldsReader == null) {
+        // naive merge...
+        for (int i = 0; i < maxDoc; ++i) {
+          if (liveDocs != null && !liveDocs.get(i)) {
+            continue;
+          }
+          // NOTE: it's very important to first assign to doc then pass it to
+          // fieldsWriter.addDocument; see LUCENE-1282
+          Document doc = reader.reader.document(i);
+          addDocument(doc, mergeState.fieldInfos);
+          ++docCount;
+          mergeState.checkAbort.work(300);
+        }
+      } else if (liveDocs == null) {
+        // no deletions: copy the compressed chunks as-is
+        if (numBufferedDocs > 0) {
+          flush();
+        }
+        final IndexInput fieldsIn = matchingFieldsReader.getFieldsStream();
+        for (int chunk = 0; chunk < matchingFieldsReader.numChunks(); ++chunk) {
+          final long start = matchingFieldsReader.chunkStartPointer(chunk);
+          final long end = matchingFieldsReader.chunkEndPointer(chunk);
+          addChunk(docBase + matchingFieldsReader.chunkDocBase(chunk), fieldsStream.getFilePointer());
+          fieldsIn.seek(start);
+          fieldsStream.copyBytes(fieldsIn, end - start);
+        }
+        docBase += maxDoc;
+        docCount += maxDoc;
+        mergeState.checkAbort.work(300 * maxDoc);
+      } else {
+        // field numbers are congruent: copy the serialized docs
+        // without decoding their fields
+        final CompressingStoredFieldsReader.RawDocument rawDoc = new CompressingStoredFieldsReader.RawDocument();
+        for (int i = 0; i < maxDoc; ++i) {
+          if (!liveDocs.get(i)) {
+            continue;
+          }
+          matchingFieldsReader.rawDocument(i, rawDoc);
+          addRawDocument(rawDoc.numStoredFields, rawDoc.bytes, rawDoc.offset, rawDoc.length);
+          ++docCount;
+          mergeState.checkAbort.work(300);
+        }
+      }
+    }
+    finish(mergeState.fieldInfos, docCount);
+    return docCount;
+  }
+
+}
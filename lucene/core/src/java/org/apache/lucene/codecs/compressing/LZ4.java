@@ -0,0 +1,218 @@
+package org.apache.lucene.codecs.compressing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+
+/**
+ * LZ4 compression and decompression routines.
+ * <p>
+ * This is a simple, single-pass implementation of the LZ4
+ * block format: a sequence of tokens, each made of literals
+ * followed by a back reference (offset and length) into the
+ * already decompressed data. It favors compression and
+ * decompression speed over compression ratio.
+ *
+ * @lucene.internal
+ */
+final class LZ4 {
+
+  private LZ4() {} // no instance
+
+  static final int MIN_MATCH = 4; // minimum length of a match
+  static final int MAX_DISTANCE = 1 << 16; // maximum distance of a reference
+  static final int LAST_LITERALS = 5; // the last 5 bytes must be encoded as literals
+  static final int HASH_LOG = 12;
+  /** Size of the hash tables which are passed to {@link #compress}. */
+  static final int HASH_TABLE_SIZE = 1 << HASH_LOG;
+
+  private static int hash(int i) {
+    return (i * -1640531535) >>> (32 - HASH_LOG);
+  }
+
+  private static int readInt(byte[] buf, int i) {
+    return ((buf[i] & 0xFF) << 24) | ((buf[i+1] & 0xFF) << 16) | ((buf[i+2] & 0xFF) << 8) | (buf[i+3] & 0xFF);
+  }
+
+  private static int commonBytes(byte[] b, int o1, int o2, int limit) {
+    assert o1 < o2;
+    int count = 0;
+    while (o2 < limit && b[o1++] == b[o2++]) {
+      ++count;
+    }
+    return count;
+  }
+
+  /**
+   * Decompress at least <code>decompressedLen</code> bytes into
+   * <code>dest[dOff:]</code>. Please note that <code>dest</code>
+   * must be large enough to be able to hold <b>all</b>
+   * decompressed data (meaning that you need to know the total
+   * decompressed length).
+   */
+  static void decompress(DataInput compressed, int decompressedLen, byte[] dest, int dOff) throws IOException {
+    final int destEnd = dOff + decompressedLen;
+
+    do {
+      // literals
+      final int token = compressed.readByte() & 0xFF;
+      int literalLen = token >>> 4;
+
+      if (literalLen != 0) {
+        if (literalLen == 0x0F) {
+          byte len;
+          while ((len = compressed.readByte()) == (byte) 0xFF) {
+            literalLen += 0xFF;
+          }
+          literalLen += len & 0xFF;
+        }
+        compressed.readBytes(dest, dOff, literalLen);
+        dOff += literalLen;
+      }
+
+      if (dOff >= destEnd) {
+        break;
+      }
+
+      // matches
+      final int matchDec = (compressed.readByte() & 0xFF) | ((compressed.readByte() & 0xFF) << 8);
+      assert matchDec > 0;
+
+      int matchLen = token & 0x0F;
+      if (matchLen == 0x0F) {
+        byte len;
+        while ((len = compressed.readByte()) == (byte) 0xFF) {
+          matchLen += 0xFF;
+        }
+        matchLen += len & 0xFF;
+      }
+      matchLen += MIN_MATCH;
+
+      final int ref = dOff - matchDec;
+      if (matchDec >= matchLen) {
+        System.arraycopy(dest, ref, dest, dOff, matchLen);
+      } else {
+        // overlapping copy, the pattern repeats itself
+        for (int i = 0; i < matchLen; ++i) {
+          dest[dOff + i] = dest[ref + i];
+        }
+      }
+      dOff += matchLen;
+    } while (dOff < destEnd);
+  }
+
+  private static void encodeLen(int l, DataOutput out) throws IOException {
+    while (l >= 0xFF) {
+      out.writeByte((byte) 0xFF);
+      l -= 0xFF;
+    }
+    out.writeByte((byte) l);
+  }
+
+  private static void encodeLiterals(byte[] bytes, int token, int anchor, int literalLen, DataOutput out) throws IOException {
+    out.writeByte((byte) token);
+
+    // encode literal length
+    if (literalLen >= 0x0F) {
+      encodeLen(literalLen - 0x0F, out);
+    }
+
+    // encode literals
+    out.writeBytes(bytes, anchor, literalLen);
+  }
+
+  private static void encodeLastLiterals(byte[] bytes, int anchor, int literalLen, DataOutput out) throws IOException {
+    final int token = Math.min(literalLen, 0x0F) << 4;
+    encodeLiterals(bytes, token, anchor, literalLen, out);
+  }
+
+  private static void encodeSequence(byte[] bytes, int anchor, int matchRef, int matchOff, int matchLen, DataOutput out) throws IOException {
+    final int literalLen = matchOff - anchor;
+    assert matchLen >= MIN_MATCH;
+    // encode token
+    final int token = (Math.min(literalLen, 0x0F) << 4) | Math.min(matchLen - MIN_MATCH, 0x0F);
+    encodeLiterals(bytes, token, anchor, literalLen, out);
+
+    // encode match dec
+    final int matchDec = matchOff - matchRef;
+    assert matchDec > 0 && matchDec < MAX_DISTANCE;
+    out.writeByte((byte) matchDec);
+    out.writeByte((byte) (matchDec >>> 8));
+
+    // encode match len
+    if (matchLen >= MIN_MATCH + 0x0F) {
+      encodeLen(matchLen - 0x0F - MIN_MATCH, out);
+    }
+  }
+
+  /**
+   * Compress <code>bytes[off:off+len]</code> into <code>out</code>.
+   * <code>hashTable</code> is scratch space of
+   * {@link #HASH_TABLE_SIZE} ints which is reset on every call.
+   */
+  static void compress(byte[] bytes, int off, int len, DataOutput out, int[] hashTable) throws IOException {
+    assert hashTable.length == HASH_TABLE_SIZE;
+    final int end = off + len;
+
+    int sOff = off;
+    int anchor = sOff;
+
+    if (len > LAST_LITERALS + MIN_MATCH) {
+
+      final int limit = end - LAST_LITERALS;
+      final int matchLimit = limit - MIN_MATCH;
+      Arrays.fill(hashTable, -1);
+
+      main:
+      while (sOff < matchLimit) {
+        // find a match
+        final int v = readInt(bytes, sOff);
+        final int h = hash(v);
+        final int ref = hashTable[h];
+        hashTable[h] = sOff;
+        if (ref < 0 || sOff - ref >= MAX_DISTANCE || readInt(bytes, ref) != v) {
+          ++sOff;
+          continue main;
+        }
+
+        // extend the match backwards
+        int matchRef = ref;
+        while (sOff > anchor && matchRef > off && bytes[sOff - 1] == bytes[matchRef - 1]) {
+          --sOff;
+          --matchRef;
+        }
+
+        final int matchLen = MIN_MATCH + commonBytes(bytes, matchRef + MIN_MATCH, sOff + MIN_MATCH, limit);
+
+        encodeSequence(bytes, anchor, matchRef, sOff, matchLen, out);
+        sOff += matchLen;
+        anchor = sOff;
+      }
+    }
+
+    // last literals
+    final int literalLen = end - anchor;
+    assert literalLen >= LAST_LITERALS || literalLen == len;
+    encodeLastLiterals(bytes, anchor, literalLen, out);
+  }
+
+}
@@ -55,6 +55,8 @@ public class Lucene40PostingsReader extends PostingsReaderBase {
   int skipInterval;
   int maxSkipLevels;
   int skipMinimum;
+  // version of the .frq file; skip data has block max freqs since VERSION_BLOCK_MAX_FREQ
+  final int version;
 
   // private String segment;
 
@@ -65,7 +67,7 @@ public class Lucene40PostingsReader extends PostingsReaderBase {
     try {
       freqIn = dir.openInput(IndexFileNames.segmentFileName(segmentInfo.name, segmentSuffix, Lucene40PostingsFormat.FREQ_EXTENSION),
                            ioContext);
-      CodecUtil.checkHeader(freqIn, Lucene40PostingsWriter.FRQ_CODEC, Lucene40PostingsWriter.VERSION_START,Lucene40PostingsWriter.VERSION_START);
+      version = CodecUtil.checkHeader(freqIn, Lucene40PostingsWriter.FRQ_CODEC, Lucene40PostingsWriter.VERSION_START,Lucene40PostingsWriter.VERSION_CURRENT);
       // TODO: hasProx should (somehow!) become codec private,
       // but it's tricky because 1) FIS.hasProx is global (it
       // could be all fields that have prox are written by a
@@ -77,7 +79,7 @@ public class Lucene40PostingsReader extends PostingsReaderBase {
       if (fieldInfos.hasProx()) {
         proxIn = dir.openInput(IndexFileNames.segmentFileName(segmentInfo.name, segmentSuffix, Lucene40PostingsFormat.PROX_EXTENSION),
                              ioContext);
-        CodecUtil.checkHeader(proxIn, Lucene40PostingsWriter.PRX_CODEC, Lucene40PostingsWriter.VERSION_START,Lucene40PostingsWriter.VERSION_START);
+        CodecUtil.checkHeader(proxIn, Lucene40PostingsWriter.PRX_CODEC, Lucene40PostingsWriter.VERSION_START,Lucene40PostingsWriter.VERSION_CURRENT);
       } else {
         proxIn = null;
       }
@@ -96,7 +98,7 @@ public class Lucene40PostingsReader extends PostingsReaderBase {
 
     // Make sure we are talking to the matching past writer
     CodecUtil.checkHeader(termsIn, Lucene40PostingsWriter.TERMS_CODEC,
-      Lucene40PostingsWriter.VERSION_START, Lucene40PostingsWriter.VERSION_START);
+      Lucene40PostingsWriter.VERSION_START, Lucene40PostingsWriter.VERSION_CURRENT);
 
     skipInterval = termsIn.readInt();
     maxSkipLevels = termsIn.readInt();
@@ -297,6 +299,7 @@ public class Lucene40PostingsReader extends PostingsReaderBase {
     final IndexInput freqIn; // reuse
     final IndexInput startFreqIn; // reuse
     Lucene40SkipListReader skipper; // reuse - lazy loaded
+    Lucene40SkipListReader shallowSkipper; // reuse - lazy loaded, used by advanceShallow
     
     protected boolean indexOmitsTF;                               // does current field omit term freq?
     protected boolean storePayloads;                        // does current field store payloads?
@@ -317,6 +320,7 @@ public class Lucene40PostingsReader extends PostingsReaderBase {
     protected int skipOffset;
 
     protected boolean skipped;
+    protected boolean shallowSkipped;
     protected final Bits liveDocs;
     
     SegmentDocsEnumBase(IndexInput startFreqIn, Bits liveDocs) throws IOException {
@@ -345,6 +349,7 @@ public class Lucene40PostingsReader extends PostingsReaderBase {
       accum = 0;
       // if (DEBUG) System.out.println("  sde limit=" + limit + " freqFP=" + freqOffset);
       skipped = false;
+      shallowSkipped = false;
 
       start = -1;
       count = 0;
@@ -380,6 +385,56 @@ public class Lucene40PostingsReader extends PostingsReaderBase {
       return doc = skipTo(target);
     }
     
+    @Override
+    public final int read(int[] docBuffer, int[] freqBuffer) throws IOException {
+      final int length = docBuffer.length;
+      final Bits liveDocs = this.liveDocs;
+      final boolean omitTF = indexOmitsTF;
+      int upto = 0;
+      // first drain what nextDoc/advance left in our buffer
+      while (upto < length && ++start < count) {
+        final int d = docs[start];
+        if (liveDocs == null || liveDocs.get(d)) {
+          docBuffer[upto] = d;
+          if (freqBuffer != null) {
+            freqBuffer[upto] = omitTF ? 1 : freqs[start];
+          }
+          upto++;
+        }
+      }
+      // then decode straight into the caller's buffers
+      final IndexInput freqIn = this.freqIn;
+      int docAcc = accum;
+      int frq = 1;
+      int i = ord;
+      while (upto < length && i < limit) {
+        final int code = freqIn.readVInt();
+        i++;
+        if (omitTF) {
+          docAcc += code;
+        } else {
+          docAcc += code >>> 1; // shift off low bit
+          frq = readFreq(freqIn, code);
+        }
+        if (liveDocs == null || liveDocs.get(docAcc)) {
+          docBuffer[upto] = docAcc;
+          if (freqBuffer != null) {
+            freqBuffer[upto] = frq;
+          }
+          upto++;
+        }
+      }
+      ord = i;
+      accum = docAcc;
+      if (upto == 0) {
+        doc = NO_MORE_DOCS;
+      } else {
+        doc = docBuffer[upto-1];
+        freq = freqBuffer != null ? freqBuffer[upto-1] : frq;
+      }
+      return upto;
+    }
+
     private final int binarySearch(int hi, int low, int target, int[] docs) {
       while (low <= hi) {
         int mid = (hi + low) >>> 1;
@@ -459,6 +514,41 @@ public class Lucene40PostingsReader extends PostingsReaderBase {
      
     }
 
+    @Override
+    public final int advanceShallow(int target) throws IOException {
+      if (limit < skipMinimum) {
+        // no skip data: all docs form a single block
+        return NO_MORE_DOCS;
+      }
+      if (shallowSkipper == null) {
+        shallowSkipper = new Lucene40SkipListReader((IndexInput) freqIn.clone(), maxSkipLevels, skipInterval);
+      }
+      if (!shallowSkipped) {
+        shallowSkipper.init(freqOffset + skipOffset,
+                            freqOffset, 0,
+                            limit, storePayloads, storeOffsets, storesMaxFreqs());
+        shallowSkipped = true;
+      }
+      // the skipper starts at doc 0, so target 0 would not load the first entry
+      shallowSkipper.skipTo(Math.max(target, 1));
+      final int blockEnd = shallowSkipper.getBlockEnd();
+      return blockEnd == Integer.MAX_VALUE ? NO_MORE_DOCS : blockEnd;
+    }
+
+    @Override
+    public final int getMaxFreq() {
+      if (indexOmitsTF) {
+        return 1;
+      } else if (!shallowSkipped || !storesMaxFreqs()) {
+        return Integer.MAX_VALUE;
+      }
+      return shallowSkipper.getBlockMaxFreq();
+    }
+
+    private boolean storesMaxFreqs() {
+      return !indexOmitsTF && version >= Lucene40PostingsWriter.VERSION_BLOCK_MAX_FREQ;
+    }
+
     private final int skipTo(int target) throws IOException {
       if ((target - skipInterval) >= accum && limit >= skipMinimum) {
 
@@ -478,7 +568,7 @@ public class Lucene40PostingsReader extends PostingsReaderBase {
 
           skipper.init(freqOffset + skipOffset,
                        freqOffset, 0,
-                       limit, storePayloads, storeOffsets);
+                       limit, storePayloads, storeOffsets, storesMaxFreqs());
 
           skipped = true;
         }
@@ -799,7 +889,7 @@ public class Lucene40PostingsReader extends PostingsReaderBase {
 
           skipper.init(freqOffset+skipOffset,
                        freqOffset, proxOffset,
-                       limit, false, false);
+                       limit, false, false, version >= Lucene40PostingsWriter.VERSION_BLOCK_MAX_FREQ);
 
           skipped = true;
         }
@@ -1018,7 +1108,7 @@ public class Lucene40PostingsReader extends PostingsReaderBase {
           //System.out.println("  init skipper freqOffset=" + freqOffset + " skipOffset=" + skipOffset + " vs len=" + freqIn.length());
           skipper.init(freqOffset+skipOffset,
                        freqOffset, proxOffset,
-                       limit, storePayloads, storeOffsets);
+                       limit, storePayloads, storeOffsets, version >= Lucene40PostingsWriter.VERSION_BLOCK_MAX_FREQ);
 
           skipped = true;
         }
@@ -53,7 +53,9 @@ public final class Lucene40PostingsWriter extends PostingsWriterBase {
   
   // Increment version to change it:
   final static int VERSION_START = 0;
-  final static int VERSION_CURRENT = VERSION_START;
+  /** skip entries record the maximum term freq of the docs they skip over */
+  final static int VERSION_BLOCK_MAX_FREQ = 1;
+  final static int VERSION_CURRENT = VERSION_BLOCK_MAX_FREQ;
 
   final IndexOutput freqOut;
   final IndexOutput proxOut;
@@ -158,6 +160,7 @@ public final class Lucene40PostingsWriter extends PostingsWriterBase {
     lastPayloadLength = -1;
     // force first offset to write its length
     lastOffsetLength = -1;
+    blockMaxFreq = 0;
     skipListWriter.resetSkip();
   }
 
@@ -184,6 +187,8 @@ public final class Lucene40PostingsWriter extends PostingsWriterBase {
 
   int lastDocID;
   int df;
+  // max term freq of the docs since the last skip point
+  int blockMaxFreq;
   
   /** Adds a new doc in this term.  If this returns null
    *  then we just skip consuming positions/payloads. */
@@ -198,8 +203,13 @@ public final class Lucene40PostingsWriter extends PostingsWriterBase {
     }
 
     if ((++df % skipInterval) == 0) {
-      skipListWriter.setSkipData(lastDocID, storePayloads, lastPayloadLength, storeOffsets, lastOffsetLength);
+      skipListWriter.setSkipData(lastDocID, storePayloads, lastPayloadLength, storeOffsets, lastOffsetLength,
+                                 indexOptions != IndexOptions.DOCS_ONLY, blockMaxFreq);
       skipListWriter.bufferSkip(df);
+      blockMaxFreq = 0;
+    }
+    if (termDocFreq > blockMaxFreq) {
+      blockMaxFreq = termDocFreq;
     }
 
     assert docID < totalNumDocs: "docID=" + docID + " totalNumDocs=" + totalNumDocs;
@@ -308,6 +318,7 @@ public final class Lucene40PostingsWriter extends PostingsWriterBase {
 
     lastDocID = 0;
     df = 0;
+    blockMaxFreq = 0;
   }
 
   private final RAMOutputStream bytesWriter = new RAMOutputStream();
@@ -33,10 +33,12 @@ import org.apache.lucene.store.IndexInput;
 public class Lucene40SkipListReader extends MultiLevelSkipListReader {
   private boolean currentFieldStoresPayloads;
   private boolean currentFieldStoresOffsets;
+  private boolean currentFieldStoresMaxFreqs;
   private long freqPointer[];
   private long proxPointer[];
   private int payloadLength[];
   private int offsetLength[];
+  private int maxFreq[];
   
   private long lastFreqPointer;
   private long lastProxPointer;
@@ -50,12 +52,22 @@ public class Lucene40SkipListReader extends MultiLevelSkipListReader {
     proxPointer = new long[maxSkipLevels];
     payloadLength = new int[maxSkipLevels];
     offsetLength = new int[maxSkipLevels];
+    maxFreq = new int[maxSkipLevels];
   }
 
   public void init(long skipPointer, long freqBasePointer, long proxBasePointer, int df, boolean storesPayloads, boolean storesOffsets) {
+    init(skipPointer, freqBasePointer, proxBasePointer, df, storesPayloads, storesOffsets, false);
+  }
+
+  /** Initializes the reader for a posting list whose skip entries
+   *  also record the maximum term freq if <code>storesMaxFreqs</code> is true.
+   *  This is the case for fields that index freqs, since
+   *  {@link Lucene40PostingsWriter#VERSION_BLOCK_MAX_FREQ}. */
+  public void init(long skipPointer, long freqBasePointer, long proxBasePointer, int df, boolean storesPayloads, boolean storesOffsets, boolean storesMaxFreqs) {
     super.init(skipPointer, df);
     this.currentFieldStoresPayloads = storesPayloads;
     this.currentFieldStoresOffsets = storesOffsets;
+    this.currentFieldStoresMaxFreqs = storesMaxFreqs;
     lastFreqPointer = freqBasePointer;
     lastProxPointer = proxBasePointer;
 
@@ -63,6 +75,7 @@ public class Lucene40SkipListReader extends MultiLevelSkipListReader {
     Arrays.fill(proxPointer, proxBasePointer);
     Arrays.fill(payloadLength, 0);
     Arrays.fill(offsetLength, 0);
+    Arrays.fill(maxFreq, Integer.MAX_VALUE);
   }
 
   /** Returns the freq pointer of the doc to which the last call of 
@@ -91,6 +104,19 @@ public class Lucene40SkipListReader extends MultiLevelSkipListReader {
     return lastOffsetLength;
   }
   
+  /** Returns the last doc of the block of docs that contains the target
+   *  of the last call of {@link MultiLevelSkipListReader#skipTo(int)}, or
+   *  {@link Integer#MAX_VALUE} if that target is beyond the last skip entry. */
+  public int getBlockEnd() {
+    return getNextSkipDoc();
+  }
+
+  /** Returns the maximum term freq of the docs in the block returned by
+   *  {@link #getBlockEnd()}, or {@link Integer#MAX_VALUE} if it is not known. */
+  public int getBlockMaxFreq() {
+    return getNextSkipDoc() == Integer.MAX_VALUE ? Integer.MAX_VALUE : maxFreq[0];
+  }
+  
   @Override
   protected void seekChild(int level) throws IOException {
     super.seekChild(level);
@@ -135,6 +161,9 @@ public class Lucene40SkipListReader extends MultiLevelSkipListReader {
 
     freqPointer[level] += skipStream.readVInt();
     proxPointer[level] += skipStream.readVInt();
+    if (currentFieldStoresMaxFreqs) {
+      maxFreq[level] = skipStream.readVInt();
+    }
     
     return delta;
   }
@@ -37,6 +37,7 @@ public class Lucene40SkipListWriter extends MultiLevelSkipListWriter {
   private int[] lastSkipOffsetLength;
   private long[] lastSkipFreqPointer;
   private long[] lastSkipProxPointer;
+  private int[] levelMaxFreq;
   
   private IndexOutput freqOutput;
   private IndexOutput proxOutput;
@@ -48,6 +49,7 @@ public class Lucene40SkipListWriter extends MultiLevelSkipListWriter {
   private int curOffsetLength;
   private long curFreqPointer;
   private long curProxPointer;
+  private boolean curStoreFreqs;
 
   public Lucene40SkipListWriter(int skipInterval, int numberOfSkipLevels, int docCount, IndexOutput freqOutput, IndexOutput proxOutput) {
     super(skipInterval, numberOfSkipLevels, docCount);
@@ -59,12 +61,23 @@ public class Lucene40SkipListWriter extends MultiLevelSkipListWriter {
     lastSkipOffsetLength = new int[numberOfSkipLevels];
     lastSkipFreqPointer = new long[numberOfSkipLevels];
     lastSkipProxPointer = new long[numberOfSkipLevels];
+    levelMaxFreq = new int[numberOfSkipLevels];
   }
 
   /**
    * Sets the values for the current skip data. 
    */
   public void setSkipData(int doc, boolean storePayloads, int payloadLength, boolean storeOffsets, int offsetLength) {
+    setSkipData(doc, storePayloads, payloadLength, storeOffsets, offsetLength, false, 0);
+  }
+
+  /**
+   * Sets the values for the current skip data, including the maximum
+   * term freq of the docs since the previous skip point if the field
+   * stores freqs.
+   */
+  public void setSkipData(int doc, boolean storePayloads, int payloadLength, boolean storeOffsets, int offsetLength,
+                          boolean storeFreqs, int maxFreq) {
     assert storePayloads || payloadLength == -1;
     assert storeOffsets  || offsetLength == -1;
     this.curDoc = doc;
@@ -75,6 +88,14 @@ public class Lucene40SkipListWriter extends MultiLevelSkipListWriter {
     this.curFreqPointer = freqOutput.getFilePointer();
     if (proxOutput != null)
       this.curProxPointer = proxOutput.getFilePointer();
+    this.curStoreFreqs = storeFreqs;
+    // entries on higher levels cover all entries on the lower levels since their
+    // previous entry, so their max freq is the max over those
+    for (int level = 0; level < levelMaxFreq.length; level++) {
+      if (maxFreq > levelMaxFreq[level]) {
+        levelMaxFreq[level] = maxFreq;
+      }
+    }
   }
 
   @Override
@@ -83,6 +104,7 @@ public class Lucene40SkipListWriter extends MultiLevelSkipListWriter {
     Arrays.fill(lastSkipDoc, 0);
     Arrays.fill(lastSkipPayloadLength, -1);  // we don't have to write the first length in the skip list
     Arrays.fill(lastSkipOffsetLength, -1);  // we don't have to write the first length in the skip list
+    Arrays.fill(levelMaxFreq, 0);
     Arrays.fill(lastSkipFreqPointer, freqOutput.getFilePointer());
     if (proxOutput != null)
       Arrays.fill(lastSkipProxPointer, proxOutput.getFilePointer());
@@ -96,12 +118,12 @@ public class Lucene40SkipListWriter extends MultiLevelSkipListWriter {
     // However, in order to support skipping, the length at every skip point must be known.
     // So we use the same length encoding that we use for the posting lists for the skip data as well:
     // Case 1: current field does not store payloads/offsets
-    //           SkipDatum                 --> DocSkip, FreqSkip, ProxSkip
+    //           SkipDatum                 --> DocSkip, FreqSkip, ProxSkip, MaxFreq?
     //           DocSkip,FreqSkip,ProxSkip --> VInt
     //           DocSkip records the document number before every SkipInterval th  document in TermFreqs. 
     //           Document numbers are represented as differences from the previous value in the sequence.
     // Case 2: current field stores payloads/offsets
-    //           SkipDatum                 --> DocSkip, PayloadLength?,OffsetLength?,FreqSkip,ProxSkip
+    //           SkipDatum                 --> DocSkip, PayloadLength?,OffsetLength?,FreqSkip,ProxSkip,MaxFreq?
     //           DocSkip,FreqSkip,ProxSkip --> VInt
     //           PayloadLength,OffsetLength--> VInt    
     //         In this case DocSkip/2 is the difference between
@@ -110,6 +132,9 @@ public class Lucene40SkipListWriter extends MultiLevelSkipListWriter {
     //         if DocSkip is even, then it is assumed that the
     //         current payload/offset lengths equals the lengths at the previous
     //         skip point
+    // MaxFreq is only written if the field stores freqs. It is the maximum term
+    // freq of the documents this skip entry skips over since the previous entry
+    // on the same level.
     int delta = curDoc - lastSkipDoc[level];
     
     if (curStorePayloads || curStoreOffsets) {
@@ -141,6 +166,10 @@ public class Lucene40SkipListWriter extends MultiLevelSkipListWriter {
 
     skipBuffer.writeVInt((int) (curFreqPointer - lastSkipFreqPointer[level]));
     skipBuffer.writeVInt((int) (curProxPointer - lastSkipProxPointer[level]));
+    if (curStoreFreqs) {
+      skipBuffer.writeVInt(levelMaxFreq[level]);
+    }
+    levelMaxFreq[level] = 0;
 
     lastSkipDoc[level] = curDoc;
     
@@ -22,22 +22,30 @@ import java.io.IOException;
 import org.apache.lucene.index.DocValues.Source;
 import org.apache.lucene.index.DocValues.Type;
 import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.RandomAccessInput;
 import org.apache.lucene.util.BytesRef;
 
 /**
- * Base class for disk resident source implementations
+ * Base class for disk resident source implementations.
+ * <p>
+ * Numeric values are read through a
+ * {@link IndexInput#randomAccessSlice random-access slice} of the
+ * data, which is backed by the mapped buffers when the index lives
+ * in a {@link org.apache.lucene.store.MMapDirectory}.
  * @lucene.internal
  */
 abstract class DirectSource extends Source {
 
   protected final IndexInput data;
+  protected final RandomAccessInput values;
   private final ToNumeric toNumeric;
   protected final long baseOffset;
 
-  public DirectSource(IndexInput input, Type type) {
+  public DirectSource(IndexInput input, Type type) throws IOException {
     super(type);
     this.data = input;
     baseOffset = input.getFilePointer();
+    values = input.randomAccessSlice(baseOffset, input.length() - baseOffset);
     switch (type) {
     case FIXED_INTS_16:
       toNumeric = new ShortToLong();
@@ -76,8 +84,7 @@ abstract class DirectSource extends Source {
   @Override
   public long getInt(int docID) {
     try {
-      position(docID);
-      return toNumeric.toLong(data);
+      return toNumeric.toLong(values, valueOffset(docID));
     } catch (IOException ex) {
       throw new IllegalStateException("failed to get value for docID: " + docID, ex);
     }
@@ -86,74 +93,77 @@ abstract class DirectSource extends Source {
   @Override
   public double getFloat(int docID) {
     try {
-      position(docID);
-      return toNumeric.toDouble(data);
+      return toNumeric.toDouble(values, valueOffset(docID));
     } catch (IOException ex) {
       throw new IllegalStateException("failed to get value for docID: " + docID, ex);
     }
   }
 
+  /** Seeks {@link #data} to the value of <code>docID</code> and returns its length. */
   protected abstract int position(int docID) throws IOException;
 
+  /** Returns the offset of the value of <code>docID</code> in {@link #values}. */
+  protected abstract long valueOffset(int docID) throws IOException;
+
   private abstract static class ToNumeric {
-    abstract long toLong(IndexInput input) throws IOException;
+    abstract long toLong(RandomAccessInput input, long pos) throws IOException;
 
-    double toDouble(IndexInput input) throws IOException {
-      return toLong(input);
+    double toDouble(RandomAccessInput input, long pos) throws IOException {
+      return toLong(input, pos);
     }
   }
 
   private static final class ByteToLong extends ToNumeric {
     @Override
-    long toLong(IndexInput input) throws IOException {
-      return input.readByte();
+    long toLong(RandomAccessInput input, long pos) throws IOException {
+      return input.readByte(pos);
     }
   }
 
   private static final class ShortToLong extends ToNumeric {
     @Override
-    long toLong(IndexInput input) throws IOException {
-      return input.readShort();
+    long toLong(RandomAccessInput input, long pos) throws IOException {
+      return input.readShort(pos);
     }
   }
 
   private static final class IntToLong extends ToNumeric {
     @Override
-    long toLong(IndexInput input) throws IOException {
-      return input.readInt();
+    long toLong(RandomAccessInput input, long pos) throws IOException {
+      return input.readInt(pos);
     }
   }
   
   private static final class BytesToFloat extends ToNumeric {
     @Override
-    long toLong(IndexInput input) throws IOException {
+    long toLong(RandomAccessInput input, long pos) throws IOException {
       throw new UnsupportedOperationException("ints are not supported");
     }
 
-    double toDouble(IndexInput input) throws IOException {
-      return Float.intBitsToFloat(input.readInt());
+    double toDouble(RandomAccessInput input, long pos) throws IOException {
+      return Float.intBitsToFloat(input.readInt(pos));
     }
   }
   
   private static final class BytesToDouble extends ToNumeric {
     @Override
-    long toLong(IndexInput input) throws IOException {
+    long toLong(RandomAccessInput input, long pos) throws IOException {
       throw new UnsupportedOperationException("ints are not supported");
     }
 
-    double toDouble(IndexInput input) throws IOException {
-      return Double.longBitsToDouble(input.readLong());
+    double toDouble(RandomAccessInput input, long pos) throws IOException {
+      return Double.longBitsToDouble(input.readLong(pos));
     }
   }
 
 
   private static final class LongToLong extends ToNumeric {
     @Override
-    long toLong(IndexInput input) throws IOException {
-      return input.readLong();
+    long toLong(RandomAccessInput input, long pos) throws IOException {
+      return input.readLong(pos);
     }
 
-    double toDouble(IndexInput input) throws IOException {
+    double toDouble(RandomAccessInput input, long pos) throws IOException {
       throw new UnsupportedOperationException("doubles are not supported");
     }
   }
@@ -131,6 +131,11 @@ class FixedDerefBytesImpl {
       data.seek(baseOffset + index.get(docID) * size);
       return size;
     }
+
+    @Override
+    protected long valueOffset(int docID) {
+      return index.get(docID) * size;
+    }
   }
 
 }
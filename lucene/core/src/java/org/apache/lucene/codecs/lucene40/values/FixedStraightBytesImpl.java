@@ -354,7 +354,7 @@ class FixedStraightBytesImpl {
   public final static class DirectFixedStraightSource extends DirectSource {
     private final int size;
 
-    DirectFixedStraightSource(IndexInput input, int size, Type type) {
+    DirectFixedStraightSource(IndexInput input, int size, Type type) throws IOException {
       super(input, type);
       this.size = size;
     }
@@ -365,5 +365,10 @@ class FixedStraightBytesImpl {
       return size;
     }
 
+    @Override
+    protected long valueOffset(int docID) {
+      return size * ((long) docID);
+    }
+
   }
 }
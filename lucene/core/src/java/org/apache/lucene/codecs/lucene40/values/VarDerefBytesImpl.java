@@ -149,5 +149,12 @@ class VarDerefBytesImpl {
         return ((sizeByte & 0x7f) << 8) | ((data.readByte() & 0xff));
       }
     }
+
+    @Override
+    protected long valueOffset(int docID) throws IOException {
+      final long offset = index.get(docID);
+      // skip the 1 or 2 bytes length prefix
+      return (values.readByte(offset) & 128) == 0 ? offset + 1 : offset + 2;
+    }
   }
 }
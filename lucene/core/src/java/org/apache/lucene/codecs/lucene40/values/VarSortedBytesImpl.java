@@ -209,8 +209,7 @@ final class VarSortedBytesImpl {
       idxIn.readLong();
       ordToOffsetIndex = PackedInts.getDirectReader(idxIn);
       valueCount = ordToOffsetIndex.size()-1; // the last value here is just a dummy value to get the length of the last value
-      // advance this iterator to the end and clone the stream once it points to the docToOrdIndex header
-      ordToOffsetIndex.get(valueCount);
+      // getDirectReader leaves idxIn positioned at the docToOrdIndex header
       docToOrdIndex = PackedInts.getDirectReader((IndexInput) idxIn.clone()); // read the ords in to prevent too many random disk seeks
       basePointer = datIn.getFilePointer();
       this.datIn = datIn;
@@ -295,5 +295,10 @@ class VarStraightBytesImpl {
       final long nextOffset = index.get(1+docID);
       return (int) (nextOffset - offset);
     }
+
+    @Override
+    protected long valueOffset(int docID) {
+      return index.get(docID);
+    }
   }
 }
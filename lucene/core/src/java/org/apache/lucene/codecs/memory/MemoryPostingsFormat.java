@@ -357,54 +357,78 @@ public class MemoryPostingsFormat extends PostingsFormat {
           // System.out.println("    END");
           return docID = NO_MORE_DOCS;
         }
-        docUpto++;
-        if (indexOptions == IndexOptions.DOCS_ONLY) {
-          accum += in.readVInt();
-        } else {
-          final int code = in.readVInt();
-          accum += code >>> 1;
-          //System.out.println("  docID=" + accum + " code=" + code);
-          if ((code & 1) != 0) {
-            freq = 1;
-          } else {
-            freq = in.readVInt();
-            assert freq > 0;
+        readDoc();
+
+        if (liveDocs == null || liveDocs.get(accum)) {
+          //System.out.println("    return docID=" + accum + " freq=" + freq);
+          return (docID = accum);
+        }
+      }
+    }
+
+    @Override
+    public int read(int[] docs, int[] freqs) {
+      final Bits liveDocs = this.liveDocs;
+      final boolean omitTF = indexOptions == IndexOptions.DOCS_ONLY;
+      int upto = 0;
+      while (upto < docs.length && docUpto < numDocs) {
+        readDoc();
+        if (liveDocs == null || liveDocs.get(accum)) {
+          docs[upto] = accum;
+          if (freqs != null) {
+            freqs[upto] = omitTF ? 1 : freq;
           }
+          upto++;
+        }
+      }
+      docID = upto == 0 ? NO_MORE_DOCS : docs[upto-1];
+      return upto;
+    }
 
-          if (indexOptions == IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) {
-            // Skip positions/payloads
-            for(int posUpto=0;posUpto<freq;posUpto++) {
-              if (!storePayloads) {
-                in.readVInt();
-              } else {
-                final int posCode = in.readVInt();
-                if ((posCode & 1) != 0) {
-                  payloadLen = in.readVInt();
-                }
-                in.skipBytes(payloadLen);
-              }
-            }
-          } else if (indexOptions == IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) {
-            // Skip positions/offsets/payloads
-            for(int posUpto=0;posUpto<freq;posUpto++) {
-              int posCode = in.readVInt();
-              if (storePayloads && ((posCode & 1) != 0)) {
+    /** Decodes the next doc and its freq, skipping positions/offsets/payloads. */
+    private void readDoc() {
+      docUpto++;
+      if (indexOptions == IndexOptions.DOCS_ONLY) {
+        accum += in.readVInt();
+      } else {
+        final int code = in.readVInt();
+        accum += code >>> 1;
+        //System.out.println("  docID=" + accum + " code=" + code);
+        if ((code & 1) != 0) {
+          freq = 1;
+        } else {
+          freq = in.readVInt();
+          assert freq > 0;
+        }
+
+        if (indexOptions == IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) {
+          // Skip positions/payloads
+          for(int posUpto=0;posUpto<freq;posUpto++) {
+            if (!storePayloads) {
+              in.readVInt();
+            } else {
+              final int posCode = in.readVInt();
+              if ((posCode & 1) != 0) {
                 payloadLen = in.readVInt();
               }
-              if ((in.readVInt() & 1) != 0) {
-                // new offset length
-                in.readVInt();
-              }
-              if (storePayloads) {
-                in.skipBytes(payloadLen);
-              }
+              in.skipBytes(payloadLen);
+            }
+          }
+        } else if (indexOptions == IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) {
+          // Skip positions/offsets/payloads
+          for(int posUpto=0;posUpto<freq;posUpto++) {
+            int posCode = in.readVInt();
+            if (storePayloads && ((posCode & 1) != 0)) {
+              payloadLen = in.readVInt();
+            }
+            if ((in.readVInt() & 1) != 0) {
+              // new offset length
+              in.readVInt();
+            }
+            if (storePayloads) {
+              in.skipBytes(payloadLen);
             }
           }
-        }
-
-        if (liveDocs == null || liveDocs.get(accum)) {
-          //System.out.println("    return docID=" + accum + " freq=" + freq);
-          return (docID = accum);
         }
       }
     }
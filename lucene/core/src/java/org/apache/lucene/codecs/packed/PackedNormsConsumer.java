@@ -0,0 +1,253 @@
+package org.apache.lucene.codecs.packed;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.codecs.DocValuesConsumer;
+import org.apache.lucene.codecs.PerDocConsumer;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValues.Type;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.PerDocWriteState;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.CodecUtil;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.packed.PackedInts;
+
+/**
+ * Writes norms in the {@link PackedNormsFormat}. The norms of a
+ * field are buffered until the field is finished, and then
+ * written at once with the number of bits they require.
+ */
+final class PackedNormsConsumer extends PerDocConsumer {
+
+  private final PerDocWriteState state;
+  private final float acceptableOverheadRatio;
+  private final boolean direct;
+  private final List<FieldEntry> entries = new ArrayList<FieldEntry>();
+  private IndexOutput data; // lazily created
+  private boolean aborted;
+
+  PackedNormsConsumer(PerDocWriteState state, float acceptableOverheadRatio, boolean direct) {
+    this.state = state;
+    this.acceptableOverheadRatio = acceptableOverheadRatio;
+    this.direct = direct;
+  }
+
+  private IndexOutput data() throws IOException {
+    if (data == null) {
+      final String fileName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, PackedNormsFormat.NORMS_EXTENSION);
+      boolean success = false;
+      final IndexOutput out = state.directory.createOutput(fileName, state.context);
+      try {
+        CodecUtil.writeHeader(out, PackedNormsFormat.CODEC_NAME, PackedNormsFormat.VERSION_CURRENT);
+        out.writeByte((byte) (direct ? 1 : 0));
+        success = true;
+      } finally {
+        if (!success) {
+          IOUtils.closeWhileHandlingException(out);
+        }
+      }
+      data = out;
+    }
+    return data;
+  }
+
+  @Override
+  public DocValuesConsumer addValuesField(Type type, FieldInfo field) throws IOException {
+    PackedNormsFormat.valueSize(type); // fails on unsupported types
+    return new NormsWriter(type, field.number);
+  }
+
+  @Override
+  protected DocValues getDocValuesForMerge(AtomicReader reader, FieldInfo info) throws IOException {
+    return reader.normValues(info.name);
+  }
+
+  @Override
+  protected boolean canMerge(FieldInfo info) {
+    return info.hasNorms();
+  }
+
+  @Override
+  protected Type getDocValuesType(FieldInfo info) {
+    return info.getNormType();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (aborted) {
+      IOUtils.closeWhileHandlingException(data);
+      return;
+    }
+    boolean success = false;
+    try {
+      final IndexOutput out = data();
+      final long dirOffset = out.getFilePointer();
+      out.writeVInt(entries.size());
+      for (FieldEntry entry : entries) {
+        out.writeVInt(entry.fieldNumber);
+        out.writeByte((byte) entry.type.ordinal());
+        out.writeLong(entry.min);
+        out.writeVInt(entry.bitsPerValue);
+        out.writeLong(entry.offset);
+      }
+      out.writeLong(dirOffset);
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(data);
+      } else {
+        IOUtils.closeWhileHandlingException(data);
+      }
+    }
+  }
+
+  @Override
+  public void abort() {
+    // We don't have to remove files here: IndexFileDeleter
+    // will do so
+    aborted = true;
+  }
+
+  /** Location and encoding of the norms of a field. */
+  static final class FieldEntry {
+    final int fieldNumber;
+    final Type type;
+    final long min;
+    final int bitsPerValue;
+    final long offset;
+
+    FieldEntry(int fieldNumber, Type type, long min, int bitsPerValue, long offset) {
+      this.fieldNumber = fieldNumber;
+      this.type = type;
+      this.min = min;
+      this.bitsPerValue = bitsPerValue;
+      this.offset = offset;
+    }
+  }
+
+  /** Converts a norm to the long that is packed: floats
+   *  are stored through their raw bits. */
+  static long toLong(Type type, IndexableField value) {
+    switch (type) {
+      case FLOAT_32:
+        return Float.floatToRawIntBits(value.numericValue().floatValue());
+      case FLOAT_64:
+        return Double.doubleToRawLongBits(value.numericValue().doubleValue());
+      default:
+        return value.numericValue().longValue();
+    }
+  }
+
+  private final class NormsWriter extends DocValuesConsumer {
+    private final Type type;
+    private final int fieldNumber;
+    // values are buffered with as many bits as their type has
+    private final int bits;
+    private PackedInts.Mutable values;
+
+    NormsWriter(Type type, int fieldNumber) {
+      this.type = type;
+      this.fieldNumber = fieldNumber;
+      final int valueSize = PackedNormsFormat.valueSize(type);
+      bits = valueSize == -1 ? 64 : valueSize << 3;
+      values = PackedInts.getMutable(0, bits, PackedInts.FASTEST);
+    }
+
+    @Override
+    protected Type getType() {
+      return type;
+    }
+
+    @Override
+    public int getValueSize() {
+      return PackedNormsFormat.valueSize(type);
+    }
+
+    @Override
+    public void add(int docID, IndexableField value) throws IOException {
+      if (docID >= values.size()) {
+        final PackedInts.Mutable next = PackedInts.getMutable(ArrayUtil.oversize(docID + 1, bits >>> 3), bits, PackedInts.FASTEST);
+        PackedInts.copy(values, 0, next, 0, values.size(), PackedInts.DEFAULT_BUFFER_SIZE);
+        state.bytesUsed.addAndGet(next.ramBytesUsed() - values.ramBytesUsed());
+        values = next;
+      }
+      final long v = toLong(type, value);
+      values.set(docID, bits == 64 ? v : v & ((1L << bits) - 1));
+    }
+
+    private long get(int docID) {
+      if (docID >= values.size()) {
+        return 0; // also the raw bits of 0f and 0d
+      }
+      final long v = values.get(docID);
+      return bits == 64 ? v : (v << (64 - bits)) >> (64 - bits); // sign-extend
+    }
+
+    @Override
+    public void finish(int docCount) throws IOException {
+      try {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int docID = 0; docID < docCount; docID++) {
+          final long v = get(docID);
+          min = Math.min(min, v);
+          max = Math.max(max, v);
+        }
+        final long delta = max - min;
+        final int bitsPerValue;
+        if (docCount == 0) {
+          min = 0;
+          bitsPerValue = 0;
+        } else if (delta == 0) {
+          bitsPerValue = 0; // constant field: only the value is stored
+        } else if (delta < 0) {
+          min = 0;
+          bitsPerValue = 64; // the values span more than 63 bits, write them as is
+        } else {
+          bitsPerValue = PackedInts.bitsRequired(delta);
+        }
+
+        final IndexOutput out = data();
+        entries.add(new FieldEntry(fieldNumber, type, min, bitsPerValue, out.getFilePointer()));
+        if (bitsPerValue == 64) {
+          for (int docID = 0; docID < docCount; docID++) {
+            out.writeLong(get(docID));
+          }
+        } else if (bitsPerValue > 0) {
+          final PackedInts.Writer writer = PackedInts.getWriter(out, docCount, bitsPerValue, acceptableOverheadRatio);
+          for (int docID = 0; docID < docCount; docID++) {
+            writer.add(get(docID) - min);
+          }
+          writer.finish();
+        }
+      } finally {
+        state.bytesUsed.addAndGet(-values.ramBytesUsed());
+        values = null;
+      }
+    }
+  }
+}
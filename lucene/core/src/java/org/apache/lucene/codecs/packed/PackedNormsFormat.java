@@ -0,0 +1,130 @@
+package org.apache.lucene.codecs.packed;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.NormsFormat;
+import org.apache.lucene.codecs.PerDocConsumer;
+import org.apache.lucene.codecs.PerDocProducer;
+import org.apache.lucene.index.DocValues.Type;
+import org.apache.lucene.index.PerDocWriteState;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.store.DataOutput; // javadocs
+import org.apache.lucene.store.MMapDirectory; // javadocs
+import org.apache.lucene.util.CodecUtil; // javadocs
+import org.apache.lucene.util.packed.PackedInts;
+
+/**
+ * A {@link NormsFormat} that stores norms as {@link PackedInts packed ints}.
+ * <p>
+ * The values of each field are written as their minimum plus
+ * the deltas to this minimum, using the number of bits required
+ * by the largest delta. A field whose documents all have the
+ * same norm (for example because its values are always one
+ * token long) only stores that value and takes no memory per
+ * document. Float norms are packed through their raw bits, so
+ * they benefit as well when few distinct values occur. Norms of
+ * a byte[] {@link Type type} are not supported.
+ * <p>
+ * By default, the norms of a field are loaded in memory the
+ * first time they are needed. When the format is created with
+ * <code>direct=true</code>, readers of the segments it writes
+ * instead read norms from the index files on every access,
+ * which is only recommended with {@link MMapDirectory}.
+ * <p>
+ * Norms (.pnm) --&gt; Header, Direct, &lt;Values&gt; <sup>NumFields</sup>, FieldDir, DirOffset
+ * <ul>
+ *   <li>Header --&gt; {@link CodecUtil#writeHeader CodecHeader}</li>
+ *   <li>Direct --&gt; {@link DataOutput#writeByte Byte}, 1 if norms are
+ *       read from disk, 0 if they are loaded in memory</li>
+ *   <li>Values --&gt; the deltas of the norms of a field to Min, as
+ *       {@link PackedInts packed ints}, absent if BitsPerValue is 0,
+ *       or one {@link DataOutput#writeLong Int64} per document if
+ *       BitsPerValue is 64 (the norms span more than 63 bits)</li>
+ *   <li>FieldDir --&gt; NumFields, &lt;FieldNumber, Type, Min, BitsPerValue, ValuesOffset&gt; <sup>NumFields</sup></li>
+ *   <li>NumFields, FieldNumber, BitsPerValue --&gt; {@link DataOutput#writeVInt VInt}</li>
+ *   <li>Type --&gt; {@link DataOutput#writeByte Byte}, the ordinal of the
+ *       {@link Type norm type} of the field</li>
+ *   <li>Min --&gt; {@link DataOutput#writeLong Int64}</li>
+ *   <li>ValuesOffset, DirOffset --&gt; {@link DataOutput#writeLong Int64},
+ *       the start of the Values of the field and of the FieldDir</li>
+ * </ul>
+ * @lucene.experimental
+ */
+public class PackedNormsFormat extends NormsFormat {
+
+  /** Extension of packed norms files */
+  static final String NORMS_EXTENSION = "pnm";
+
+  static final String CODEC_NAME = "PackedNorms";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  private final float acceptableOverheadRatio;
+  private final boolean direct;
+
+  /** Creates a format which packs norms with the minimum
+   *  number of bits and loads them in memory. */
+  public PackedNormsFormat() {
+    this(PackedInts.COMPACT, false);
+  }
+
+  /**
+   * Creates a new format.
+   * @param acceptableOverheadRatio the overhead that is allowed
+   *        when packing values, see {@link PackedInts#getWriter}
+   * @param direct whether readers should read norms from the
+   *        index files instead of loading them in memory
+   */
+  public PackedNormsFormat(float acceptableOverheadRatio, boolean direct) {
+    this.acceptableOverheadRatio = acceptableOverheadRatio;
+    this.direct = direct;
+  }
+
+  @Override
+  public PerDocConsumer docsConsumer(PerDocWriteState state) throws IOException {
+    return new PackedNormsConsumer(state, acceptableOverheadRatio, direct);
+  }
+
+  @Override
+  public PerDocProducer docsProducer(SegmentReadState state) throws IOException {
+    return new PackedNormsProducer(state);
+  }
+
+  /** Returns the size of a value of the given type, in bytes,
+   *  or -1 for variable-size values. */
+  static int valueSize(Type type) {
+    switch (type) {
+      case FIXED_INTS_8:
+        return 1;
+      case FIXED_INTS_16:
+        return 2;
+      case FIXED_INTS_32:
+      case FLOAT_32:
+        return 4;
+      case FIXED_INTS_64:
+      case FLOAT_64:
+        return 8;
+      case VAR_INTS:
+        return -1;
+      default:
+        throw new IllegalArgumentException("norms of type " + type + " are not supported");
+    }
+  }
+}
@@ -0,0 +1,239 @@
+package org.apache.lucene.codecs.packed;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.codecs.PerDocProducer;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValues.Source;
+import org.apache.lucene.index.DocValues.Type;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.RandomAccessInput;
+import org.apache.lucene.util.CodecUtil;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.packed.PackedInts;
+
+/**
+ * Reads norms written in the {@link PackedNormsFormat}.
+ */
+final class PackedNormsProducer extends PerDocProducer {
+
+  private final IndexInput data;
+  private final boolean direct;
+  private final Map<String,DocValues> norms = new HashMap<String,DocValues>();
+
+  PackedNormsProducer(SegmentReadState state) throws IOException {
+    if (!state.fieldInfos.hasNorms()) {
+      data = null;
+      direct = false;
+      return;
+    }
+    final String fileName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, PackedNormsFormat.NORMS_EXTENSION);
+    final int maxDoc = state.segmentInfo.getDocCount();
+    data = state.dir.openInput(fileName, state.context);
+    boolean success = false;
+    try {
+      CodecUtil.checkHeader(data, PackedNormsFormat.CODEC_NAME, PackedNormsFormat.VERSION_START, PackedNormsFormat.VERSION_CURRENT);
+      direct = data.readByte() != 0;
+      data.seek(data.length() - 8);
+      data.seek(data.readLong());
+      final int numFields = data.readVInt();
+      for (int i = 0; i < numFields; i++) {
+        final int fieldNumber = data.readVInt();
+        final FieldInfo info = state.fieldInfos.fieldInfo(fieldNumber);
+        if (info == null || !info.hasNorms()) {
+          throw new CorruptIndexException("invalid field number: " + fieldNumber + " (resource: " + data + ")");
+        }
+        final int typeOrd = data.readByte();
+        if (typeOrd < 0 || typeOrd >= Type.values().length || Type.values()[typeOrd] != info.getNormType()) {
+          throw new CorruptIndexException("field " + info.name + " has norm type " + info.getNormType() + " but file has type ordinal " + typeOrd + " (resource: " + data + ")");
+        }
+        final long min = data.readLong();
+        final int bitsPerValue = data.readVInt();
+        if (bitsPerValue < 0 || bitsPerValue > 64) {
+          throw new CorruptIndexException("invalid bitsPerValue: " + bitsPerValue + " for field " + info.name + " (resource: " + data + ")");
+        }
+        final long offset = data.readLong();
+        norms.put(info.name, new PackedNormsDocValues(info.getNormType(), maxDoc, min, bitsPerValue, offset));
+      }
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(data);
+      }
+    }
+  }
+
+  @Override
+  public DocValues docValues(String field) throws IOException {
+    return norms.get(field);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      IOUtils.close(norms.values());
+    } finally {
+      IOUtils.close(data);
+    }
+  }
+
+  private final class PackedNormsDocValues extends DocValues {
+    private final Type type;
+    private final int maxDoc;
+    private final long min;
+    private final int bitsPerValue;
+    private final long offset;
+
+    PackedNormsDocValues(Type type, int maxDoc, long min, int bitsPerValue, long offset) {
+      this.type = type;
+      this.maxDoc = maxDoc;
+      this.min = min;
+      this.bitsPerValue = bitsPerValue;
+      this.offset = offset;
+    }
+
+    @Override
+    public Source load() throws IOException {
+      if (bitsPerValue == 0) {
+        return new PackedNormsSource(type, min, null);
+      }
+      final IndexInput in = (IndexInput) data.clone();
+      try {
+        in.seek(offset);
+        final PackedInts.Reader reader;
+        if (bitsPerValue == 64) {
+          final PackedInts.Mutable values = PackedInts.getMutable(maxDoc, 64, PackedInts.COMPACT);
+          for (int docID = 0; docID < maxDoc; docID++) {
+            values.set(docID, in.readLong());
+          }
+          reader = values;
+        } else {
+          reader = PackedInts.getReader(in);
+        }
+        return new PackedNormsSource(type, min, reader);
+      } finally {
+        in.close();
+      }
+    }
+
+    /** Norms written with <code>direct=true</code> are not
+     *  loaded in memory: every caller gets a new disk resident
+     *  source, so that sources are never shared by threads. */
+    @Override
+    public Source getSource() throws IOException {
+      return direct ? getDirectSource() : super.getSource();
+    }
+
+    @Override
+    public Source getDirectSource() throws IOException {
+      if (bitsPerValue == 0) {
+        return new PackedNormsSource(type, min, null);
+      }
+      final IndexInput in = (IndexInput) data.clone();
+      final PackedInts.Reader reader;
+      if (bitsPerValue == 64) {
+        reader = new DirectLongReader(maxDoc, in.randomAccessSlice(offset, 8L * maxDoc));
+      } else {
+        in.seek(offset);
+        reader = PackedInts.getDirectReader(in);
+      }
+      return new PackedNormsSource(type, min, reader);
+    }
+
+    @Override
+    public Type getType() {
+      return type;
+    }
+
+    @Override
+    public int getValueSize() {
+      return PackedNormsFormat.valueSize(type);
+    }
+  }
+
+  /** Decodes the packed deltas to the norms of a field. */
+  private static final class PackedNormsSource extends Source {
+    private final long min;
+    private final PackedInts.Reader deltas; // null if all norms are equal to min
+
+    PackedNormsSource(Type type, long min, PackedInts.Reader deltas) {
+      super(type);
+      this.min = min;
+      this.deltas = deltas;
+    }
+
+    private long get(int docID) {
+      return deltas == null ? min : min + deltas.get(docID);
+    }
+
+    @Override
+    public long getInt(int docID) {
+      switch (type) {
+        case FLOAT_32:
+        case FLOAT_64:
+          throw new UnsupportedOperationException("ints are not supported");
+        default:
+          return get(docID);
+      }
+    }
+
+    @Override
+    public double getFloat(int docID) {
+      switch (type) {
+        case FLOAT_32:
+          return Float.intBitsToFloat((int) get(docID));
+        case FLOAT_64:
+          return Double.longBitsToDouble(get(docID));
+        default:
+          return get(docID);
+      }
+    }
+  }
+
+  /** Norms which span more than 63 bits, read from disk. */
+  private static final class DirectLongReader extends PackedInts.ReaderImpl {
+    private final RandomAccessInput in;
+
+    DirectLongReader(int valueCount, RandomAccessInput in) {
+      super(valueCount, 64);
+      this.in = in;
+    }
+
+    @Override
+    public long get(int index) {
+      try {
+        return in.readLong(8L * index);
+      } catch (IOException ioe) {
+        throw new IllegalStateException("failed", ioe);
+      }
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return 0;
+    }
+  }
+}
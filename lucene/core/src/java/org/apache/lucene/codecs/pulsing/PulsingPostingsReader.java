@@ -300,50 +300,74 @@ public class PulsingPostingsReader extends PostingsReaderBase {
           return docID = NO_MORE_DOCS;
         }
 
-        final int code = postings.readVInt();
-        //System.out.println("  read code=" + code);
-        if (indexOptions == IndexOptions.DOCS_ONLY) {
-          accum += code;
-        } else {
-          accum += code >>> 1;              // shift off low bit
-          if ((code & 1) != 0) {          // if low bit is set
-            freq = 1;                     // freq is one
-          } else {
-            freq = postings.readVInt();     // else read freq
+        readDoc();
+
+        if (liveDocs == null || liveDocs.get(accum)) {
+          return (docID = accum);
+        }
+      }
+    }
+
+    @Override
+    public int read(int[] docs, int[] freqs) throws IOException {
+      final Bits liveDocs = this.liveDocs;
+      final boolean omitTF = indexOptions == IndexOptions.DOCS_ONLY;
+      int upto = 0;
+      while (upto < docs.length && !postings.eof()) {
+        readDoc();
+        if (liveDocs == null || liveDocs.get(accum)) {
+          docs[upto] = accum;
+          if (freqs != null) {
+            freqs[upto] = omitTF ? 1 : freq;
           }
+          upto++;
+        }
+      }
+      docID = upto == 0 ? NO_MORE_DOCS : docs[upto-1];
+      return upto;
+    }
 
-          if (indexOptions.compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) >= 0) {
-            // Skip positions
-            if (storePayloads) {
-              for(int pos=0;pos<freq;pos++) {
-                final int posCode = postings.readVInt();
-                if ((posCode & 1) != 0) {
-                  payloadLength = postings.readVInt();
-                }
-                if (storeOffsets && (postings.readVInt() & 1) != 0) {
-                  // new offset length
-                  postings.readVInt();
-                }
-                if (payloadLength != 0) {
-                  postings.skipBytes(payloadLength);
-                }
+    /** Decodes the next doc and its freq, skipping positions. */
+    private void readDoc() throws IOException {
+      final int code = postings.readVInt();
+      //System.out.println("  read code=" + code);
+      if (indexOptions == IndexOptions.DOCS_ONLY) {
+        accum += code;
+      } else {
+        accum += code >>> 1;              // shift off low bit
+        if ((code & 1) != 0) {          // if low bit is set
+          freq = 1;                     // freq is one
+        } else {
+          freq = postings.readVInt();     // else read freq
+        }
+
+        if (indexOptions.compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) >= 0) {
+          // Skip positions
+          if (storePayloads) {
+            for(int pos=0;pos<freq;pos++) {
+              final int posCode = postings.readVInt();
+              if ((posCode & 1) != 0) {
+                payloadLength = postings.readVInt();
               }
-            } else {
-              for(int pos=0;pos<freq;pos++) {
-                // TODO: skipVInt
+              if (storeOffsets && (postings.readVInt() & 1) != 0) {
+                // new offset length
+                postings.readVInt();
+              }
+              if (payloadLength != 0) {
+                postings.skipBytes(payloadLength);
+              }
+            }
+          } else {
+            for(int pos=0;pos<freq;pos++) {
+              // TODO: skipVInt
+              postings.readVInt();
+              if (storeOffsets && (postings.readVInt() & 1) != 0) {
+                // new offset length
                 postings.readVInt();
-                if (storeOffsets && (postings.readVInt() & 1) != 0) {
-                  // new offset length
-                  postings.readVInt();
-                }
               }
             }
           }
         }
-
-        if (liveDocs == null || liveDocs.get(accum)) {
-          return (docID = accum);
-        }
       }
     }
 
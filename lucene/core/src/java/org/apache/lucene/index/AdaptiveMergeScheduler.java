@@ -0,0 +1,302 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.RateLimiter;
+
+/** A {@link ConcurrentMergeScheduler} that limits the rate
+ *  at which merges write to disk, so that merging competes
+ *  less with searches for IO bandwidth.
+ *
+ *  <p>The scheduler owns a {@link RateLimiter} that is
+ *  shared by all merges of the index. It is installed on
+ *  the writer's directory as its merge write limiter (see
+ *  {@link FSDirectory#setMaxMergeWriteLimiter}), which applies
+ *  it to all outputs opened with a {@link IOContext.Context#MERGE}
+ *  context, and replaces any limit previously set there.
+ *  Directories that are not an {@link FSDirectory} are not
+ *  throttled.</p>
+ *
+ *  <p>The allowed rate starts at {@link #setTargetMBPerSec
+ *  the target rate} and is adjusted whenever a merge is
+ *  registered, starts or finishes:</p>
+ *  <ul>
+ *   <li>if more merges are waiting than {@link
+ *   #getMaxThreadCount} threads can run, merges are backing
+ *   up and will eventually stall indexing threads, so the
+ *   rate is raised to the target rate times
+ *   <code>1 + (backlog - maxThreadCount)</code>;</li>
+ *   <li>otherwise, if the average search latency reported
+ *   through {@link #recordSearchLatency} is above {@link
+ *   #setTargetSearchLatencyMillis the target latency}, the
+ *   rate is lowered proportionally.</li>
+ *  </ul>
+ *  <p>The rate always stays between {@link #setMinMBPerSec}
+ *  and {@link #setMaxMBPerSec}.</p>
+ *
+ *  <p><b>NOTE</b>: {@link org.apache.lucene.search.IndexSearcher}
+ *  does not report latencies to this scheduler. Solr's
+ *  <code>SolrIndexSearcher</code> reports the latency of
+ *  its queries when the core's <code>mergeScheduler</code>
+ *  is an AdaptiveMergeScheduler; other applications must
+ *  time their searches and pass them to {@link
+ *  #recordSearchLatency} themselves. Otherwise the average
+ *  search latency stays at 0 and merges are never slowed
+ *  down below the target rate.</p>
+ *
+ *  @lucene.experimental
+ */
+public class AdaptiveMergeScheduler extends ConcurrentMergeScheduler {
+
+  /** Default target merge write rate, in MB/sec. */
+  public static final double DEFAULT_TARGET_MB_PER_SEC = 20.0;
+
+  // weight of a new sample in the search latency moving average
+  private static final double LATENCY_ALPHA = 0.1;
+
+  private final MeasuringRateLimiter rateLimiter;
+
+  private volatile double targetMBPerSec;
+  private volatile double minMBPerSec;
+  private volatile double maxMBPerSec;
+  private volatile double targetSearchLatencyMillis;
+
+  private final AtomicInteger runningMerges = new AtomicInteger();
+  private volatile int backlog;
+  // the bits of the search latency moving average, a double
+  private final AtomicLong avgSearchLatencyBits = new AtomicLong(Double.doubleToLongBits(0));
+
+  /** Creates a scheduler with a target rate of {@link #DEFAULT_TARGET_MB_PER_SEC}. */
+  public AdaptiveMergeScheduler() {
+    this(DEFAULT_TARGET_MB_PER_SEC);
+  }
+
+  /** Creates a scheduler which writes at <code>targetMBPerSec</code>
+   *  when neither merges nor searches are backing up. The rate may
+   *  be lowered down to a tenth of the target, and raised up to ten
+   *  times the target. */
+  public AdaptiveMergeScheduler(double targetMBPerSec) {
+    if (targetMBPerSec <= 0) {
+      throw new IllegalArgumentException("targetMBPerSec must be > 0 (got " + targetMBPerSec + ")");
+    }
+    this.targetMBPerSec = targetMBPerSec;
+    this.minMBPerSec = targetMBPerSec / 10;
+    this.maxMBPerSec = targetMBPerSec * 10;
+    this.rateLimiter = new MeasuringRateLimiter(targetMBPerSec);
+  }
+
+  /** Sets the rate merges write at when neither merges nor searches are backing up. */
+  public void setTargetMBPerSec(double mbPerSec) {
+    if (mbPerSec <= 0) {
+      throw new IllegalArgumentException("mbPerSec must be > 0 (got " + mbPerSec + ")");
+    }
+    targetMBPerSec = mbPerSec;
+    updateMergeRate();
+  }
+
+  /** @see #setTargetMBPerSec */
+  public double getTargetMBPerSec() {
+    return targetMBPerSec;
+  }
+
+  /** Sets the lowest rate merges are slowed down to when searches are slow. */
+  public void setMinMBPerSec(double mbPerSec) {
+    if (mbPerSec <= 0) {
+      throw new IllegalArgumentException("mbPerSec must be > 0 (got " + mbPerSec + ")");
+    }
+    minMBPerSec = mbPerSec;
+    updateMergeRate();
+  }
+
+  /** @see #setMinMBPerSec */
+  public double getMinMBPerSec() {
+    return minMBPerSec;
+  }
+
+  /** Sets the highest rate merges are sped up to when they back up. */
+  public void setMaxMBPerSec(double mbPerSec) {
+    if (mbPerSec <= 0) {
+      throw new IllegalArgumentException("mbPerSec must be > 0 (got " + mbPerSec + ")");
+    }
+    maxMBPerSec = mbPerSec;
+    updateMergeRate();
+  }
+
+  /** @see #setMaxMBPerSec */
+  public double getMaxMBPerSec() {
+    return maxMBPerSec;
+  }
+
+  /** Sets the average search latency above which merges are
+   *  slowed down. A value <= 0 (the default) disables this. */
+  public void setTargetSearchLatencyMillis(double millis) {
+    targetSearchLatencyMillis = millis;
+    updateMergeRate();
+  }
+
+  /** @see #setTargetSearchLatencyMillis */
+  public double getTargetSearchLatencyMillis() {
+    return targetSearchLatencyMillis;
+  }
+
+  /** Records the latency of a search, in milliseconds. This
+   *  is cheap, takes no lock and may be called concurrently
+   *  by all search threads. */
+  public void recordSearchLatency(double millis) {
+    long bits, newBits;
+    do {
+      bits = avgSearchLatencyBits.get();
+      final double avg = Double.longBitsToDouble(bits);
+      newBits = Double.doubleToLongBits(avg + LATENCY_ALPHA * (millis - avg));
+    } while (!avgSearchLatencyBits.compareAndSet(bits, newBits));
+    updateMergeRate();
+  }
+
+  /** Returns the moving average of the latencies passed to {@link #recordSearchLatency}. */
+  public double getAverageSearchLatencyMillis() {
+    return Double.longBitsToDouble(avgSearchLatencyBits.get());
+  }
+
+  /** Returns the rate merges are currently allowed to write at, in MB/sec. */
+  public double getMBPerSecLimit() {
+    return rateLimiter.getMbPerSec();
+  }
+
+  /** Returns the rate merges actually wrote at during the last
+   *  second they were writing, in MB/sec, or 0 if no merge
+   *  is running. */
+  public double getCurrentMBPerSec() {
+    return backlog == 0 ? 0 : rateLimiter.measuredMBPerSec;
+  }
+
+  /** Returns the total number of bytes written by merges. */
+  public long getBytesWritten() {
+    return rateLimiter.bytesWritten.get();
+  }
+
+  /** Returns the number of merges that are running or
+   *  waiting to be run, as of the last time a merge was
+   *  registered, started or finished. */
+  public int getMergeBacklog() {
+    return backlog;
+  }
+
+  /** Returns the {@link RateLimiter} shared by all merges. */
+  public RateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  @Override
+  public void merge(IndexWriter writer) throws IOException {
+    final Directory dir = writer.getDirectory();
+    if (dir instanceof FSDirectory) {
+      ((FSDirectory) dir).setMaxMergeWriteLimiter(rateLimiter);
+    }
+    updateBacklog(writer);
+    super.merge(writer);
+  }
+
+  @Override
+  protected void doMerge(MergePolicy.OneMerge merge) throws IOException {
+    runningMerges.incrementAndGet();
+    updateBacklog(writer);
+    try {
+      super.doMerge(merge);
+    } finally {
+      runningMerges.decrementAndGet();
+      updateBacklog(writer);
+    }
+  }
+
+  // NOTE: must not be called with the lock on this
+  // scheduler held, as it locks the writer
+  private void updateBacklog(IndexWriter writer) {
+    assert !Thread.holdsLock(this);
+    backlog = writer.getPendingMergeCount() + runningMerges.get();
+    updateMergeRate();
+  }
+
+  private void updateMergeRate() {
+    final double newMBPerSec = computeMBPerSec(backlog, getAverageSearchLatencyMillis());
+    final double oldMBPerSec = rateLimiter.getMbPerSec();
+    if (newMBPerSec != oldMBPerSec) {
+      rateLimiter.setMbPerSec(newMBPerSec);
+      if (verbose()) {
+        message("merge rate limit: " + oldMBPerSec + " -> " + newMBPerSec + " MB/sec (backlog=" + backlog
+            + ", avgSearchLatencyMillis=" + getAverageSearchLatencyMillis() + ")");
+      }
+    }
+  }
+
+  /** Returns the rate, in MB/sec, merges should be allowed to
+   *  write at given the number of running and waiting merges
+   *  and the average search latency. */
+  double computeMBPerSec(int backlog, double avgSearchLatencyMillis) {
+    double mbPerSec = targetMBPerSec;
+    final int excess = backlog - getMaxThreadCount();
+    if (excess > 0) {
+      // merges are backing up: catch up before indexing threads get stalled
+      mbPerSec *= 1 + excess;
+    } else if (targetSearchLatencyMillis > 0 && avgSearchLatencyMillis > targetSearchLatencyMillis) {
+      mbPerSec *= targetSearchLatencyMillis / avgSearchLatencyMillis;
+    }
+    return Math.max(minMBPerSec, Math.min(maxMBPerSec, mbPerSec));
+  }
+
+  /** A {@link RateLimiter} that also measures how fast it is
+   *  asked to let bytes through. */
+  private static final class MeasuringRateLimiter extends RateLimiter {
+
+    final AtomicLong bytesWritten = new AtomicLong();
+    volatile double measuredMBPerSec;
+
+    private long windowStartNS = System.nanoTime();
+    private long windowBytes;
+
+    MeasuringRateLimiter(double mbPerSec) {
+      super(mbPerSec);
+    }
+
+    @Override
+    public void pause(long bytes) {
+      bytesWritten.addAndGet(bytes);
+      synchronized (this) {
+        windowBytes += bytes;
+        final long now = System.nanoTime();
+        final long elapsedNS = now - windowStartNS;
+        if (elapsedNS >= 5000000000L) {
+          // merges were idle, start a new window
+          windowStartNS = now;
+          windowBytes = bytes;
+        } else if (elapsedNS >= 1000000000L) {
+          measuredMBPerSec = (windowBytes / 1024. / 1024.) / (elapsedNS / 1000000000.);
+          windowStartNS = now;
+          windowBytes = 0;
+        }
+      }
+      super.pause(bytes);
+    }
+  }
+}
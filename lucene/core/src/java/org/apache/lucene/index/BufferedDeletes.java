@@ -19,6 +19,7 @@ package org.apache.lucene.index;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
@@ -27,8 +28,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.util.RamUsageEstimator;
 
-/* Holds buffered deletes, by docID, term or query for a
- * single segment. This is used to hold buffered pending
+/* Holds buffered deletes, by docID, term or query, and
+ * buffered numeric DocValues updates for a single segment. This is used to hold buffered pending
  * deletes against the to-be-flushed segment.  Once the
  * deletes are pushed (on flush in DocumentsWriter), these
  * deletes are converted to a FrozenDeletes instance. */
@@ -63,10 +64,22 @@ class BufferedDeletes {
      undercount (say 24 bytes).  Integer is OBJ_HEADER + INT. */
   final static int BYTES_PER_DEL_QUERY = 5*RamUsageEstimator.NUM_BYTES_OBJECT_REF + 2*RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + 2*RamUsageEstimator.NUM_BYTES_INT + 24;
 
+  /* Rough logic: LinkedHashMap Entry is object w/ Term key,
+     NumericUpdate val, int hash, Entry next, before, after
+     (OBJ_HEADER + 5*POINTER + INT), plus array slot
+     (POINTER).  NumericUpdate is object w/ Term, String
+     field, long value, int docIDUpto (OBJ_HEADER + 2*POINTER
+     + LONG + INT).  Term is counted as for a del term. */
+  final static int BYTES_PER_NUMERIC_UPDATE = BYTES_PER_DEL_TERM + 8*RamUsageEstimator.NUM_BYTES_OBJECT_REF + 2*RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + RamUsageEstimator.NUM_BYTES_LONG + 2*RamUsageEstimator.NUM_BYTES_INT;
+
   final AtomicInteger numTermDeletes = new AtomicInteger();
   final Map<Term,Integer> terms = new HashMap<Term,Integer>();
   final Map<Query,Integer> queries = new HashMap<Query,Integer>();
   final List<Integer> docIDs = new ArrayList<Integer>();
+  // Numeric DocValues updates by field; per field the
+  // latest update of each term comes last:
+  final Map<String,LinkedHashMap<Term,NumericUpdate>> numericUpdates = new HashMap<String,LinkedHashMap<Term,NumericUpdate>>();
+  final AtomicInteger numNumericUpdates = new AtomicInteger();
 
   public static final Integer MAX_INT = Integer.valueOf(Integer.MAX_VALUE);
 
@@ -88,8 +101,8 @@ class BufferedDeletes {
   public String toString() {
     if (VERBOSE_DELETES) {
       return "gen=" + gen + " numTerms=" + numTermDeletes + ", terms=" + terms
-        + ", queries=" + queries + ", docIDs=" + docIDs + ", bytesUsed="
-        + bytesUsed;
+        + ", queries=" + queries + ", docIDs=" + docIDs + ", numericUpdates="
+        + numericUpdates + ", bytesUsed=" + bytesUsed;
     } else {
       String s = "gen=" + gen;
       if (numTermDeletes.get() != 0) {
@@ -101,6 +114,9 @@ class BufferedDeletes {
       if (docIDs.size() != 0) {
         s += " " + docIDs.size() + " deleted docIDs";
       }
+      if (numNumericUpdates.get() != 0) {
+        s += " " + numNumericUpdates.get() + " numeric updates";
+      }
       if (bytesUsed.get() != 0) {
         s += " bytesUsed=" + bytesUsed.get();
       }
@@ -141,11 +157,30 @@ class BufferedDeletes {
       bytesUsed.addAndGet(BYTES_PER_DEL_TERM + term.bytes.length + (RamUsageEstimator.NUM_BYTES_CHAR * term.field().length()));
     }
   }
+
+  public void addNumericUpdate(NumericUpdate update, int docIDUpto) {
+    LinkedHashMap<Term,NumericUpdate> fieldUpdates = numericUpdates.get(update.field);
+    if (fieldUpdates == null) {
+      fieldUpdates = new LinkedHashMap<Term,NumericUpdate>();
+      numericUpdates.put(update.field, fieldUpdates);
+    }
+    // Remove first so that the latest update of the term
+    // is applied last, after updates of other terms that
+    // may match the same documents:
+    final NumericUpdate current = fieldUpdates.remove(update.term);
+    fieldUpdates.put(update.term, new NumericUpdate(update.term, update.field, update.value, docIDUpto));
+    if (current == null) {
+      numNumericUpdates.incrementAndGet();
+      bytesUsed.addAndGet(BYTES_PER_NUMERIC_UPDATE + update.term.bytes.length + (RamUsageEstimator.NUM_BYTES_CHAR * update.term.field().length()));
+    }
+  }
  
   void clear() {
     terms.clear();
     queries.clear();
     docIDs.clear();
+    numericUpdates.clear();
+    numNumericUpdates.set(0);
     numTermDeletes.set(0);
     bytesUsed.set(0);
   }
@@ -156,6 +191,6 @@ class BufferedDeletes {
   }
   
   boolean any() {
-    return terms.size() > 0 || docIDs.size() > 0 || queries.size() > 0;
+    return terms.size() > 0 || docIDs.size() > 0 || queries.size() > 0 || numericUpdates.size() > 0;
   }
 }
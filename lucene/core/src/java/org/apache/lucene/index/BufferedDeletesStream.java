@@ -20,8 +20,14 @@ package org.apache.lucene.index;
 import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -30,7 +36,10 @@ import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.QueryWrapperFilter;
 import org.apache.lucene.store.IOContext;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.InfoStream;
 
 /* Tracks the stream of {@link BufferedDeletes}.
@@ -58,15 +67,16 @@ class BufferedDeletesStream {
   // will be correct:
   private long nextGen = 1;
 
-  // used only by assert
-  private Term lastDeleteTerm;
-
   private final InfoStream infoStream;
   private final AtomicLong bytesUsed = new AtomicLong();
   private final AtomicInteger numTerms = new AtomicInteger();
 
-  public BufferedDeletesStream(InfoStream infoStream) {
+  // if non-null, segments are resolved concurrently
+  private final ExecutorService executor;
+
+  public BufferedDeletesStream(InfoStream infoStream, ExecutorService executor) {
     this.infoStream = infoStream;
+    this.executor = executor;
   }
 
   // Appends a new packet of buffered deletes to the stream,
@@ -173,12 +183,17 @@ class BufferedDeletesStream {
     Collections.sort(infos2, sortSegInfoByDelGen);
 
     CoalescedDeletes coalescedDeletes = null;
-    boolean anyNewDeletes = false;
+    // snapshot of coalescedDeletes, shared by all segments
+    // until the next packet is coalesced:
+    Iterable<Term> coalescedTerms = null;
+    List<QueryAndLimit> coalescedQueries = null;
+    List<NumericUpdate> coalescedUpdates = null;
 
     int infosIDX = infos2.size()-1;
     int delIDX = deletes.size()-1;
 
-    List<SegmentInfoPerCommit> allDeleted = null;
+    // First pass: decide which deletes go to which segment
+    final List<SegmentDeletes> segDeletes = new ArrayList<SegmentDeletes>();
 
     while (infosIDX >= 0) {
       //System.out.println("BD: cycle delIDX=" + delIDX + " infoIDX=" + infosIDX);
@@ -201,6 +216,9 @@ class BufferedDeletesStream {
            * removed.
            */
           coalescedDeletes.update(packet);
+          coalescedTerms = null;
+          coalescedQueries = null;
+          coalescedUpdates = null;
         }
 
         delIDX--;
@@ -208,41 +226,31 @@ class BufferedDeletesStream {
         assert packet.isSegmentPrivate : "Packet and Segments deletegen can only match on a segment private del packet gen=" + segGen;
         //System.out.println("  eq");
 
-        // Lock order: IW -> BD -> RP
-        assert readerPool.infoIsLive(info);
-        final ReadersAndLiveDocs rld = readerPool.get(info, true);
-        final SegmentReader reader = rld.getReader(IOContext.READ);
-        int delCount = 0;
-        final boolean segAllDeletes;
-        try {
-          if (coalescedDeletes != null) {
-            //System.out.println("    del coalesced");
-            delCount += applyTermDeletes(coalescedDeletes.termsIterable(), rld, reader);
-            delCount += applyQueryDeletes(coalescedDeletes.queriesIterable(), rld, reader);
-          }
-          //System.out.println("    del exact");
-          // Don't delete by Term here; DocumentsWriterPerThread
-          // already did that on flush:
-          delCount += applyQueryDeletes(packet.queriesIterable(), rld, reader);
-          final int fullDelCount = rld.info.getDelCount() + rld.getPendingDeleteCount();
-          assert fullDelCount <= rld.info.info.getDocCount();
-          segAllDeletes = fullDelCount == rld.info.info.getDocCount();
-        } finally {
-          rld.release(reader);
-          readerPool.release(rld);
-        }
-        anyNewDeletes |= delCount > 0;
-
-        if (segAllDeletes) {
-          if (allDeleted == null) {
-            allDeleted = new ArrayList<SegmentInfoPerCommit>();
+        final List<QueryAndLimit> queries = new ArrayList<QueryAndLimit>();
+        // The segment's own updates are older than the
+        // coalesced ones, so they must be applied first:
+        final List<NumericUpdate> updates = new ArrayList<NumericUpdate>();
+        Collections.addAll(updates, packet.numericUpdates);
+        Iterable<Term> terms = null;
+        if (coalescedDeletes != null) {
+          //System.out.println("    del coalesced");
+          if (coalescedTerms == null) {
+            coalescedTerms = coalescedDeletes.mergedTerms();
+            coalescedQueries = coalescedDeletes.queries();
+            coalescedUpdates = coalescedDeletes.numericUpdates();
           }
-          allDeleted.add(info);
+          terms = coalescedTerms;
+          queries.addAll(coalescedQueries);
+          updates.addAll(coalescedUpdates);
         }
-
-        if (infoStream.isEnabled("BD")) {
-          infoStream.message("BD", "seg=" + info + " segGen=" + segGen + " segDeletes=[" + packet + "]; coalesced deletes=[" + (coalescedDeletes == null ? "null" : coalescedDeletes) + "] newDelCount=" + delCount + (segAllDeletes ? " 100% deleted" : ""));
+        //System.out.println("    del exact");
+        // Don't delete by Term here; DocumentsWriterPerThread
+        // already did that on flush:
+        for (QueryAndLimit query : packet.queriesIterable()) {
+          queries.add(query);
         }
+        segDeletes.add(new SegmentDeletes(info, terms, queries, updates, !infoStream.isEnabled("BD") ? null :
+            "segGen=" + segGen + " segDeletes=[" + packet + "]; coalesced deletes=[" + (coalescedDeletes == null ? "null" : coalescedDeletes) + "]"));
 
         if (coalescedDeletes == null) {
           coalescedDeletes = new CoalescedDeletes();
@@ -255,44 +263,60 @@ class BufferedDeletesStream {
          */
         delIDX--;
         infosIDX--;
-        info.setBufferedDeletesGen(nextGen);
 
       } else {
         //System.out.println("  gt");
 
         if (coalescedDeletes != null) {
-          // Lock order: IW -> BD -> RP
-          assert readerPool.infoIsLive(info);
-          final ReadersAndLiveDocs rld = readerPool.get(info, true);
-          final SegmentReader reader = rld.getReader(IOContext.READ);
-          int delCount = 0;
-          final boolean segAllDeletes;
-          try {
-            delCount += applyTermDeletes(coalescedDeletes.termsIterable(), rld, reader);
-            delCount += applyQueryDeletes(coalescedDeletes.queriesIterable(), rld, reader);
-            final int fullDelCount = rld.info.getDelCount() + rld.getPendingDeleteCount();
-            assert fullDelCount <= rld.info.info.getDocCount();
-            segAllDeletes = fullDelCount == rld.info.info.getDocCount();
-          } finally {   
-            rld.release(reader);
-            readerPool.release(rld);
+          if (coalescedTerms == null) {
+            coalescedTerms = coalescedDeletes.mergedTerms();
+            coalescedQueries = coalescedDeletes.queries();
+            coalescedUpdates = coalescedDeletes.numericUpdates();
           }
-          anyNewDeletes |= delCount > 0;
+          segDeletes.add(new SegmentDeletes(info, coalescedTerms, coalescedQueries, coalescedUpdates, !infoStream.isEnabled("BD") ? null :
+              "segGen=" + segGen + " coalesced deletes=[" + coalescedDeletes + "]"));
+        }
 
-          if (segAllDeletes) {
-            if (allDeleted == null) {
-              allDeleted = new ArrayList<SegmentInfoPerCommit>();
-            }
-            allDeleted.add(info);
-          }
+        infosIDX--;
+      }
+    }
 
-          if (infoStream.isEnabled("BD")) {
-            infoStream.message("BD", "seg=" + info + " segGen=" + segGen + " coalesced deletes=[" + (coalescedDeletes == null ? "null" : coalescedDeletes) + "] newDelCount=" + delCount + (segAllDeletes ? " 100% deleted" : ""));
-          }
+    // Second pass: resolve the deletes against each segment
+    if (executor == null || segDeletes.size() < 2) {
+      for (SegmentDeletes seg : segDeletes) {
+        seg.open(readerPool);
+        try {
+          // we hold the IndexWriter lock:
+          seg.deleteDirectly = true;
+          seg.collect();
+          seg.delete();
+        } finally {
+          seg.close(readerPool);
         }
-        info.setBufferedDeletesGen(nextGen);
+      }
+    } else {
+      applyConcurrently(readerPool, segDeletes);
+    }
 
-        infosIDX--;
+    for (SegmentInfoPerCommit info : infos2) {
+      info.setBufferedDeletesGen(nextGen);
+    }
+
+    boolean anyNewDeletes = false;
+    List<SegmentInfoPerCommit> allDeleted = null;
+    for (SegmentDeletes seg : segDeletes) {
+      // updated values must be visible to new NRT readers too:
+      anyNewDeletes |= seg.delCount > 0 || seg.updateCount > 0;
+
+      if (seg.allDeleted) {
+        if (allDeleted == null) {
+          allDeleted = new ArrayList<SegmentInfoPerCommit>();
+        }
+        allDeleted.add(seg.info);
+      }
+
+      if (infoStream.isEnabled("BD")) {
+        infoStream.message("BD", "seg=" + seg.info + " " + seg.desc + " newDelCount=" + seg.delCount + " numericUpdateCount=" + seg.updateCount + (seg.allDeleted ? " 100% deleted" : ""));
       }
     }
 
@@ -305,6 +329,219 @@ class BufferedDeletesStream {
     return new ApplyDeletesResult(anyNewDeletes, nextGen++, allDeleted);
   }
 
+  /** Opens the readers of all segments, then collects the
+   *  deleted docIDs of each segment in its own task; the
+   *  calling thread collects the first segment and then
+   *  waits for the others.  Readers are opened and released,
+   *  and the collected docIDs deleted, only by the calling
+   *  thread, which holds the IndexWriter lock. */
+  private void applyConcurrently(IndexWriter.ReaderPool readerPool, List<SegmentDeletes> segDeletes) throws IOException {
+    Throwable th = null;
+    int opened = 0;
+    try {
+      for (SegmentDeletes seg : segDeletes) {
+        seg.open(readerPool);
+        opened++;
+      }
+
+      final List<FutureTask<Void>> futures = new ArrayList<FutureTask<Void>>(segDeletes.size()-1);
+      for (int i = 1; i < segDeletes.size(); i++) {
+        final SegmentDeletes seg = segDeletes.get(i);
+        final FutureTask<Void> future = new FutureTask<Void>(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            seg.collect();
+            return null;
+          }
+        });
+        futures.add(future);
+        try {
+          executor.execute(future);
+        } catch (RejectedExecutionException ree) {
+          // eg. the executor was shut down: collect this segment ourselves
+          future.run();
+        }
+      }
+
+      // all tasks must be done before we release the readers,
+      // even if one of them failed
+      try {
+        segDeletes.get(0).collect();
+      } catch (Throwable t) {
+        th = t;
+      }
+      InterruptedException interrupted = null;
+      for (FutureTask<Void> future : futures) {
+        while (true) {
+          try {
+            future.get();
+            break;
+          } catch (InterruptedException ie) {
+            // keep waiting, the task is still using the reader
+            interrupted = ie;
+          } catch (ExecutionException ee) {
+            if (th == null) {
+              th = ee.getCause();
+            }
+            break;
+          }
+        }
+      }
+      if (interrupted != null) {
+        Thread.currentThread().interrupt();
+      }
+
+      if (th == null) {
+        for (SegmentDeletes seg : segDeletes) {
+          seg.delete();
+        }
+      }
+    } catch (Throwable t) {
+      if (th == null) {
+        th = t;
+      }
+    } finally {
+      for (int i = 0; i < opened; i++) {
+        try {
+          segDeletes.get(i).close(readerPool);
+        } catch (Throwable t) {
+          if (th == null) {
+            th = t;
+          }
+        }
+      }
+    }
+
+    if (th != null) {
+      if (th instanceof IOException) throw (IOException) th;
+      if (th instanceof RuntimeException) throw (RuntimeException) th;
+      if (th instanceof Error) throw (Error) th;
+      throw new RuntimeException(th);
+    }
+  }
+
+  /** The deletes and numeric updates to resolve against
+   *  one segment. */
+  private static final class SegmentDeletes {
+    final SegmentInfoPerCommit info;
+    // null if no Term deletes apply to this segment
+    final Iterable<Term> terms;
+    final List<QueryAndLimit> queries;
+    // in the order to apply them:
+    final List<NumericUpdate> updates;
+    // for infoStream
+    final String desc;
+
+    ReadersAndLiveDocs rld;
+    SegmentReader reader;
+    // if true, documents are deleted as soon as they are
+    // found, which requires the IndexWriter lock; otherwise
+    // they are collected in deletedDocs, allocated on the
+    // first match:
+    boolean deleteDirectly;
+    FixedBitSet deletedDocs;
+    long delCount;
+    boolean allDeleted;
+    // docIDs matching the updates, and the update of each,
+    // in the order to apply them:
+    int[] updatedDocIDs = new int[8];
+    NumericUpdate[] updatedBy = new NumericUpdate[8];
+    int numUpdatedDocIDs;
+    long updateCount;
+
+    SegmentDeletes(SegmentInfoPerCommit info, Iterable<Term> terms, List<QueryAndLimit> queries, List<NumericUpdate> updates, String desc) {
+      this.info = info;
+      this.terms = terms;
+      this.queries = queries;
+      this.updates = updates;
+      this.desc = desc;
+    }
+
+    void open(IndexWriter.ReaderPool readerPool) throws IOException {
+      // Lock order: IW -> BD -> RP
+      assert readerPool.infoIsLive(info);
+      rld = readerPool.get(info, true);
+      boolean success = false;
+      try {
+        reader = rld.getReader(IOContext.READ);
+        success = true;
+      } finally {
+        if (!success) {
+          readerPool.release(rld);
+        }
+      }
+    }
+
+    /** Finds the documents to delete; may run in any thread
+     *  as it only reads this segment's reader, unless
+     *  {@link #deleteDirectly} is set. */
+    void collect() throws IOException {
+      if (terms != null) {
+        collectTermDeletes(terms, reader, this);
+      }
+      collectQueryDeletes(queries, reader, this);
+      if (!updates.isEmpty()) {
+        collectNumericUpdates(updates, reader, this);
+      }
+    }
+
+    void add(int docID) throws IOException {
+      if (deleteDirectly) {
+        if (delCount == 0) {
+          rld.initWritableLiveDocs();
+        }
+        if (rld.delete(docID)) {
+          delCount++;
+        }
+      } else {
+        if (deletedDocs == null) {
+          deletedDocs = new FixedBitSet(reader.maxDoc());
+        }
+        deletedDocs.set(docID);
+      }
+    }
+
+    void addUpdate(int docID, NumericUpdate update) {
+      if (numUpdatedDocIDs == updatedDocIDs.length) {
+        updatedDocIDs = ArrayUtil.grow(updatedDocIDs, numUpdatedDocIDs + 1);
+        updatedBy = Arrays.copyOf(updatedBy, updatedDocIDs.length);
+      }
+      updatedDocIDs[numUpdatedDocIDs] = docID;
+      updatedBy[numUpdatedDocIDs++] = update;
+    }
+
+    /** Deletes and updates the collected documents; changing
+     *  the liveDocs or DocValues requires the IndexWriter
+     *  lock. */
+    void delete() throws IOException {
+      for (int i = 0; i < numUpdatedDocIDs; i++) {
+        final NumericUpdate update = updatedBy[i];
+        rld.updateNumericDocValue(update.field, updatedDocIDs[i], update.value);
+        updateCount++;
+      }
+      if (deletedDocs != null) {
+        rld.initWritableLiveDocs();
+        final DocIdSetIterator it = deletedDocs.iterator();
+        for (int docID = it.nextDoc(); docID != DocIdSetIterator.NO_MORE_DOCS; docID = it.nextDoc()) {
+          if (rld.delete(docID)) {
+            delCount++;
+          }
+        }
+      }
+      final int fullDelCount = rld.info.getDelCount() + rld.getPendingDeleteCount();
+      assert fullDelCount <= rld.info.info.getDocCount();
+      allDeleted = fullDelCount == rld.info.info.getDocCount();
+    }
+
+    void close(IndexWriter.ReaderPool readerPool) throws IOException {
+      try {
+        rld.release(reader);
+      } finally {
+        readerPool.release(rld);
+      }
+    }
+  }
+
   synchronized long getNextGen() {
     return nextGen++;
   }
@@ -355,22 +592,21 @@ class BufferedDeletesStream {
   }
 
   // Delete by Term
-  private synchronized long applyTermDeletes(Iterable<Term> termsIter, ReadersAndLiveDocs rld, SegmentReader reader) throws IOException {
-    long delCount = 0;
+  private static void collectTermDeletes(Iterable<Term> termsIter, SegmentReader reader, SegmentDeletes seg) throws IOException {
     Fields fields = reader.fields();
     if (fields == null) {
       // This reader has no postings
-      return 0;
+      return;
     }
+    final Bits liveDocs = reader.getLiveDocs();
 
     TermsEnum termsEnum = null;
 
     String currentField = null;
     DocsEnum docs = null;
 
-    assert checkDeleteTerm(null);
-
-    boolean any = false;
+    // used only by assert
+    final Term lastDeleteTerm = new Term(null, new BytesRef());
 
     //System.out.println(Thread.currentThread().getName() + " del terms reader=" + reader);
     for (Term term : termsIter) {
@@ -382,7 +618,7 @@ class BufferedDeletesStream {
         currentField = term.field();
         Terms terms = fields.terms(currentField);
         if (terms != null) {
-          termsEnum = terms.iterator(null);
+          termsEnum = terms.iterator(termsEnum);
         } else {
           termsEnum = null;
         }
@@ -391,15 +627,16 @@ class BufferedDeletesStream {
       if (termsEnum == null) {
         continue;
       }
-      assert checkDeleteTerm(term);
+      assert checkDeleteTerm(lastDeleteTerm, term);
 
       // System.out.println("  term=" + term);
 
       if (termsEnum.seekExact(term.bytes(), false)) {
-        DocsEnum docsEnum = termsEnum.docs(rld.getLiveDocs(), docs, false);
+        DocsEnum docsEnum = termsEnum.docs(liveDocs, docs, false);
         //System.out.println("BDS: got docsEnum=" + docsEnum);
 
         if (docsEnum != null) {
+          docs = docsEnum;
           while (true) {
             final int docID = docsEnum.nextDoc();
             //System.out.println(Thread.currentThread().getName() + " del term=" + term + " doc=" + docID);
@@ -411,19 +648,51 @@ class BufferedDeletesStream {
             // because on flush we apply all Term deletes to
             // each segment.  So all Term deleting here is
             // against prior segments:
-            if (!any) {
-              rld.initWritableLiveDocs();
-              any = true;
-            }
-            if (rld.delete(docID)) {
-              delCount++;
-            }
+            seg.add(docID);
           }
         }
       }
     }
+  }
 
-    return delCount;
+  // Update numeric DocValues by Term
+  private static void collectNumericUpdates(List<NumericUpdate> updates, SegmentReader reader, SegmentDeletes seg) throws IOException {
+    Fields fields = reader.fields();
+    if (fields == null) {
+      // This reader has no postings
+      return;
+    }
+    final FieldInfos fieldInfos = reader.getFieldInfos();
+    final Bits liveDocs = reader.getLiveDocs();
+
+    String currentField = null;
+    TermsEnum termsEnum = null;
+    DocsEnum docs = null;
+    for (NumericUpdate update : updates) {
+      final FieldInfo fieldInfo = fieldInfos.fieldInfo(update.field);
+      if (fieldInfo == null || !fieldInfo.hasDocValues() || !NumericDocValuesUpdates.canUpdate(fieldInfo.getDocValuesType())) {
+        // The field can't be updated in this segment
+        continue;
+      }
+      if (!update.term.field().equals(currentField)) {
+        currentField = update.term.field();
+        Terms terms = fields.terms(currentField);
+        termsEnum = terms == null ? null : terms.iterator(termsEnum);
+      }
+      if (termsEnum == null || !termsEnum.seekExact(update.term.bytes(), false)) {
+        continue;
+      }
+      DocsEnum docsEnum = termsEnum.docs(liveDocs, docs, false);
+      if (docsEnum != null) {
+        docs = docsEnum;
+        int docID;
+        // Documents added after the update in the same
+        // segment must keep their value:
+        while ((docID = docsEnum.nextDoc()) < update.docIDUpto) {
+          seg.addUpdate(docID, update);
+        }
+      }
+    }
   }
 
   public static class QueryAndLimit {
@@ -436,10 +705,8 @@ class BufferedDeletesStream {
   }
 
   // Delete by query
-  private static long applyQueryDeletes(Iterable<QueryAndLimit> queriesIter, ReadersAndLiveDocs rld, final SegmentReader reader) throws IOException {
-    long delCount = 0;
+  private static void collectQueryDeletes(Iterable<QueryAndLimit> queriesIter, final SegmentReader reader, SegmentDeletes seg) throws IOException {
     final AtomicReaderContext readerContext = reader.getTopReaderContext();
-    boolean any = false;
     for (QueryAndLimit ent : queriesIter) {
       Query query = ent.query;
       int limit = ent.limit;
@@ -453,29 +720,18 @@ class BufferedDeletesStream {
               break;
             }
 
-            if (!any) {
-              rld.initWritableLiveDocs();
-              any = true;
-            }
-
-            if (rld.delete(doc)) {
-              delCount++;
-            }
+            seg.add(doc);
           }
         }
       }
     }
-
-    return delCount;
   }
 
   // used only by assert
-  private boolean checkDeleteTerm(Term term) {
-    if (term != null) {
-      assert lastDeleteTerm == null || term.compareTo(lastDeleteTerm) > 0: "lastTerm=" + lastDeleteTerm + " vs term=" + term;
-    }
-    // TODO: we re-use term now in our merged iterable, but we shouldn't clone, instead copy for this assert
-    lastDeleteTerm = term == null ? null : new Term(term.field(), BytesRef.deepCopyOf(term.bytes));
+  private static boolean checkDeleteTerm(Term lastTerm, Term term) {
+    assert lastTerm.field() == null || term.compareTo(lastTerm) > 0: "lastTerm=" + lastTerm + " vs term=" + term;
+    // we re-use term in our merged iterable, so copy it for this assert
+    lastTerm.set(term.field(), BytesRef.deepCopyOf(term.bytes()));
     return true;
   }
 
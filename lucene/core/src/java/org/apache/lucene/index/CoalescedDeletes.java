@@ -18,6 +18,7 @@ package org.apache.lucene.index;
  */
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.HashMap;
 import java.util.List;
@@ -30,11 +31,13 @@ import org.apache.lucene.index.BufferedDeletesStream.QueryAndLimit;
 class CoalescedDeletes {
   final Map<Query,Integer> queries = new HashMap<Query,Integer>();
   final List<Iterable<Term>> iterables = new ArrayList<Iterable<Term>>();
+  // numeric updates per packet, newest packet first:
+  final List<NumericUpdate[]> numericUpdates = new ArrayList<NumericUpdate[]>();
 
   @Override
   public String toString() {
     // note: we could add/collect more debugging information
-    return "CoalescedDeletes(termSets=" + iterables.size() + ",queries=" + queries.size() + ")";
+    return "CoalescedDeletes(termSets=" + iterables.size() + ",queries=" + queries.size() + ",numericUpdateSets=" + numericUpdates.size() + ")";
   }
 
   void update(FrozenBufferedDeletes in) {
@@ -44,6 +47,10 @@ class CoalescedDeletes {
       final Query query = in.queries[queryIdx];
       queries.put(query, BufferedDeletes.MAX_INT);
     }
+
+    if (in.numericUpdates.length > 0) {
+      numericUpdates.add(in.numericUpdates);
+    }
   }
 
  public Iterable<Term> termsIterable() {
@@ -59,6 +66,43 @@ class CoalescedDeletes {
    };
   }
 
+  /** Returns a snapshot of the coalesced terms, merged into
+   *  a single sorted list.  The snapshot is not affected by
+   *  later updates, and, unlike {@link #termsIterable}, the
+   *  per-packet terms are merged only once no matter how
+   *  many segments it is applied to. */
+  Iterable<Term> mergedTerms() {
+    if (iterables.isEmpty()) {
+      return Collections.emptyList();
+    } else if (iterables.size() == 1) {
+      return iterables.get(0);
+    }
+    final PrefixCodedTerms.Builder builder = new PrefixCodedTerms.Builder();
+    for (Term term : termsIterable()) {
+      builder.add(term);
+    }
+    return builder.finish();
+  }
+
+  /** Returns a snapshot of the coalesced queries. */
+  List<QueryAndLimit> queries() {
+    final List<QueryAndLimit> snapshot = new ArrayList<QueryAndLimit>(queries.size());
+    for (QueryAndLimit query : queriesIterable()) {
+      snapshot.add(query);
+    }
+    return snapshot;
+  }
+
+  /** Returns a snapshot of the coalesced numeric updates,
+   *  oldest first, ie. in the order they must be applied. */
+  List<NumericUpdate> numericUpdates() {
+    final List<NumericUpdate> snapshot = new ArrayList<NumericUpdate>();
+    for (int i = numericUpdates.size()-1; i >= 0; i--) {
+      Collections.addAll(snapshot, numericUpdates.get(i));
+    }
+    return snapshot;
+  }
+
   public Iterable<QueryAndLimit> queriesIterable() {
     return new Iterable<QueryAndLimit>() {
       
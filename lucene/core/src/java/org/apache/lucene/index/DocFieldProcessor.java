@@ -18,11 +18,18 @@ package org.apache.lucene.index;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.DocValuesConsumer;
@@ -78,22 +85,104 @@ final class DocFieldProcessor extends DocConsumer {
       childFields.put(f.getFieldInfo().name, f);
     }
 
+    final ExecutorService executor = docState.docWriter.parent.flushExecutor;
+    if (executor == null) {
+      flushStoredFields(state);
+      consumer.flush(childFields, state);
+      flushDocValues(state);
+    } else {
+      flushConcurrently(executor, childFields, state);
+    }
+
+    // Important to save after asking consumer to flush so
+    // consumer can alter the FieldInfo* if necessary.  EG,
+    // FreqProxTermsWriter does this with
+    // FieldInfo.storePayload.
+    FieldInfosWriter infosWriter = codec.fieldInfosFormat().getFieldInfosWriter();
+    infosWriter.write(state.directory, state.segmentInfo.name, state.fieldInfos, IOContext.DEFAULT);
+  }
+
+  private void flushStoredFields(SegmentWriteState state) throws IOException {
+    final long t0 = System.nanoTime();
     fieldsWriter.flush(state);
-    consumer.flush(childFields, state);
+    docState.docWriter.flushStats.addPhaseNanos(FlushStats.Phase.STORED_FIELDS, System.nanoTime() - t0);
+  }
 
+  private void flushDocValues(SegmentWriteState state) throws IOException {
+    final long t0 = System.nanoTime();
     for (DocValuesConsumerHolder consumer : docValues.values()) {
       consumer.docValuesConsumer.finish(state.segmentInfo.getDocCount());
     }
     
     // close perDocConsumer during flush to ensure all files are flushed due to PerCodec CFS
     IOUtils.close(perDocConsumer);
+    docState.docWriter.flushStats.addPhaseNanos(FlushStats.Phase.DOC_VALUES, System.nanoTime() - t0);
+  }
 
-    // Important to save after asking consumer to flush so
-    // consumer can alter the FieldInfo* if necessary.  EG,
-    // FreqProxTermsWriter does this with
-    // FieldInfo.storePayload.
-    FieldInfosWriter infosWriter = codec.fieldInfosFormat().getFieldInfosWriter();
-    infosWriter.write(state.directory, state.segmentInfo.name, state.fieldInfos, IOContext.DEFAULT);
+  /** Writes the stored fields and doc values in their own tasks; the
+   *  calling thread flushes the inverted fields and then waits for the
+   *  other parts. */
+  private void flushConcurrently(ExecutorService executor, final Map<String,DocFieldConsumerPerField> childFields,
+                                 final SegmentWriteState state) throws IOException {
+    final List<FutureTask<Void>> futures = new ArrayList<FutureTask<Void>>(2);
+    futures.add(new FutureTask<Void>(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        flushStoredFields(state);
+        return null;
+      }
+    }));
+    futures.add(new FutureTask<Void>(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        flushDocValues(state);
+        return null;
+      }
+    }));
+    for (FutureTask<Void> future : futures) {
+      try {
+        executor.execute(future);
+      } catch (RejectedExecutionException ree) {
+        // eg. the executor was shut down: flush this part ourselves
+        future.run();
+      }
+    }
+
+    // all parts must be done before we return, even if one of them
+    // failed, as they are still writing files of the new segment
+    Throwable th = null;
+    try {
+      consumer.flush(childFields, state);
+    } catch (Throwable t) {
+      th = t;
+    }
+    InterruptedException interrupted = null;
+    for (FutureTask<Void> future : futures) {
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (InterruptedException ie) {
+          // keep waiting, the part is still running
+          interrupted = ie;
+        } catch (ExecutionException ee) {
+          if (th == null) {
+            th = ee.getCause();
+          }
+          break;
+        }
+      }
+    }
+
+    if (interrupted != null) {
+      Thread.currentThread().interrupt();
+    }
+    if (th != null) {
+      if (th instanceof IOException) throw (IOException) th;
+      if (th instanceof RuntimeException) throw (RuntimeException) th;
+      if (th instanceof Error) throw (Error) th;
+      throw new RuntimeException(th);
+    }
   }
 
   @Override
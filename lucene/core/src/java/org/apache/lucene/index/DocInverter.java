@@ -51,7 +51,9 @@ final class DocInverter extends DocFieldConsumer {
     }
 
     consumer.flush(childFieldsToFlush, state);
+    final long t0 = System.nanoTime();
     endConsumer.flush(endChildFieldsToFlush, state);
+    docState.docWriter.flushStats.addPhaseNanos(FlushStats.Phase.NORMS, System.nanoTime() - t0);
   }
 
   @Override
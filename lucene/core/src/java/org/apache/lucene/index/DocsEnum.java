@@ -34,6 +34,65 @@ public abstract class DocsEnum extends DocIdSetIterator {
    *  nor after {@link #nextDoc} returns NO_MORE_DOCS. 
    **/
   public abstract int freq() throws IOException;
+
+  /** Bulk read: reads up to <code>docs.length</code> of the
+   *  following documents into <code>docs</code> and, if
+   *  <code>freqs</code> is not null, their term frequencies
+   *  into <code>freqs</code>, which must be at least as long
+   *  as <code>docs</code>. Only pass <code>freqs</code> if
+   *  this enum was obtained with freqs. Returns the number of
+   *  documents read, which is less than <code>docs.length</code>
+   *  only if the enum is exhausted. Calls to this method may
+   *  be mixed with {@link #nextDoc} and {@link #advance}, but
+   *  {@link #docID} and {@link #freq} are undefined right after
+   *  it.
+   *
+   *  <p>The default implementation calls {@link #nextDoc}
+   *  and {@link #freq} for each document; codecs that decode
+   *  postings in blocks should override it to copy them
+   *  directly.
+   *
+   *  @lucene.experimental */
+  public int read(int[] docs, int[] freqs) throws IOException {
+    int count = 0;
+    while (count < docs.length) {
+      final int doc = nextDoc();
+      if (doc == NO_MORE_DOCS) {
+        break;
+      }
+      docs[count] = doc;
+      if (freqs != null) {
+        freqs[count] = freq();
+      }
+      count++;
+    }
+    return count;
+  }
+
+  /** Shallow advance: moves a separate cursor over the
+   *  skip data, without moving this enum, to the block of
+   *  documents that contains <code>target</code>, and returns
+   *  the last document of that block. {@link #getMaxFreq}
+   *  then returns an upper bound of the term frequencies in
+   *  this block. Targets must not decrease between calls.
+   *
+   *  <p>The default implementation returns {@link #NO_MORE_DOCS},
+   *  ie. all remaining documents form one block.
+   *
+   *  @lucene.experimental */
+  public int advanceShallow(int target) throws IOException {
+    return NO_MORE_DOCS;
+  }
+
+  /** Returns an upper bound of the term frequencies of the
+   *  documents in the block returned by the last call to
+   *  {@link #advanceShallow}. The default implementation
+   *  returns {@link Integer#MAX_VALUE}, ie. no bound is known.
+   *
+   *  @lucene.experimental */
+  public int getMaxFreq() throws IOException {
+    return Integer.MAX_VALUE;
+  }
   
   /** Returns the related attributes. */
   public AttributeSource attributes() {
@@ -20,6 +20,7 @@ package org.apache.lucene.index;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -33,7 +34,9 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.ByteBlockPool.Allocator;
 import org.apache.lucene.util.InfoStream;
+import org.apache.lucene.util.RecyclingByteBlockAllocator;
 
 /**
  * This class accepts multiple added documents and directly
@@ -133,6 +136,15 @@ final class DocumentsWriter {
   final DocumentsWriterFlushControl flushControl;
   
   final Codec codec;
+
+  // shared by all DWPTs; null unless IndexWriterConfig#setByteBlockAllocator was used
+  final Allocator byteBlockAllocator;
+  final RecyclingIntBlockAllocator intBlockAllocator;
+
+  // null unless IndexWriterConfig#setFlushExecutor was used
+  final ExecutorService flushExecutor;
+  final FlushStats flushStats = new FlushStats();
+
   DocumentsWriter(Codec codec, LiveIndexWriterConfig config, Directory directory, IndexWriter writer, FieldNumbers globalFieldNumbers,
       BufferedDeletesStream bufferedDeletesStream) throws IOException {
     this.codec = codec;
@@ -142,6 +154,16 @@ final class DocumentsWriter {
     this.similarity = config.getSimilarity();
     this.perThreadPool = config.getIndexerThreadPool();
     this.chain = config.getIndexingChain();
+    this.byteBlockAllocator = config.getByteBlockAllocator();
+    if (byteBlockAllocator == null) {
+      intBlockAllocator = null;
+    } else {
+      // int blocks have the same size in bytes as byte blocks
+      intBlockAllocator = new RecyclingIntBlockAllocator(byteBlockAllocator instanceof RecyclingByteBlockAllocator
+          ? ((RecyclingByteBlockAllocator) byteBlockAllocator).maxBufferedBlocks()
+          : RecyclingByteBlockAllocator.DEFAULT_BUFFERED_BLOCKS);
+    }
+    this.flushExecutor = config.getFlushExecutor();
     this.perThreadPool.initialize(this, globalFieldNumbers, config);
     flushPolicy = config.getFlushPolicy();
     assert flushPolicy != null;
@@ -169,6 +191,15 @@ final class DocumentsWriter {
     }
   }
 
+  synchronized void updateNumericDocValue(Term term, String field, long value) throws IOException {
+    final DocumentsWriterDeleteQueue deleteQueue = this.deleteQueue;
+    deleteQueue.addNumericUpdate(new NumericUpdate(term, field, value, BufferedDeletes.MAX_INT));
+    flushControl.doOnDelete();
+    if (flushControl.doApplyAllDeletes()) {
+      applyAllDeletes(deleteQueue);
+    }
+  }
+
   DocumentsWriterDeleteQueue currentDeleteSession() {
     return deleteQueue;
   }
@@ -298,7 +329,9 @@ final class DocumentsWriter {
           }
         }
         
+        final long stallStart = System.nanoTime();
         flushControl.waitIfStalled(); // block if stalled
+        flushStats.addStallNanos(System.nanoTime() - stallStart);
       } while (flushControl.numQueuedFlushes() != 0); // still queued DWPTs try help flushing
 
       if (infoStream.isEnabled("DW")) {
@@ -371,7 +371,8 @@ final class DocumentsWriterFlushControl implements MemoryController {
   }
   
   public long getDeleteBytesUsed() {
-    return documentsWriter.deleteQueue.bytesUsed() + documentsWriter.indexWriter.bufferedDeletesStream.bytesUsed();
+    return documentsWriter.deleteQueue.bytesUsed() + documentsWriter.indexWriter.bufferedDeletesStream.bytesUsed()
+        + documentsWriter.indexWriter.numericUpdatesBytesUsed.get();
   }
 
   synchronized int numFlushingDWPT() {
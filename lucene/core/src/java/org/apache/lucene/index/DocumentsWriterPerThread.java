@@ -77,7 +77,7 @@ class DocumentsWriterPerThread {
     // Build up indexing chain:
 
       final TermsHashConsumer termVectorsWriter = new TermVectorsConsumer(documentsWriterPerThread);
-      final TermsHashConsumer freqProxWriter = new FreqProxTermsWriter();
+      final TermsHashConsumer freqProxWriter = new FreqProxTermsWriter(documentsWriterPerThread);
 
       final InvertedDocConsumer  termsHash = new TermsHash(documentsWriterPerThread, freqProxWriter, true,
                                                            new TermsHash(documentsWriterPerThread, termVectorsWriter, false, null));
@@ -169,6 +169,8 @@ class DocumentsWriterPerThread {
   final Counter bytesUsed;
   
   SegmentWriteState flushState;
+  // timings of the current or last flush
+  FlushStats flushStats;
   //Deletes for our still-in-RAM (to be flushed next) segment
   BufferedDeletes pendingDeletes;  
   SegmentInfo segmentInfo;     // Current segment we are working on
@@ -196,8 +198,11 @@ class DocumentsWriterPerThread {
     this.codec = parent.codec;
     this.docState = new DocState(this, infoStream);
     this.docState.similarity = parent.indexWriter.getConfig().getSimilarity();
-    bytesUsed = Counter.newCounter();
-    byteBlockAllocator = new DirectTrackingAllocator(bytesUsed);
+    // with a flush executor, several threads release memory while flushing
+    bytesUsed = Counter.newCounter(parent.flushExecutor != null);
+    byteBlockAllocator = parent.byteBlockAllocator == null
+      ? new DirectTrackingAllocator(bytesUsed)
+      : new TrackingAllocator(parent.byteBlockAllocator, bytesUsed);
     consumer = indexingChain.getChain(this);
     pendingDeletes = new BufferedDeletes();
     initialize();
@@ -444,6 +449,8 @@ class DocumentsWriterPerThread {
   FlushedSegment flush() throws IOException {
     assert numDocsInRAM > 0;
     assert deleteSlice == null : "all deletes must be applied in prepareFlush";
+    final long flushStart = System.nanoTime();
+    flushStats = new FlushStats();
     segmentInfo.setDocCount(numDocsInRAM);
     flushState = new SegmentWriteState(infoStream, directory, segmentInfo, fieldInfos.finish(),
         writer.getConfig().getTermIndexInterval(),
@@ -496,8 +503,14 @@ class DocumentsWriterPerThread {
 
       flushedDocCount += flushState.segmentInfo.getDocCount();
 
+      flushStats.addFlush(flushState.segmentInfo.getDocCount(), System.nanoTime() - flushStart);
+      parent.flushStats.add(flushStats);
+      if (infoStream.isEnabled("DWPT")) {
+        infoStream.message("DWPT", "flush timings: " + flushStats.flushTimingsToString());
+      }
+
       final BufferedDeletes segmentDeletes;
-      if (pendingDeletes.queries.isEmpty()) {
+      if (pendingDeletes.queries.isEmpty() && pendingDeletes.numericUpdates.isEmpty()) {
         pendingDeletes.clear();
         segmentDeletes = null;
       } else {
@@ -558,13 +571,46 @@ class DocumentsWriterPerThread {
 
   /* Allocate another int[] from the shared pool */
   int[] getIntBlock() {
-    int[] b = new int[INT_BLOCK_SIZE];
+    final RecyclingIntBlockAllocator allocator = parent.intBlockAllocator;
+    int[] b = allocator == null ? new int[INT_BLOCK_SIZE] : allocator.getIntBlock();
     bytesUsed.addAndGet(INT_BLOCK_SIZE*RamUsageEstimator.NUM_BYTES_INT);
     return b;
   }
   
-  void recycleIntBlocks(int[][] blocks, int offset, int length) {
-    bytesUsed.addAndGet(-(length *(INT_BLOCK_SIZE*RamUsageEstimator.NUM_BYTES_INT)));
+  void recycleIntBlocks(int[][] blocks, int start, int end) {
+    bytesUsed.addAndGet(-((end - start) *(INT_BLOCK_SIZE*RamUsageEstimator.NUM_BYTES_INT)));
+    final RecyclingIntBlockAllocator allocator = parent.intBlockAllocator;
+    if (allocator != null) {
+      allocator.recycleIntBlocks(blocks, start, end);
+    }
+  }
+
+  /** Takes byte blocks from the writer's shared {@link Allocator}
+   *  and accounts for them in this DWPT's {@link #bytesUsed}, which
+   *  is what {@link DocumentsWriterFlushControl} sees. */
+  private static final class TrackingAllocator extends Allocator {
+    private final Allocator in;
+    private final Counter bytesUsed;
+
+    TrackingAllocator(Allocator in, Counter bytesUsed) {
+      super(BYTE_BLOCK_SIZE);
+      this.in = in;
+      this.bytesUsed = bytesUsed;
+    }
+
+    @Override
+    public byte[] getByteBlock() {
+      final byte[] b = in.getByteBlock();
+      assert b.length == blockSize : "allocator must hand out blocks of ByteBlockPool.BYTE_BLOCK_SIZE bytes";
+      bytesUsed.addAndGet(blockSize);
+      return b;
+    }
+
+    @Override
+    public void recycleByteBlocks(byte[][] blocks, int start, int end) {
+      bytesUsed.addAndGet(-((end-start)* blockSize));
+      in.recycleByteBlocks(blocks, start, end);
+    }
   }
 
   PerDocWriteState newPerDocWriteState(String segmentSuffix) {
@@ -238,6 +238,26 @@ public class FilterAtomicReader extends AtomicReader {
     public int advance(int target) throws IOException {
       return in.advance(target);
     }
+
+    @Override
+    public int read(int[] docs, int[] freqs) throws IOException {
+      return in.read(docs, freqs);
+    }
+
+    @Override
+    public int advanceShallow(int target) throws IOException {
+      return in.advanceShallow(target);
+    }
+
+    @Override
+    public int getMaxFreq() throws IOException {
+      return in.getMaxFreq();
+    }
+
+    @Override
+    public long cost() {
+      return in.cost();
+    }
     
     @Override
     public AttributeSource attributes() {
@@ -273,6 +293,26 @@ public class FilterAtomicReader extends AtomicReader {
       return in.advance(target);
     }
 
+    @Override
+    public int read(int[] docs, int[] freqs) throws IOException {
+      return in.read(docs, freqs);
+    }
+
+    @Override
+    public int advanceShallow(int target) throws IOException {
+      return in.advanceShallow(target);
+    }
+
+    @Override
+    public int getMaxFreq() throws IOException {
+      return in.getMaxFreq();
+    }
+
+    @Override
+    public long cost() {
+      return in.cost();
+    }
+
     @Override
     public int nextPosition() throws IOException {
       return in.nextPosition();
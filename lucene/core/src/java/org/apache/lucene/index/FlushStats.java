@@ -0,0 +1,145 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cumulative counts and timings of the segments an {@link IndexWriter}
+ * flushed, as returned by {@link IndexWriter#getFlushStats()}. The time of
+ * a flush is broken down into the {@link Phase}s that write the parts of
+ * the new segment. With a flush executor (see
+ * {@link IndexWriterConfig#setFlushExecutor}) several phases of a flush
+ * run at the same time, so the sum of the phase times can exceed the
+ * flush time.
+ * <p>
+ * The stall time is the time indexing threads spent blocked because
+ * flushing could not keep up with indexing. All values are updated
+ * while the writer is in use, and never reset.
+ *
+ * @lucene.experimental
+ */
+public final class FlushStats {
+
+  /** The parts of a segment which are timed while it is flushed. */
+  public static enum Phase {
+    /** Finishing the stored fields, which are written while indexing. */
+    STORED_FIELDS,
+    /** Writing the postings of all fields, including applying deletes by term. */
+    POSTINGS,
+    /** Finishing the term vectors, which are written while indexing. */
+    TERM_VECTORS,
+    /** Writing the norms. */
+    NORMS,
+    /** Writing the doc values. */
+    DOC_VALUES,
+    /** Building the compound file, if the segment uses one. */
+    COMPOUND_FILE
+  }
+
+  private static final Phase[] PHASES = Phase.values();
+
+  private final AtomicLong flushCount = new AtomicLong();
+  private final AtomicLong flushedDocCount = new AtomicLong();
+  private final AtomicLong flushNanos = new AtomicLong();
+  private final AtomicLong stallNanos = new AtomicLong();
+  private final AtomicLongArray phaseNanos = new AtomicLongArray(PHASES.length);
+
+  FlushStats() {
+  }
+
+  void addFlush(int numDocs, long nanos) {
+    flushCount.incrementAndGet();
+    flushedDocCount.addAndGet(numDocs);
+    flushNanos.addAndGet(nanos);
+  }
+
+  void addPhaseNanos(Phase phase, long nanos) {
+    phaseNanos.addAndGet(phase.ordinal(), nanos);
+  }
+
+  void addStallNanos(long nanos) {
+    stallNanos.addAndGet(nanos);
+  }
+
+  /** Adds all counts and timings of <code>other</code> to this instance. */
+  void add(FlushStats other) {
+    flushCount.addAndGet(other.getFlushCount());
+    flushedDocCount.addAndGet(other.getFlushedDocCount());
+    flushNanos.addAndGet(other.getFlushNanos());
+    stallNanos.addAndGet(other.getStallNanos());
+    for (Phase phase : PHASES) {
+      addPhaseNanos(phase, other.getPhaseNanos(phase));
+    }
+  }
+
+  /** Returns the number of segments that were flushed. */
+  public long getFlushCount() {
+    return flushCount.get();
+  }
+
+  /** Returns the number of documents in all flushed segments. */
+  public long getFlushedDocCount() {
+    return flushedDocCount.get();
+  }
+
+  /**
+   * Returns the total time, in nanoseconds, spent writing flushed
+   * segments. This does not include building compound files.
+   */
+  public long getFlushNanos() {
+    return flushNanos.get();
+  }
+
+  /** Returns the total time, in nanoseconds, spent in the given phase. */
+  public long getPhaseNanos(Phase phase) {
+    return phaseNanos.get(phase.ordinal());
+  }
+
+  /**
+   * Returns the total time, in nanoseconds, indexing threads waited
+   * because too many segments were pending flush.
+   */
+  public long getStallNanos() {
+    return stallNanos.get();
+  }
+
+  /**
+   * Returns the counts and timings of the flushes, without the stall
+   * time: stalls are only recorded in the stats of the whole writer.
+   */
+  String flushTimingsToString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("flushes=").append(getFlushCount());
+    sb.append(" docs=").append(getFlushedDocCount());
+    sb.append(" flush=").append(TimeUnit.NANOSECONDS.toMillis(getFlushNanos())).append(" msec");
+    for (Phase phase : PHASES) {
+      sb.append(' ').append(phase.name().toLowerCase(Locale.ROOT)).append('=')
+        .append(TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(phase))).append(" msec");
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public String toString() {
+    return flushTimingsToString() + " stalled=" + TimeUnit.NANOSECONDS.toMillis(getStallNanos()) + " msec";
+  }
+}
@@ -29,6 +29,12 @@ import org.apache.lucene.util.IOUtils;
 
 final class FreqProxTermsWriter extends TermsHashConsumer {
 
+  final DocumentsWriterPerThread docWriter;
+
+  public FreqProxTermsWriter(DocumentsWriterPerThread docWriter) {
+    this.docWriter = docWriter;
+  }
+
   @Override
   void abort() {}
 
@@ -39,6 +45,7 @@ final class FreqProxTermsWriter extends TermsHashConsumer {
 
   @Override
   public void flush(Map<String,TermsHashConsumerPerField> fieldsToFlush, final SegmentWriteState state) throws IOException {
+    final long t0 = System.nanoTime();
 
     // Gather all FieldData's that have postings, across all
     // ThreadStates
@@ -94,7 +101,7 @@ final class FreqProxTermsWriter extends TermsHashConsumer {
       }
       
       if (termsHash != null) {
-        termsHash.reset();
+        termsHash.dropBuffersAndReset();
       }
       success = true;
     } finally {
@@ -104,6 +111,7 @@ final class FreqProxTermsWriter extends TermsHashConsumer {
         IOUtils.closeWhileHandlingException(consumer);
       }
     }
+    docWriter.flushStats.addPhaseNanos(FlushStats.Phase.POSTINGS, System.nanoTime() - t0);
   }
 
   BytesRef payload;
@@ -25,7 +25,8 @@ import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.index.BufferedDeletesStream.QueryAndLimit;
 
-/** Holds buffered deletes by term or query, once pushed.
+/** Holds buffered deletes by term or query, and numeric
+ *  DocValues updates, once pushed.
  *  Pushed deletes are write-once, so we shift to more
  *  memory efficient data structure to hold them.  We don't
  *  hold docIDs because these are applied on flush. */
@@ -35,6 +36,10 @@ class FrozenBufferedDeletes {
   /* Query we often undercount (say 24 bytes), plus int. */
   final static int BYTES_PER_DEL_QUERY = RamUsageEstimator.NUM_BYTES_OBJECT_REF + RamUsageEstimator.NUM_BYTES_INT + 24;
 
+  /* NumericUpdate (OBJ_HEADER + 2*POINTER + LONG + INT),
+     plus array slot; the Term is shared, say 24 bytes. */
+  final static int BYTES_PER_NUMERIC_UPDATE = RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + 3*RamUsageEstimator.NUM_BYTES_OBJECT_REF + RamUsageEstimator.NUM_BYTES_LONG + RamUsageEstimator.NUM_BYTES_INT + 24;
+
   // Terms, in sorted order:
   final PrefixCodedTerms terms;
   int termCount; // just for debugging
@@ -43,17 +48,21 @@ class FrozenBufferedDeletes {
   // each
   final Query[] queries;
   final int[] queryLimits;
+
+  // Numeric DocValues updates, in the order to apply them;
+  // each carries its docIDUpto:
+  final NumericUpdate[] numericUpdates;
   final int bytesUsed;
   final int numTermDeletes;
   private long gen = -1; // assigned by BufferedDeletesStream once pushed
   final boolean isSegmentPrivate;  // set to true iff this frozen packet represents 
                                    // a segment private deletes. in that case is should
-                                   // only have Queries 
+                                   // only have Queries and numeric updates
 
 
   public FrozenBufferedDeletes(BufferedDeletes deletes, boolean isSegmentPrivate) {
     this.isSegmentPrivate = isSegmentPrivate;
-    assert !isSegmentPrivate || deletes.terms.size() == 0 : "segment private package should only have del queries"; 
+    assert !isSegmentPrivate || deletes.terms.size() == 0 : "segment private package should only have del queries and numeric updates"; 
     Term termsArray[] = deletes.terms.keySet().toArray(new Term[deletes.terms.size()]);
     termCount = termsArray.length;
     ArrayUtil.mergeSort(termsArray);
@@ -72,7 +81,17 @@ class FrozenBufferedDeletes {
       upto++;
     }
 
-    bytesUsed = (int) terms.getSizeInBytes() + queries.length * BYTES_PER_DEL_QUERY;
+    numericUpdates = new NumericUpdate[deletes.numNumericUpdates.get()];
+    upto = 0;
+    for (Map<Term,NumericUpdate> fieldUpdates : deletes.numericUpdates.values()) {
+      for (NumericUpdate update : fieldUpdates.values()) {
+        numericUpdates[upto++] = update;
+      }
+    }
+    assert upto == numericUpdates.length;
+
+    bytesUsed = (int) terms.getSizeInBytes() + queries.length * BYTES_PER_DEL_QUERY
+      + numericUpdates.length * BYTES_PER_NUMERIC_UPDATE;
     numTermDeletes = deletes.numTermDeletes.get();
   }
   
@@ -132,6 +151,9 @@ class FrozenBufferedDeletes {
     if (queries.length != 0) {
       s += " " + queries.length + " deleted queries";
     }
+    if (numericUpdates.length != 0) {
+      s += " " + numericUpdates.length + " numeric updates";
+    }
     if (bytesUsed != 0) {
       s += " bytesUsed=" + bytesUsed;
     }
@@ -140,6 +162,6 @@ class FrozenBufferedDeletes {
   }
   
   boolean any() {
-    return termCount > 0 || queries.length > 0;
+    return termCount > 0 || queries.length > 0 || numericUpdates.length > 0;
   }
 }
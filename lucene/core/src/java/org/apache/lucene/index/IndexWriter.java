@@ -30,6 +30,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.codecs.Codec;
@@ -37,6 +38,7 @@ import org.apache.lucene.index.DocumentsWriterPerThread.FlushedSegment;
 import org.apache.lucene.index.FieldInfos.FieldNumbers;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.index.MergeState.CheckAbort;
+import org.apache.lucene.index.NumericDocValuesUpdates.FieldUpdates;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.CompoundFileDirectory;
@@ -242,6 +244,10 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
   final AtomicInteger flushCount = new AtomicInteger();
   final AtomicInteger flushDeletesCount = new AtomicInteger();
 
+  // RAM used by the numeric DocValues updates held by the
+  // pooled readers:
+  final AtomicLong numericUpdatesBytesUsed = new AtomicLong();
+
   final ReaderPool readerPool = new ReaderPool();
   final BufferedDeletesStream bufferedDeletesStream;
 
@@ -473,6 +479,23 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
       assert readerMap.size() == 0;
     }
 
+    /** Writes the pending numeric DocValues updates (and
+     *  deletes) of the pooled readers, and drops all
+     *  numeric DocValues updates from RAM; they are read
+     *  back when needed. */
+    synchronized void dropNumericUpdates() throws IOException {
+      for (ReadersAndLiveDocs rld : readerMap.values()) {
+        if (rld.hasPendingNumericUpdates() && rld.writeLiveDocs(directory)) {
+          // Make sure we only write updates for a live segment:
+          assert infoIsLive(rld.info);
+          // Must checkpoint w/ deleter, because we just
+          // created new _X_N.dvu file.
+          deleter.checkpoint(segmentInfos, false);
+        }
+        rld.dropNumericUpdates();
+      }
+    }
+
     /**
      * Commit live docs changes for the segment readers for
      * the provided infos.
@@ -595,7 +618,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
     mergeScheduler = config.getMergeScheduler();
     codec = config.getCodec();
 
-    bufferedDeletesStream = new BufferedDeletesStream(infoStream);
+    bufferedDeletesStream = new BufferedDeletesStream(infoStream, config.getFlushExecutor());
     poolReaders = config.getReaderPooling();
 
     writeLock = directory.makeLock(WRITE_LOCK_NAME);
@@ -1340,6 +1363,49 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
     }
   }
 
+  /**
+   * Updates a numeric DocValues field, in place, to the
+   * given value for all document(s) containing
+   * <code>term</code>, without re-indexing the documents.
+   * Like deletes, updates are buffered and only applied to
+   * the already indexed documents, and to documents added
+   * before this call; they are visible to readers opened
+   * afterwards, including near-real-time readers.
+   * Only the updated documents and their values are kept,
+   * in RAM that counts against the RAM buffer until they
+   * are written to a new generation file of each segment,
+   * on commit or when they use more than half the RAM
+   * buffer; they are merged like the indexed values.
+   *
+   * <p>Only fields which were indexed with DocValues of
+   * type {@link DocValues.Type#VAR_INTS} or {@link
+   * DocValues.Type#FIXED_INTS_64} can be updated; in
+   * segments where the field has another type or no
+   * DocValues the update is ignored.  Documents of such a
+   * segment that don't have a value for the field read as
+   * 0 before they are updated.</p>
+   *
+   * <p><b>NOTE</b>: if this method hits an OutOfMemoryError
+   * you should immediately close the writer.  See <a
+   * href="#OOME">above</a> for details.</p>
+   *
+   * @param term the term to identify the documents to be updated
+   * @param field the numeric DocValues field to update
+   * @param value the new value of the field
+   * @throws CorruptIndexException if the index is corrupt
+   * @throws IOException if there is a low-level IO error
+   *
+   * @lucene.experimental
+   */
+  public void updateNumericDocValue(Term term, String field, long value) throws CorruptIndexException, IOException {
+    ensureOpen();
+    try {
+      docWriter.updateNumericDocValue(term, field, value);
+    } catch (OutOfMemoryError oom) {
+      handleOOM(oom, "updateNumericDocValue");
+    }
+  }
+
   // for test purpose
   final synchronized int getSegmentCount(){
     return segmentInfos.size();
@@ -1760,6 +1826,17 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
     }
   }
 
+  /**
+   * Expert: returns the number of merges that were registered
+   * by the MergePolicy but not yet handed to the
+   * {@link MergeScheduler} by {@link #getNextMerge}.
+   *
+   * @lucene.experimental
+   */
+  public synchronized int getPendingMergeCount() {
+    return pendingMerges.size();
+  }
+
   /**
    * Close the <code>IndexWriter</code> without committing
    * any changes that have occurred since the last commit
@@ -2019,8 +2096,10 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
       if (useCompoundFile(newSegment)) {
 
         // Now build compound file
+        final long t0 = System.nanoTime();
         Collection<String> oldFiles = createCompoundFile(infoStream, directory, MergeState.CheckAbort.NONE, newSegment.info, context);
         newSegment.info.setUseCompoundFile(true);
+        docWriter.flushStats.addPhaseNanos(FlushStats.Phase.COMPOUND_FILE, System.nanoTime() - t0);
         
         synchronized(this) {
           deleter.deleteNewFiles(oldFiles);
@@ -2281,7 +2360,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
 
       SegmentMerger merger = new SegmentMerger(info, infoStream, trackingDir, config.getTermIndexInterval(),
                                                MergeState.CheckAbort.NONE, payloadProcessorProvider,
-                                               globalFieldNumberMap, context);
+                                               globalFieldNumberMap, context, config.getMergeExecutor());
 
       for (IndexReader reader : readers) {    // add new indexes
         merger.add(reader);
@@ -2379,7 +2458,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
     SegmentInfo newInfo = new SegmentInfo(directory, info.info.getVersion(), segName, info.info.getDocCount(),
                                           info.info.getUseCompoundFile(),
                                           info.info.getCodec(), info.info.getDiagnostics(), attributes);
-    SegmentInfoPerCommit newInfoPerCommit = new SegmentInfoPerCommit(newInfo, info.getDelCount(), info.getDelGen());
+    SegmentInfoPerCommit newInfoPerCommit = new SegmentInfoPerCommit(newInfo, info.getDelCount(), info.getDelGen(), info.getUpdatesGen());
 
     Set<String> segFiles = new HashSet<String>();
 
@@ -2798,6 +2877,19 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
       checkpoint();
     }
     bufferedDeletesStream.prune(segmentInfos);
+
+    // Numeric DocValues updates are held by the pooled
+    // readers until they are written; if they use more
+    // than half the RAM buffer, write them now so that
+    // they don't keep triggering flushes:
+    final double ramBufferSizeMB = config.getRAMBufferSizeMB();
+    if (ramBufferSizeMB != IndexWriterConfig.DISABLE_AUTO_FLUSH &&
+        numericUpdatesBytesUsed.get() > (1024*1024*ramBufferSizeMB/2)) {
+      if (infoStream.isEnabled("IW")) {
+        infoStream.message("IW", "write numeric updates bytesUsed=" + numericUpdatesBytesUsed.get() + " vs ramBuffer=" + (1024*1024*ramBufferSizeMB));
+      }
+      readerPool.dropNumericUpdates();
+    }
   }
 
   /** Expert:  Return the total size of all index files currently cached in memory.
@@ -2805,7 +2897,20 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
    */
   public final long ramSizeInBytes() {
     ensureOpen();
-    return docWriter.flushControl.netBytes() + bufferedDeletesStream.bytesUsed();
+    return docWriter.flushControl.netBytes() + bufferedDeletesStream.bytesUsed() + numericUpdatesBytesUsed.get();
+  }
+
+  /**
+   * Expert: returns the counts and timings of all segments this writer
+   * flushed so far, broken down by the parts of the segments, and the time
+   * indexing threads were stalled waiting for flushes. The returned
+   * instance is updated while this writer is in use.
+   *
+   * @lucene.experimental
+   */
+  public FlushStats getFlushStats() {
+    ensureOpen(false);
+    return docWriter.flushStats;
   }
   
   // for testing only
@@ -2839,7 +2944,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
    *  saves the resulting deletes file (incrementing the
    *  delete generation for merge.info).  If no deletes were
    *  flushed, no new deletes file is saved. */
-  synchronized private ReadersAndLiveDocs commitMergedDeletes(MergePolicy.OneMerge merge) throws IOException {
+  synchronized private ReadersAndLiveDocs commitMergedDeletes(MergePolicy.OneMerge merge, MergeState mergeState) throws IOException {
 
     assert testPoint("startCommitMergeDeletes");
 
@@ -2856,6 +2961,9 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
 
     // Lazy init (only when we find a delete to carry over):
     ReadersAndLiveDocs mergedDeletes = null;
+    // maps the doc IDs of a merge in segment order to the merged doc IDs
+    final MergePolicy.DocMap docMap = merge.getDocMap(mergeState);
+    assert docMap.isConsistent(merge.info.info.getDocCount());
 
     for(int i=0; i < sourceSegments.size(); i++) {
       SegmentInfoPerCommit info = sourceSegments.get(i);
@@ -2902,7 +3010,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
                   mergedDeletes = readerPool.get(merge.info, true);
                   mergedDeletes.initWritableLiveDocs();
                 }
-                mergedDeletes.delete(docUpto);
+                mergedDeletes.delete(docMap.map(docUpto));
               }
               docUpto++;
             }
@@ -2920,7 +3028,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
               mergedDeletes = readerPool.get(merge.info, true);
               mergedDeletes.initWritableLiveDocs();
             }
-            mergedDeletes.delete(docUpto);
+            mergedDeletes.delete(docMap.map(docUpto));
           }
           docUpto++;
         }
@@ -2932,11 +3040,14 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
 
     assert docUpto == merge.info.info.getDocCount();
 
+    mergedDeletes = mergeNumericUpdates(merge, mergeState, docMap, mergedDeletes);
+
     if (infoStream.isEnabled("IW")) {
       if (mergedDeletes == null) {
-        infoStream.message("IW", "no new deletes since merge started");
+        infoStream.message("IW", "no new deletes or numeric updates since merge started");
       } else {
-        infoStream.message("IW", mergedDeletes.getPendingDeleteCount() + " new deletes since merge started");
+        infoStream.message("IW", mergedDeletes.getPendingDeleteCount() + " new deletes since merge started"
+                           + (mergedDeletes.hasPendingNumericUpdates() ? "; new numeric updates" : ""));
       }
     }
 
@@ -2952,7 +3063,77 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
     return mergedDeletes;
   }
 
-  synchronized private boolean commitMerge(MergePolicy.OneMerge merge) throws IOException {
+  /** Carries over the numeric DocValues updates that were
+   *  applied to the merged segments while the merge was
+   *  running onto the newly merged segment; returns the
+   *  merged segment's ReadersAndLiveDocs, which is
+   *  obtained from the pool if it's still null and any
+   *  update must be carried over. */
+  synchronized private ReadersAndLiveDocs mergeNumericUpdates(MergePolicy.OneMerge merge, MergeState mergeState, MergePolicy.DocMap docMap, ReadersAndLiveDocs mergedDeletes) throws IOException {
+    final List<SegmentInfoPerCommit> sourceSegments = merge.segments;
+    int docBase = 0;
+    for(int i=0; i < sourceSegments.size(); i++) {
+      final SegmentReader reader = merge.readers.get(i);
+      final ReadersAndLiveDocs rld = readerPool.get(sourceSegments.get(i), false);
+      assert rld != null;
+      final Map<String,FieldUpdates> current = rld.getReadOnlyNumericUpdates();
+      final Map<String,FieldUpdates> prev = reader.getNumericUpdates();
+      for (Map.Entry<String,FieldUpdates> ent : current.entrySet()) {
+        final String field = ent.getKey();
+        final FieldUpdates prevUpdates = prev.get(field);
+        final FieldUpdates updates = ent.getValue();
+        // FieldUpdates are replaced when they change:
+        if (prevUpdates == updates) {
+          continue;
+        }
+        final FieldInfo fieldInfo = mergeState.fieldInfos.fieldInfo(field);
+        if (fieldInfo == null || !fieldInfo.hasDocValues() || !NumericDocValuesUpdates.canUpdate(fieldInfo.getDocValuesType())) {
+          if (infoStream.isEnabled("IW")) {
+            infoStream.message("IW", "drop numeric updates of field " + field + ": merged type " + (fieldInfo == null ? null : fieldInfo.getDocValuesType()) + " can't be updated");
+          }
+          continue;
+        }
+        // Only documents that were live when the merge
+        // started were merged; walk them alongside the
+        // sorted updates to find their new docIDs:
+        final Bits prevLiveDocs = merge.readerLiveDocs.get(i);
+        int docUpto = docBase;
+        int lastDoc = 0;
+        for (int j = 0; j < updates.size(); j++) {
+          final int doc = updates.doc(j);
+          if (prevLiveDocs == null) {
+            docUpto = docBase + doc;
+          } else {
+            for (; lastDoc < doc; lastDoc++) {
+              if (prevLiveDocs.get(lastDoc)) {
+                docUpto++;
+              }
+            }
+            if (!prevLiveDocs.get(doc)) {
+              continue;
+            }
+          }
+          final long value = updates.value(j);
+          if (prevUpdates != null) {
+            final int index = prevUpdates.indexOf(doc);
+            if (index >= 0 && prevUpdates.value(index) == value) {
+              // Already merged
+              continue;
+            }
+          }
+          if (mergedDeletes == null) {
+            mergedDeletes = readerPool.get(merge.info, true);
+          }
+          mergedDeletes.updateNumericDocValue(field, docMap.map(docUpto), value);
+        }
+      }
+      docBase += reader.numDocs();
+    }
+    assert docBase == merge.info.info.getDocCount();
+    return mergedDeletes;
+  }
+
+  synchronized private boolean commitMerge(MergePolicy.OneMerge merge, MergeState mergeState) throws IOException {
 
     assert testPoint("startCommitMerge");
 
@@ -2979,9 +3160,9 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
       return false;
     }
 
-    final ReadersAndLiveDocs mergedDeletes =  merge.info.info.getDocCount() == 0 ? null : commitMergedDeletes(merge);
+    final ReadersAndLiveDocs mergedDeletes =  merge.info.info.getDocCount() == 0 ? null : commitMergedDeletes(merge, mergeState);
 
-    assert mergedDeletes == null || mergedDeletes.getPendingDeleteCount() != 0;
+    assert mergedDeletes == null || mergedDeletes.getPendingDeleteCount() != 0 || mergedDeletes.hasPendingNumericUpdates();
 
     // If the doc store we are using has been closed and
     // is in now compound format (but wasn't when we
@@ -3282,15 +3463,14 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
     // names.
     final String mergeSegmentName = newSegmentName();
     SegmentInfo si = new SegmentInfo(directory, Constants.LUCENE_MAIN_VERSION, mergeSegmentName, -1, false, codec, null, null);
-    merge.info = new SegmentInfoPerCommit(si, 0, -1L);
-
-    // Lock order: IW -> BD
-    bufferedDeletesStream.prune(segmentInfos);
-
     Map<String,String> details = new HashMap<String,String>();
     details.put("mergeMaxNumSegments", ""+merge.maxNumSegments);
     details.put("mergeFactor", Integer.toString(merge.segments.size()));
     setDiagnostics(si, "merge", details);
+    merge.setInfo(new SegmentInfoPerCommit(si, 0, -1L));
+
+    // Lock order: IW -> BD
+    bufferedDeletesStream.prune(segmentInfos);
 
     if (infoStream.isEnabled("IW")) {
       infoStream.message("IW", "merge seg=" + merge.info.info.name);
@@ -3404,7 +3584,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
     final TrackingDirectoryWrapper dirWrapper = new TrackingDirectoryWrapper(directory);
 
     SegmentMerger merger = new SegmentMerger(merge.info.info, infoStream, dirWrapper, config.getTermIndexInterval(), checkAbort,
-                                             payloadProcessorProvider, globalFieldNumberMap, context);
+                                             payloadProcessorProvider, globalFieldNumberMap, context, config.getMergeExecutor());
 
     if (infoStream.isEnabled("IW")) {
       infoStream.message("IW", "merging " + segString(merge.segments));
@@ -3425,12 +3605,14 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
         // Hold onto the "live" reader; we will use this to
         // commit merged deletes
         final ReadersAndLiveDocs rld = readerPool.get(info, true);
-        final SegmentReader reader = rld.getMergeReader(context);
+        SegmentReader reader = rld.getMergeReader(context);
         assert reader != null;
 
-        // Carefully pull the most recent live docs:
+        // Carefully pull the most recent live docs and
+        // numeric updates:
         final Bits liveDocs;
         final int delCount;
+        final Map<String,FieldUpdates> numericUpdates;
 
         synchronized(this) {
           // Must sync to ensure BufferedDeletesStream
@@ -3438,6 +3620,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
           // we pull a copy:
           liveDocs = rld.getReadOnlyLiveDocs();
           delCount = rld.getPendingDeleteCount() + info.getDelCount();
+          numericUpdates = rld.getReadOnlyNumericUpdates();
 
           assert rld.verifyDocCounts();
 
@@ -3451,15 +3634,37 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
             }
           }
         }
-        merge.readerLiveDocs.add(liveDocs);
-        merge.readers.add(reader);
         assert delCount <= info.info.getDocCount(): "delCount=" + delCount + " info.docCount=" + info.info.getDocCount() + " rld.pendingDeleteCount=" + rld.getPendingDeleteCount() + " info.getDelCount()=" + info.getDelCount();
-        if (delCount < info.info.getDocCount()) {
-          merger.add(reader, liveDocs, delCount);
+
+        // Deletes or updates might have happened after we pulled the merge
+        // reader and before we got a read-only copy of the segment's live
+        // docs; in that case make a reader which shares the core but has
+        // these live docs and updates, so that the merge readers match what
+        // is merged:
+        if (reader.numDeletedDocs() != delCount || !numericUpdates.isEmpty()) {
+          assert delCount >= reader.numDeletedDocs();
+          final SegmentReader newReader = new SegmentReader(info, reader.core, liveDocs, info.info.getDocCount() - delCount, numericUpdates);
+          boolean released = false;
+          try {
+            rld.release(reader);
+            released = true;
+          } finally {
+            if (!released) {
+              newReader.decRef();
+            }
+          }
+          reader = newReader;
         }
+
+        merge.readerLiveDocs.add(liveDocs);
+        merge.readers.add(reader);
         segUpto++;
       }
 
+      for (AtomicReader reader : merge.getMergeReaders()) {
+        merger.add(reader);
+      }
+
       merge.checkAborted(directory);
 
       // This is where all the work happens:
@@ -3591,7 +3796,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit {
 
       // Force READ context because we merge deletes onto
       // this reader:
-      if (!commitMerge(merge)) {
+      if (!commitMerge(merge, mergeState)) {
         // commitMerge will return false if this merge was aborted
         return 0;
       }
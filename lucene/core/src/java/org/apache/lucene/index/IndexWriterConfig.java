@@ -18,6 +18,7 @@ package org.apache.lucene.index;
  */
 
 import java.io.PrintStream;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.codecs.Codec;
@@ -25,8 +26,10 @@ import org.apache.lucene.index.DocumentsWriterPerThread.IndexingChain;
 import org.apache.lucene.index.IndexWriter.IndexReaderWarmer;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.util.ByteBlockPool;
 import org.apache.lucene.util.InfoStream;
 import org.apache.lucene.util.PrintStreamInfoStream;
+import org.apache.lucene.util.RecyclingByteBlockAllocator; // javadocs
 import org.apache.lucene.util.Version;
 
 /**
@@ -371,6 +374,77 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig implements Cl
     return readerPooling;
   }
 
+  /**
+   * Expert: sets the {@link ExecutorService} used to merge the
+   * independent parts of a segment (stored fields, term vectors,
+   * postings, doc values and norms) concurrently. The thread running
+   * the merge merges one of the parts itself and waits for the others,
+   * and the merged segment is only committed once all parts are done.
+   * The executor is shared by all merges and is never shut down by
+   * {@link IndexWriter}. The default is <code>null</code>, which merges
+   * all parts sequentially in the merge thread.
+   *
+   * <p>Only takes effect when IndexWriter is first created. */
+  public IndexWriterConfig setMergeExecutor(ExecutorService mergeExecutor) {
+    this.mergeExecutor = mergeExecutor;
+    return this;
+  }
+
+  @Override
+  public ExecutorService getMergeExecutor() {
+    return mergeExecutor;
+  }
+
+  /**
+   * Expert: sets the {@link ExecutorService} used to write the
+   * independent parts of a flushed segment (stored fields, doc values and
+   * the inverted fields) concurrently. The thread flushing the segment
+   * writes the postings, term vectors and norms itself and waits for the
+   * other parts, so the segment is only published once all parts are
+   * done. Buffered deletes are resolved against several segments at once
+   * in the same executor, one task per segment. The executor is shared by
+   * all flushes and is never shut down by
+   * {@link IndexWriter}. The default is <code>null</code>, which writes
+   * all parts sequentially in the flushing thread and resolves deletes
+   * one segment after the other. The time spent in
+   * each part is reported by {@link IndexWriter#getFlushStats()}.
+   *
+   * <p>Only takes effect when IndexWriter is first created. */
+  public IndexWriterConfig setFlushExecutor(ExecutorService flushExecutor) {
+    this.flushExecutor = flushExecutor;
+    return this;
+  }
+
+  @Override
+  public ExecutorService getFlushExecutor() {
+    return flushExecutor;
+  }
+
+  /**
+   * Expert: sets the {@link ByteBlockPool.Allocator} that all indexing
+   * threads take the byte blocks for their in-memory postings from. Blocks
+   * released after a segment was flushed are handed back to it, so a
+   * recycling allocator such as {@link RecyclingByteBlockAllocator} keeps
+   * reusing the same blocks across flushes instead of leaving them to the
+   * garbage collector; int blocks are then recycled across flushes, too.
+   * The allocator is shared by all threads and must be thread-safe, and
+   * it must hand out blocks of {@link ByteBlockPool#BYTE_BLOCK_SIZE} bytes.
+   * Blocks held by an indexing thread still count towards
+   * {@link #setRAMBufferSizeMB(double)}; blocks buffered by the allocator
+   * do not. The default is <code>null</code>, which allocates new blocks
+   * for every segment.
+   *
+   * <p>Only takes effect when IndexWriter is first created. */
+  public IndexWriterConfig setByteBlockAllocator(ByteBlockPool.Allocator byteBlockAllocator) {
+    this.byteBlockAllocator = byteBlockAllocator;
+    return this;
+  }
+
+  @Override
+  public ByteBlockPool.Allocator getByteBlockAllocator() {
+    return byteBlockAllocator;
+  }
+
   /** Expert: sets the {@link DocConsumer} chain to be used to process documents.
    *
    * <p>Only takes effect when IndexWriter is first created. */
@@ -39,8 +39,8 @@ final class IntBlockPool {
     if (bufferUpto != -1) {
       // Reuse first buffer
       if (bufferUpto > 0) {
-        docWriter.recycleIntBlocks(buffers, 1, bufferUpto-1);
-        Arrays.fill(buffers, 1, bufferUpto, null);
+        docWriter.recycleIntBlocks(buffers, 1, 1+bufferUpto);
+        Arrays.fill(buffers, 1, 1+bufferUpto, null);
       }
       bufferUpto = 0;
       intUpto = 0;
@@ -49,6 +49,18 @@ final class IntBlockPool {
     }
   }
 
+  /** Returns all buffers, including the first one, to the allocator. */
+  public void dropBuffersAndReset() {
+    if (bufferUpto != -1) {
+      docWriter.recycleIntBlocks(buffers, 0, 1+bufferUpto);
+      Arrays.fill(buffers, 0, 1+bufferUpto, null);
+      bufferUpto = -1;
+      intUpto = DocumentsWriterPerThread.INT_BLOCK_SIZE;
+      intOffset = -DocumentsWriterPerThread.INT_BLOCK_SIZE;
+      buffer = null;
+    }
+  }
+
   public void nextBuffer() {
     if (1+bufferUpto == buffers.length) {
       int[][] newBuffers = new int[(int) (buffers.length*1.5)][];
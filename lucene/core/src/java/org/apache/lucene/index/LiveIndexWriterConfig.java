@@ -17,6 +17,8 @@ package org.apache.lucene.index;
  * limitations under the License.
  */
 
+import java.util.concurrent.ExecutorService;
+
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.index.DocumentsWriterPerThread.IndexingChain;
@@ -24,6 +26,7 @@ import org.apache.lucene.index.IndexWriter.IndexReaderWarmer;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.util.ByteBlockPool;
 import org.apache.lucene.util.InfoStream;
 import org.apache.lucene.util.Version;
 
@@ -59,6 +62,9 @@ public class LiveIndexWriterConfig {
   protected volatile boolean readerPooling;
   protected volatile FlushPolicy flushPolicy;
   protected volatile int perThreadHardLimitMB;
+  protected volatile ExecutorService mergeExecutor;
+  protected volatile ExecutorService flushExecutor;
+  protected volatile ByteBlockPool.Allocator byteBlockAllocator;
 
   protected final Version matchVersion;
 
@@ -86,6 +92,9 @@ public class LiveIndexWriterConfig {
     readerPooling = IndexWriterConfig.DEFAULT_READER_POOLING;
     indexerThreadPool = new ThreadAffinityDocumentsWriterThreadPool(IndexWriterConfig.DEFAULT_MAX_THREAD_STATES);
     perThreadHardLimitMB = IndexWriterConfig.DEFAULT_RAM_PER_THREAD_HARD_LIMIT_MB;
+    mergeExecutor = null;
+    flushExecutor = null;
+    byteBlockAllocator = null;
   }
   
   /**
@@ -115,6 +124,9 @@ public class LiveIndexWriterConfig {
     readerPooling = config.getReaderPooling();
     flushPolicy = config.getFlushPolicy();
     perThreadHardLimitMB = config.getRAMPerThreadHardLimitMB();
+    mergeExecutor = config.getMergeExecutor();
+    flushExecutor = config.getFlushExecutor();
+    byteBlockAllocator = config.getByteBlockAllocator();
   }
 
   /** Returns the default analyzer to use for indexing documents. */
@@ -441,6 +453,38 @@ public class LiveIndexWriterConfig {
     return readerPooling;
   }
 
+  /**
+   * Returns the {@link ExecutorService} used to merge the parts of a
+   * segment concurrently, or <code>null</code> if they are merged
+   * sequentially.
+   *
+   * @see IndexWriterConfig#setMergeExecutor(ExecutorService)
+   */
+  public ExecutorService getMergeExecutor() {
+    return mergeExecutor;
+  }
+
+  /**
+   * Returns the {@link ExecutorService} used to write the parts of a
+   * flushed segment concurrently, or <code>null</code> if they are written
+   * sequentially.
+   *
+   * @see IndexWriterConfig#setFlushExecutor(ExecutorService)
+   */
+  public ExecutorService getFlushExecutor() {
+    return flushExecutor;
+  }
+
+  /**
+   * Returns the {@link ByteBlockPool.Allocator} shared by all indexing
+   * threads, or <code>null</code> if each thread allocates its own blocks.
+   *
+   * @see IndexWriterConfig#setByteBlockAllocator(ByteBlockPool.Allocator)
+   */
+  public ByteBlockPool.Allocator getByteBlockAllocator() {
+    return byteBlockAllocator;
+  }
+
   /**
    * Returns the indexing chain set on
    * {@link IndexWriterConfig#setIndexingChain(IndexingChain)}.
@@ -499,6 +543,9 @@ public class LiveIndexWriterConfig {
     sb.append("readerPooling=").append(getReaderPooling()).append("\n");
     sb.append("flushPolicy=").append(getFlushPolicy()).append("\n");
     sb.append("perThreadHardLimitMB=").append(getRAMPerThreadHardLimitMB()).append("\n");
+    sb.append("mergeExecutor=").append(getMergeExecutor()).append("\n");
+    sb.append("flushExecutor=").append(getFlushExecutor()).append("\n");
+    sb.append("byteBlockAllocator=").append(getByteBlockAllocator()).append("\n");
     return sb.toString();
   }
 
@@ -19,12 +19,14 @@ package org.apache.lucene.index;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MergeInfo;
 import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.SetOnce.AlreadySetException;
 import org.apache.lucene.util.SetOnce;
 
@@ -59,6 +61,32 @@ import org.apache.lucene.util.SetOnce;
 
 public abstract class MergePolicy implements java.io.Closeable, Cloneable {
 
+  /** A map of doc IDs. */
+  public static abstract class DocMap {
+    /** Sole constructor, typically invoked from sub-classes constructors. */
+    protected DocMap() {}
+
+    /** Return the new doc ID according to its old value. */
+    public abstract int map(int old);
+
+    /** Useful from an assert. */
+    boolean isConsistent(int maxDoc) {
+      final FixedBitSet targets = new FixedBitSet(maxDoc);
+      for (int i = 0; i < maxDoc; ++i) {
+        final int target = map(i);
+        if (target < 0 || target >= maxDoc) {
+          assert false : "out of range: " + target + " not in [0-" + maxDoc + "[";
+          return false;
+        } else if (targets.get(target)) {
+          assert false : target + " is already taken (" + i + ")";
+          return false;
+        }
+        targets.set(target);
+      }
+      return true;
+    }
+  }
+
   /** OneMerge provides the information necessary to perform
    *  an individual primitive merge operation, resulting in
    *  a single new segment.  The merge spec includes the
@@ -194,6 +222,46 @@ public abstract class MergePolicy implements java.io.Closeable, Cloneable {
     public MergeInfo getMergeInfo() {
       return new MergeInfo(totalDocCount, estimatedMergeBytes, isExternal, maxNumSegments);
     }    
+
+    /** Expert: Get the list of readers to merge. By default these are
+     *  the readers of the {@link #segments} that have live documents,
+     *  with the deletions as of the start of the merge. Subclasses may
+     *  return views of them, for example with documents in a different
+     *  order, in which case they must also override {@link #getDocMap}.
+     *  Only called by {@link IndexWriter} once it initialized the readers. */
+    public List<AtomicReader> getMergeReaders() throws IOException {
+      if (readers == null) {
+        throw new IllegalStateException("IndexWriter has not initialized readers from the segment infos yet");
+      }
+      final List<AtomicReader> readers = new ArrayList<AtomicReader>(this.readers.size());
+      for (AtomicReader reader : this.readers) {
+        if (reader.numDocs() > 0) {
+          readers.add(reader);
+        }
+      }
+      return Collections.unmodifiableList(readers);
+    }
+
+    /** Expert: Sets the {@link SegmentInfoPerCommit} of this
+     *  merge, after {@link IndexWriter} recorded its diagnostics.
+     *  Subclasses may override it to add diagnostics of their own. */
+    public void setInfo(SegmentInfoPerCommit info) {
+      this.info = info;
+    }
+
+    /** Expert: If {@link #getMergeReaders()} reorders document IDs, this
+     *  method must be overridden to return a mapping from the natural
+     *  doc ID (the doc ID that would result from a merge without any
+     *  reordering) to the actual doc ID. This mapping is used to apply
+     *  deletions that happened during the merge to the new segment. */
+    public DocMap getDocMap(MergeState mergeState) {
+      return new DocMap() {
+        @Override
+        public int map(int docID) {
+          return docID;
+        }
+      };
+    }
   }
 
   /**
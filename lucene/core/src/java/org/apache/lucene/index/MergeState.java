@@ -235,7 +235,7 @@ public class MergeState {
      * that the time in between calls to merge.checkAborted
      * is up to ~ 1 second.
      */
-    public void work(double units) throws MergePolicy.MergeAbortedException {
+    public synchronized void work(double units) throws MergePolicy.MergeAbortedException {
       workCount += units;
       if (workCount >= 10000.0) {
         merge.checkAborted(dir);
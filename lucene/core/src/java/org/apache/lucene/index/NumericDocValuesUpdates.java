@@ -0,0 +1,409 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.index.DocValues.Type;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.CodecUtil;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.SorterTemplate;
+import org.apache.lucene.util.packed.PackedInts;
+
+/**
+ * Reads and writes the numeric DocValues updates of a segment, see
+ * {@link IndexWriter#updateNumericDocValue}. Like the live docs, the
+ * updates are written to a new file per generation (<tt>_X_N.dvu</tt>),
+ * and each generation holds the current value of every updated document
+ * of all updated fields, so a reader only needs the latest one. Only the
+ * updated documents are kept, sorted by docID, and their values are
+ * looked up on top of the values that were indexed.
+ * <p>
+ * Updates (.dvu) --&gt; Header, NumFields, &lt;FieldName, Docs, Values&gt;<sup>NumFields</sup>
+ * <ul>
+ *   <li>Header --&gt; {@link CodecUtil#writeHeader CodecHeader}</li>
+ *   <li>NumFields --&gt; {@link org.apache.lucene.store.DataOutput#writeVInt VInt}</li>
+ *   <li>FieldName --&gt; {@link org.apache.lucene.store.DataOutput#writeString String}</li>
+ *   <li>Docs --&gt; the increasing docIDs of the updated documents as {@link PackedInts}</li>
+ *   <li>Values --&gt; Packed | Raw; Packed is the minimum value as
+ *       {@link org.apache.lucene.store.DataOutput#writeLong Int64} followed by
+ *       the values minus the minimum as {@link PackedInts}, Raw is one
+ *       Int64 per updated document, used when the values span more than
+ *       63 bits.</li>
+ * </ul>
+ */
+final class NumericDocValuesUpdates {
+
+  /** Extension of numeric DocValues updates files */
+  static final String EXTENSION = "dvu";
+
+  static final String CODEC_NAME = "NumericDocValuesUpdates";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  private static final byte PACKED = 0;
+  private static final byte RAW = 1;
+
+  private NumericDocValuesUpdates() {}
+
+  /** Returns true if the values of a field with this
+   *  DocValues type can be updated. */
+  static boolean canUpdate(Type type) {
+    return type == Type.VAR_INTS || type == Type.FIXED_INTS_64;
+  }
+
+  /** Writes the given fields as the next updates
+   *  generation of this segment. */
+  static void write(Directory dir, SegmentInfoPerCommit info, Map<String,FieldUpdates> fields, IOContext context) throws IOException {
+    final String fileName = IndexFileNames.fileNameFromGeneration(info.info.name, EXTENSION, info.getNextUpdatesGen());
+    final IndexOutput out = dir.createOutput(fileName, context);
+    boolean success = false;
+    try {
+      CodecUtil.writeHeader(out, CODEC_NAME, VERSION_CURRENT);
+      out.writeVInt(fields.size());
+      for (Map.Entry<String,FieldUpdates> ent : fields.entrySet()) {
+        final FieldUpdates updates = ent.getValue();
+        out.writeString(ent.getKey());
+        PackedInts.Writer writer = PackedInts.getWriter(out, updates.size(), updates.docs.getBitsPerValue(), PackedInts.DEFAULT);
+        for (int i = 0; i < updates.size(); i++) {
+          writer.add(updates.doc(i));
+        }
+        writer.finish();
+        if (updates.values.getBitsPerValue() < 64) {
+          out.writeByte(PACKED);
+          out.writeLong(updates.minValue);
+          writer = PackedInts.getWriter(out, updates.size(), updates.values.getBitsPerValue(), PackedInts.DEFAULT);
+          for (int i = 0; i < updates.size(); i++) {
+            writer.add(updates.values.get(i));
+          }
+          writer.finish();
+        } else {
+          out.writeByte(RAW);
+          for (int i = 0; i < updates.size(); i++) {
+            out.writeLong(updates.value(i));
+          }
+        }
+      }
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(out);
+      } else {
+        IOUtils.closeWhileHandlingException(out);
+      }
+    }
+  }
+
+  /** Opens the current updates generation of this
+   *  segment, or returns null if it has none. */
+  static IndexInput openInput(Directory dir, SegmentInfoPerCommit info, IOContext context) throws IOException {
+    if (!info.hasNumericUpdates()) {
+      return null;
+    }
+    final String fileName = IndexFileNames.fileNameFromGeneration(info.info.name, EXTENSION, info.getUpdatesGen());
+    return dir.openInput(fileName, context);
+  }
+
+  /** Reads the current updates generation of this
+   *  segment, or returns an empty map if it has none. */
+  static Map<String,FieldUpdates> read(Directory dir, SegmentInfoPerCommit info, IOContext context) throws IOException {
+    final IndexInput in = openInput(dir, info, context);
+    if (in == null) {
+      return Collections.emptyMap();
+    }
+    try {
+      return read(in, info.info.getDocCount());
+    } finally {
+      in.close();
+    }
+  }
+
+  /** Reads the updates from an input returned by {@link
+   *  #openInput}; the caller must close it. */
+  static Map<String,FieldUpdates> read(IndexInput in, int maxDoc) throws IOException {
+    CodecUtil.checkHeader(in, CODEC_NAME, VERSION_START, VERSION_CURRENT);
+    final int numFields = in.readVInt();
+    final Map<String,FieldUpdates> fields = new HashMap<String,FieldUpdates>();
+    for (int i = 0; i < numFields; i++) {
+      final String field = in.readString();
+      final PackedInts.Reader docs = PackedInts.getReader(in);
+      final byte encoding = in.readByte();
+      final long minValue;
+      final PackedInts.Reader values;
+      if (encoding == PACKED) {
+        minValue = in.readLong();
+        values = PackedInts.getReader(in);
+        if (values.size() != docs.size()) {
+          throw new CorruptIndexException("field " + field + " has " + docs.size() + " updated docs but " + values.size() + " values (resource: " + in + ")");
+        }
+      } else if (encoding == RAW) {
+        minValue = 0;
+        final PackedInts.Mutable rawValues = PackedInts.getMutable(docs.size(), 64, PackedInts.DEFAULT);
+        for (int j = 0; j < docs.size(); j++) {
+          rawValues.set(j, in.readLong());
+        }
+        values = rawValues;
+      } else {
+        throw new CorruptIndexException("invalid encoding " + encoding + " for field " + field + " (resource: " + in + ")");
+      }
+      if (docs.size() > 0 && docs.get(docs.size() - 1) >= maxDoc) {
+        throw new CorruptIndexException("field " + field + " updates doc " + docs.get(docs.size() - 1) + " but segment has " + maxDoc + " docs (resource: " + in + ")");
+      }
+      fields.put(field, new FieldUpdates(docs, minValue, values));
+    }
+    return fields;
+  }
+
+  static void files(SegmentInfoPerCommit info, Collection<String> files) {
+    if (info.hasNumericUpdates()) {
+      files.add(IndexFileNames.fileNameFromGeneration(info.info.name, EXTENSION, info.getUpdatesGen()));
+    }
+  }
+
+  /** The current values of the updated documents of a
+   *  field, sorted by docID; never modified. */
+  static final class FieldUpdates {
+    private final PackedInts.Reader docs;
+    private final long minValue;
+    private final PackedInts.Reader values;
+
+    private FieldUpdates(PackedInts.Reader docs, long minValue, PackedInts.Reader values) {
+      this.docs = docs;
+      this.minValue = minValue;
+      this.values = values;
+    }
+
+    /** Packs the first <code>size</code> docIDs, which must
+     *  be increasing, and their values. */
+    static FieldUpdates create(int maxDoc, int[] docIDs, long[] docValues, int size) {
+      final PackedInts.Mutable docs = PackedInts.getMutable(size, PackedInts.bitsRequired(Math.max(0, maxDoc - 1)), PackedInts.DEFAULT);
+      long min = Long.MAX_VALUE;
+      long max = Long.MIN_VALUE;
+      for (int i = 0; i < size; i++) {
+        assert i == 0 || docIDs[i - 1] < docIDs[i];
+        assert docIDs[i] < maxDoc;
+        docs.set(i, docIDs[i]);
+        min = Math.min(min, docValues[i]);
+        max = Math.max(max, docValues[i]);
+      }
+      if (size == 0) {
+        min = max = 0;
+      }
+      // The difference wraps around when the values span
+      // more than 63 bits, but adding min back restores them:
+      final long delta = max - min;
+      final PackedInts.Mutable values = PackedInts.getMutable(size, delta < 0 ? 64 : PackedInts.bitsRequired(delta), PackedInts.DEFAULT);
+      for (int i = 0; i < size; i++) {
+        values.set(i, docValues[i] - min);
+      }
+      return new FieldUpdates(docs, min, values);
+    }
+
+    /** Number of updated documents. */
+    int size() {
+      return docs.size();
+    }
+
+    /** DocID of the i-th updated document. */
+    int doc(int i) {
+      return (int) docs.get(i);
+    }
+
+    /** Value of the i-th updated document. */
+    long value(int i) {
+      return minValue + values.get(i);
+    }
+
+    /** Returns the index of the document, or a negative
+     *  value if it wasn't updated. */
+    int indexOf(int docID) {
+      int lo = 0;
+      int hi = docs.size() - 1;
+      while (lo <= hi) {
+        final int mid = (lo + hi) >>> 1;
+        final int midDoc = doc(mid);
+        if (midDoc < docID) {
+          lo = mid + 1;
+        } else if (midDoc > docID) {
+          hi = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -(lo + 1);
+    }
+
+    long ramBytesUsed() {
+      return RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + 2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF
+          + RamUsageEstimator.NUM_BYTES_LONG + docs.ramBytesUsed() + values.ramBytesUsed();
+    }
+  }
+
+  /** Buffers the updates of a field in the order they are
+   *  applied, until they are folded into {@link FieldUpdates}. */
+  static final class Buffer {
+    private int[] docs = new int[8];
+    private long[] values = new long[8];
+    private int size;
+
+    void add(int docID, long value) {
+      if (size == docs.length) {
+        docs = ArrayUtil.grow(docs, size + 1);
+        values = ArrayUtil.grow(values, docs.length);
+      }
+      docs[size] = docID;
+      values[size++] = value;
+    }
+
+    long ramBytesUsed() {
+      return RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + 2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF
+          + RamUsageEstimator.NUM_BYTES_INT + RamUsageEstimator.sizeOf(docs) + RamUsageEstimator.sizeOf(values);
+    }
+
+    /** Returns the updates of <code>prev</code> (may be null)
+     *  overridden by the buffered ones; when a document was
+     *  updated more than once, the last update wins. */
+    FieldUpdates apply(FieldUpdates prev, int maxDoc) {
+      final int[] ords = new int[size];
+      for (int i = 0; i < size; i++) {
+        ords[i] = i;
+      }
+      // Sort by docID, then by the order the updates were
+      // applied in:
+      new SorterTemplate() {
+        private int pivotDoc, pivotOrd;
+
+        @Override
+        protected void swap(int i, int j) {
+          final int doc = docs[i];
+          docs[i] = docs[j];
+          docs[j] = doc;
+          final long value = values[i];
+          values[i] = values[j];
+          values[j] = value;
+          final int ord = ords[i];
+          ords[i] = ords[j];
+          ords[j] = ord;
+        }
+
+        @Override
+        protected int compare(int i, int j) {
+          return compare(docs[i], ords[i], docs[j], ords[j]);
+        }
+
+        @Override
+        protected void setPivot(int i) {
+          pivotDoc = docs[i];
+          pivotOrd = ords[i];
+        }
+
+        @Override
+        protected int comparePivot(int j) {
+          return compare(pivotDoc, pivotOrd, docs[j], ords[j]);
+        }
+
+        private int compare(int doc1, int ord1, int doc2, int ord2) {
+          if (doc1 != doc2) {
+            return doc1 < doc2 ? -1 : 1;
+          }
+          return ord1 < ord2 ? -1 : (ord1 == ord2 ? 0 : 1);
+        }
+      }.quickSort(0, size - 1);
+
+      final int prevSize = prev == null ? 0 : prev.size();
+      final int[] newDocs = new int[prevSize + size];
+      final long[] newValues = new long[newDocs.length];
+      int upto = 0;
+      int i = 0;
+      for (int j = 0; j < size; j++) {
+        final int doc = docs[j];
+        if (j + 1 < size && docs[j + 1] == doc) {
+          continue;
+        }
+        while (i < prevSize && prev.doc(i) < doc) {
+          newDocs[upto] = prev.doc(i);
+          newValues[upto++] = prev.value(i++);
+        }
+        if (i < prevSize && prev.doc(i) == doc) {
+          i++;
+        }
+        newDocs[upto] = doc;
+        newValues[upto++] = values[j];
+      }
+      while (i < prevSize) {
+        newDocs[upto] = prev.doc(i);
+        newValues[upto++] = prev.value(i++);
+      }
+      return FieldUpdates.create(maxDoc, newDocs, newValues, upto);
+    }
+  }
+
+  /** Exposes the values of a field with the updated
+   *  documents overriding the values that were indexed. */
+  static final class UpdatedDocValues extends DocValues {
+    private final DocValues in;
+    private final FieldUpdates updates;
+
+    UpdatedDocValues(DocValues in, FieldUpdates updates) {
+      this.in = in;
+      this.updates = updates;
+    }
+
+    private Source overlay(final Source source) {
+      return new Source(getType()) {
+        @Override
+        public long getInt(int docID) {
+          final int index = updates.indexOf(docID);
+          return index >= 0 ? updates.value(index) : source.getInt(docID);
+        }
+      };
+    }
+
+    @Override
+    public Source load() throws IOException {
+      // The indexed source is cached by, and shared
+      // with, the segment's core:
+      return overlay(in.getSource());
+    }
+
+    @Override
+    public Source getDirectSource() throws IOException {
+      return overlay(in.getDirectSource());
+    }
+
+    @Override
+    public Type getType() {
+      return in.getType();
+    }
+
+    @Override
+    public int getValueSize() {
+      return in.getValueSize();
+    }
+  }
+}
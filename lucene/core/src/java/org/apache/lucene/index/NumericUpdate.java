@@ -0,0 +1,40 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/** A buffered update of a numeric DocValues field: all
+ *  documents containing the term, up to docIDUpto, get the
+ *  new value.  Buffered and applied like a delete by Term. */
+final class NumericUpdate {
+  final Term term;
+  final String field;
+  final long value;
+  final int docIDUpto;
+
+  NumericUpdate(Term term, String field, long value, int docIDUpto) {
+    this.term = term;
+    this.field = field;
+    this.value = value;
+    this.docIDUpto = docIDUpto;
+  }
+
+  @Override
+  public String toString() {
+    return "term=" + term + " field=" + field + " value=" + value + " docIDUpto=" + docIDUpto;
+  }
+}
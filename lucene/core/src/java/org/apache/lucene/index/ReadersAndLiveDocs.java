@@ -18,9 +18,12 @@ package org.apache.lucene.index;
  */
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.codecs.LiveDocsFormat;
+import org.apache.lucene.index.NumericDocValuesUpdates.FieldUpdates;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.util.Bits;
@@ -67,6 +70,26 @@ class ReadersAndLiveDocs {
   // external NRT reader:
   private boolean shared;
 
+  // Holds the numeric DocValues updates as of the last
+  // time we shared them with an NRT reader or a merge, or
+  // wrote them, keyed by field.  The map and its values
+  // are never changed, but replaced.  This is null until
+  // they are needed, or after they were written and
+  // dropped to save RAM, and then read from the directory:
+  private Map<String,FieldUpdates> numericUpdates;
+
+  // Updates applied since, per field, in order:
+  private final Map<String,NumericDocValuesUpdates.Buffer> bufferedNumericUpdates = new HashMap<String,NumericDocValuesUpdates.Buffer>();
+
+  // True if numeric DocValues were updated since we
+  // loaded them or last wrote them:
+  private boolean pendingNumericUpdates;
+
+  // RAM used by numericUpdates and
+  // bufferedNumericUpdates, as last reported to the
+  // writer:
+  private long numericUpdatesBytesUsed;
+
   public ReadersAndLiveDocs(IndexWriter writer, SegmentInfoPerCommit info) {
     this.info = info;
     this.writer = writer;
@@ -180,6 +203,67 @@ class ReadersAndLiveDocs {
     return didDelete;
   }
 
+  /** Sets the value of a numeric DocValues field of a
+   *  document; the field's values must be updatable. */
+  public synchronized void updateNumericDocValue(String field, int docID, long value) {
+    assert Thread.holdsLock(writer);
+    assert docID >= 0 && docID < info.info.getDocCount() : "out of bounds: docid=" + docID + " seg=" + info.info.name + " docCount=" + info.info.getDocCount();
+    NumericDocValuesUpdates.Buffer buffer = bufferedNumericUpdates.get(field);
+    if (buffer == null) {
+      buffer = new NumericDocValuesUpdates.Buffer();
+      bufferedNumericUpdates.put(field, buffer);
+    }
+    buffer.add(docID, value);
+    pendingNumericUpdates = true;
+    updateNumericUpdatesBytesUsed();
+  }
+
+  // Returns the current numeric DocValues updates, reading
+  // them if needed and folding in the buffered ones:
+  private Map<String,FieldUpdates> getNumericUpdates() throws IOException {
+    if (numericUpdates == null) {
+      // Either nothing was updated since the segment was
+      // opened, or the updates were written before they
+      // were dropped, so the current generation is
+      // up-to-date:
+      numericUpdates = NumericDocValuesUpdates.read(info.info.dir, info, IOContext.READ);
+    }
+    if (!bufferedNumericUpdates.isEmpty()) {
+      final Map<String,FieldUpdates> updates = new HashMap<String,FieldUpdates>(numericUpdates);
+      for (Map.Entry<String,NumericDocValuesUpdates.Buffer> ent : bufferedNumericUpdates.entrySet()) {
+        updates.put(ent.getKey(), ent.getValue().apply(numericUpdates.get(ent.getKey()), info.info.getDocCount()));
+      }
+      bufferedNumericUpdates.clear();
+      numericUpdates = updates;
+    }
+    updateNumericUpdatesBytesUsed();
+    return numericUpdates;
+  }
+
+  // Reports the change of the RAM used by numeric
+  // DocValues updates to the writer:
+  private void updateNumericUpdatesBytesUsed() {
+    long bytesUsed = 0;
+    if (numericUpdates != null) {
+      for (FieldUpdates updates : numericUpdates.values()) {
+        bytesUsed += updates.ramBytesUsed();
+      }
+    }
+    for (NumericDocValuesUpdates.Buffer buffer : bufferedNumericUpdates.values()) {
+      bytesUsed += buffer.ramBytesUsed();
+    }
+    writer.numericUpdatesBytesUsed.addAndGet(bytesUsed - numericUpdatesBytesUsed);
+    numericUpdatesBytesUsed = bytesUsed;
+  }
+
+  /** Drops the numeric DocValues updates from RAM, once
+   *  they were written; they are read back when needed. */
+  public synchronized void dropNumericUpdates() {
+    assert !pendingNumericUpdates;
+    numericUpdates = null;
+    updateNumericUpdatesBytesUsed();
+  }
+
   // NOTE: removes callers ref
   public synchronized void dropReaders() throws IOException {
     if (reader != null) {
@@ -192,6 +276,9 @@ class ReadersAndLiveDocs {
       mergeReader.decRef();
       mergeReader = null;
     }
+    numericUpdates = null;
+    bufferedNumericUpdates.clear();
+    updateNumericUpdatesBytesUsed();
     decRef();
   }
 
@@ -206,13 +293,25 @@ class ReadersAndLiveDocs {
       assert reader != null;
     }
     shared = true;
-    if (liveDocs != null) {
-      return new SegmentReader(reader.getSegmentInfo(), reader.core, liveDocs, info.info.getDocCount() - info.getDelCount() - pendingDeleteCount);
+    final int numDocs = info.info.getDocCount() - info.getDelCount() - pendingDeleteCount;
+    if (numericUpdates == null && bufferedNumericUpdates.isEmpty()) {
+      // We don't hold the numeric updates in RAM, so all
+      // of them were written; the clone reads them when
+      // it needs them:
+      if (liveDocs != null || info.hasNumericUpdates()) {
+        return new SegmentReader(reader.getSegmentInfo(), reader.core, liveDocs, numDocs, context);
+      }
     } else {
-      assert reader.getLiveDocs() == liveDocs;
-      reader.incRef();
-      return reader;
+      final Map<String,FieldUpdates> updates = getNumericUpdates();
+      if (liveDocs != null || !updates.isEmpty()) {
+        // Share our numeric updates, rather than having
+        // the clone read them a second time:
+        return new SegmentReader(reader.getSegmentInfo(), reader.core, liveDocs, numDocs, updates);
+      }
     }
+    assert reader.getLiveDocs() == liveDocs;
+    reader.incRef();
+    return reader;
   }
 
   public synchronized void initWritableLiveDocs() throws IOException {
@@ -252,6 +351,19 @@ class ReadersAndLiveDocs {
     return liveDocs;
   }
 
+  /** Returns the current numeric DocValues updates; the
+   *  returned map and its values are never changed, and
+   *  fields that were not updated since the previous call
+   *  keep the same {@link FieldUpdates} instance. */
+  public synchronized Map<String,FieldUpdates> getReadOnlyNumericUpdates() throws IOException {
+    assert Thread.holdsLock(writer);
+    return getNumericUpdates();
+  }
+
+  public synchronized boolean hasPendingNumericUpdates() {
+    return pendingNumericUpdates;
+  }
+
   public synchronized void dropChanges() {
     // Discard (don't save) changes when we are dropping
     // the reader; this is used only on the sub-readers
@@ -261,13 +373,27 @@ class ReadersAndLiveDocs {
     // deletes onto the newly merged segment, so we can
     // discard them on the sub-readers:
     pendingDeleteCount = 0;
+    pendingNumericUpdates = false;
   }
 
-  // Commit live docs to the directory (writes new
-  // _X_N.del files); returns true if it wrote the file
-  // and false if there were no new deletes to write:
+  // Commit live docs and numeric DocValues updates to the
+  // directory (writes new _X_N.del and _X_N.dvu files);
+  // returns true if it wrote a file and false if there
+  // were no new deletes or updates to write:
   public synchronized boolean writeLiveDocs(Directory dir) throws IOException {
     //System.out.println("rld.writeLiveDocs seg=" + info + " pendingDelCount=" + pendingDeleteCount);
+    boolean wroteUpdates = false;
+    if (pendingNumericUpdates) {
+      NumericDocValuesUpdates.write(dir, info, getNumericUpdates(), IOContext.DEFAULT);
+
+      // If we hit an exc in the line above (eg disk full)
+      // then info remains pointing to the previous
+      // (successfully written) updates:
+      info.advanceUpdatesGen();
+      pendingNumericUpdates = false;
+      wroteUpdates = true;
+    }
+
     if (pendingDeleteCount != 0) {
       // We have new deletes
       assert liveDocs.length() == info.info.getDocCount();
@@ -286,12 +412,12 @@ class ReadersAndLiveDocs {
       pendingDeleteCount = 0;
       return true;
     } else {
-      return false;
+      return wroteUpdates;
     }
   }
 
   @Override
   public String toString() {
-    return "ReadersAndLiveDocs(seg=" + info + " pendingDeleteCount=" + pendingDeleteCount + " shared=" + shared + ")";
+    return "ReadersAndLiveDocs(seg=" + info + " pendingDeleteCount=" + pendingDeleteCount + " shared=" + shared + " pendingNumericUpdates=" + pendingNumericUpdates + ")";
   }
 }
@@ -0,0 +1,70 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A threadsafe pool of the int blocks used by {@link IntBlockPool}, shared
+ * by all {@link DocumentsWriterPerThread}s of a writer so that blocks
+ * released by a flushed DWPT are reused instead of re-allocated. This is
+ * the int[] counterpart of {@link org.apache.lucene.util.RecyclingByteBlockAllocator}.
+ */
+final class RecyclingIntBlockAllocator {
+  private int[][] freeIntBlocks;
+  private final int maxBufferedBlocks;
+  private int freeBlocks = 0;
+
+  RecyclingIntBlockAllocator(int maxBufferedBlocks) {
+    freeIntBlocks = new int[Math.min(10, maxBufferedBlocks)][];
+    this.maxBufferedBlocks = maxBufferedBlocks;
+  }
+
+  synchronized int[] getIntBlock() {
+    if (freeBlocks == 0) {
+      return new int[DocumentsWriterPerThread.INT_BLOCK_SIZE];
+    }
+    final int[] b = freeIntBlocks[--freeBlocks];
+    freeIntBlocks[freeBlocks] = null;
+    return b;
+  }
+
+  synchronized void recycleIntBlocks(int[][] blocks, int start, int end) {
+    final int numBlocks = Math.min(maxBufferedBlocks - freeBlocks, end - start);
+    final int size = freeBlocks + numBlocks;
+    if (size >= freeIntBlocks.length) {
+      final int[][] newBlocks = new int[ArrayUtil.oversize(size,
+          RamUsageEstimator.NUM_BYTES_OBJECT_REF)][];
+      System.arraycopy(freeIntBlocks, 0, newBlocks, 0, freeBlocks);
+      freeIntBlocks = newBlocks;
+    }
+    final int stop = start + numBlocks;
+    for (int i = start; i < stop; i++) {
+      freeIntBlocks[freeBlocks++] = blocks[i];
+      blocks[i] = null;
+    }
+    for (int i = stop; i < end; i++) {
+      blocks[i] = null;
+    }
+  }
+
+  synchronized int numBufferedBlocks() {
+    return freeBlocks;
+  }
+}
@@ -39,12 +39,21 @@ public class SegmentInfoPerCommit {
   // are no deletes yet):
   private long delGen;
 
+  // Generation number of the numeric DocValues updates
+  // file (-1 if there are no updates yet):
+  private long updatesGen;
+
   private volatile long sizeInBytes = -1;
 
   public SegmentInfoPerCommit(SegmentInfo info, int delCount, long delGen) {
+    this(info, delCount, delGen, -1L);
+  }
+
+  public SegmentInfoPerCommit(SegmentInfo info, int delCount, long delGen, long updatesGen) {
     this.info = info;
     this.delCount = delCount;
     this.delGen = delGen;
+    this.updatesGen = updatesGen;
   }
 
   void advanceDelGen() {
@@ -56,6 +65,11 @@ public class SegmentInfoPerCommit {
     sizeInBytes = -1;
   }
 
+  void advanceUpdatesGen() {
+    updatesGen = getNextUpdatesGen();
+    sizeInBytes = -1;
+  }
+
   public long sizeInBytes() throws IOException {
     if (sizeInBytes == -1) {
       final Collection<String> files = new HashSet<String>();
@@ -76,6 +90,9 @@ public class SegmentInfoPerCommit {
     // Must separately add any live docs files:
     info.getCodec().liveDocsFormat().files(this, files);
 
+    // ... and the numeric DocValues updates:
+    NumericDocValuesUpdates.files(this, files);
+
     return files;
   }
 
@@ -118,6 +135,26 @@ public class SegmentInfoPerCommit {
     return delGen;
   }
   
+  /** Returns true if numeric DocValues of this segment were updated
+   *  (see {@link IndexWriter#updateNumericDocValue}). */
+  public boolean hasNumericUpdates() {
+    return updatesGen != -1;
+  }
+
+  public long getNextUpdatesGen() {
+    if (updatesGen == -1) {
+      return 1;
+    } else {
+      return updatesGen + 1;
+    }
+  }
+
+  /** Returns the generation of the numeric DocValues
+   *  updates file, or -1 if there are no updates. */
+  public long getUpdatesGen() {
+    return updatesGen;
+  }
+
   public int getDelCount() {
     return delCount;
   }
@@ -137,11 +174,14 @@ public class SegmentInfoPerCommit {
     if (delGen != -1) {
       s += ":delGen=" + delGen;
     }
+    if (updatesGen != -1) {
+      s += ":updatesGen=" + updatesGen;
+    }
     return s;
   }
 
   @Override
   public SegmentInfoPerCommit clone() {
-    return new SegmentInfoPerCommit(info, delCount, delGen);
+    return new SegmentInfoPerCommit(info, delCount, delGen, updatesGen);
   }
 }
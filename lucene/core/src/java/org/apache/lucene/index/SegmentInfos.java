@@ -72,7 +72,7 @@ import org.apache.lucene.util.ThreadInterruptedException;
  * <ul>
  *   <li><tt>segments.gen</tt>: GenHeader, Generation, Generation
  *   <li><tt>segments_N</tt>: Header, Version, NameCounter, SegCount,
- *    &lt;SegName, SegCodec, DelGen, DeletionCount&gt;<sup>SegCount</sup>, 
+ *    &lt;SegName, SegCodec, DelGen, DeletionCount, UpdatesGen&gt;<sup>SegCount</sup>, 
  *    CommitUserData, Checksum
  * </ul>
  * </p>
@@ -81,7 +81,7 @@ import org.apache.lucene.util.ThreadInterruptedException;
  * <ul>
  *   <li>Header --&gt; {@link CodecUtil#writeHeader CodecHeader}</li>
  *   <li>GenHeader, NameCounter, SegCount, DeletionCount --&gt; {@link DataOutput#writeInt Int32}</li>
- *   <li>Generation, Version, DelGen, Checksum --&gt; {@link DataOutput#writeLong Int64}</li>
+ *   <li>Generation, Version, DelGen, UpdatesGen, Checksum --&gt; {@link DataOutput#writeLong Int64}</li>
  *   <li>SegName, SegCodec --&gt; {@link DataOutput#writeString String}</li>
  *   <li>CommitUserData --&gt; {@link DataOutput#writeStringStringMap Map&lt;String,String&gt;}</li>
  * </ul>
@@ -98,6 +98,9 @@ import org.apache.lucene.util.ThreadInterruptedException;
  *       there are no deletes. Anything above zero means there are deletes 
  *       stored by {@link LiveDocsFormat}.</li>
  *   <li>DeletionCount records the number of deleted documents in this segment.</li>
+ *   <li>UpdatesGen is the generation count of the numeric DocValues updates
+ *       file, or -1 if the segment has no updates. It is only written since
+ *       {@link #VERSION_41}.</li>
  *   <li>Checksum contains the CRC32 checksum of all bytes in the segments_N file up
  *       until the checksum. This is used to verify integrity of the file on opening the
  *       index.</li>
@@ -118,6 +121,15 @@ public final class SegmentInfos implements Cloneable, Iterable<SegmentInfoPerCom
    */
   public static final int VERSION_40 = 0;
 
+  /**
+   * The file format version for the segments_N codec header, since the
+   * generation of numeric DocValues updates is recorded per segment
+   */
+  public static final int VERSION_41 = 1;
+
+  /** The current file format version for the segments_N codec header */
+  public static final int VERSION_CURRENT = VERSION_41;
+
   /** Used for the segments.gen file only!
    * Whenever you add a new format, make it 1 smaller (negative version logic)! */
   public static final int FORMAT_SEGMENTS_GEN_CURRENT = -2;
@@ -278,7 +290,7 @@ public final class SegmentInfos implements Cloneable, Iterable<SegmentInfoPerCom
         throw new IndexFormatTooOldException(input, magic, CodecUtil.CODEC_MAGIC, CodecUtil.CODEC_MAGIC);
       }
       // 4.0+
-      CodecUtil.checkHeaderNoMagic(input, "segments", VERSION_40, VERSION_40);
+      final int format = CodecUtil.checkHeaderNoMagic(input, "segments", VERSION_40, VERSION_CURRENT);
       version = input.readLong();
       counter = input.readInt();
       int numSegments = input.readInt();
@@ -291,7 +303,8 @@ public final class SegmentInfos implements Cloneable, Iterable<SegmentInfoPerCom
         long delGen = input.readLong();
         int delCount = input.readInt();
         assert delCount <= info.getDocCount();
-        add(new SegmentInfoPerCommit(info, delCount, delGen));
+        final long updatesGen = format >= VERSION_41 ? input.readLong() : -1L;
+        add(new SegmentInfoPerCommit(info, delCount, delGen, updatesGen));
       }
       userData = input.readStringStringMap();
 
@@ -347,7 +360,7 @@ public final class SegmentInfos implements Cloneable, Iterable<SegmentInfoPerCom
 
     try {
       segnOutput = new ChecksumIndexOutput(directory.createOutput(segmentFileName, IOContext.DEFAULT));
-      CodecUtil.writeHeader(segnOutput, "segments", VERSION_40);
+      CodecUtil.writeHeader(segnOutput, "segments", VERSION_CURRENT);
       segnOutput.writeLong(version); 
       segnOutput.writeInt(counter); // write counter
       segnOutput.writeInt(size()); // write infos
@@ -357,6 +370,7 @@ public final class SegmentInfos implements Cloneable, Iterable<SegmentInfoPerCom
         segnOutput.writeString(si.getCodec().getName());
         segnOutput.writeLong(siPerCommit.getDelGen());
         segnOutput.writeInt(siPerCommit.getDelCount());
+        segnOutput.writeLong(siPerCommit.getUpdatesGen());
         assert si.dir == directory;
 
         assert siPerCommit.getDelCount() <= si.getDocCount();
@@ -22,6 +22,10 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.FieldInfosWriter;
@@ -31,16 +35,21 @@ import org.apache.lucene.codecs.StoredFieldsWriter;
 import org.apache.lucene.codecs.TermVectorsWriter;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
-import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.InfoStream;
 import org.apache.lucene.util.ReaderUtil;
 import org.apache.lucene.util.ReaderSlice;
+import org.apache.lucene.util.ThreadInterruptedException;
 
 /**
  * The SegmentMerger class combines two or more Segments, represented by an IndexReader ({@link #add},
  * into a single Segment.  After adding the appropriate readers, call the merge method to combine the
  * segments.
+ * <p>
+ * If an {@link ExecutorService} is provided, the independent parts of
+ * the new segment (stored fields, term vectors, postings, doc values and
+ * norms) are merged concurrently, each of them with its own copy of the
+ * {@link MergeState}. The field infos are written once all parts are done.
  *
  * @see #merge
  * @see #add
@@ -56,10 +65,19 @@ final class SegmentMerger {
   private final MergeState mergeState = new MergeState();
   private final FieldInfos.Builder fieldInfosBuilder;
 
+  private final ExecutorService executor;
+
   // note, just like in codec apis Directory 'dir' is NOT the same as segmentInfo.dir!!
   SegmentMerger(SegmentInfo segmentInfo, InfoStream infoStream, Directory dir, int termIndexInterval,
                 MergeState.CheckAbort checkAbort, PayloadProcessorProvider payloadProcessorProvider,
                 FieldInfos.FieldNumbers fieldNumbers, IOContext context) {
+    this(segmentInfo, infoStream, dir, termIndexInterval, checkAbort, payloadProcessorProvider, fieldNumbers, context, null);
+  }
+
+  /** If <code>executor</code> is not null, independent parts of the segment are merged concurrently. */
+  SegmentMerger(SegmentInfo segmentInfo, InfoStream infoStream, Directory dir, int termIndexInterval,
+                MergeState.CheckAbort checkAbort, PayloadProcessorProvider payloadProcessorProvider,
+                FieldInfos.FieldNumbers fieldNumbers, IOContext context, ExecutorService executor) {
     mergeState.segmentInfo = segmentInfo;
     mergeState.infoStream = infoStream;
     mergeState.readers = new ArrayList<MergeState.IndexReaderAndLiveDocs>();
@@ -70,6 +88,7 @@ final class SegmentMerger {
     this.codec = segmentInfo.getCodec();
     this.context = context;
     this.fieldInfosBuilder = new FieldInfos.Builder(fieldNumbers);
+    this.executor = executor;
   }
 
   /**
@@ -83,10 +102,6 @@ final class SegmentMerger {
     }
   }
 
-  final void add(SegmentReader reader, Bits liveDocs, int delCount) {
-    mergeState.readers.add(new MergeState.IndexReaderAndLiveDocs(reader, liveDocs, delCount));
-  }
-
   /**
    * Merges the readers specified by the {@link #add} method into the directory passed to the constructor
    * @return The number of documents that were merged
@@ -104,21 +119,26 @@ final class SegmentMerger {
     mergeState.segmentInfo.setDocCount(setDocMaps());
     mergeDocValuesAndNormsFieldInfos();
     setMatchingSegmentReaders();
-    int numMerged = mergeFields();
-    assert numMerged == mergeState.segmentInfo.getDocCount();
 
     final SegmentWriteState segmentWriteState = new SegmentWriteState(mergeState.infoStream, directory, mergeState.segmentInfo,
                                                                       mergeState.fieldInfos, termIndexInterval, null, context);
-    mergeTerms(segmentWriteState);
-    mergePerDoc(segmentWriteState);
-    
-    if (mergeState.fieldInfos.hasNorms()) {
-      mergeNorms(segmentWriteState);
-    }
-
-    if (mergeState.fieldInfos.hasVectors()) {
-      numMerged = mergeVectors();
+    if (executor == null) {
+      int numMerged = mergeFields(mergeState);
       assert numMerged == mergeState.segmentInfo.getDocCount();
+
+      mergeTerms(segmentWriteState, mergeState);
+      mergePerDoc(segmentWriteState, mergeState);
+
+      if (mergeState.fieldInfos.hasNorms()) {
+        mergeNorms(segmentWriteState, mergeState);
+      }
+
+      if (mergeState.fieldInfos.hasVectors()) {
+        numMerged = mergeVectors(mergeState);
+        assert numMerged == mergeState.segmentInfo.getDocCount();
+      }
+    } else {
+      mergeConcurrently(segmentWriteState);
     }
     
     // write the merged infos
@@ -128,6 +148,120 @@ final class SegmentMerger {
     return mergeState;
   }
 
+  /** Merges every part of the segment in its own task; the calling
+   *  thread merges the postings and then waits for the other parts. */
+  private void mergeConcurrently(final SegmentWriteState segmentWriteState) throws IOException {
+    final int docCount = mergeState.segmentInfo.getDocCount();
+    final List<Callable<Integer>> parts = new ArrayList<Callable<Integer>>();
+    parts.add(new Callable<Integer>() {
+      @Override
+      public Integer call() throws IOException {
+        mergeTerms(segmentWriteState, copyMergeState());
+        return docCount;
+      }
+    });
+    parts.add(new Callable<Integer>() {
+      @Override
+      public Integer call() throws IOException {
+        return mergeFields(copyMergeState());
+      }
+    });
+    parts.add(new Callable<Integer>() {
+      @Override
+      public Integer call() throws IOException {
+        mergePerDoc(segmentWriteState, copyMergeState());
+        return docCount;
+      }
+    });
+    if (mergeState.fieldInfos.hasNorms()) {
+      parts.add(new Callable<Integer>() {
+        @Override
+        public Integer call() throws IOException {
+          mergeNorms(segmentWriteState, copyMergeState());
+          return docCount;
+        }
+      });
+    }
+    if (mergeState.fieldInfos.hasVectors()) {
+      parts.add(new Callable<Integer>() {
+        @Override
+        public Integer call() throws IOException {
+          return mergeVectors(copyMergeState());
+        }
+      });
+    }
+
+    final long t0 = System.currentTimeMillis();
+    final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+    for (Callable<Integer> part : parts.subList(1, parts.size())) {
+      futures.add(executor.submit(part));
+    }
+
+    // all parts must be done before we return, even if one of them
+    // failed, as they are still writing files of the new segment
+    Throwable th = null;
+    try {
+      final int numMerged = parts.get(0).call();
+      assert numMerged == docCount;
+    } catch (Throwable t) {
+      th = t;
+    }
+    InterruptedException interrupted = null;
+    for (Future<Integer> future : futures) {
+      while (true) {
+        try {
+          final int numMerged = future.get();
+          assert numMerged == docCount;
+          break;
+        } catch (InterruptedException ie) {
+          // keep waiting, the part is still running
+          interrupted = ie;
+        } catch (ExecutionException ee) {
+          if (th == null) {
+            th = ee.getCause();
+          }
+          break;
+        }
+      }
+    }
+
+    if (mergeState.infoStream.isEnabled("SM")) {
+      mergeState.infoStream.message("SM", "merged " + parts.size() + " parts concurrently in " + (System.currentTimeMillis() - t0) + " msec");
+    }
+
+    if (th != null) {
+      if (interrupted != null) {
+        Thread.currentThread().interrupt();
+      }
+      if (th instanceof IOException) throw (IOException) th;
+      if (th instanceof RuntimeException) throw (RuntimeException) th;
+      if (th instanceof Error) throw (Error) th;
+      throw new RuntimeException(th);
+    }
+    if (interrupted != null) {
+      throw new ThreadInterruptedException(interrupted);
+    }
+  }
+
+  /** Returns a shallow copy of the merge state, with private
+   *  per-field state, for use by a concurrently merged part. */
+  private MergeState copyMergeState() {
+    final MergeState copy = new MergeState();
+    copy.segmentInfo = mergeState.segmentInfo;
+    copy.fieldInfos = mergeState.fieldInfos;
+    copy.readers = mergeState.readers;
+    copy.docMaps = mergeState.docMaps;
+    copy.docBase = mergeState.docBase;
+    copy.checkAbort = mergeState.checkAbort;
+    copy.infoStream = mergeState.infoStream;
+    copy.payloadProcessorProvider = mergeState.payloadProcessorProvider;
+    copy.readerPayloadProcessor = mergeState.readerPayloadProcessor;
+    copy.currentPayloadProcessor = new PayloadProcessorProvider.PayloadProcessor[mergeState.currentPayloadProcessor.length];
+    copy.matchingSegmentReaders = mergeState.matchingSegmentReaders;
+    copy.matchedCount = mergeState.matchedCount;
+    return copy;
+  }
+
   private void setMatchingSegmentReaders() {
     // If the i'th reader is a SegmentReader and has
     // identical fieldName -> number mapping, then this
@@ -246,7 +380,7 @@ final class SegmentMerger {
    * @throws CorruptIndexException if the index is corrupt
    * @throws IOException if there is a low-level IO error
    */
-  private int mergeFields() throws CorruptIndexException, IOException {
+  private int mergeFields(MergeState mergeState) throws CorruptIndexException, IOException {
     final StoredFieldsWriter fieldsWriter = codec.storedFieldsFormat().fieldsWriter(directory, mergeState.segmentInfo, context);
     
     try {
@@ -260,7 +394,7 @@ final class SegmentMerger {
    * Merge the TermVectors from each of the segments into the new one.
    * @throws IOException
    */
-  private final int mergeVectors() throws IOException {
+  private final int mergeVectors(MergeState mergeState) throws IOException {
     final TermVectorsWriter termVectorsWriter = codec.termVectorsFormat().vectorsWriter(directory, mergeState.segmentInfo, context);
     
     try {
@@ -302,7 +436,7 @@ final class SegmentMerger {
     return docBase;
   }
 
-  private final void mergeTerms(SegmentWriteState segmentWriteState) throws CorruptIndexException, IOException {
+  private final void mergeTerms(SegmentWriteState segmentWriteState, MergeState mergeState) throws CorruptIndexException, IOException {
     
     final List<Fields> fields = new ArrayList<Fields>();
     final List<ReaderSlice> slices = new ArrayList<ReaderSlice>();
@@ -336,7 +470,7 @@ final class SegmentMerger {
     }
   }
 
-  private void mergePerDoc(SegmentWriteState segmentWriteState) throws IOException {
+  private void mergePerDoc(SegmentWriteState segmentWriteState, MergeState mergeState) throws IOException {
       final PerDocConsumer docsConsumer = codec.docValuesFormat()
           .docsConsumer(new PerDocWriteState(segmentWriteState));
       assert docsConsumer != null;
@@ -353,7 +487,7 @@ final class SegmentMerger {
       }
   }
   
-  private void mergeNorms(SegmentWriteState segmentWriteState) throws IOException {
+  private void mergeNorms(SegmentWriteState segmentWriteState, MergeState mergeState) throws IOException {
     final PerDocConsumer docsConsumer = codec.normsFormat()
         .docsConsumer(new PerDocWriteState(segmentWriteState));
     assert docsConsumer != null;
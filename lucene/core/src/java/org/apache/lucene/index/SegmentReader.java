@@ -18,14 +18,20 @@ package org.apache.lucene.index;
  */
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.codecs.PerDocProducer;
 import org.apache.lucene.codecs.StoredFieldsReader;
 import org.apache.lucene.codecs.TermVectorsReader;
 import org.apache.lucene.search.FieldCache; // javadocs
+import org.apache.lucene.index.NumericDocValuesUpdates.FieldUpdates;
 import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.IOUtils;
 
 /**
  * IndexReader implementation over a single segment. 
@@ -44,6 +50,18 @@ public final class SegmentReader extends AtomicReader {
   // tells us the docCount:
   private final int numDocs;
 
+  // Numeric DocValues updates, keyed by field; null until
+  // they are first needed and read from
+  // numericUpdatesInput, then never modified:
+  private Map<String,FieldUpdates> numericUpdates;
+
+  // The open updates file until it's read; it's opened up
+  // front so that it can't be deleted in the meantime:
+  private IndexInput numericUpdatesInput;
+
+  // DocValues of the updated fields, created on demand:
+  private final Map<String,DocValues> updatedDocValues = new HashMap<String,DocValues>();
+
   final SegmentCoreReaders core;
 
   /**
@@ -63,6 +81,10 @@ public final class SegmentReader extends AtomicReader {
         liveDocs = null;
       }
       numDocs = si.info.getDocCount() - si.getDelCount();
+      numericUpdatesInput = NumericDocValuesUpdates.openInput(directory(), si, new IOContext(IOContext.READ, true));
+      if (numericUpdatesInput == null) {
+        numericUpdates = Collections.emptyMap();
+      }
       success = true;
     } finally {
       // With lock-less commits, it's entirely possible (and
@@ -77,12 +99,36 @@ public final class SegmentReader extends AtomicReader {
   }
 
   // Create new SegmentReader sharing core from a previous
-  // SegmentReader and loading new live docs from a new
-  // deletes file.  Used by openIfChanged.
+  // SegmentReader and loading new live docs and numeric
+  // DocValues updates from new generation files.  Used by
+  // openIfChanged.
   SegmentReader(SegmentInfoPerCommit si, SegmentCoreReaders core, IOContext context) throws IOException {
     this(si, core,
-         si.info.getCodec().liveDocsFormat().readLiveDocs(si.info.dir, si, context),
-         si.info.getDocCount() - si.getDelCount());
+         si.hasDeletions() ? si.info.getCodec().liveDocsFormat().readLiveDocs(si.info.dir, si, context) : null,
+         si.info.getDocCount() - si.getDelCount(),
+         context);
+  }
+
+  // Create new SegmentReader sharing core from a previous
+  // SegmentReader, using the provided in-memory liveDocs
+  // and reading the numeric DocValues updates from the
+  // current generation file when they're needed.  Used by
+  // openIfChanged, and by IndexWriter to provide a new NRT
+  // reader when it doesn't hold the updates in RAM:
+  SegmentReader(SegmentInfoPerCommit si, SegmentCoreReaders core, Bits liveDocs, int numDocs, IOContext context) throws IOException {
+    this(si, core, liveDocs, numDocs, (Map<String,FieldUpdates>) null);
+    boolean success = false;
+    try {
+      numericUpdatesInput = NumericDocValuesUpdates.openInput(si.info.dir, si, context);
+      if (numericUpdatesInput == null) {
+        numericUpdates = Collections.emptyMap();
+      }
+      success = true;
+    } finally {
+      if (!success) {
+        core.decRef();
+      }
+    }
   }
 
   // Create new SegmentReader sharing core from a previous
@@ -90,14 +136,22 @@ public final class SegmentReader extends AtomicReader {
   // liveDocs.  Used by IndexWriter to provide a new NRT
   // reader:
   SegmentReader(SegmentInfoPerCommit si, SegmentCoreReaders core, Bits liveDocs, int numDocs) throws IOException {
+    this(si, core, liveDocs, numDocs, Collections.<String,FieldUpdates>emptyMap());
+  }
+
+  // Create new SegmentReader sharing core from a previous
+  // SegmentReader and using the provided in-memory
+  // liveDocs and numeric DocValues updates.  Used by
+  // IndexWriter to provide a new NRT reader:
+  SegmentReader(SegmentInfoPerCommit si, SegmentCoreReaders core, Bits liveDocs, int numDocs, Map<String,FieldUpdates> numericUpdates) throws IOException {
     this.si = si;
     this.core = core;
     core.incRef();
 
-    assert liveDocs != null;
     this.liveDocs = liveDocs;
 
     this.numDocs = numDocs;
+    this.numericUpdates = numericUpdates;
   }
 
   @Override
@@ -109,7 +163,14 @@ public final class SegmentReader extends AtomicReader {
   @Override
   protected void doClose() throws IOException {
     //System.out.println("SR.close seg=" + si);
-    core.decRef();
+    try {
+      core.decRef();
+    } finally {
+      synchronized (updatedDocValues) {
+        IOUtils.close(numericUpdatesInput);
+        numericUpdatesInput = null;
+      }
+    }
   }
 
   @Override
@@ -194,7 +255,7 @@ public final class SegmentReader extends AtomicReader {
   /**
    * Return the SegmentInfoPerCommit of the segment this reader is reading.
    */
-  SegmentInfoPerCommit getSegmentInfo() {
+  public SegmentInfoPerCommit getSegmentInfo() {
     return si;
   }
 
@@ -230,7 +291,41 @@ public final class SegmentReader extends AtomicReader {
     if (perDoc == null) {
       return null;
     }
-    return perDoc.docValues(field);
+    final DocValues values = perDoc.docValues(field);
+    if (values == null || !NumericDocValuesUpdates.canUpdate(values.getType())) {
+      return values;
+    }
+    synchronized (updatedDocValues) {
+      final FieldUpdates updates = getNumericUpdates().get(field);
+      if (updates == null) {
+        return values;
+      }
+      DocValues docValues = updatedDocValues.get(field);
+      if (docValues == null) {
+        docValues = new NumericDocValuesUpdates.UpdatedDocValues(values, updates);
+        updatedDocValues.put(field, docValues);
+      }
+      return docValues;
+    }
+  }
+
+  /** Returns the numeric DocValues updates of this
+   *  segment, reading them on first use. */
+  Map<String,FieldUpdates> getNumericUpdates() throws IOException {
+    synchronized (updatedDocValues) {
+      if (numericUpdates == null) {
+        ensureOpen();
+        assert numericUpdatesInput != null;
+        try {
+          numericUpdates = NumericDocValuesUpdates.read(numericUpdatesInput, si.info.getDocCount());
+        } finally {
+          final IndexInput in = numericUpdatesInput;
+          numericUpdatesInput = null;
+          in.close();
+        }
+      }
+      return numericUpdates;
+    }
   }
   
   @Override
@@ -161,7 +161,8 @@ final class StandardDirectoryReader extends DirectoryReader {
           readerShared[i] = false;
           newReaders[i] = newReader;
         } else {
-          if (newReaders[i].getSegmentInfo().getDelGen() == infos.info(i).getDelGen()) {
+          if (newReaders[i].getSegmentInfo().getDelGen() == infos.info(i).getDelGen()
+              && newReaders[i].getSegmentInfo().getUpdatesGen() == infos.info(i).getUpdatesGen()) {
             // No change; this reader will be shared between
             // the old and the new one, so we must incRef
             // it:
@@ -171,7 +172,7 @@ final class StandardDirectoryReader extends DirectoryReader {
             readerShared[i] = false;
             // Steal the ref returned by SegmentReader ctor:
             assert infos.info(i).info.dir == newReaders[i].getSegmentInfo().info.dir;
-            assert infos.info(i).hasDeletions();
+            assert infos.info(i).hasDeletions() || infos.info(i).hasNumericUpdates();
             newReaders[i] = new SegmentReader(infos.info(i), newReaders[i].core, IOContext.READ);
           }
         }
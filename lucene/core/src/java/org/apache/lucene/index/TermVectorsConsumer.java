@@ -50,6 +50,7 @@ final class TermVectorsConsumer extends TermsHashConsumer {
 
   @Override
   void flush(Map<String, TermsHashConsumerPerField> fieldsToFlush, final SegmentWriteState state) throws IOException {
+    final long t0 = System.nanoTime();
     if (writer != null) {
       int numDocs = state.segmentInfo.getDocCount();
       // At least one doc in this run had term vectors enabled
@@ -71,6 +72,7 @@ final class TermVectorsConsumer extends TermsHashConsumer {
       perField.termsHashPerField.reset();
       perField.shrinkHash();
     }
+    docWriter.flushStats.addPhaseNanos(FlushStats.Phase.TERM_VECTORS, System.nanoTime() - t0);
   }
 
   /** Fills in no-term-vectors for all docs we haven't seen
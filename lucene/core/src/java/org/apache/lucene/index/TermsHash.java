@@ -95,6 +95,19 @@ final class TermsHash extends InvertedDocConsumer {
     }
   }
 
+  // Return all blocks, including the first ones, to the
+  // allocators once our segment is flushed
+  void dropBuffersAndReset() {
+    intPool.dropBuffersAndReset();
+    // recycled byte blocks must be zero filled, which only
+    // reset() does:
+    bytePool.reset();
+    bytePool.dropBuffersAndReset();
+    if (nextTermsHash != null) {
+      nextTermsHash.dropBuffersAndReset();
+    }
+  }
+
   @Override
   void flush(Map<String,InvertedDocConsumerPerField> fieldsToFlush, final SegmentWriteState state) throws IOException {
     Map<String,TermsHashConsumerPerField> childFields = new HashMap<String,TermsHashConsumerPerField>();
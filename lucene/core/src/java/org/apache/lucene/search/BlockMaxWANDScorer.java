@@ -0,0 +1,273 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.search.BooleanQuery.BooleanWeight;
+
+/**
+ * A top-level {@link Scorer} for disjunctions of {@link TermQuery}s
+ * which skips documents that cannot make it into the hits of a
+ * {@link TopScoreDocCollector}, using block-max WAND (Ding and
+ * Suel, "Faster Top-k Document Retrieval Using Block-Max Indexes",
+ * SIGIR 2011).
+ *
+ * <p>Every term provides an upper bound of its scores over all
+ * documents ({@link TermScorer#maxScore()}) and over the current
+ * block of its postings ({@link TermScorer#maxBlockScore()}). The
+ * terms are kept sorted by their current document. The first
+ * document that may be competitive is the pivot: the document of
+ * the first term at which the sum of the upper bounds so far
+ * exceeds the minimum competitive score of the collector. If the
+ * block bounds of the terms up to the pivot don't exceed it either,
+ * the whole range up to the end of the first of these blocks is
+ * skipped.
+ *
+ * <p>Skipped documents are not collected, so the total hit count
+ * of the collector is only a lower bound. With any other collector,
+ * this scorer delegates to {@link BooleanScorer} or
+ * {@link BooleanScorer2} and scores all matches.
+ *
+ * @see BooleanQuery#setUseBlockMaxWAND(boolean)
+ */
+final class BlockMaxWANDScorer extends Scorer {
+  // allows for rounding differences between the bounds and the actual scores
+  private static final float SLACK = 1e-5f;
+
+  private final List<Scorer> optional;
+  private final boolean disableCoord;
+  private final int maxCoord;
+  private final boolean scoreDocsInOrder;
+  private final float[] coordFactors;
+  private final float maxCoordFactor;
+
+  // terms that are not exhausted, sorted by docID, and their global upper bounds
+  private final TermScorer[] terms;
+  private final float[] maxScores;
+  private int numTerms;
+
+  private Scorer fallback; // lazily created if we can't skip
+
+  BlockMaxWANDScorer(BooleanWeight weight, boolean disableCoord, int maxCoord,
+      List<Scorer> optional, boolean scoreDocsInOrder) throws IOException {
+    super(weight);
+    this.optional = optional;
+    this.disableCoord = disableCoord;
+    this.maxCoord = maxCoord;
+    this.scoreDocsInOrder = scoreDocsInOrder;
+    coordFactors = new float[optional.size() + 1];
+    float max = 0f;
+    for (int i = 0; i < coordFactors.length; i++) {
+      coordFactors[i] = disableCoord ? 1.0f : weight.coord(i, maxCoord);
+      max = Math.max(max, coordFactors[i]);
+    }
+    maxCoordFactor = max;
+    terms = new TermScorer[optional.size()];
+    maxScores = new float[optional.size()];
+  }
+
+  private Scorer fallback() throws IOException {
+    if (fallback == null) {
+      final List<Scorer> none = Collections.emptyList();
+      if (scoreDocsInOrder) {
+        fallback = new BooleanScorer2((BooleanWeight) weight, disableCoord, 0, none, none, optional, maxCoord);
+      } else {
+        fallback = new BooleanScorer((BooleanWeight) weight, disableCoord, 0, optional, none, maxCoord);
+      }
+    }
+    return fallback;
+  }
+
+  /** Returns true if a document whose score is at most <code>bound</code> may be collected. */
+  private static boolean competitive(float bound, float minScore) {
+    // NaN means that no bound is known (infinity times a zero coord)
+    return Float.isNaN(bound) || bound + Math.abs(bound) * SLACK > minScore;
+  }
+
+  @Override
+  public void score(Collector collector) throws IOException {
+    if (fallback != null || !(collector instanceof TopScoreDocCollector)) {
+      fallback().score(collector);
+      return;
+    }
+    final TopScoreDocCollector topCollector = (TopScoreDocCollector) collector;
+    final MatchScorer matchScorer = new MatchScorer(weight);
+    collector.setScorer(matchScorer);
+
+    numTerms = 0;
+    for (Scorer scorer : optional) {
+      final TermScorer term = (TermScorer) scorer;
+      if (term.nextDoc() != NO_MORE_DOCS) {
+        terms[numTerms] = term;
+        maxScores[numTerms] = term.maxScore() * maxCoordFactor;
+        numTerms++;
+      }
+    }
+    sortTerms();
+
+    while (numTerms > 0) {
+      final float minScore = topCollector.minCompetitiveScore();
+
+      // find the pivot term
+      float bound = 0f;
+      int pivot = -1;
+      for (int i = 0; i < numTerms; i++) {
+        bound += maxScores[i];
+        if (competitive(bound, minScore)) {
+          pivot = i;
+          break;
+        }
+      }
+      if (pivot == -1) {
+        // no remaining document can be competitive
+        break;
+      }
+      final int pivotDoc = terms[pivot].docID();
+      // all terms on the pivot doc contribute to its score
+      int last = pivot;
+      while (last + 1 < numTerms && terms[last + 1].docID() == pivotDoc) {
+        last++;
+      }
+
+      // check the bounds of the blocks that contain the pivot doc
+      float blockBound = 0f;
+      int blockEnd = NO_MORE_DOCS;
+      for (int i = 0; i <= last; i++) {
+        blockEnd = Math.min(blockEnd, terms[i].advanceShallow(pivotDoc));
+        blockBound += terms[i].maxBlockScore();
+      }
+
+      if (!competitive(blockBound * maxCoordFactor, minScore)) {
+        // no doc can be competitive until one of these blocks ends
+        // or the next term may contribute
+        int target = blockEnd == NO_MORE_DOCS ? NO_MORE_DOCS : blockEnd + 1;
+        if (last + 1 < numTerms) {
+          target = Math.min(target, terms[last + 1].docID());
+        }
+        for (int i = 0; i <= last; i++) {
+          terms[i].advance(target);
+        }
+      } else if (terms[0].docID() == pivotDoc) {
+        // all terms up to the pivot are on the pivot doc: score it
+        double score = 0;
+        for (int i = 0; i <= last; i++) {
+          score += terms[i].score();
+        }
+        matchScorer.doc = pivotDoc;
+        matchScorer.freq = last + 1;
+        matchScorer.score = (float) score * coordFactors[last + 1];
+        collector.collect(pivotDoc);
+        for (int i = 0; i <= last; i++) {
+          terms[i].nextDoc();
+        }
+      } else {
+        // docs before the pivot doc can't be competitive
+        for (int i = 0; i < pivot && terms[i].docID() < pivotDoc; i++) {
+          terms[i].advance(pivotDoc);
+        }
+      }
+      sortTerms();
+    }
+  }
+
+  /** Removes exhausted terms and sorts the others by docID. */
+  private void sortTerms() {
+    int size = 0;
+    for (int i = 0; i < numTerms; i++) {
+      if (terms[i].docID() != NO_MORE_DOCS) {
+        terms[size] = terms[i];
+        maxScores[size] = maxScores[i];
+        size++;
+      }
+    }
+    numTerms = size;
+    // insertion sort: only the terms that moved are out of order
+    for (int i = 1; i < numTerms; i++) {
+      final TermScorer term = terms[i];
+      final float maxScore = maxScores[i];
+      final int doc = term.docID();
+      int j = i - 1;
+      while (j >= 0 && terms[j].docID() > doc) {
+        terms[j + 1] = terms[j];
+        maxScores[j + 1] = maxScores[j];
+        j--;
+      }
+      terms[j + 1] = term;
+      maxScores[j + 1] = maxScore;
+    }
+  }
+
+  @Override
+  public int docID() {
+    return fallback == null ? -1 : fallback.docID();
+  }
+
+  @Override
+  public int nextDoc() throws IOException {
+    return fallback().nextDoc();
+  }
+
+  @Override
+  public int advance(int target) throws IOException {
+    return fallback().advance(target);
+  }
+
+  @Override
+  public float score() throws IOException {
+    return fallback().score();
+  }
+
+  @Override
+  public float freq() throws IOException {
+    return fallback().freq();
+  }
+
+  @Override
+  public String toString() {
+    return "BlockMaxWANDScorer(" + optional + ")";
+  }
+
+  // Sets the current doc and score for the collector, like
+  // BooleanScorer.BucketScorer
+  private static final class MatchScorer extends Scorer {
+    float score;
+    int doc = -1;
+    int freq;
+
+    MatchScorer(Weight weight) { super(weight); }
+
+    @Override
+    public int advance(int target) throws IOException { return NO_MORE_DOCS; }
+
+    @Override
+    public int docID() { return doc; }
+
+    @Override
+    public float freq() { return freq; }
+
+    @Override
+    public int nextDoc() throws IOException { return NO_MORE_DOCS; }
+
+    @Override
+    public float score() throws IOException { return score; }
+  }
+}
@@ -126,6 +126,36 @@ public class BooleanQuery extends Query implements Iterable<BooleanClause> {
     return minNrShouldMatch;
   }
 
+  private boolean useBlockMaxWAND = false;
+
+  /**
+   * Expert: if true, a pure disjunction of {@link TermQuery}s that is
+   * searched for the top hits by score (with a {@link TopScoreDocCollector})
+   * skips documents which cannot make it into the top hits, using upper
+   * bounds of the term scores per block of postings. The top hits are the
+   * same, but {@link TopDocs#totalHits} is only a lower bound of the number
+   * of matching documents. Other collectors still see all matches.
+   *
+   * <p>Skipping is most effective with codecs that record block maximums
+   * in their postings, like the {@link org.apache.lucene.codecs.lucene40.Lucene40PostingsFormat},
+   * and similarities which implement
+   * {@link org.apache.lucene.search.similarities.Similarity.ExactSimScorer#maxScore(int)}.
+   * Default is false.
+   *
+   * @lucene.experimental
+   */
+  public void setUseBlockMaxWAND(boolean useBlockMaxWAND) {
+    this.useBlockMaxWAND = useBlockMaxWAND;
+  }
+
+  /**
+   * Returns whether top hits are computed with block-max WAND.
+   * @see #setUseBlockMaxWAND(boolean)
+   */
+  public boolean getUseBlockMaxWAND() {
+    return useBlockMaxWAND;
+  }
+
   /** Adds a clause to a boolean query.
    *
    * @throws TooManyClauses if the new number of clauses exceeds the maximum clause number
@@ -183,7 +213,7 @@ public class BooleanQuery extends Query implements Iterable<BooleanClause> {
       boolean termConjunction = clauses.isEmpty() || minNrShouldMatch != 0 ? false : true;
       for (int i = 0 ; i < clauses.size(); i++) {
         BooleanClause c = clauses.get(i);
-        Weight w = c.getQuery().createWeight(searcher);
+        Weight w = searcher.createWeight(c.getQuery());
         if (!(c.isRequired() && (w instanceof TermWeight))) {
           termConjunction = false;
         }
@@ -329,6 +359,11 @@ public class BooleanQuery extends Query implements Iterable<BooleanClause> {
         }
       }
       
+      if (useBlockMaxWAND && topScorer && required.size() == 0 && prohibited.size() == 0
+          && minNrShouldMatch == 0 && optional.size() > 1 && allTermScorers(optional)) {
+        return new BlockMaxWANDScorer(this, disableCoord, maxCoord, optional, scoreDocsInOrder);
+      }
+
       // Check if we can return a BooleanScorer
       if (!scoreDocsInOrder && topScorer && required.size() == 0) {
         return new BooleanScorer(this, disableCoord, minNrShouldMatch, optional, prohibited, maxCoord);
@@ -348,6 +383,15 @@ public class BooleanQuery extends Query implements Iterable<BooleanClause> {
       return new BooleanScorer2(this, disableCoord, minNrShouldMatch, required, prohibited, optional, maxCoord);
     }
 
+    private boolean allTermScorers(List<Scorer> scorers) {
+      for (Scorer scorer : scorers) {
+        if (!(scorer instanceof TermScorer)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
     private Scorer createConjunctionTermScorer(AtomicReaderContext context, Bits acceptDocs)
         throws IOException {
 
@@ -539,14 +583,15 @@ public class BooleanQuery extends Query implements Iterable<BooleanClause> {
     return (this.getBoost() == other.getBoost())
         && this.clauses.equals(other.clauses)
         && this.getMinimumNumberShouldMatch() == other.getMinimumNumberShouldMatch()
-        && this.disableCoord == other.disableCoord;
+        && this.disableCoord == other.disableCoord
+        && this.useBlockMaxWAND == other.useBlockMaxWAND;
   }
 
   /** Returns a hash code value for this object.*/
   @Override
   public int hashCode() {
     return Float.floatToIntBits(getBoost()) ^ clauses.hashCode()
-      + getMinimumNumberShouldMatch() + (disableCoord ? 17:0);
+      + getMinimumNumberShouldMatch() + (disableCoord ? 17:0) + (useBlockMaxWAND ? 31:0);
   }
   
 }
@@ -73,23 +73,7 @@ final class BooleanScorer extends Scorer {
     
     @Override
     public void collect(final int doc) throws IOException {
-      final BucketTable table = bucketTable;
-      final int i = doc & BucketTable.MASK;
-      final Bucket bucket = table.buckets[i];
-      
-      if (bucket.doc != doc) {                    // invalid bucket
-        bucket.doc = doc;                         // set doc
-        bucket.score = scorer.score();            // initialize score
-        bucket.bits = mask;                       // initialize mask
-        bucket.coord = 1;                         // initialize coord
-
-        bucket.next = table.first;                // push onto valid list
-        table.first = bucket;
-      } else {                                    // valid bucket
-        bucket.score += scorer.score();           // increment score
-        bucket.bits |= mask;                      // add bits in mask
-        bucket.coord++;                           // increment coord
-      }
+      bucketTable.collect(doc, scorer.score(), mask);
     }
     
     @Override
@@ -138,55 +122,96 @@ final class BooleanScorer extends Scorer {
     
   }
 
-  static final class Bucket {
-    int doc = -1;            // tells if bucket is valid
-    float score;             // incremental score
-    // TODO: break out bool anyProhibited, int
-    // numRequiredMatched; then we can remove 32 limit on
-    // required clauses
-    int bits;                // used for bool constraints
-    int coord;               // count of terms in score
-    Bucket next;             // next valid bucket
-  }
-  
-  /** A simple hash table of document scores within a range. */
+  /** A table of the scores of the documents of a window of {@link #SIZE}
+   *  documents. Scores, coords and bits are stored in parallel arrays which
+   *  are indexed by the low bits of the doc IDs, and a bitmap records which
+   *  slots have been populated in the current window. */
   static final class BucketTable {
     public static final int SIZE = 1 << 11;
     public static final int MASK = SIZE - 1;
 
-    final Bucket[] buckets = new Bucket[SIZE];
-    Bucket first = null;                          // head of valid list
-  
-    public BucketTable() {
-      // Pre-fill to save the lazy init when collecting
-      // each sub:
-      for(int idx=0;idx<SIZE;idx++) {
-        buckets[idx] = new Bucket();
-      }
-    }
+    final float[] scores = new float[SIZE];       // incremental score
+    final int[] coords = new int[SIZE];           // count of terms in score
+    // TODO: break out bool anyProhibited, int
+    // numRequiredMatched; then we can remove 32 limit on
+    // required clauses
+    final int[] bits = new int[SIZE];             // used for bool constraints
+    final long[] populated = new long[SIZE >>> 6]; // valid slots
 
     public Collector newCollector(int mask) {
       return new BooleanScorerCollector(mask, this);
     }
 
+    /** Adds the score of a matching document to its slot. */
+    void collect(final int doc, final float score, final int mask) {
+      final int slot = doc & MASK;
+      final int word = slot >>> 6;
+      final long bit = 1L << slot;
+      if ((populated[word] & bit) == 0) {         // invalid slot
+        populated[word] |= bit;
+        scores[slot] = score;                     // initialize score
+        bits[slot] = mask;                        // initialize mask
+        coords[slot] = 1;                         // initialize coord
+      } else {                                    // valid slot
+        scores[slot] += score;                    // increment score
+        bits[slot] |= mask;                       // add bits in mask
+        coords[slot]++;                           // increment coord
+      }
+    }
+
+    /** Adds the scores of the matching documents
+     *  <code>docs[from:to]</code>, which must all be in the current
+     *  window, at once. */
+    void collect(final int[] docs, final float[] docScores, final int from, final int to, final int mask) {
+      final float[] scores = this.scores;
+      final int[] coords = this.coords;
+      final int[] bits = this.bits;
+      final long[] populated = this.populated;
+      for (int i = from; i < to; ++i) {
+        final int slot = docs[i] & MASK;
+        final int word = slot >>> 6;
+        final long bit = 1L << slot;
+        if ((populated[word] & bit) == 0) {
+          populated[word] |= bit;
+          scores[slot] = docScores[i];
+          bits[slot] = mask;
+          coords[slot] = 1;
+        } else {
+          scores[slot] += docScores[i];
+          bits[slot] |= mask;
+          coords[slot]++;
+        }
+      }
+    }
+
     public int size() { return SIZE; }
   }
 
   static final class SubScorer {
     public Scorer scorer;
+    // set when scorer can fill the bucket table directly from bulk reads:
+    public TermScorer termScorer;
+    public MatchOnlyTermScorer matchOnlyTermScorer;
     // TODO: re-enable this if BQ ever sends us required clauses
     //public boolean required = false;
     public boolean prohibited;
     public Collector collector;
+    public int mask;
     public SubScorer next;
 
     public SubScorer(Scorer scorer, boolean required, boolean prohibited,
-        Collector collector, SubScorer next)
+        int mask, Collector collector, SubScorer next)
       throws IOException {
       if (required) {
         throw new IllegalArgumentException("this scorer cannot handle required=true");
       }
       this.scorer = scorer;
+      if (scorer instanceof TermScorer) {
+        termScorer = (TermScorer) scorer;
+      } else if (scorer instanceof MatchOnlyTermScorer) {
+        matchOnlyTermScorer = (MatchOnlyTermScorer) scorer;
+      }
+      this.mask = mask;
       // TODO: re-enable this if BQ ever sends us required clauses
       //this.required = required;
       this.prohibited = prohibited;
@@ -201,8 +226,9 @@ final class BooleanScorer extends Scorer {
   // TODO: re-enable this if BQ ever sends us required clauses
   //private int requiredMask = 0;
   private final int minNrShouldMatch;
-  private int end;
-  private Bucket current;
+  private int end;                // end of the current window
+  private int windowWord;         // next word of the bitmap to collect
+  private boolean more = true;    // whether sub-scorers may have more docs
   // Any time a prohibited clause matches we set bit 0:
   private static final int PROHIBITED_MASK = 1;
   
@@ -214,7 +240,7 @@ final class BooleanScorer extends Scorer {
     if (optionalScorers != null && optionalScorers.size() > 0) {
       for (Scorer scorer : optionalScorers) {
         if (scorer.nextDoc() != NO_MORE_DOCS) {
-          scorers = new SubScorer(scorer, false, false, bucketTable.newCollector(0), scorers);
+          scorers = new SubScorer(scorer, false, false, 0, bucketTable.newCollector(0), scorers);
         }
       }
     }
@@ -222,7 +248,7 @@ final class BooleanScorer extends Scorer {
     if (prohibitedScorers != null && prohibitedScorers.size() > 0) {
       for (Scorer scorer : prohibitedScorers) {
         if (scorer.nextDoc() != NO_MORE_DOCS) {
-          scorers = new SubScorer(scorer, false, true, bucketTable.newCollector(PROHIBITED_MASK), scorers);
+          scorers = new SubScorer(scorer, false, true, PROHIBITED_MASK, bucketTable.newCollector(PROHIBITED_MASK), scorers);
         }
       }
     }
@@ -233,69 +259,76 @@ final class BooleanScorer extends Scorer {
     }
   }
 
-  // firstDocID is ignored since nextDoc() initializes 'current'
+  // firstDocID is ignored since the table is filled window per window
   @Override
   public boolean score(Collector collector, int max, int firstDocID) throws IOException {
     // Make sure it's only BooleanScorer that calls us:
     assert firstDocID == -1;
-    boolean more;
-    Bucket tmp;
+    final float[] scores = bucketTable.scores;
+    final int[] coords = bucketTable.coords;
+    final int[] bits = bucketTable.bits;
+    final long[] populated = bucketTable.populated;
     BucketScorer bs = new BucketScorer(weight);
 
     // The internal loop will set the score and doc before calling collect.
     collector.setScorer(bs);
-    do {
-      bucketTable.first = null;
-      
-      while (current != null) {         // more queued 
-
-        // check prohibited & required
-        if ((current.bits & PROHIBITED_MASK) == 0) {
-
-          // TODO: re-enable this if BQ ever sends us required
-          // clauses
-          //&& (current.bits & requiredMask) == requiredMask) {
-          
-          // TODO: can we remove this?  
-          if (current.doc >= max){
-            tmp = current;
-            current = current.next;
-            tmp.next = bucketTable.first;
-            bucketTable.first = tmp;
-            continue;
+    while (true) {
+      // collect the populated slots of the window, in order
+      final int base = end - BucketTable.SIZE;
+      for (; windowWord < populated.length; ++windowWord) {
+        long word = populated[windowWord];
+        while (word != 0L) {
+          final int slot = (windowWord << 6) | Long.numberOfTrailingZeros(word);
+          final int doc = base + slot;
+
+          // TODO: can we remove this?
+          if (doc >= max) {
+            // keep this slot and the next ones for the next call
+            populated[windowWord] = word;
+            return true;
           }
-          
-          if (current.coord >= minNrShouldMatch) {
-            bs.score = current.score * coordFactors[current.coord];
-            bs.doc = current.doc;
-            bs.freq = current.coord;
-            collector.collect(current.doc);
+          word &= word - 1;
+
+          // check prohibited & required
+          if ((bits[slot] & PROHIBITED_MASK) == 0) {
+
+            // TODO: re-enable this if BQ ever sends us required
+            // clauses
+            //&& (bits[slot] & requiredMask) == requiredMask) {
+
+            final int coord = coords[slot];
+            if (coord >= minNrShouldMatch) {
+              bs.score = scores[slot] * coordFactors[coord];
+              bs.doc = doc;
+              bs.freq = coord;
+              collector.collect(doc);
+            }
           }
         }
-        
-        current = current.next;         // pop the queue
+        populated[windowWord] = 0L;
       }
-      
-      if (bucketTable.first != null){
-        current = bucketTable.first;
-        bucketTable.first = current.next;
-        return true;
+
+      if (!more) {
+        return false;
       }
 
-      // refill the queue
+      // refill the table
       more = false;
       end += BucketTable.SIZE;
+      windowWord = 0;
       for (SubScorer sub = scorers; sub != null; sub = sub.next) {
         int subScorerDocID = sub.scorer.docID();
         if (subScorerDocID != NO_MORE_DOCS) {
-          more |= sub.scorer.score(sub.collector, end, subScorerDocID);
+          if (sub.termScorer != null) {
+            more |= sub.termScorer.score(bucketTable, sub.mask, end);
+          } else if (sub.matchOnlyTermScorer != null) {
+            more |= sub.matchOnlyTermScorer.score(bucketTable, sub.mask, end);
+          } else {
+            more |= sub.scorer.score(sub.collector, end, subScorerDocID);
+          }
         }
       }
-      current = bucketTable.first;
-      
-    } while (current != null || more);
-
-    return false;
+    }
   }
   
   @Override
@@ -144,6 +144,11 @@ class BooleanScorer2 extends Scorer {
     public int advance(int target) throws IOException {
       return scorer.advance(target);
     }
+
+    @Override
+    public long cost() {
+      return scorer.cost();
+    }
   }
 
   private Scorer countingDisjunctionSumScorer(final List<Scorer> scorers,
@@ -319,6 +324,11 @@ class BooleanScorer2 extends Scorer {
     return doc = countingSumScorer.advance(target);
   }
 
+  @Override
+  public long cost() {
+    return countingSumScorer.cost();
+  }
+
   @Override
   public Collection<ChildScorer> getChildren() {
     ArrayList<ChildScorer> children = new ArrayList<ChildScorer>();
@@ -18,28 +18,36 @@ package org.apache.lucene.search;
  */
 
 import java.io.IOException;
-import java.util.Collections;
-import java.util.Map;
-import java.util.WeakHashMap;
 
 import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.DirectoryReader; // javadocs
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.SortedVIntList;
+import org.apache.lucene.util.WAHDocIdSet;
+import org.apache.lucene.util.WeakIdentityMap;
 
 /**
  * Wraps another {@link Filter}'s result and caches it.  The purpose is to allow
  * filters to simply filter, and then wrap with this class
  * to add caching.
+ * <p>
+ * By default each instance has its own cache, which stores sets that are
+ * not cacheable as {@link FixedBitSet}s. Pass a {@link FilterCache} to
+ * {@link #CachingWrapperFilter(Filter, boolean, FilterCache)} to share a
+ * cache with a memory budget between many filters; such a cache stores sparse
+ * sets in a compressed form (see {@link #docIdSetToCache}). Cache lookups are
+ * lock-free.
  */
 public class CachingWrapperFilter extends Filter {
   // TODO: make this filter aware of ReaderContext. a cached filter could 
   // specify the actual readers key or something similar to indicate on which
   // level of the readers hierarchy it should be cached.
   private final Filter filter;
-  private final Map<Object,DocIdSet> cache = Collections.synchronizedMap(new WeakHashMap<Object,DocIdSet>());
+  private final WeakIdentityMap<Object,DocIdSet> cache = WeakIdentityMap.newConcurrentHashMap();
   private final boolean recacheDeletes;
+  private final FilterCache sharedCache;
 
   /** Wraps another filter's result and caches it.
    * Deletions are not cached and AND'd in on the fly, see
@@ -67,8 +75,22 @@ public class CachingWrapperFilter extends Filter {
    * @param recacheDeletes if deletions on the underlying index should recache
    */
   public CachingWrapperFilter(Filter filter, boolean recacheDeletes) {
+    this(filter, recacheDeletes, null);
+  }
+
+  /** Wraps another filter's result and caches it in a {@link FilterCache}
+   * that may be shared with other filters. All {@link CachingWrapperFilter}s
+   * that use the same cache and wrap equal filters share their cached sets,
+   * and the memory used by all of them is bounded by the cache's budget.
+   * @param filter Filter to cache results of
+   * @param recacheDeletes if deletions on the underlying index should recache
+   * @param sharedCache the cache to use, or <code>null</code> to use a cache
+   *        private to this instance, which is not bounded
+   */
+  public CachingWrapperFilter(Filter filter, boolean recacheDeletes, FilterCache sharedCache) {
     this.filter = filter;
     this.recacheDeletes = recacheDeletes;
+    this.sharedCache = sharedCache;
   }
 
   /** Provide the DocIdSet to be cached, using the DocIdSet provided
@@ -76,12 +98,16 @@ public class CachingWrapperFilter extends Filter {
    *  <p>This implementation returns the given {@link DocIdSet}, if {@link DocIdSet#isCacheable}
    *  returns <code>true</code>, else it copies the {@link DocIdSetIterator} into
    *  a {@link FixedBitSet}.
+   *  <p>If this filter uses a {@link FilterCache}, {@link FixedBitSet}s are
+   *  then compressed if this saves memory, see {@link #compress(FixedBitSet)}.
+   *  Without a {@link FilterCache} they are returned as-is, as some consumers,
+   *  for example block joins, require the cached set to be a {@link FixedBitSet}.
    */
   protected DocIdSet docIdSetToCache(DocIdSet docIdSet, AtomicReader reader) throws IOException {
     if (docIdSet == null) {
       // this is better than returning null, as the nonnull result can be cached
       return DocIdSet.EMPTY_DOCIDSET;
-    } else if (docIdSet.isCacheable()) {
+    } else if (docIdSet.isCacheable() && (sharedCache == null || !(docIdSet instanceof FixedBitSet))) {
       return docIdSet;
     } else {
       final DocIdSetIterator it = docIdSet.iterator();
@@ -91,11 +117,46 @@ public class CachingWrapperFilter extends Filter {
       if (it == null) {
         return DocIdSet.EMPTY_DOCIDSET;
       } else {
-        final FixedBitSet bits = new FixedBitSet(reader.maxDoc());
-        bits.or(it);
-        return bits;
+        final FixedBitSet bits;
+        if (docIdSet instanceof FixedBitSet) {
+          bits = (FixedBitSet) docIdSet;
+        } else {
+          bits = new FixedBitSet(reader.maxDoc());
+          bits.or(it);
+        }
+        return sharedCache == null ? bits : compress(bits);
+      }
+    }
+  }
+
+  /** Returns the smallest cacheable representation of the given bits:
+   *  {@link DocIdSet#EMPTY_DOCIDSET} if no bit is set, else the smallest of
+   *  a {@link SortedVIntList} of the set bits, which is only considered when
+   *  less than one in eight bits is set, a {@link WAHDocIdSet} and the bit
+   *  set itself. Very sparse sets are usually the smallest as a
+   *  {@link SortedVIntList}, while sets with clusters or runs of documents
+   *  are the smallest as a {@link WAHDocIdSet}, which also supports fast
+   *  {@link DocIdSetIterator#advance(int) advance}. */
+  static DocIdSet compress(FixedBitSet bits) throws IOException {
+    final int cardinality = bits.cardinality();
+    if (cardinality == 0) {
+      return DocIdSet.EMPTY_DOCIDSET;
+    }
+    DocIdSet best = bits;
+    long bestBytes = FilterCache.ramBytesUsed(bits);
+    final WAHDocIdSet wah = WAHDocIdSet.copyOf(bits.getBits(), bits.getBits().length);
+    if (wah.ramBytesUsed() < bestBytes) {
+      best = wah;
+      bestBytes = wah.ramBytesUsed();
+    }
+    // a vInt delta is at least one byte
+    if (cardinality < bits.length() >>> 3) {
+      final SortedVIntList list = new SortedVIntList(bits.iterator());
+      if (FilterCache.ramBytesUsed(list) < bestBytes) {
+        best = list;
       }
     }
+    return best;
   }
 
   // for testing
@@ -122,13 +183,17 @@ public class CachingWrapperFilter extends Filter {
       cacheAcceptDocs = null;
     }
 
-    DocIdSet docIdSet = cache.get(key);
+    DocIdSet docIdSet = sharedCache == null ? cache.get(key) : sharedCache.get(key, this);
     if (docIdSet != null) {
       hitCount++;
     } else {
       missCount++;
       docIdSet = docIdSetToCache(filter.getDocIdSet(context, cacheAcceptDocs), reader);
-      cache.put(key, docIdSet);
+      if (sharedCache == null) {
+        cache.put(key, docIdSet);
+      } else {
+        sharedCache.put(reader, key, this, docIdSet);
+      }
     }
 
     if (doCacheAcceptDocs) {
@@ -19,13 +19,23 @@ package org.apache.lucene.search;
 
 import org.apache.lucene.util.ArrayUtil;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.List;
 
-/** Scorer for conjunctions, sets of queries, all of which are required. */
+/** Scorer for conjunctions, sets of queries, all of which are required.
+ * <p>The clause with the lowest {@link DocIdSetIterator#cost() cost} leads
+ * the intersection, and the others are advanced in increasing cost order.
+ * Clauses which have a {@link Scorer#asTwoPhaseIterator() two-phase view}
+ * are intersected through their approximations, and their matches are only
+ * verified on the documents that all the clauses agree on. */
 class ConjunctionScorer extends Scorer {
   
   private final Scorer[] scorers;
+  private final DocIdSetIterator lead;
+  private final DocIdSetIterator[] others; // in increasing cost order
+  private final TwoPhaseIterator[] twoPhaseIterators; // in increasing cost order
   private final float coord;
   private int lastDoc = -1;
 
@@ -37,67 +47,69 @@ class ConjunctionScorer extends Scorer {
     super(weight);
     this.scorers = scorers;
     this.coord = coord;
-    
-    for (int i = 0; i < scorers.length; i++) {
-      if (scorers[i].nextDoc() == NO_MORE_DOCS) {
-        // If even one of the sub-scorers does not have any documents, this
-        // scorer should not attempt to do any more work.
-        lastDoc = NO_MORE_DOCS;
-        return;
-      }
-    }
 
-    // Sort the array the first time...
-    // We don't need to sort the array in any future calls because we know
-    // it will already start off sorted (all scorers on same doc).
-    
-    // Note that this comparator is not consistent with equals!
-    // Also we use mergeSort here to be stable (so order of Scoreres that
-    // match on first document keeps preserved):
-    ArrayUtil.mergeSort(scorers, new Comparator<Scorer>() { // sort the array
+    final Scorer[] byCost = scorers.clone();
+    // stable sort, so that clauses of the same cost keep their order:
+    ArrayUtil.mergeSort(byCost, new Comparator<Scorer>() {
       public int compare(Scorer o1, Scorer o2) {
-        return o1.docID() - o2.docID();
+        final long cost1 = o1.cost(), cost2 = o2.cost();
+        return cost1 < cost2 ? -1 : (cost1 == cost2 ? 0 : 1);
       }
     });
 
-    // NOTE: doNext() must be called before the re-sorting of the array later on.
-    // The reason is this: assume there are 5 scorers, whose first docs are 1,
-    // 2, 3, 5, 5 respectively. Sorting (above) leaves the array as is. Calling
-    // doNext() here advances all the first scorers to 5 (or a larger doc ID
-    // they all agree on). 
-    // However, if we re-sort before doNext() is called, the order will be 5, 3,
-    // 2, 1, 5 and then doNext() will stop immediately, since the first scorer's
-    // docs equals the last one. So the invariant that after calling doNext() 
-    // all scorers are on the same doc ID is broken.
-    if (doNext() == NO_MORE_DOCS) {
-      // The scorers did not agree on any document.
-      lastDoc = NO_MORE_DOCS;
-      return;
+    final DocIdSetIterator[] iterators = new DocIdSetIterator[byCost.length];
+    final List<TwoPhaseIterator> twoPhaseIterators = new ArrayList<TwoPhaseIterator>();
+    for (int i = 0; i < byCost.length; i++) {
+      final TwoPhaseIterator twoPhaseIterator = byCost[i].asTwoPhaseIterator();
+      if (twoPhaseIterator == null) {
+        iterators[i] = byCost[i];
+      } else {
+        iterators[i] = twoPhaseIterator.approximation();
+        twoPhaseIterators.add(twoPhaseIterator);
+      }
     }
+    lead = iterators[0];
+    others = new DocIdSetIterator[iterators.length - 1];
+    System.arraycopy(iterators, 1, others, 0, others.length);
+    this.twoPhaseIterators = twoPhaseIterators.toArray(new TwoPhaseIterator[twoPhaseIterators.size()]);
+  }
 
-    // If first-time skip distance is any predictor of
-    // scorer sparseness, then we should always try to skip first on
-    // those scorers.
-    // Keep last scorer in it's last place (it will be the first
-    // to be skipped on), but reverse all of the others so that
-    // they will be skipped on in order of original high skip.
-    int end = scorers.length - 1;
-    int max = end >> 1;
-    for (int i = 0; i < max; i++) {
-      Scorer tmp = scorers[i];
-      int idx = end - i - 1;
-      scorers[i] = scorers[idx];
-      scorers[idx] = tmp;
+  // advances the other iterators to doc, the doc of the lead iterator,
+  // until they all agree on a document
+  private int doNextApproximation(int doc) throws IOException {
+    advanceHead: for (;;) {
+      if (doc == NO_MORE_DOCS) {
+        return lastDoc = NO_MORE_DOCS;
+      }
+      for (DocIdSetIterator other : others) {
+        int next = other.docID();
+        if (next < doc) {
+          next = other.advance(doc);
+        }
+        if (next > doc) {
+          // other is beyond the current doc - advance the lead
+          doc = lead.advance(next);
+          continue advanceHead;
+        }
+      }
+      // success - all iterators are on the same doc
+      return lastDoc = doc;
     }
   }
 
-  private int doNext() throws IOException {
-    int first = 0;
-    int doc = scorers[scorers.length - 1].docID();
-    Scorer firstScorer;
-    while ((firstScorer = scorers[first]).docID() < doc) {
-      doc = firstScorer.advance(doc);
-      first = first == scorers.length - 1 ? 0 : first + 1;
+  private boolean matches() throws IOException {
+    for (TwoPhaseIterator twoPhaseIterator : twoPhaseIterators) {
+      if (!twoPhaseIterator.matches()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int doNext(int doc) throws IOException {
+    doc = doNextApproximation(doc);
+    while (doc != NO_MORE_DOCS && !matches()) {
+      doc = doNextApproximation(lead.nextDoc());
     }
     return doc;
   }
@@ -106,10 +118,8 @@ class ConjunctionScorer extends Scorer {
   public int advance(int target) throws IOException {
     if (lastDoc == NO_MORE_DOCS) {
       return lastDoc;
-    } else if (scorers[(scorers.length - 1)].docID() < target) {
-      scorers[(scorers.length - 1)].advance(target);
     }
-    return lastDoc = doNext();
+    return doNext(lead.advance(target));
   }
 
   @Override
@@ -121,11 +131,47 @@ class ConjunctionScorer extends Scorer {
   public int nextDoc() throws IOException {
     if (lastDoc == NO_MORE_DOCS) {
       return lastDoc;
-    } else if (lastDoc == -1) {
-      return lastDoc = scorers[scorers.length - 1].docID();
     }
-    scorers[(scorers.length - 1)].nextDoc();
-    return lastDoc = doNext();
+    return doNext(lead.nextDoc());
+  }
+
+  @Override
+  public long cost() {
+    return lead.cost();
+  }
+
+  @Override
+  public TwoPhaseIterator asTwoPhaseIterator() {
+    if (twoPhaseIterators.length == 0) {
+      return null;
+    }
+    final DocIdSetIterator approximation = new DocIdSetIterator() {
+      @Override
+      public int docID() {
+        return lastDoc;
+      }
+
+      @Override
+      public int nextDoc() throws IOException {
+        return doNextApproximation(lead.nextDoc());
+      }
+
+      @Override
+      public int advance(int target) throws IOException {
+        return doNextApproximation(lead.advance(target));
+      }
+
+      @Override
+      public long cost() {
+        return lead.cost();
+      }
+    };
+    return new TwoPhaseIterator(approximation) {
+      @Override
+      public boolean matches() throws IOException {
+        return ConjunctionScorer.this.matches();
+      }
+    };
   }
   
   @Override
@@ -81,6 +81,11 @@ class ConjunctionTermScorer extends Scorer {
     return lastDoc;
   }
 
+  @Override
+  public long cost() {
+    return lead.docFreq;
+  }
+
   @Override
   public int nextDoc() throws IOException {
     lead.doc = lead.docs.nextDoc();
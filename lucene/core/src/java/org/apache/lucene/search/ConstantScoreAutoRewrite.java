@@ -125,6 +125,12 @@ class ConstantScoreAutoRewrite extends TermCollectingRewrite<BooleanQuery> {
     public void setNextEnum(TermsEnum termsEnum) throws IOException {
       this.termsEnum = termsEnum;
     }
+
+    @Override
+    public int maxBufferedTerms() {
+      // collect() stops once it saw termCountLimit distinct terms
+      return termCountLimit;
+    }
       
     @Override
     public boolean collect(BytesRef bytes) throws IOException {
@@ -96,7 +96,7 @@ public class ConstantScoreQuery extends Query {
     private float queryWeight;
     
     public ConstantWeight(IndexSearcher searcher) throws IOException {
-      this.innerWeight = (query == null) ? null : query.createWeight(searcher);
+      this.innerWeight = (query == null) ? null : searcher.createWeight(query);
     }
 
     @Override
@@ -197,6 +197,11 @@ public class ConstantScoreQuery extends Query {
     public int advance(int target) throws IOException {
       return docIdSetIterator.advance(target);
     }
+
+    @Override
+    public long cost() {
+      return docIdSetIterator.cost();
+    }
     
     private Collector wrapCollector(final Collector collector) {
       return new Collector() {
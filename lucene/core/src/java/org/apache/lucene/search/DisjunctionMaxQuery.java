@@ -118,7 +118,7 @@ public class DisjunctionMaxQuery extends Query implements Iterable<Query> {
     /** Construct the Weight for this Query searched by searcher.  Recursively construct subquery weights. */
     public DisjunctionMaxWeight(IndexSearcher searcher) throws IOException {
       for (Query disjunctQuery : disjuncts) {
-        weights.add(disjunctQuery.createWeight(searcher));
+        weights.add(searcher.createWeight(disjunctQuery));
       }
     }
 
@@ -34,6 +34,7 @@ class DisjunctionMaxScorer extends Scorer {
   private int numScorers;
   /* Multiplier applied to non-maximum-scoring subqueries for a document as they are summed into the result. */
   private final float tieBreakerMultiplier;
+  private final long cost; // sum of the costs of the sub scorers
   private int doc = -1;
 
   /* Used when scoring currently matching doc. */
@@ -63,10 +64,25 @@ class DisjunctionMaxScorer extends Scorer {
     // called.
     this.subScorers = subScorers;
     this.numScorers = numScorers;
+
+    long cost = 0;
+    for (int i = 0; i < numScorers; i++) {
+      cost += subScorers[i].cost();
+      if (cost < 0) { // overflow, the cost of a sub scorer is unknown
+        cost = Long.MAX_VALUE;
+        break;
+      }
+    }
+    this.cost = cost;
     
     heapify();
   }
 
+  @Override
+  public long cost() {
+    return cost;
+  }
+
   @Override
   public int nextDoc() throws IOException {
     if (numScorers == 0) return doc = NO_MORE_DOCS;
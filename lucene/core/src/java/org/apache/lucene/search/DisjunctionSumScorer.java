@@ -34,6 +34,9 @@ class DisjunctionSumScorer extends Scorer {
   
   /** The minimum number of scorers that should match. */
   private final int minimumNrMatchers;
+
+  /** The sum of the costs of the subscorers. */
+  private final long cost;
   
   /** The scorerDocQueue contains all subscorers ordered by their current doc(),
    * with the minimum at the top.
@@ -84,6 +87,16 @@ class DisjunctionSumScorer extends Scorer {
     this.subScorers = subScorers;
 
     scorerDocQueue  = initScorerDocQueue();
+
+    long cost = 0;
+    for (Scorer subScorer : subScorers) {
+      cost += subScorer.cost();
+      if (cost < 0) { // overflow, the cost of a sub scorer is unknown
+        cost = Long.MAX_VALUE;
+        break;
+      }
+    }
+    this.cost = cost;
   }
   
   /** Construct a <code>DisjunctionScorer</code>, using one as the minimum number
@@ -237,4 +250,9 @@ class DisjunctionSumScorer extends Scorer {
       }
     } while (true);
   }
+
+  @Override
+  public long cost() {
+    return cost;
+  }
 }
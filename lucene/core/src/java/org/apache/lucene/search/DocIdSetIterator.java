@@ -95,4 +95,19 @@ public abstract class DocIdSetIterator {
    */
   public abstract int advance(int target) throws IOException;
 
+  /**
+   * Returns the estimated cost of this iterator, usually an upper bound of
+   * the number of documents it will match, such as the document frequency
+   * of a term. Conjunctions use it to lead with their cheapest clause.
+   * <p>
+   * The default implementation returns {@link Long#MAX_VALUE}, which means
+   * that the cost is unknown: such iterators never lead a conjunction when
+   * a cheaper iterator exists.
+   * 
+   * @lucene.experimental
+   */
+  public long cost() {
+    return Long.MAX_VALUE;
+  }
+
 }
@@ -54,6 +54,7 @@ final class ExactPhraseScorer extends Scorer {
 
   private int docID = -1;
   private int freq;
+  private final long cost;
 
   private final Similarity.ExactSimScorer docScorer;
   
@@ -65,6 +66,8 @@ final class ExactPhraseScorer extends Scorer {
     chunkStates = new ChunkState[postings.length];
 
     endMinus1 = postings.length-1;
+    // postings are sorted by increasing docFreq
+    cost = postings[0].docFreq;
 
     for(int i=0;i<postings.length;i++) {
 
@@ -83,15 +86,12 @@ final class ExactPhraseScorer extends Scorer {
     }
   }
 
-  @Override
-  public int nextDoc() throws IOException {
+  // advances the other terms to the doc of the first (rarest) term,
+  // until they all agree on a doc
+  private int doNext(int doc) throws IOException {
     while(true) {
-
-      // first (rarest) term
-      final int doc = chunkStates[0].posEnum.nextDoc();
       if (doc == DocIdSetIterator.NO_MORE_DOCS) {
-        docID = doc;
-        return doc;
+        return docID = doc;
       }
 
       // not-first terms
@@ -123,59 +123,69 @@ final class ExactPhraseScorer extends Scorer {
       }
 
       if (i == chunkStates.length) {
-        // this doc has all the terms -- now test whether
-        // phrase occurs
-        docID = doc;
-
-        freq = phraseFreq();
-        if (freq != 0) {
-          return docID;
-        }
+        // this doc has all the terms
+        return docID = doc;
       }
+
+      doc = chunkStates[0].posEnum.nextDoc();
     }
   }
 
-  @Override
-  public int advance(int target) throws IOException {
+  // the docs which have all the terms, whether they contain the phrase or not
+  private final DocIdSetIterator approximation = new DocIdSetIterator() {
+    @Override
+    public int docID() {
+      return docID;
+    }
 
-    // first term
-    int doc = chunkStates[0].posEnum.advance(target);
-    if (doc == DocIdSetIterator.NO_MORE_DOCS) {
-      docID = DocIdSetIterator.NO_MORE_DOCS;
-      return doc;
+    @Override
+    public int nextDoc() throws IOException {
+      return doNext(chunkStates[0].posEnum.nextDoc());
     }
 
-    while(true) {
-      
-      // not-first terms
-      int i = 1;
-      while(i < chunkStates.length) {
-        int doc2 = chunkStates[i].posEnum.docID();
-        if (doc2 < doc) {
-          doc2 = chunkStates[i].posEnum.advance(doc);
-        }
-        if (doc2 > doc) {
-          break;
-        }
-        i++;
-      }
+    @Override
+    public int advance(int target) throws IOException {
+      return doNext(chunkStates[0].posEnum.advance(target));
+    }
 
-      if (i == chunkStates.length) {
-        // this doc has all the terms -- now test whether
-        // phrase occurs
-        docID = doc;
-        freq = phraseFreq();
-        if (freq != 0) {
-          return docID;
-        }
-      }
+    @Override
+    public long cost() {
+      return cost;
+    }
+  };
 
-      doc = chunkStates[0].posEnum.nextDoc();
-      if (doc == DocIdSetIterator.NO_MORE_DOCS) {
-        docID = doc;
-        return doc;
-      }
+  @Override
+  public int nextDoc() throws IOException {
+    int doc = approximation.nextDoc();
+    // test whether the phrase occurs
+    while (doc != DocIdSetIterator.NO_MORE_DOCS && phraseFreq() == 0) {
+      doc = approximation.nextDoc();
     }
+    return doc;
+  }
+
+  @Override
+  public int advance(int target) throws IOException {
+    int doc = approximation.advance(target);
+    while (doc != DocIdSetIterator.NO_MORE_DOCS && phraseFreq() == 0) {
+      doc = approximation.nextDoc();
+    }
+    return doc;
+  }
+
+  @Override
+  public long cost() {
+    return cost;
+  }
+
+  @Override
+  public TwoPhaseIterator asTwoPhaseIterator() {
+    return new TwoPhaseIterator(approximation) {
+      @Override
+      public boolean matches() throws IOException {
+        return phraseFreq() != 0;
+      }
+    };
   }
 
   @Override
@@ -612,6 +612,15 @@ public interface FieldCache {
       setEstimatedSize(RamUsageEstimator.humanReadableUnits(size));
     }
 
+    /**
+     * Returns the estimated RAM usage of the cache Value, in bytes.
+     * Values which are shared by several entries are only
+     * accounted for by one of them.
+     */
+    public long ramBytesUsed() {
+      return RamUsageEstimator.sizeOf(getValue());
+    }
+
     /**
      * The most recently estimated size of the value, null unless 
      * estimateSize has been called.
@@ -675,6 +684,26 @@ public interface FieldCache {
    */
   public abstract void purge(AtomicReader r);
 
+  /**
+   * Returns the estimated RAM usage of all cached values, in bytes.
+   * @lucene.experimental
+   */
+  public long ramBytesUsed();
+
+  /**
+   * Sets the maximum estimated RAM usage of the cache, in bytes. When
+   * loading a value makes the cache exceed this budget, the least
+   * recently used values are evicted, including the new value if it
+   * is larger than the budget on its own. Evicted values are loaded
+   * again the next time they are requested. A value &lt;= 0, the
+   * default, disables the budget.
+   * @lucene.experimental
+   */
+  public void setMaxRamBytes(long maxRamBytes);
+
+  /** counterpart of {@link #setMaxRamBytes(long)} */
+  public long getMaxRamBytes();
+
   /**
    * If non-null, FieldCacheImpl will warn whenever
    * entries are created that are not sane according to
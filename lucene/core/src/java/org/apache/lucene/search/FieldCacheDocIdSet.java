@@ -107,6 +107,12 @@ public abstract class FieldCacheDocIdSet extends DocIdSet {
           }
           return doc = NO_MORE_DOCS;
         }
+
+        @Override
+        public long cost() {
+          // matchDoc has to be checked for every document
+          return maxDoc;
+        }
       };
     } else if (acceptDocs instanceof FixedBitSet || acceptDocs instanceof OpenBitSet) {
       // special case for FixedBitSet / OpenBitSet: use the iterator and filter it
@@ -147,6 +153,12 @@ public abstract class FieldCacheDocIdSet extends DocIdSet {
           }
           return doc = NO_MORE_DOCS;
         }
+
+        @Override
+        public long cost() {
+          // matchDoc has to be checked for every document
+          return maxDoc;
+        }
       };
     }
   }
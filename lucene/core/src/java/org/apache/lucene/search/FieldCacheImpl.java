@@ -20,11 +20,16 @@ package org.apache.lucene.search;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.lucene.index.DocTermOrds;
 import org.apache.lucene.index.DocsAndPositionsEnum;
@@ -42,23 +47,34 @@ import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FieldCacheSanityChecker;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.PagedBytes;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.packed.GrowableWriter;
 import org.apache.lucene.util.packed.PackedInts;
 
 /**
  * Expert: The default cache implementation, storing all values in memory.
- * A WeakHashMap is used for storage.
+ * Readers are mapped to their values with striped WeakHashMaps, so that
+ * values for different readers and fields can be loaded concurrently.
+ * <p>
+ * The RAM usage of every value is estimated when it is loaded. If a
+ * {@link #setMaxRamBytes byte budget} is set, the least recently used
+ * values are evicted whenever the total exceeds it.
  *
  * @since   lucene 1.4
  */
 class FieldCacheImpl implements FieldCache {
 	
-  private Map<Class<?>,Cache> caches;
+  private volatile Map<Class<?>,Cache> caches;
+  final AtomicLong ramBytesUsed = new AtomicLong(); // ramBytesUsed() resyncs it
+  private final AtomicLong clock = new AtomicLong(); // for LRU eviction
+  private volatile long maxRamBytes = 0;
+  private final Object evictionLock = new Object();
+
   FieldCacheImpl() {
     init();
   }
   private synchronized void init() {
-    caches = new HashMap<Class<?>,Cache>(9);
+    Map<Class<?>,Cache> caches = new HashMap<Class<?>,Cache>(9);
     caches.put(Byte.TYPE, new ByteCache(this));
     caches.put(Short.TYPE, new ShortCache(this));
     caches.put(Integer.TYPE, new IntCache(this));
@@ -69,10 +85,25 @@ class FieldCacheImpl implements FieldCache {
     caches.put(DocTermsIndex.class, new DocTermsIndexCache(this));
     caches.put(DocTermOrds.class, new DocTermOrdsCache(this));
     caches.put(DocsWithFieldCache.class, new DocsWithFieldCache(this));
+    this.caches = caches;
   }
 
   public synchronized void purgeAllCaches() {
-    init();
+    synchronized (evictionLock) {
+      for (Cache cache : caches.values()) {
+        for (final Map<Object,Map<Entry,CachedValue>> readerCache : cache.readerCaches) {
+          synchronized (readerCache) {
+            for (final Map<Entry,CachedValue> innerCache : readerCache.values()) {
+              for (CachedValue cached : innerCache.values()) {
+                release(cached);
+              }
+            }
+          }
+        }
+      }
+      init();
+      ramBytesUsed.set(0);
+    }
   }
 
   public synchronized void purge(AtomicReader r) {
@@ -86,38 +117,167 @@ class FieldCacheImpl implements FieldCache {
     for(final Map.Entry<Class<?>,Cache> cacheEntry: caches.entrySet()) {
       final Cache cache = cacheEntry.getValue();
       final Class<?> cacheType = cacheEntry.getKey();
-      synchronized(cache.readerCache) {
-        for (final Map.Entry<Object,Map<Entry, Object>> readerCacheEntry : cache.readerCache.entrySet()) {
-          final Object readerKey = readerCacheEntry.getKey();
-          if (readerKey == null) continue;
-          final Map<Entry, Object> innerCache = readerCacheEntry.getValue();
-          for (final Map.Entry<Entry, Object> mapEntry : innerCache.entrySet()) {
-            Entry entry = mapEntry.getKey();
-            result.add(new CacheEntryImpl(readerKey, entry.field,
-                                          cacheType, entry.custom,
-                                          mapEntry.getValue()));
+      for (final Map<Object,Map<Entry,CachedValue>> readerCache : cache.readerCaches) {
+        synchronized(readerCache) {
+          for (final Map.Entry<Object,Map<Entry,CachedValue>> readerCacheEntry : readerCache.entrySet()) {
+            final Object readerKey = readerCacheEntry.getKey();
+            if (readerKey == null) continue;
+            final Map<Entry,CachedValue> innerCache = readerCacheEntry.getValue();
+            for (final Map.Entry<Entry,CachedValue> mapEntry : innerCache.entrySet()) {
+              final Entry entry = mapEntry.getKey();
+              final CachedValue cached = mapEntry.getValue();
+              final Object value = cached.value;
+              if (value == null) continue; // still loading
+              result.add(new CacheEntryImpl(readerKey, entry.field,
+                                            cacheType, entry.custom,
+                                            value, cached.ramBytesUsed));
+            }
           }
         }
       }
     }
     return result.toArray(new CacheEntry[result.size()]);
   }
-  
+
+  public long ramBytesUsed() {
+    synchronized (evictionLock) {
+      // resync the counter, which may have drifted if readers were
+      // garbage collected without being closed
+      final long total = accountedBytes(null);
+      ramBytesUsed.set(total);
+      return total;
+    }
+  }
+
+  public void setMaxRamBytes(long maxRamBytes) {
+    this.maxRamBytes = maxRamBytes;
+    if (maxRamBytes > 0 && ramBytesUsed.get() > maxRamBytes) {
+      evict();
+    }
+  }
+
+  public long getMaxRamBytes() {
+    return maxRamBytes;
+  }
+
+  /** Evicts the least recently used values until the RAM usage is
+   *  under the budget. */
+  void evict() {
+    synchronized (evictionLock) {
+      final long maxRamBytes = this.maxRamBytes;
+      if (maxRamBytes <= 0) {
+        return;
+      }
+      // entries that share the same value (eg. the default parser and
+      // a null parser) are evicted together
+      final Map<Object,EvictionCandidate> candidates = new IdentityHashMap<Object,EvictionCandidate>();
+      final long total = accountedBytes(candidates);
+      // the counter may have drifted if readers were garbage collected
+      // without being closed, so resync it with what is actually cached
+      ramBytesUsed.set(total);
+      if (total <= maxRamBytes) {
+        return;
+      }
+      final List<EvictionCandidate> lru = new ArrayList<EvictionCandidate>(candidates.values());
+      Collections.sort(lru);
+      for (EvictionCandidate candidate : lru) {
+        if (ramBytesUsed.get() <= maxRamBytes) {
+          break;
+        }
+        candidate.evict(this);
+      }
+    }
+  }
+
+  /** Sums the RAM usage of the values which are accounted for, and
+   *  groups them by value into <code>candidates</code> if not null.
+   *  The caller must hold the eviction lock. */
+  private long accountedBytes(Map<Object,EvictionCandidate> candidates) {
+    assert Thread.holdsLock(evictionLock);
+    long total = 0;
+    for (Cache cache : caches.values()) {
+      for (final Map<Object,Map<Entry,CachedValue>> readerCache : cache.readerCaches) {
+        synchronized (readerCache) {
+          for (final Map<Entry,CachedValue> innerCache : readerCache.values()) {
+            for (final Map.Entry<Entry,CachedValue> mapEntry : innerCache.entrySet()) {
+              final CachedValue cached = mapEntry.getValue();
+              if (cached.accounted) {
+                total += cached.ramBytesUsed;
+                if (candidates != null) {
+                  EvictionCandidate candidate = candidates.get(cached.value);
+                  if (candidate == null) {
+                    candidate = new EvictionCandidate();
+                    candidates.put(cached.value, candidate);
+                  }
+                  candidate.add(innerCache, mapEntry.getKey(), cached);
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+    return total;
+  }
+
+  /** Stops accounting for a value which was removed from the cache, or
+   *  whose reader was purged while it was loading. The caller must hold
+   *  the eviction lock. */
+  private void release(CachedValue cached) {
+    assert Thread.holdsLock(evictionLock);
+    cached.removed = true;
+    if (cached.accounted) {
+      cached.accounted = false;
+      ramBytesUsed.addAndGet(-cached.ramBytesUsed);
+    }
+  }
+
+  /** All entries which hold a given value. */
+  private static final class EvictionCandidate implements Comparable<EvictionCandidate> {
+    final List<Map<Entry,CachedValue>> innerCaches = new ArrayList<Map<Entry,CachedValue>>(2);
+    final List<Entry> keys = new ArrayList<Entry>(2);
+    final List<CachedValue> cachedValues = new ArrayList<CachedValue>(2);
+    long lastAccess = -1; // snapshot, so that concurrent accesses don't break sorting
+
+    void add(Map<Entry,CachedValue> innerCache, Entry key, CachedValue cached) {
+      innerCaches.add(innerCache);
+      keys.add(key);
+      cachedValues.add(cached);
+      lastAccess = Math.max(lastAccess, cached.lastAccess);
+    }
+
+    void evict(FieldCacheImpl wrapper) {
+      for (int i = 0; i < keys.size(); i++) {
+        final CachedValue cached = cachedValues.get(i);
+        if (innerCaches.get(i).remove(keys.get(i), cached)) {
+          wrapper.release(cached);
+        }
+      }
+    }
+
+    public int compareTo(EvictionCandidate other) {
+      return lastAccess < other.lastAccess ? -1 : (lastAccess == other.lastAccess ? 0 : 1);
+    }
+  }
+
   private static final class CacheEntryImpl extends CacheEntry {
     private final Object readerKey;
     private final String fieldName;
     private final Class<?> cacheType;
     private final Object custom;
     private final Object value;
+    private final long ramBytesUsed;
     CacheEntryImpl(Object readerKey, String fieldName,
                    Class<?> cacheType,
                    Object custom,
-                   Object value) {
+                   Object value,
+                   long ramBytesUsed) {
         this.readerKey = readerKey;
         this.fieldName = fieldName;
         this.cacheType = cacheType;
         this.custom = custom;
         this.value = value;
+        this.ramBytesUsed = ramBytesUsed;
 
         // :HACK: for testing.
 //         if (null != locale || SortField.CUSTOM != sortFieldType) {
@@ -135,6 +295,8 @@ class FieldCacheImpl implements FieldCache {
     public Object getCustom() { return custom; }
     @Override
     public Object getValue() { return value; }
+    @Override
+    public long ramBytesUsed() { return ramBytesUsed; }
   }
 
   /**
@@ -178,77 +340,121 @@ class FieldCacheImpl implements FieldCache {
     }
   }
 
+  /** A cached value, or a placeholder while the value is being
+   *  loaded (in which case value is null). */
+  static final class CachedValue {
+    volatile Object value;
+    long ramBytesUsed;
+    volatile long lastAccess;
+    // whether ramBytesUsed is included in the total, and whether the
+    // value was removed from the cache; guarded by the eviction lock
+    boolean accounted, removed;
+  }
+
   /** Expert: Internal cache. */
   abstract static class Cache {
 
+    // must be a power of 2
+    private static final int NUM_STRIPES = 16;
+
     Cache(FieldCacheImpl wrapper) {
       this.wrapper = wrapper;
+      @SuppressWarnings({"unchecked","rawtypes"})
+      final Map<Object,Map<Entry,CachedValue>>[] readerCaches = new Map[NUM_STRIPES];
+      for (int i = 0; i < NUM_STRIPES; i++) {
+        readerCaches[i] = new WeakHashMap<Object,Map<Entry,CachedValue>>();
+      }
+      this.readerCaches = readerCaches;
     }
 
     final FieldCacheImpl wrapper;
 
-    final Map<Object,Map<Entry,Object>> readerCache = new WeakHashMap<Object,Map<Entry,Object>>();
+    // readers are spread over several maps so that looking up values
+    // of different readers doesn't contend on a single lock
+    final Map<Object,Map<Entry,CachedValue>>[] readerCaches;
     
     protected abstract Object createValue(AtomicReader reader, Entry key, boolean setDocsWithField)
         throws IOException;
 
+    /** Estimates the RAM usage of a value created by this cache. */
+    protected long ramBytesUsed(Object value) {
+      return RamUsageEstimator.sizeOf(value);
+    }
+
+    private Map<Object,Map<Entry,CachedValue>> readerCache(Object readerKey) {
+      int h = readerKey.hashCode();
+      h ^= (h >>> 20) ^ (h >>> 12) ^ (h >>> 7) ^ (h >>> 4);
+      return readerCaches[h & (NUM_STRIPES - 1)];
+    }
+
     /** Remove this reader from the cache, if present. */
     public void purge(AtomicReader r) {
-      Object readerKey = r.getCoreCacheKey();
+      final Object readerKey = r.getCoreCacheKey();
+      final Map<Object,Map<Entry,CachedValue>> readerCache = readerCache(readerKey);
+      final Map<Entry,CachedValue> innerCache;
       synchronized(readerCache) {
-        readerCache.remove(readerKey);
+        innerCache = readerCache.remove(readerKey);
+      }
+      if (innerCache != null) {
+        // values which are still loading are released too, so that
+        // they are not accounted for once loaded
+        synchronized (wrapper.evictionLock) {
+          for (CachedValue cached : innerCache.values()) {
+            wrapper.release(cached);
+          }
+        }
       }
     }
 
-    /** Sets the key to the value for the provided reader;
-     *  if the key is already set then this doesn't change it. */
-    public void put(AtomicReader reader, Entry key, Object value) {
+    /** Returns the per-reader map of this reader, creating it if necessary. */
+    private ConcurrentMap<Entry,CachedValue> innerCache(AtomicReader reader) {
       final Object readerKey = reader.getCoreCacheKey();
+      final Map<Object,Map<Entry,CachedValue>> readerCache = readerCache(readerKey);
       synchronized (readerCache) {
-        Map<Entry,Object> innerCache = readerCache.get(readerKey);
+        ConcurrentMap<Entry,CachedValue> innerCache = (ConcurrentMap<Entry,CachedValue>) readerCache.get(readerKey);
         if (innerCache == null) {
           // First time this reader is using FieldCache
-          innerCache = new HashMap<Entry,Object>();
+          innerCache = new ConcurrentHashMap<Entry,CachedValue>();
           readerCache.put(readerKey, innerCache);
           wrapper.initReader(reader);
         }
-        if (innerCache.get(key) == null) {
-          innerCache.put(key, value);
-        } else {
-          // Another thread beat us to it; leave the current
-          // value
-        }
+        return innerCache;
+      }
+    }
+
+    /** Sets the key to the value for the provided reader;
+     *  if the key is already set then this doesn't change it. */
+    public void put(AtomicReader reader, Entry key, Object value) {
+      final ConcurrentMap<Entry,CachedValue> innerCache = innerCache(reader);
+      final CachedValue cached = new CachedValue();
+      cached.value = value; // so that get() never sees it as a placeholder
+      final CachedValue existing = innerCache.putIfAbsent(key, cached);
+      if (existing == null) {
+        loaded(innerCache, cached, value);
+      } else {
+        // Another thread beat us to it; leave the current
+        // value
       }
     }
 
     public Object get(AtomicReader reader, Entry key, boolean setDocsWithField) throws IOException {
-      Map<Entry,Object> innerCache;
-      Object value;
-      final Object readerKey = reader.getCoreCacheKey();
-      synchronized (readerCache) {
-        innerCache = readerCache.get(readerKey);
-        if (innerCache == null) {
-          // First time this reader is using FieldCache
-          innerCache = new HashMap<Entry,Object>();
-          readerCache.put(readerKey, innerCache);
-          wrapper.initReader(reader);
-          value = null;
-        } else {
-          value = innerCache.get(key);
-        }
-        if (value == null) {
-          value = new CreationPlaceholder();
-          innerCache.put(key, value);
+      final ConcurrentMap<Entry,CachedValue> innerCache = innerCache(reader);
+      CachedValue cached = innerCache.get(key);
+      if (cached == null) {
+        final CachedValue placeholder = new CachedValue();
+        cached = innerCache.putIfAbsent(key, placeholder);
+        if (cached == null) {
+          cached = placeholder;
         }
       }
-      if (value instanceof CreationPlaceholder) {
-        synchronized (value) {
-          CreationPlaceholder progress = (CreationPlaceholder) value;
-          if (progress.value == null) {
-            progress.value = createValue(reader, key, setDocsWithField);
-            synchronized (readerCache) {
-              innerCache.put(key, progress.value);
-            }
+      Object value = cached.value;
+      if (value == null) {
+        // only threads that need the same value wait for each other
+        synchronized (cached) {
+          value = cached.value;
+          if (value == null) {
+            value = createValue(reader, key, setDocsWithField);
+            loaded(innerCache, cached, value);
 
             // Only check if key.custom (the parser) is
             // non-null; else, we check twice for a single
@@ -256,16 +462,49 @@ class FieldCacheImpl implements FieldCache {
             if (key.custom != null && wrapper != null) {
               final PrintStream infoStream = wrapper.getInfoStream();
               if (infoStream != null) {
-                printNewInsanity(infoStream, progress.value);
+                printNewInsanity(infoStream, value);
               }
             }
+            return value;
           }
-          return progress.value;
         }
       }
+      cached.lastAccess = wrapper.clock.incrementAndGet();
       return value;
     }
 
+    /** Publishes a newly loaded value and evicts older values if
+     *  the cache is over budget. */
+    private void loaded(Map<Entry,CachedValue> innerCache, CachedValue cached, Object value) {
+      long bytes = ramBytesUsed(value);
+      final long total;
+      // publish and account under the eviction lock, so that eviction
+      // and purging see the value and its RAM usage together
+      synchronized (wrapper.evictionLock) {
+        for (CachedValue other : innerCache.values()) {
+          if (other != cached && other.value == value) {
+            // eg. the value of a null parser, which is also cached
+            // under the default parser: only count it once
+            bytes = 0;
+            break;
+          }
+        }
+        cached.ramBytesUsed = bytes;
+        cached.lastAccess = wrapper.clock.incrementAndGet();
+        cached.value = value;
+        if (cached.removed) {
+          // the reader was purged while the value was loading
+          return;
+        }
+        cached.accounted = true;
+        total = wrapper.ramBytesUsed.addAndGet(bytes);
+      }
+      final long maxRamBytes = wrapper.maxRamBytes;
+      if (maxRamBytes > 0 && total > maxRamBytes) {
+        wrapper.evict();
+      }
+    }
+
     private void printNewInsanity(PrintStream infoStream, Object value) {
       final FieldCacheSanityChecker.Insanity[] insanities = FieldCacheSanityChecker.checkSanity(wrapper);
       for(int i=0;i<insanities.length;i++) {
@@ -1318,6 +1557,12 @@ class FieldCacheImpl implements FieldCache {
         throws IOException {
       return new DocTermOrds(reader, entryKey.field);
     }
+
+    @Override
+    protected long ramBytesUsed(Object value) {
+      // don't let RamUsageEstimator follow the references to the reader
+      return ((DocTermOrds) value).ramUsedInBytes();
+    }
   }
 
   private volatile PrintStream infoStream;
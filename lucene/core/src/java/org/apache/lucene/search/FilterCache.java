@@ -0,0 +1,269 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.OpenBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.SortedVIntList;
+import org.apache.lucene.util.WAHDocIdSet;
+import org.apache.lucene.util.WeakIdentityMap;
+
+/**
+ * A cache of per-segment {@link DocIdSet}s which can be shared by any number
+ * of {@link CachingWrapperFilter}s, with a global memory budget.
+ * <p>
+ * Entries are keyed on the segment's core (or core and deletes) key and on
+ * the {@link CachingWrapperFilter}, so that {@link CachingWrapperFilter}s
+ * which are {@link CachingWrapperFilter#equals equal} share their cached
+ * sets, including across reopens for the segments that did not change. When the sum of the sizes of the cached
+ * sets exceeds the budget, the least recently used entries are evicted,
+ * whichever filter they belong to.
+ * <p>
+ * Lookups do not take any lock: the per-segment maps are
+ * {@link ConcurrentHashMap}s and an entry's recency is a volatile stamp.
+ * Only insertions that push the cache over its budget synchronize, to
+ * evict entries.
+ * <p>
+ * Entries of {@link SegmentReader}s are dropped as soon as the segment's
+ * core is closed; entries of other readers are weakly referenced and will
+ * be dropped after the reader was garbage collected.
+ *
+ * @lucene.experimental
+ */
+public final class FilterCache {
+
+  private static final class Entry {
+    final DocIdSet docIdSet;
+    final long ramBytesUsed;
+    volatile long lastAccess;
+
+    Entry(DocIdSet docIdSet, long ramBytesUsed, long lastAccess) {
+      this.docIdSet = docIdSet;
+      this.ramBytesUsed = ramBytesUsed;
+      this.lastAccess = lastAccess;
+    }
+  }
+
+  // evict down to this fraction of the budget, so that a full
+  // cache does not need to evict on every insertion:
+  private static final double EVICTION_TARGET = 0.9;
+
+  private final long maxRamBytes;
+  private final WeakIdentityMap<Object,Map<Filter,Entry>> cache = WeakIdentityMap.newConcurrentHashMap();
+  private final AtomicLong ramBytesUsed = new AtomicLong();
+  private final AtomicLong clock = new AtomicLong();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  private final SegmentReader.CoreClosedListener purgeCore = new SegmentReader.CoreClosedListener() {
+    @Override
+    public void onClose(SegmentReader owner) {
+      purge(owner.getCoreCacheKey());
+    }
+  };
+
+  /**
+   * Creates a new cache which holds at most <code>maxRamBytes</code> bytes
+   * of {@link DocIdSet}s.
+   */
+  public FilterCache(long maxRamBytes) {
+    if (maxRamBytes <= 0) {
+      throw new IllegalArgumentException("maxRamBytes must be > 0, got " + maxRamBytes);
+    }
+    this.maxRamBytes = maxRamBytes;
+  }
+
+  /** Returns the cached set of <code>filter</code> for the reader with the
+   *  given cache key, or <code>null</code> if it is not cached. */
+  DocIdSet get(Object readerKey, Filter filter) {
+    final Map<Filter,Entry> segmentCache = cache.get(readerKey);
+    final Entry entry = segmentCache == null ? null : segmentCache.get(filter);
+    if (entry == null) {
+      missCount.incrementAndGet();
+      return null;
+    }
+    hitCount.incrementAndGet();
+    entry.lastAccess = clock.incrementAndGet();
+    return entry.docIdSet;
+  }
+
+  /** Caches the set of <code>filter</code> for the reader with the given
+   *  cache key, which must be either the core or the core and deletes key
+   *  of <code>reader</code>. Sets which are larger than the budget are not
+   *  cached. */
+  void put(AtomicReader reader, Object readerKey, Filter filter, DocIdSet docIdSet) {
+    final long bytes = ramBytesUsed(docIdSet);
+    if (bytes > maxRamBytes) {
+      return;
+    }
+    Map<Filter,Entry> segmentCache = cache.get(readerKey);
+    if (segmentCache == null) {
+      synchronized (this) {
+        segmentCache = cache.get(readerKey);
+        if (segmentCache == null) {
+          segmentCache = new ConcurrentHashMap<Filter,Entry>();
+          cache.put(readerKey, segmentCache);
+          if (reader instanceof SegmentReader && readerKey == reader.getCoreCacheKey()) {
+            ((SegmentReader) reader).addCoreClosedListener(purgeCore);
+          }
+        }
+      }
+    }
+    final Entry previous = segmentCache.put(filter, new Entry(docIdSet, bytes, clock.incrementAndGet()));
+    final long used = ramBytesUsed.addAndGet(previous == null ? bytes : bytes - previous.ramBytesUsed);
+    if (used > maxRamBytes) {
+      evict();
+    }
+  }
+
+  private synchronized void purge(Object readerKey) {
+    final Map<Filter,Entry> segmentCache = cache.remove(readerKey);
+    if (segmentCache != null) {
+      long bytes = 0;
+      for (Entry entry : segmentCache.values()) {
+        bytes += entry.ramBytesUsed;
+      }
+      ramBytesUsed.addAndGet(-bytes);
+    }
+  }
+
+  private synchronized void evict() {
+    // recompute the usage, as entries of garbage collected readers are gone
+    final List<Map<Filter,Entry>> maps = new ArrayList<Map<Filter,Entry>>();
+    final List<Filter> filters = new ArrayList<Filter>();
+    final List<Entry> entries = new ArrayList<Entry>();
+    long used = 0;
+    for (Iterator<Map<Filter,Entry>> it = cache.valueIterator(); it.hasNext(); ) {
+      final Map<Filter,Entry> segmentCache = it.next();
+      for (Map.Entry<Filter,Entry> e : segmentCache.entrySet()) {
+        maps.add(segmentCache);
+        filters.add(e.getKey());
+        entries.add(e.getValue());
+        used += e.getValue().ramBytesUsed;
+      }
+    }
+    final long target = (long) (maxRamBytes * EVICTION_TARGET);
+    if (used > target) {
+      // least recently used first
+      final Integer[] order = new Integer[entries.size()];
+      for (int i = 0; i < order.length; i++) {
+        order[i] = i;
+      }
+      final long[] stamps = new long[entries.size()];
+      for (int i = 0; i < stamps.length; i++) {
+        stamps[i] = entries.get(i).lastAccess;
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b) {
+          final long stampA = stamps[a], stampB = stamps[b];
+          return stampA < stampB ? -1 : (stampA == stampB ? 0 : 1);
+        }
+      });
+      for (int i = 0; i < order.length && used > target; i++) {
+        final int idx = order[i];
+        final Entry entry = entries.get(idx);
+        if (maps.get(idx).remove(filters.get(idx), entry)) {
+          used -= entry.ramBytesUsed;
+          evictionCount.incrementAndGet();
+        }
+      }
+    }
+    ramBytesUsed.set(used);
+  }
+
+  /** Returns the approximate number of bytes used by the cached sets. */
+  public long ramBytesUsed() {
+    return ramBytesUsed.get();
+  }
+
+  /** Returns the memory budget of this cache, in bytes. */
+  public long getMaxRamBytes() {
+    return maxRamBytes;
+  }
+
+  /** Returns the number of cached sets. */
+  public int size() {
+    int size = 0;
+    for (Iterator<Map<Filter,Entry>> it = cache.valueIterator(); it.hasNext(); ) {
+      size += it.next().size();
+    }
+    return size;
+  }
+
+  /** Returns the number of lookups that found a cached set. */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of lookups that did not find a cached set. */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /** Returns the number of sets which were evicted to stay within the budget. */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /** Removes all cached sets. */
+  public synchronized void clear() {
+    cache.clear();
+    ramBytesUsed.set(0);
+  }
+
+  /** Returns the approximate memory usage of a cached set. Sets that are
+   *  not one of the bit sets or compressed sets used by
+   *  {@link CachingWrapperFilter} are accounted with their shallow size, as
+   *  they usually are views over other structures such as the
+   *  {@link FieldCache}. */
+  static long ramBytesUsed(DocIdSet docIdSet) {
+    if (docIdSet == DocIdSet.EMPTY_DOCIDSET) {
+      return 0;
+    } else if (docIdSet instanceof FixedBitSet) {
+      return RamUsageEstimator.shallowSizeOf(docIdSet) + RamUsageEstimator.sizeOf(((FixedBitSet) docIdSet).getBits());
+    } else if (docIdSet instanceof OpenBitSet) {
+      return RamUsageEstimator.shallowSizeOf(docIdSet) + RamUsageEstimator.sizeOf(((OpenBitSet) docIdSet).getBits());
+    } else if (docIdSet instanceof SortedVIntList) {
+      return RamUsageEstimator.shallowSizeOf(docIdSet)
+          + RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + ((SortedVIntList) docIdSet).getByteSize());
+    } else if (docIdSet instanceof WAHDocIdSet) {
+      return ((WAHDocIdSet) docIdSet).ramBytesUsed();
+    } else {
+      return RamUsageEstimator.shallowSizeOf(docIdSet);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "FilterCache(maxRamBytes=" + maxRamBytes + ",ramBytesUsed=" + ramBytesUsed() + ",size=" + size() + ")";
+  }
+}
@@ -81,5 +81,10 @@ public abstract class FilteredDocIdSetIterator extends DocIdSetIterator {
     }
     return doc;
   }
+
+  @Override
+  public long cost() {
+    return _innerIter.cost();
+  }
   
 }
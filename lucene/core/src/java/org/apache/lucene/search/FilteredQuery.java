@@ -33,6 +33,9 @@ import java.util.Set;
  * <p>Note: the bits are retrieved from the filter each time this
  * query is used in a search - use a CachingWrapperFilter to avoid
  * regenerating the bits every time.
+ * <p>How the filter is applied to the query on each segment is decided
+ * by a {@link FilterStrategy}, by default the {@link #DEFAULT_FILTER_STRATEGY}
+ * which picks one depending on the density of the filter.
  * @since   1.4
  * @see     CachingWrapperFilter
  */
@@ -40,6 +43,7 @@ public class FilteredQuery extends Query {
 
   private final Query query;
   private final Filter filter;
+  private final FilterStrategy strategy;
 
   /**
    * Constructs a new query which applies a filter to the results of the original query.
@@ -48,26 +52,26 @@ public class FilteredQuery extends Query {
    * @param filter Filter to apply to query results, cannot be <code>null</code>.
    */
   public FilteredQuery (Query query, Filter filter) {
-    if (query == null || filter == null)
-      throw new IllegalArgumentException("Query and filter cannot be null.");
-    this.query = query;
-    this.filter = filter;
+    this(query, filter, DEFAULT_FILTER_STRATEGY);
   }
-  
+
   /**
-   * Expert: decides if a filter should be executed as "random-access" or not.
-   * random-access means the filter "filters" in a similar way as deleted docs are filtered
-   * in lucene. This is faster when the filter accepts many documents.
-   * However, when the filter is very sparse, it can be faster to execute the query+filter
-   * as a conjunction in some cases.
-   * 
-   * The default implementation returns true if the first document accepted by the
-   * filter is < 100.
+   * Expert: Constructs a new query which applies a filter to the results of the original query,
+   * using the given {@link FilterStrategy}.
+   * @param query  Query to be filtered, cannot be <code>null</code>.
+   * @param filter Filter to apply to query results, cannot be <code>null</code>.
+   * @param strategy the strategy which applies the filter to each segment, cannot be <code>null</code>.
    * 
-   * @lucene.internal
+   * @see FilteredQuery.FilterStrategy
    */
-  protected boolean useRandomAccess(Bits bits, int firstFilterDoc) {
-    return firstFilterDoc < 100;
+  public FilteredQuery (Query query, Filter filter, FilterStrategy strategy) {
+    if (query == null || filter == null)
+      throw new IllegalArgumentException("Query and filter cannot be null.");
+    if (strategy == null)
+      throw new IllegalArgumentException("FilterStrategy cannot be null.");
+    this.query = query;
+    this.filter = filter;
+    this.strategy = strategy;
   }
 
   /**
@@ -76,7 +80,7 @@ public class FilteredQuery extends Query {
    */
   @Override
   public Weight createWeight(final IndexSearcher searcher) throws IOException {
-    final Weight weight = query.createWeight (searcher);
+    final Weight weight = searcher.createWeight(query);
     return new Weight() {
       
       @Override
@@ -129,100 +133,8 @@ public class FilteredQuery extends Query {
           // this means the filter does not accept any documents.
           return null;
         }
-        
-        final DocIdSetIterator filterIter = filterDocIdSet.iterator();
-        if (filterIter == null) {
-          // this means the filter does not accept any documents.
-          return null;
-        }
-
-        final int firstFilterDoc = filterIter.nextDoc();
-        if (firstFilterDoc == DocIdSetIterator.NO_MORE_DOCS) {
-          return null;
-        }
-        
-        final Bits filterAcceptDocs = filterDocIdSet.bits();
-        final boolean useRandomAccess = (filterAcceptDocs != null && FilteredQuery.this.useRandomAccess(filterAcceptDocs, firstFilterDoc));
-
-        if (useRandomAccess) {
-          // if we are using random access, we return the inner scorer, just with other acceptDocs
-          // TODO, replace this by when BooleanWeight is fixed to be consistent with its scorer implementations:
-          // return weight.scorer(context, scoreDocsInOrder, topScorer, filterAcceptDocs);
-          return weight.scorer(context, true, topScorer, filterAcceptDocs);
-        } else {
-          assert firstFilterDoc > -1;
-          // we are gonna advance() this scorer, so we set inorder=true/toplevel=false
-          // we pass null as acceptDocs, as our filter has already respected acceptDocs, no need to do twice
-          final Scorer scorer = weight.scorer(context, true, false, null);
-          return (scorer == null) ? null : new Scorer(this) {
-            private int scorerDoc = -1, filterDoc = firstFilterDoc;
-            
-            // optimization: we are topScorer and collect directly using short-circuited algo
-            @Override
-            public void score(Collector collector) throws IOException {
-              int filterDoc = firstFilterDoc;
-              int scorerDoc = scorer.advance(filterDoc);
-              // the normalization trick already applies the boost of this query,
-              // so we can use the wrapped scorer directly:
-              collector.setScorer(scorer);
-              for (;;) {
-                if (scorerDoc == filterDoc) {
-                  // Check if scorer has exhausted, only before collecting.
-                  if (scorerDoc == DocIdSetIterator.NO_MORE_DOCS) {
-                    break;
-                  }
-                  collector.collect(scorerDoc);
-                  filterDoc = filterIter.nextDoc();
-                  scorerDoc = scorer.advance(filterDoc);
-                } else if (scorerDoc > filterDoc) {
-                  filterDoc = filterIter.advance(scorerDoc);
-                } else {
-                  scorerDoc = scorer.advance(filterDoc);
-                }
-              }
-            }
-            
-            private int advanceToNextCommonDoc() throws IOException {
-              for (;;) {
-                if (scorerDoc < filterDoc) {
-                  scorerDoc = scorer.advance(filterDoc);
-                } else if (scorerDoc == filterDoc) {
-                  return scorerDoc;
-                } else {
-                  filterDoc = filterIter.advance(scorerDoc);
-                }
-              }
-            }
-
-            @Override
-            public int nextDoc() throws IOException {
-              // don't go to next doc on first call
-              // (because filterIter is already on first doc):
-              if (scorerDoc != -1) {
-                filterDoc = filterIter.nextDoc();
-              }
-              return advanceToNextCommonDoc();
-            }
-            
-            @Override
-            public int advance(int target) throws IOException {
-              if (target > filterDoc) {
-                filterDoc = filterIter.advance(target);
-              }
-              return advanceToNextCommonDoc();
-            }
 
-            @Override
-            public int docID() {
-              return scorerDoc;
-            }
-            
-            @Override
-            public float score() throws IOException {
-              return scorer.score();
-            }
-          };
-        }
+        return strategy.filteredScorer(context, scoreDocsInOrder, topScorer, weight, filterDocIdSet);
       }
     };
   }
@@ -245,7 +157,7 @@ public class FilteredQuery extends Query {
     
     if (queryRewritten != query) {
       // rewrite to a new FilteredQuery wrapping the rewritten query
-      final Query rewritten = new FilteredQuery(queryRewritten, filter);
+      final Query rewritten = new FilteredQuery(queryRewritten, filter, strategy);
       rewritten.setBoost(this.getBoost());
       return rewritten;
     } else {
@@ -262,6 +174,11 @@ public class FilteredQuery extends Query {
     return filter;
   }
 
+  /** Returns the {@link FilterStrategy} which applies the filter to each segment. */
+  public final FilterStrategy getFilterStrategy() {
+    return strategy;
+  }
+
   // inherit javadoc
   @Override
   public void extractTerms(Set<Term> terms) {
@@ -289,7 +206,7 @@ public class FilteredQuery extends Query {
       return false;
     assert o instanceof FilteredQuery;
     final FilteredQuery fq = (FilteredQuery) o;
-    return fq.query.equals(this.query) && fq.filter.equals(this.filter);
+    return fq.query.equals(this.query) && fq.filter.equals(this.filter) && fq.strategy.equals(this.strategy);
   }
 
   /** Returns a hash code value for this object. */
@@ -298,6 +215,390 @@ public class FilteredQuery extends Query {
     int hash = super.hashCode();
     hash = hash * 31 + query.hashCode();
     hash = hash * 31 + filter.hashCode();
+    hash = hash * 31 + strategy.hashCode();
     return hash;
   }
+
+  /**
+   * A {@link FilterStrategy} which leap-frogs the filter and the query,
+   * led by the cheapest of both according to {@link DocIdSetIterator#cost()}.
+   * This is the best strategy for sparse filters, and the only one for
+   * filters which don't provide {@link DocIdSet#bits() random access}.
+   */
+  public static final FilterStrategy LEAP_FROG_FILTER_STRATEGY = new LeapFrogFilterStrategy("leap-frog", null);
+
+  /**
+   * A {@link FilterStrategy} which leap-frogs the filter and the query,
+   * always led by the filter: the query is only advanced to the documents
+   * accepted by the filter.
+   */
+  public static final FilterStrategy LEAP_FROG_FILTER_FIRST_STRATEGY = new LeapFrogFilterStrategy("filter-first", Boolean.TRUE);
+
+  /**
+   * A {@link FilterStrategy} which leap-frogs the filter and the query,
+   * always led by the query: the filter is only advanced to the documents
+   * matched by the query.
+   */
+  public static final FilterStrategy LEAP_FROG_QUERY_FIRST_STRATEGY = new LeapFrogFilterStrategy("query-first-leap-frog", Boolean.FALSE);
+
+  /**
+   * A {@link FilterStrategy} which iterates the query and checks every match
+   * against the filter's {@link DocIdSet#bits() random access bits}, before
+   * verifying the matches of {@link Scorer#asTwoPhaseIterator() two-phase}
+   * scorers. This is the best strategy for dense filters combined with
+   * selective, costly queries. Falls back to
+   * {@link #LEAP_FROG_QUERY_FIRST_STRATEGY} when the filter has no bits.
+   */
+  public static final FilterStrategy QUERY_FIRST_FILTER_STRATEGY = new QueryFirstFilterStrategy();
+
+  /**
+   * A {@link FilterStrategy} which passes the filter's {@link DocIdSet#bits()
+   * random access bits} down to the query, where they are checked like
+   * deleted documents. This is the best strategy for dense filters. Falls
+   * back to {@link #LEAP_FROG_FILTER_STRATEGY} when the filter has no bits.
+   */
+  public static final FilterStrategy RANDOM_ACCESS_FILTER_STRATEGY = new RandomAccessFilterStrategy();
+
+  /**
+   * The default {@link FilterStrategy}, an {@link AdaptiveFilterStrategy}:
+   * random access for filters which accept at least 1% of the documents
+   * of a segment, leap-frog otherwise.
+   */
+  public static final FilterStrategy DEFAULT_FILTER_STRATEGY = new AdaptiveFilterStrategy(0.01f);
+
+  /**
+   * Abstract class that defines how the filter ({@link DocIdSet}) is applied
+   * to the query's {@link Scorer} on each segment.
+   * 
+   * @lucene.experimental
+   */
+  public static abstract class FilterStrategy {
+
+    /**
+     * Returns a filtered {@link Scorer} based on this strategy.
+     * 
+     * @param context the {@link AtomicReaderContext} for which to return the {@link Scorer}.
+     * @param scoreDocsInOrder specifies whether in-order scoring of documents is required.
+     * @param topScorer specifies whether the returned {@link Scorer} will be used as top scorer.
+     * @param weight the {@link FilteredQuery}'s wrapped query {@link Weight}
+     * @param docIdSet the filter {@link DocIdSet} to apply
+     * @return a filtered scorer, or <code>null</code> if no document matches
+     * 
+     * @throws IOException if an {@link IOException} occurs
+     */
+    public abstract Scorer filteredScorer(AtomicReaderContext context,
+        boolean scoreDocsInOrder, boolean topScorer, Weight weight,
+        DocIdSet docIdSet) throws IOException;
+
+    /**
+     * Returns the strategy which {@link #filteredScorer} applies to the given
+     * filter {@link DocIdSet} on the given segment, which is this strategy
+     * unless it picks another one depending on the filter. Useful to debug the
+     * execution of filtered queries.
+     */
+    public FilterStrategy select(AtomicReaderContext context, DocIdSet docIdSet) throws IOException {
+      return this;
+    }
+  }
+
+  /**
+   * Leap-frogs the filter and the query, with a fixed or cost-based leader.
+   */
+  private static final class LeapFrogFilterStrategy extends FilterStrategy {
+
+    private final String name;
+    private final Boolean filterLeads; // null: the cheapest of the filter and the query leads
+
+    LeapFrogFilterStrategy(String name, Boolean filterLeads) {
+      this.name = name;
+      this.filterLeads = filterLeads;
+    }
+
+    @Override
+    public Scorer filteredScorer(AtomicReaderContext context,
+        boolean scoreDocsInOrder, boolean topScorer, final Weight weight,
+        DocIdSet docIdSet) throws IOException {
+      final DocIdSetIterator filterIter = docIdSet.iterator();
+      if (filterIter == null) {
+        // this means the filter does not accept any documents.
+        return null;
+      }
+
+      final int firstFilterDoc = filterIter.nextDoc();
+      if (firstFilterDoc == DocIdSetIterator.NO_MORE_DOCS) {
+        return null;
+      }
+
+      // we are gonna advance() this scorer, so we set inorder=true/toplevel=false
+      // we pass null as acceptDocs, as our filter has already respected acceptDocs, no need to do twice
+      final Scorer scorer = weight.scorer(context, true, false, null);
+      if (scorer == null) {
+        return null;
+      }
+      // the filter and the query are intersected through the approximation
+      // of the query, its matches are only verified on the docs accepted by the filter
+      final TwoPhaseIterator twoPhaseIterator = scorer.asTwoPhaseIterator();
+      final DocIdSetIterator scorerIter = twoPhaseIterator == null ? scorer : twoPhaseIterator.approximation();
+      final boolean filterLeads = this.filterLeads != null
+          ? this.filterLeads.booleanValue()
+          : filterIter.cost() <= scorer.cost();
+      return new Scorer(weight) {
+        private int scorerDoc = -1, filterDoc = firstFilterDoc;
+        
+        // optimization: we are topScorer and collect directly
+        @Override
+        public void score(Collector collector) throws IOException {
+          // the normalization trick already applies the boost of this query,
+          // so we can use the wrapped scorer directly:
+          collector.setScorer(scorer);
+          int doc;
+          while ((doc = nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+            collector.collect(doc);
+          }
+        }
+        
+        private int advanceToNextCommonDoc() throws IOException {
+          for (;;) {
+            if (scorerDoc < filterDoc) {
+              scorerDoc = scorerIter.advance(filterDoc);
+            } else if (scorerDoc > filterDoc) {
+              filterDoc = filterIter.advance(scorerDoc);
+            } else if (scorerDoc == DocIdSetIterator.NO_MORE_DOCS
+                || twoPhaseIterator == null || twoPhaseIterator.matches()) {
+              return scorerDoc;
+            } else {
+              advanceLead();
+            }
+          }
+        }
+
+        private void advanceLead() throws IOException {
+          if (filterLeads) {
+            filterDoc = filterIter.nextDoc();
+          } else {
+            scorerDoc = scorerIter.nextDoc();
+          }
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+          // don't go to next doc on first call
+          // (because filterIter is already on first doc):
+          if (scorerDoc != -1) {
+            advanceLead();
+          }
+          return advanceToNextCommonDoc();
+        }
+        
+        @Override
+        public int advance(int target) throws IOException {
+          if (target > filterDoc) {
+            filterDoc = filterIter.advance(target);
+          }
+          return advanceToNextCommonDoc();
+        }
+
+        @Override
+        public int docID() {
+          return scorerDoc;
+        }
+        
+        @Override
+        public float score() throws IOException {
+          return scorer.score();
+        }
+
+        @Override
+        public float freq() throws IOException {
+          return scorer.freq();
+        }
+
+        @Override
+        public long cost() {
+          return Math.min(filterIter.cost(), scorer.cost());
+        }
+      };
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  /**
+   * Iterates the query and checks its matches against the filter's bits.
+   */
+  private static final class QueryFirstFilterStrategy extends FilterStrategy {
+
+    @Override
+    public Scorer filteredScorer(AtomicReaderContext context,
+        boolean scoreDocsInOrder, boolean topScorer, final Weight weight,
+        DocIdSet docIdSet) throws IOException {
+      final Bits filterAcceptDocs = docIdSet.bits();
+      if (filterAcceptDocs == null) {
+        return LEAP_FROG_QUERY_FIRST_STRATEGY.filteredScorer(context, scoreDocsInOrder, topScorer, weight, docIdSet);
+      }
+      final Scorer scorer = weight.scorer(context, true, false, null);
+      if (scorer == null) {
+        return null;
+      }
+      final TwoPhaseIterator twoPhaseIterator = scorer.asTwoPhaseIterator();
+      final DocIdSetIterator scorerIter = twoPhaseIterator == null ? scorer : twoPhaseIterator.approximation();
+      return new Scorer(weight) {
+        private int doc = -1;
+
+        private int nextAcceptedDoc(int doc) throws IOException {
+          while (doc != DocIdSetIterator.NO_MORE_DOCS
+              && (!filterAcceptDocs.get(doc) || (twoPhaseIterator != null && !twoPhaseIterator.matches()))) {
+            doc = scorerIter.nextDoc();
+          }
+          return doc;
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+          return doc = nextAcceptedDoc(scorerIter.nextDoc());
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+          return doc = nextAcceptedDoc(scorerIter.advance(target));
+        }
+
+        @Override
+        public int docID() {
+          return doc;
+        }
+
+        @Override
+        public float score() throws IOException {
+          return scorer.score();
+        }
+
+        @Override
+        public float freq() throws IOException {
+          return scorer.freq();
+        }
+
+        @Override
+        public long cost() {
+          return scorer.cost();
+        }
+      };
+    }
+
+    @Override
+    public String toString() {
+      return "query-first";
+    }
+  }
+
+  /**
+   * Passes the filter's bits down to the query as accepted documents.
+   */
+  private static final class RandomAccessFilterStrategy extends FilterStrategy {
+
+    @Override
+    public Scorer filteredScorer(AtomicReaderContext context,
+        boolean scoreDocsInOrder, boolean topScorer, Weight weight,
+        DocIdSet docIdSet) throws IOException {
+      final Bits filterAcceptDocs = docIdSet.bits();
+      if (filterAcceptDocs == null) {
+        return LEAP_FROG_FILTER_STRATEGY.filteredScorer(context, scoreDocsInOrder, topScorer, weight, docIdSet);
+      }
+      // we return the inner scorer, just with other acceptDocs
+      // TODO, replace this by when BooleanWeight is fixed to be consistent with its scorer implementations:
+      // return weight.scorer(context, scoreDocsInOrder, topScorer, filterAcceptDocs);
+      return weight.scorer(context, true, topScorer, filterAcceptDocs);
+    }
+
+    @Override
+    public FilterStrategy select(AtomicReaderContext context, DocIdSet docIdSet) throws IOException {
+      return docIdSet.bits() == null ? LEAP_FROG_FILTER_STRATEGY.select(context, docIdSet) : this;
+    }
+
+    @Override
+    public String toString() {
+      return "random-access";
+    }
+  }
+
+  /**
+   * A {@link FilterStrategy} which picks {@link FilteredQuery#RANDOM_ACCESS_FILTER_STRATEGY}
+   * for dense filters and {@link FilteredQuery#LEAP_FROG_FILTER_STRATEGY} for
+   * sparse ones. The density of the filter on a segment is the
+   * {@link DocIdSetIterator#cost() cost} of its iterator divided by the
+   * number of documents of the segment. Filters without random access
+   * {@link DocIdSet#bits() bits} always leap-frog.
+   * 
+   * @lucene.experimental
+   */
+  public static class AdaptiveFilterStrategy extends FilterStrategy {
+
+    private final float minRandomAccessDensity;
+
+    /**
+     * Creates a strategy which uses random access for filters which accept
+     * at least <code>minRandomAccessDensity</code> of the documents of a
+     * segment, a ratio between 0 and 1.
+     */
+    public AdaptiveFilterStrategy(float minRandomAccessDensity) {
+      if (minRandomAccessDensity < 0f || minRandomAccessDensity > 1f) {
+        throw new IllegalArgumentException("minRandomAccessDensity must be in [0, 1], got " + minRandomAccessDensity);
+      }
+      this.minRandomAccessDensity = minRandomAccessDensity;
+    }
+
+    @Override
+    public Scorer filteredScorer(AtomicReaderContext context,
+        boolean scoreDocsInOrder, boolean topScorer, Weight weight,
+        DocIdSet docIdSet) throws IOException {
+      // this creates the filter's iterator twice, which is cheap for the
+      // DocIdSets which provide random access bits
+      return select(context, docIdSet).filteredScorer(context, scoreDocsInOrder, topScorer, weight, docIdSet);
+    }
+
+    @Override
+    public FilterStrategy select(AtomicReaderContext context, DocIdSet docIdSet) throws IOException {
+      final Bits filterAcceptDocs = docIdSet.bits();
+      if (filterAcceptDocs == null) {
+        return LEAP_FROG_FILTER_STRATEGY;
+      }
+      final DocIdSetIterator filterIter = docIdSet.iterator();
+      if (filterIter == null) {
+        return LEAP_FROG_FILTER_STRATEGY;
+      }
+      return useRandomAccess(filterAcceptDocs, filterIter, context.reader().maxDoc())
+          ? RANDOM_ACCESS_FILTER_STRATEGY : LEAP_FROG_FILTER_STRATEGY;
+    }
+
+    /**
+     * Expert: decides if a filter should be executed as "random-access" or not.
+     * random-access means the filter "filters" in a similar way as deleted docs are filtered
+     * in lucene. This is faster when the filter accepts many documents.
+     * However, when the filter is very sparse, it can be faster to execute the query+filter
+     * as a conjunction in some cases.
+     * <p>
+     * The default implementation compares the density of the filter to the
+     * configured minimum. When the cost of the filter's iterator is unknown,
+     * it returns true if the first document accepted by the filter is &lt; 100.
+     * 
+     * @param bits the filter's random access bits
+     * @param filterIter an unpositioned iterator over the filter
+     * @param maxDoc the number of documents of the segment
+     */
+    protected boolean useRandomAccess(Bits bits, DocIdSetIterator filterIter, int maxDoc) throws IOException {
+      final long cost = filterIter.cost();
+      if (cost == Long.MAX_VALUE) {
+        return filterIter.nextDoc() < 100;
+      }
+      return cost >= (long) Math.ceil(minRandomAccessDensity * maxDoc) && cost > 0;
+    }
+
+    @Override
+    public String toString() {
+      return "adaptive(" + minRandomAccessDensity + ")";
+    }
+  }
 }
@@ -112,7 +112,9 @@ public class IndexSearcher {
   }
 
   /** Runs searches for each segment separately, using the
-   *  provided ExecutorService.  IndexSearcher will not
+   *  provided ExecutorService.  Multi-term queries also
+   *  enumerate the terms of all segments concurrently while
+   *  they are rewritten.  IndexSearcher will not
    *  shutdown/awaitTermination this ExecutorService on
    *  close; you must do so, eventually, on your own.  NOTE:
    *  if you are using {@link NIOFSDirectory}, do not use
@@ -131,6 +133,8 @@ public class IndexSearcher {
    * <p>
    * Given a non-<code>null</code> {@link ExecutorService} this method runs
    * searches for each segment separately, using the provided ExecutorService.
+   * Multi-term queries also enumerate the terms of all segments concurrently
+   * while they are rewritten, see {@link #rewrite(Query)}.
    * IndexSearcher will not shutdown/awaitTermination this ExecutorService on
    * close; you must do so, eventually, on your own. NOTE: if you are using
    * {@link NIOFSDirectory}, do not use the shutdownNow method of
@@ -571,21 +575,34 @@ public class IndexSearcher {
       collector.setNextReader(ctx);
       Scorer scorer = weight.scorer(ctx, !collector.acceptsDocsOutOfOrder(), true, ctx.reader().getLiveDocs());
       if (scorer != null) {
-        scorer.score(collector);
+        try {
+          scorer.score(collector);
+        } catch (CollectionTerminatedException e) {
+          // collection was terminated prematurely
+          // continue with the following leaf
+        }
       }
     }
   }
 
   /** Expert: called to re-write queries into primitive queries.
+   * If this searcher has an {@link ExecutorService}, the scoring and
+   * constant score rewrites of {@link MultiTermQuery} read the terms
+   * of all segments concurrently on it.
    * @throws BooleanQuery.TooManyClauses
    */
   public Query rewrite(Query original) throws IOException {
-    Query query = original;
-    for (Query rewrittenQuery = query.rewrite(reader); rewrittenQuery != query;
-         rewrittenQuery = query.rewrite(reader)) {
-      query = rewrittenQuery;
+    final ExecutorService previous = TermCollectingRewrite.setRewriteExecutor(executor);
+    try {
+      Query query = original;
+      for (Query rewrittenQuery = query.rewrite(reader); rewrittenQuery != query;
+           rewrittenQuery = query.rewrite(reader)) {
+        query = rewrittenQuery;
+      }
+      return query;
+    } finally {
+      TermCollectingRewrite.setRewriteExecutor(previous);
     }
-    return query;
   }
 
   /** Returns an Explanation that describes how <code>doc</code> scored against
@@ -619,6 +636,21 @@ public class IndexSearcher {
     return weight.explain(ctx, deBasedDoc);
   }
 
+  /**
+   * Creates a {@link Weight} for a rewritten {@link Query}, by calling
+   * {@link Query#createWeight}. Queries create the weights of their
+   * sub-queries through this method, so that the weights of all query nodes
+   * can be instrumented while a {@link QueryProfiler} is started.
+   * @lucene.internal
+   */
+  public Weight createWeight(Query query) throws IOException {
+    final QueryProfiler profiler = QueryProfiler.current();
+    if (profiler == null) {
+      return query.createWeight(this);
+    }
+    return profiler.createWeight(query, this);
+  }
+
   /**
    * Creates a normalized weight for a top-level {@link Query}.
    * The query is rewritten by this method and {@link Query#createWeight} called,
@@ -627,8 +659,14 @@ public class IndexSearcher {
    * @lucene.internal
    */
   public Weight createNormalizedWeight(Query query) throws IOException {
+    final QueryProfiler profiler = QueryProfiler.current();
+    final long rewriteStart = profiler == null ? 0L : System.nanoTime();
     query = rewrite(query);
-    Weight weight = query.createWeight(this);
+    final long rewriteNanos = profiler == null ? 0L : System.nanoTime() - rewriteStart;
+    Weight weight = createWeight(query);
+    if (profiler != null) {
+      profiler.recordRewrite(weight, rewriteNanos);
+    }
     float v = weight.getValueForNormalization();
     float norm = getSimilarity().queryNorm(v);
     if (Float.isInfinite(norm) || Float.isNaN(norm)) {
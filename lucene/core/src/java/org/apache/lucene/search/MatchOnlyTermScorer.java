@@ -30,6 +30,14 @@ import org.apache.lucene.search.similarities.Similarity;
 final class MatchOnlyTermScorer extends Scorer {
   private final DocsEnum docsEnum;
   private final Similarity.ExactSimScorer docScorer;
+  private final int docFreq;
+
+  // postings are read from the DocsEnum in bulk, see DocsEnum#read
+  private final int[] docs = new int[TermScorer.BUFFER_SIZE];
+  private final float[] scores = new float[TermScorer.BUFFER_SIZE];
+  private int pointer;
+  private int pointerMax;
+  private int doc = -1;
   
   /**
    * Construct a <code>TermScorer</code>.
@@ -41,16 +49,19 @@ final class MatchOnlyTermScorer extends Scorer {
    * @param docScorer
    *          The </code>Similarity.ExactSimScorer</code> implementation 
    *          to be used for score computations.
+   * @param docFreq
+   *          The number of documents which contain the <code>Term</code>.
    */
-  MatchOnlyTermScorer(Weight weight, DocsEnum td, Similarity.ExactSimScorer docScorer) throws IOException {
+  MatchOnlyTermScorer(Weight weight, DocsEnum td, Similarity.ExactSimScorer docScorer, int docFreq) throws IOException {
     super(weight);
     this.docScorer = docScorer;
     this.docsEnum = td;
+    this.docFreq = docFreq;
   }
 
   @Override
   public int docID() {
-    return docsEnum.docID();
+    return doc;
   }
 
   @Override
@@ -65,19 +76,69 @@ final class MatchOnlyTermScorer extends Scorer {
    */
   @Override
   public int nextDoc() throws IOException {
-    return docsEnum.nextDoc();
+    if (++pointer >= pointerMax) {
+      pointerMax = docsEnum.read(docs, null);     // refill buffer
+      if (pointerMax == 0) {
+        return doc = NO_MORE_DOCS;
+      }
+      pointer = 0;
+    }
+    return doc = docs[pointer];
   }
 
   @Override
   public float score() {
     assert docID() != NO_MORE_DOCS;
-    return docScorer.score(docsEnum.docID(), 1);
+    return docScorer.score(doc, 1);
+  }
+
+  @Override
+  public boolean score(Collector collector, int max, int firstDocID) throws IOException {
+    // firstDocID is ignored since nextDoc() sets 'doc'
+    collector.setScorer(this);
+    while (doc < max) {                           // for docs in window
+      collector.collect(doc);
+      nextDoc();
+    }
+    return doc != NO_MORE_DOCS;
+  }
+
+  /**
+   * Adds the scores of the documents before <code>max</code>
+   * to the bucket table of a {@link BooleanScorer}, without
+   * going through a {@link Collector}.
+   *
+   * @return true if more matching documents may remain.
+   */
+  boolean score(BooleanScorer.BucketTable table, int mask, int max) throws IOException {
+    final Similarity.ExactSimScorer docScorer = this.docScorer;
+    while (doc < max) {
+      if (pointer < pointerMax) {
+        // push the buffered documents of the window at once
+        assert docs[pointer] == doc;
+        int upTo = pointer + 1;
+        while (upTo < pointerMax && docs[upTo] < max) {
+          upTo++;
+        }
+        for (int i = pointer; i < upTo; ++i) {
+          scores[i] = docScorer.score(docs[i], 1);
+        }
+        table.collect(docs, scores, pointer, upTo, mask);
+        pointer = upTo - 1;
+      } else {
+        // positioned by advance(), outside of the buffer
+        table.collect(doc, docScorer.score(doc, 1), mask);
+      }
+      nextDoc();
+    }
+    return doc != NO_MORE_DOCS;
   }
 
   /**
    * Advances to the first match beyond the current whose document number is
    * greater than or equal to a given target. <br>
-   * The implementation uses {@link DocsEnum#advance(int)}.
+   * Documents that were already read in bulk are scanned first, then
+   * the implementation uses {@link DocsEnum#advance(int)}.
    * 
    * @param target
    *          The target document number.
@@ -85,7 +146,21 @@ final class MatchOnlyTermScorer extends Scorer {
    */
   @Override
   public int advance(int target) throws IOException {
-    return docsEnum.advance(target);
+    // first scan in buffer
+    for (pointer++; pointer < pointerMax; pointer++) {
+      if (docs[pointer] >= target) {
+        return doc = docs[pointer];
+      }
+    }
+
+    // not found in buffer, seek the enum
+    pointer = pointerMax = 0;
+    return doc = docsEnum.advance(target);
+  }
+
+  @Override
+  public long cost() {
+    return docFreq;
   }
 
   /** Returns a string representation of this <code>TermScorer</code>. */
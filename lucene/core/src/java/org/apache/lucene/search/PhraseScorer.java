@@ -38,11 +38,19 @@ abstract class PhraseScorer extends Scorer {
 
   final Similarity.SloppySimScorer docScorer;
 
+  private final long cost; // docFreq of the rarest term
+
   PhraseScorer(Weight weight, PhraseQuery.PostingsAndFreq[] postings,
       Similarity.SloppySimScorer docScorer) {
     super(weight);
     this.docScorer = docScorer;
 
+    long cost = Long.MAX_VALUE;
+    for (PhraseQuery.PostingsAndFreq postingsAndFreq : postings) {
+      cost = Math.min(cost, postingsAndFreq.docFreq);
+    }
+    this.cost = cost;
+
     // convert tps to a list of phrase positions.
     // note: phrase-position differs from term-position in that its position
     // reflects the phrase offset: pp.pos = tp.pos - offset.
@@ -86,29 +94,68 @@ abstract class PhraseScorer extends Scorer {
     max = max.next; // cyclic
     return true;
   }
-  
-  @Override
-  public int advance(int target) throws IOException {
-    freq = 0.0f;
+
+  // advances to the next doc which has all of the terms
+  private int advanceAllTerms(int target) throws IOException {
     if (!advanceMin(target)) {
       return NO_MORE_DOCS;
-    }        
-    boolean restart=false;
-    while (freq == 0.0f) {
-      while (min.doc < max.doc || restart) {
-        restart = false;
-        if (!advanceMin(max.doc)) {
-          return NO_MORE_DOCS;
-        }        
+    }
+    while (min.doc < max.doc) {
+      if (!advanceMin(max.doc)) {
+        return NO_MORE_DOCS;
       }
-      // found a doc with all of the terms
-      freq = phraseFreq(); // check for phrase
-      restart = true;
-    } 
-
-    // found a match
+    }
     return max.doc;
   }
+
+  // the docs which have all the terms, whether they contain the phrase or not
+  private final DocIdSetIterator approximation = new DocIdSetIterator() {
+    @Override
+    public int docID() {
+      return max.doc;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      return advance(max.doc);
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      freq = 0.0f;
+      return advanceAllTerms(target);
+    }
+
+    @Override
+    public long cost() {
+      return cost;
+    }
+  };
+
+  @Override
+  public int advance(int target) throws IOException {
+    int doc = approximation.advance(target);
+    // check for phrase
+    while (doc != NO_MORE_DOCS && (freq = phraseFreq()) == 0.0f) {
+      doc = approximation.nextDoc();
+    }
+    return doc;
+  }
+
+  @Override
+  public long cost() {
+    return cost;
+  }
+
+  @Override
+  public TwoPhaseIterator asTwoPhaseIterator() {
+    return new TwoPhaseIterator(approximation) {
+      @Override
+      public boolean matches() throws IOException {
+        return (freq = phraseFreq()) != 0.0f;
+      }
+    };
+  }
   
   /**
    * phrase frequency in current doc as computed by phraseFreq().
@@ -0,0 +1,197 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.QueryProfiler.Operation;
+
+/**
+ * A {@link Scorer} which counts and times the calls to another scorer. The
+ * counters are not synchronized: a scorer is used by a single thread, and
+ * they are read once the search is over.
+ */
+final class ProfileScorer extends Scorer {
+
+  private final Scorer scorer;
+  final long[] counts = new long[Operation.values().length];
+  final long[] nanos = new long[Operation.values().length];
+
+  ProfileScorer(ProfileWeight weight, Scorer scorer) {
+    super(weight);
+    this.scorer = scorer;
+  }
+
+  private void record(Operation operation, long start) {
+    counts[operation.ordinal()]++;
+    nanos[operation.ordinal()] += System.nanoTime() - start;
+  }
+
+  @Override
+  public int docID() {
+    return scorer.docID();
+  }
+
+  @Override
+  public int nextDoc() throws IOException {
+    final long start = System.nanoTime();
+    try {
+      return scorer.nextDoc();
+    } finally {
+      record(Operation.NEXT_DOC, start);
+    }
+  }
+
+  @Override
+  public int advance(int target) throws IOException {
+    final long start = System.nanoTime();
+    try {
+      return scorer.advance(target);
+    } finally {
+      record(Operation.ADVANCE, start);
+    }
+  }
+
+  @Override
+  public float score() throws IOException {
+    final long start = System.nanoTime();
+    try {
+      return scorer.score();
+    } finally {
+      record(Operation.SCORE, start);
+    }
+  }
+
+  @Override
+  public void score(Collector collector) throws IOException {
+    final long start = System.nanoTime();
+    try {
+      scorer.score(wrap(collector));
+    } finally {
+      record(Operation.BULK_SCORE, start);
+    }
+  }
+
+  @Override
+  public boolean score(Collector collector, int max, int firstDocID) throws IOException {
+    final long start = System.nanoTime();
+    try {
+      return scorer.score(wrap(collector), max, firstDocID);
+    } finally {
+      record(Operation.BULK_SCORE, start);
+    }
+  }
+
+  // makes the collector score documents through this scorer
+  private Collector wrap(final Collector collector) {
+    return new Collector() {
+      @Override
+      public void setScorer(Scorer scorer) throws IOException {
+        collector.setScorer(scorer == ProfileScorer.this.scorer ? ProfileScorer.this : scorer);
+      }
+
+      @Override
+      public void collect(int doc) throws IOException {
+        collector.collect(doc);
+      }
+
+      @Override
+      public void setNextReader(AtomicReaderContext context) throws IOException {
+        collector.setNextReader(context);
+      }
+
+      @Override
+      public boolean acceptsDocsOutOfOrder() {
+        return collector.acceptsDocsOutOfOrder();
+      }
+    };
+  }
+
+  @Override
+  public float freq() throws IOException {
+    return scorer.freq();
+  }
+
+  @Override
+  public long cost() {
+    return scorer.cost();
+  }
+
+  @Override
+  public Collection<ChildScorer> getChildren() {
+    return Collections.singletonList(new ChildScorer(scorer, "PROFILED"));
+  }
+
+  @Override
+  public TwoPhaseIterator asTwoPhaseIterator() {
+    final TwoPhaseIterator twoPhaseIterator = scorer.asTwoPhaseIterator();
+    if (twoPhaseIterator == null) {
+      return null;
+    }
+    final DocIdSetIterator approximation = twoPhaseIterator.approximation();
+    return new TwoPhaseIterator(new DocIdSetIterator() {
+      @Override
+      public int docID() {
+        return approximation.docID();
+      }
+
+      @Override
+      public int nextDoc() throws IOException {
+        final long start = System.nanoTime();
+        try {
+          return approximation.nextDoc();
+        } finally {
+          record(Operation.NEXT_DOC, start);
+        }
+      }
+
+      @Override
+      public int advance(int target) throws IOException {
+        final long start = System.nanoTime();
+        try {
+          return approximation.advance(target);
+        } finally {
+          record(Operation.ADVANCE, start);
+        }
+      }
+
+      @Override
+      public long cost() {
+        return approximation.cost();
+      }
+    }) {
+      @Override
+      public boolean matches() throws IOException {
+        final long start = System.nanoTime();
+        try {
+          return twoPhaseIterator.matches();
+        } finally {
+          record(Operation.MATCHES, start);
+        }
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return "profile(" + scorer + ")";
+  }
+}
@@ -0,0 +1,87 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.QueryProfiler.Operation;
+import org.apache.lucene.util.Bits;
+
+/**
+ * A {@link Weight} which records the creation of its scorers, and profiles
+ * them, into a {@link QueryProfiler.Node}.
+ */
+final class ProfileWeight extends Weight {
+
+  private final Weight weight;
+  final QueryProfiler.Node node;
+
+  ProfileWeight(Weight weight, QueryProfiler.Node node) {
+    this.weight = weight;
+    this.node = node;
+  }
+
+  @Override
+  public Explanation explain(AtomicReaderContext context, int doc) throws IOException {
+    return weight.explain(context, doc);
+  }
+
+  @Override
+  public Query getQuery() {
+    return weight.getQuery();
+  }
+
+  @Override
+  public float getValueForNormalization() throws IOException {
+    return weight.getValueForNormalization();
+  }
+
+  @Override
+  public void normalize(float norm, float topLevelBoost) {
+    weight.normalize(norm, topLevelBoost);
+  }
+
+  @Override
+  public Scorer scorer(AtomicReaderContext context, boolean scoreDocsInOrder,
+      boolean topScorer, Bits acceptDocs) throws IOException {
+    final long start = System.nanoTime();
+    final Scorer scorer;
+    try {
+      scorer = weight.scorer(context, scoreDocsInOrder, topScorer, acceptDocs);
+    } finally {
+      node.record(Operation.CREATE_SCORER, System.nanoTime() - start);
+    }
+    if (scorer == null) {
+      return null;
+    }
+    final ProfileScorer profileScorer = new ProfileScorer(this, scorer);
+    node.addScorer(profileScorer);
+    return profileScorer;
+  }
+
+  @Override
+  public boolean scoresDocsOutOfOrder() {
+    return weight.scoresDocsOutOfOrder();
+  }
+
+  @Override
+  public String toString() {
+    return "profile(" + weight + ")";
+  }
+}
@@ -0,0 +1,244 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Records how much time the queries run by the current thread spend in
+ * each of their nodes. While a profiler is {@link #start() started},
+ * {@link IndexSearcher#createWeight(Query)} wraps the {@link Weight} of
+ * every query node, and the {@link Scorer}s they create, to count the calls
+ * to {@link Scorer#nextDoc()}, {@link Scorer#advance(int)},
+ * {@link Scorer#score()}, etc. and measure their duration. When no profiler
+ * is started, weights and scorers are not wrapped at all.
+ * <p>
+ * Typical usage:
+ * <pre>
+ *   QueryProfiler profiler = QueryProfiler.start();
+ *   try {
+ *     searcher.search(query, 10);
+ *   } finally {
+ *     profiler.stop();
+ *   }
+ *   System.out.println(profiler);
+ * </pre>
+ * <p>
+ * Durations are inclusive: the time a node spends in
+ * {@link Scorer#nextDoc()} includes the time its children spend moving to
+ * the next document. Since wrapped weights and scorers hide their concrete
+ * classes, queries which specialize on the weights or scorers of their
+ * sub-queries, such as {@link BooleanQuery} on term queries, fall back to
+ * their generic execution while they are profiled.
+ * <p>
+ * Only the top-level rewrite of a query is measured, and reported on the
+ * root node of the rewritten query. Weights must be created on the thread
+ * which started the profiler, but their scorers may be used from any thread.
+ *
+ * @lucene.experimental
+ */
+public final class QueryProfiler {
+
+  /** The operations which are profiled on each query node. */
+  public static enum Operation {
+    /** {@link IndexSearcher#rewrite(Query)}, root nodes only. */
+    REWRITE,
+    /** {@link Query#createWeight(IndexSearcher)}. */
+    CREATE_WEIGHT,
+    /** {@link Weight#scorer}. */
+    CREATE_SCORER,
+    /** {@link Scorer#nextDoc()}, also on the two-phase approximation. */
+    NEXT_DOC,
+    /** {@link Scorer#advance(int)}, also on the two-phase approximation. */
+    ADVANCE,
+    /** {@link TwoPhaseIterator#matches()}. */
+    MATCHES,
+    /** {@link Scorer#score()}. */
+    SCORE,
+    /** {@link Scorer#score(Collector)} and its windowed variant, which
+     *  collect documents without going through the profiled scorer. */
+    BULK_SCORE
+  }
+
+  private static final int NUM_OPERATIONS = Operation.values().length;
+
+  private static final ThreadLocal<QueryProfiler> CURRENT = new ThreadLocal<QueryProfiler>();
+
+  private final List<Node> roots = new ArrayList<Node>();
+  private final List<Node> stack = new ArrayList<Node>();
+
+  private QueryProfiler() {}
+
+  /**
+   * Starts profiling the queries run by the current thread and returns the
+   * profiler which records them.
+   *
+   * @throws IllegalStateException if a profiler is already started on this thread
+   */
+  public static QueryProfiler start() {
+    if (CURRENT.get() != null) {
+      throw new IllegalStateException("a QueryProfiler is already started on this thread");
+    }
+    final QueryProfiler profiler = new QueryProfiler();
+    CURRENT.set(profiler);
+    return profiler;
+  }
+
+  /** Returns the profiler started on the current thread, or <code>null</code>. */
+  public static QueryProfiler current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Stops profiling the queries of the current thread. The scorers which
+   * were created while the profiler was started keep recording into it.
+   *
+   * @throws IllegalStateException if this profiler is not the one started on this thread
+   */
+  public void stop() {
+    if (CURRENT.get() != this) {
+      throw new IllegalStateException("this QueryProfiler is not started on this thread");
+    }
+    CURRENT.remove();
+  }
+
+  /** Returns the nodes of the top-level queries which were profiled, in order. */
+  public List<Node> getRoots() {
+    return Collections.unmodifiableList(roots);
+  }
+
+  Weight createWeight(Query query, IndexSearcher searcher) throws IOException {
+    final Node node = new Node(query);
+    if (stack.isEmpty()) {
+      roots.add(node);
+    } else {
+      stack.get(stack.size() - 1).children.add(node);
+    }
+    stack.add(node);
+    final long start = System.nanoTime();
+    final Weight weight;
+    try {
+      weight = query.createWeight(searcher);
+    } finally {
+      node.record(Operation.CREATE_WEIGHT, System.nanoTime() - start);
+      stack.remove(stack.size() - 1);
+    }
+    return new ProfileWeight(weight, node);
+  }
+
+  void recordRewrite(Weight weight, long nanos) {
+    if (weight instanceof ProfileWeight) {
+      ((ProfileWeight) weight).node.record(Operation.REWRITE, nanos);
+    }
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    for (Node root : roots) {
+      root.toString(sb, 0);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * The profile of a query node: how many times each {@link Operation} was
+   * called and how long it took, summed over all the scorers of the node.
+   */
+  public static final class Node {
+
+    private final Query query;
+    private final List<Node> children = new ArrayList<Node>();
+    // weight-level operations
+    private final long[] counts = new long[NUM_OPERATIONS];
+    private final long[] nanos = new long[NUM_OPERATIONS];
+    // scorer-level operations are recorded by each scorer, and summed on read
+    private final List<ProfileScorer> scorers = new ArrayList<ProfileScorer>();
+
+    Node(Query query) {
+      this.query = query;
+    }
+
+    /** Returns the query of this node. */
+    public Query getQuery() {
+      return query;
+    }
+
+    /** Returns the nodes of the sub-queries of this node. */
+    public List<Node> getChildren() {
+      return Collections.unmodifiableList(children);
+    }
+
+    /** Returns how many times the given operation was called on this node. */
+    public synchronized long getCount(Operation operation) {
+      long count = counts[operation.ordinal()];
+      for (ProfileScorer scorer : scorers) {
+        count += scorer.counts[operation.ordinal()];
+      }
+      return count;
+    }
+
+    /** Returns the total duration of the given operation on this node, in nanoseconds. */
+    public synchronized long getNanos(Operation operation) {
+      long total = nanos[operation.ordinal()];
+      for (ProfileScorer scorer : scorers) {
+        total += scorer.nanos[operation.ordinal()];
+      }
+      return total;
+    }
+
+    synchronized void record(Operation operation, long duration) {
+      counts[operation.ordinal()]++;
+      nanos[operation.ordinal()] += duration;
+    }
+
+    synchronized void addScorer(ProfileScorer scorer) {
+      scorers.add(scorer);
+    }
+
+    private void toString(StringBuilder sb, int depth) {
+      for (int i = 0; i < depth; i++) {
+        sb.append("  ");
+      }
+      sb.append(query.getClass().getSimpleName()).append('(').append(query).append(')');
+      for (Operation operation : Operation.values()) {
+        final long count = getCount(operation);
+        if (count > 0) {
+          sb.append(' ').append(operation.name().toLowerCase(Locale.ROOT)).append('=')
+            .append(count).append('/').append(getNanos(operation)).append("ns");
+        }
+      }
+      sb.append('\n');
+      for (Node child : children) {
+        child.toString(sb, depth + 1);
+      }
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder sb = new StringBuilder();
+      toString(sb, 0);
+      return sb.toString();
+    }
+  }
+
+}
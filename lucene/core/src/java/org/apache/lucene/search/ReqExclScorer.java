@@ -30,6 +30,7 @@ class ReqExclScorer extends Scorer {
   private Scorer reqScorer;
   private DocIdSetIterator exclDisi;
   private int doc = -1;
+  private final long cost;
 
   /** Construct a <code>ReqExclScorer</code>.
    * @param reqScorer The scorer that must match, except where
@@ -39,6 +40,7 @@ class ReqExclScorer extends Scorer {
     super(reqScorer.weight);
     this.reqScorer = reqScorer;
     this.exclDisi = exclDisi;
+    this.cost = reqScorer.cost(); // reqScorer is set to null when exhausted
   }
 
   @Override
@@ -117,4 +119,9 @@ class ReqExclScorer extends Scorer {
     }
     return doc = toNonExcluded();
   }
+
+  @Override
+  public long cost() {
+    return cost;
+  }
 }
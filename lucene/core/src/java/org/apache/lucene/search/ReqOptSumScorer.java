@@ -47,6 +47,11 @@ class ReqOptSumScorer extends Scorer {
   public int nextDoc() throws IOException {
     return reqScorer.nextDoc();
   }
+
+  @Override
+  public long cost() {
+    return reqScorer.cost();
+  }
   
   @Override
   public int advance(int target) throws IOException {
@@ -77,5 +77,10 @@ public class ScoreCachingWrappingScorer extends Scorer {
   public int advance(int target) throws IOException {
     return scorer.advance(target);
   }
+
+  @Override
+  public long cost() {
+    return scorer.cost();
+  }
   
 }
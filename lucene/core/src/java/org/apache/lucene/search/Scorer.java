@@ -85,6 +85,20 @@ public abstract class Scorer extends DocIdSetIterator {
     return doc != NO_MORE_DOCS;
   }
   
+  /**
+   * Returns a two-phase view of this scorer, or <code>null</code> if it
+   * cannot separate cheap iteration over candidate documents from the
+   * verification of its matches, which is the default. Callers which use the
+   * returned view must advance it through its
+   * {@link TwoPhaseIterator#approximation() approximation} instead of this
+   * scorer.
+   *
+   * @lucene.experimental
+   */
+  public TwoPhaseIterator asTwoPhaseIterator() {
+    return null;
+  }
+
   /** Returns the score of the current document matching the query.
    * Initially invalid, until {@link #nextDoc()} or {@link #advance(int)}
    * is called the first time, or when called from within
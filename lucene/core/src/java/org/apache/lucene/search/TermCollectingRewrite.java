@@ -18,21 +18,51 @@ package org.apache.lucene.search;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocsAndPositionsEnum;
+import org.apache.lucene.index.DocsEnum;
 import org.apache.lucene.index.Fields;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermState;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.AttributeSource;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.TermContext;
+import org.apache.lucene.util.ThreadInterruptedException;
 
 abstract class TermCollectingRewrite<Q extends Query> extends MultiTermQuery.RewriteMethod {
   
+  /** the executor of the {@link IndexSearcher} that rewrites a query in the current thread */
+  private static final ThreadLocal<ExecutorService> rewriteExecutor = new ThreadLocal<ExecutorService>();
+
+  /**
+   * Sets the {@link ExecutorService} that the term collecting rewrites of the
+   * current thread use, until it is reset to the returned previous one.
+   * {@link IndexSearcher#rewrite} passes the searcher's executor here.
+   */
+  static ExecutorService setRewriteExecutor(ExecutorService executor) {
+    final ExecutorService previous = rewriteExecutor.get();
+    if (executor == null) {
+      rewriteExecutor.remove();
+    } else {
+      rewriteExecutor.set(executor);
+    }
+    return previous;
+  }
   
   /** Return a suitable top-level Query for holding all expanded terms. */
   protected abstract Q getTopLevelQuery() throws IOException;
@@ -45,27 +75,35 @@ abstract class TermCollectingRewrite<Q extends Query> extends MultiTermQuery.Rew
   protected abstract void addClause(Q topLevel, Term term, int docCount, float boost, TermContext states) throws IOException;
 
   
+  /**
+   * Collects the terms of all segments in segment order. If the query is
+   * rewritten by an {@link IndexSearcher} that has an {@link ExecutorService},
+   * the terms of each segment are read ahead by a separate task, so the
+   * rewritten query is the same as with a serial rewrite. A task buffers no
+   * more terms than the rewrite may accept from a segment, such as the term
+   * count cutoff of {@link ConstantScoreAutoRewrite}; if the collection goes on
+   * past them, the segment's remaining terms are read by the calling thread.
+   * The {@link TermsEnum}s are created by the calling thread with the
+   * collector's attributes. A {@link FuzzyTermsEnum} reads the maximum
+   * non-competitive boost from these attributes while it is iterated, so fuzzy
+   * queries always enumerate the segments serially.
+   */
   final void collectTerms(IndexReader reader, MultiTermQuery query, TermCollector collector) throws IOException {
     IndexReaderContext topReaderContext = reader.getTopReaderContext();
+    final List<AtomicReaderContext> leaves = topReaderContext.leaves();
+    final ExecutorService executor = rewriteExecutor.get();
     Comparator<BytesRef> lastTermComp = null;
-    for (AtomicReaderContext context : topReaderContext.leaves()) {
-      final Fields fields = context.reader().fields();
-      if (fields == null) {
-        // reader has no fields
+    for (int i = 0; i < leaves.size(); i++) {
+      final AtomicReaderContext context = leaves.get(i);
+      final TermsEnum termsEnum = getTermsEnum(context, query, collector.attributes);
+      if (termsEnum == null)
         continue;
-      }
 
-      final Terms terms = fields.terms(query.field);
-      if (terms == null) {
-        // field does not exist
-        continue;
+      if (executor != null && lastTermComp == null && i < leaves.size() - 1 && !(termsEnum instanceof FuzzyTermsEnum)) {
+        // the first segment with terms, the others are read ahead concurrently
+        collectTermsConcurrently(executor, topReaderContext, i, termsEnum, query, collector);
+        return;
       }
-
-      final TermsEnum termsEnum = getTermsEnum(query, terms, collector.attributes);
-      assert termsEnum != null;
-
-      if (termsEnum == TermsEnum.EMPTY)
-        continue;
       
       // Check comparator compatibility:
       final Comparator<BytesRef> newTermComp = termsEnum.getComparator();
@@ -81,7 +119,233 @@ abstract class TermCollectingRewrite<Q extends Query> extends MultiTermQuery.Rew
       }
     }
   }
+
+  /** Returns the segment's {@link TermsEnum}, or <code>null</code> if it has no matching terms. */
+  private TermsEnum getTermsEnum(AtomicReaderContext context, MultiTermQuery query, AttributeSource atts) throws IOException {
+    final Fields fields = context.reader().fields();
+    if (fields == null) {
+      // reader has no fields
+      return null;
+    }
+
+    final Terms terms = fields.terms(query.field);
+    if (terms == null) {
+      // field does not exist
+      return null;
+    }
+
+    final TermsEnum termsEnum = getTermsEnum(query, terms, atts);
+    assert termsEnum != null;
+
+    if (termsEnum == TermsEnum.EMPTY)
+      return null;
+    return termsEnum;
+  }
   
+  private void collectTermsConcurrently(ExecutorService executor, IndexReaderContext topReaderContext, int first,
+      TermsEnum firstTermsEnum, MultiTermQuery query, TermCollector collector) throws IOException {
+    final List<AtomicReaderContext> leaves = topReaderContext.leaves();
+    final List<Future<BufferedTermsEnum>> futures = new ArrayList<Future<BufferedTermsEnum>>(leaves.size());
+    final BufferedTermsEnum.Stop stop = new BufferedTermsEnum.Stop();
+    final int maxBufferedTerms = collector.maxBufferedTerms();
+    try {
+      for (int i = first; i < leaves.size(); i++) {
+        final TermsEnum termsEnum = i == first ? firstTermsEnum : getTermsEnum(leaves.get(i), query, collector.attributes);
+        if (termsEnum == null) {
+          futures.add(null);
+          continue;
+        }
+        futures.add(executor.submit(new Callable<BufferedTermsEnum>() {
+          @Override
+          public BufferedTermsEnum call() throws IOException {
+            return new BufferedTermsEnum(termsEnum, maxBufferedTerms, stop);
+          }
+        }));
+      }
+
+      Comparator<BytesRef> lastTermComp = null;
+      for (int i = first; i < leaves.size(); i++) {
+        final Future<BufferedTermsEnum> future = futures.get(i - first);
+        if (future == null) {
+          continue;
+        }
+        final BufferedTermsEnum termsEnum = future.get();
+        // Check comparator compatibility:
+        final Comparator<BytesRef> newTermComp = termsEnum.getComparator();
+        if (lastTermComp != null && newTermComp != null && newTermComp != lastTermComp)
+          throw new RuntimeException("term comparator should not change between segments: "+lastTermComp+" != "+newTermComp);
+        lastTermComp = newTermComp;
+        collector.setReaderContext(topReaderContext, leaves.get(i));
+        collector.setNextEnum(termsEnum);
+        BytesRef bytes;
+        while ((bytes = termsEnum.next()) != null) {
+          if (!collector.collect(bytes))
+            return; // interrupt whole term collection, so also don't iterate other subReaders
+        }
+      }
+    } catch (InterruptedException e) {
+      throw new ThreadInterruptedException(e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    } finally {
+      // stop the enumeration of the segments that are still running
+      stop.stopped = true;
+      for (Future<BufferedTermsEnum> future : futures) {
+        if (future != null) {
+          future.cancel(false);
+        }
+      }
+    }
+  }
+
+  /**
+   * A {@link TermsEnum} over the terms, term states and boosts that another
+   * {@link TermsEnum} returned, which were read ahead by an executor thread.
+   * At most <code>maxTerms</code> terms are buffered; the other terms are
+   * then read from the wrapped {@link TermsEnum} by the consuming thread.
+   * It cannot seek.
+   */
+  static final class BufferedTermsEnum extends TermsEnum {
+
+    static final class Stop {
+      volatile boolean stopped;
+    }
+
+    private final Comparator<BytesRef> comparator;
+    private final BoostAttribute boostAtt = attributes().addAttribute(BoostAttribute.class);
+    private final BoostAttribute inBoostAtt;
+    private TermsEnum in; // non-null if the buffer is full and in may have more terms
+
+    private byte[] bytes = new byte[64];
+    private int[] starts = new int[17];
+    private TermState[] states = new TermState[16];
+    private int[] docFreqs = new int[16];
+    private long[] totalTermFreqs = new long[16];
+    private float[] boosts = new float[16];
+    private int size;
+
+    private final BytesRef term = new BytesRef();
+    private int upto = -1;
+
+    BufferedTermsEnum(TermsEnum in, int maxTerms, Stop stop) throws IOException {
+      comparator = in.getComparator();
+      inBoostAtt = in.attributes().addAttribute(BoostAttribute.class);
+      BytesRef text;
+      while (!stop.stopped) {
+        if (size >= maxTerms) {
+          this.in = in;
+          break;
+        }
+        if ((text = in.next()) == null) {
+          break;
+        }
+        add(text, in.termState(), in.docFreq(), in.totalTermFreq(), inBoostAtt.getBoost());
+      }
+      term.bytes = bytes;
+    }
+
+    private void add(BytesRef text, TermState state, int docFreq, long totalTermFreq, float boost) {
+      if (size == states.length) {
+        final int newSize = ArrayUtil.oversize(size + 1, RamUsageEstimator.NUM_BYTES_OBJECT_REF);
+        starts = ArrayUtil.grow(starts, newSize + 1);
+        final TermState[] newStates = new TermState[newSize];
+        System.arraycopy(states, 0, newStates, 0, size);
+        states = newStates;
+        docFreqs = ArrayUtil.grow(docFreqs, newSize);
+        totalTermFreqs = ArrayUtil.grow(totalTermFreqs, newSize);
+        boosts = ArrayUtil.grow(boosts, newSize);
+      }
+      final int start = starts[size];
+      bytes = ArrayUtil.grow(bytes, start + text.length);
+      System.arraycopy(text.bytes, text.offset, bytes, start, text.length);
+      starts[size + 1] = start + text.length;
+      states[size] = state;
+      docFreqs[size] = docFreq;
+      totalTermFreqs[size] = totalTermFreq;
+      boosts[size] = boost;
+      size++;
+    }
+
+    @Override
+    public BytesRef next() throws IOException {
+      if (++upto >= size) {
+        upto = size;
+        if (in == null) {
+          return null;
+        }
+        final BytesRef next = in.next();
+        if (next == null) {
+          in = null;
+        } else {
+          boostAtt.setBoost(inBoostAtt.getBoost());
+        }
+        return next;
+      }
+      term.offset = starts[upto];
+      term.length = starts[upto + 1] - term.offset;
+      boostAtt.setBoost(boosts[upto]);
+      return term;
+    }
+
+    @Override
+    public BytesRef term() throws IOException {
+      return upto < size ? term : in.term();
+    }
+
+    @Override
+    public TermState termState() throws IOException {
+      return upto < size ? states[upto] : in.termState();
+    }
+
+    @Override
+    public int docFreq() throws IOException {
+      return upto < size ? docFreqs[upto] : in.docFreq();
+    }
+
+    @Override
+    public long totalTermFreq() throws IOException {
+      return upto < size ? totalTermFreqs[upto] : in.totalTermFreq();
+    }
+
+    @Override
+    public Comparator<BytesRef> getComparator() {
+      return comparator;
+    }
+
+    @Override
+    public SeekStatus seekCeil(BytesRef text, boolean useCache) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void seekExact(long ord) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long ord() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DocsEnum docs(Bits liveDocs, DocsEnum reuse, boolean needsFreqs) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DocsAndPositionsEnum docsAndPositions(Bits liveDocs, DocsAndPositionsEnum reuse, boolean needsOffsets) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
   static abstract class TermCollector {
     
     protected AtomicReaderContext readerContext;
@@ -99,5 +363,12 @@ abstract class TermCollectingRewrite<Q extends Query> extends MultiTermQuery.Rew
     
     /** the next segment's {@link TermsEnum} that is used to collect terms */
     public abstract void setNextEnum(TermsEnum termsEnum) throws IOException;
+
+    /** the number of terms of a segment that are read ahead when segments
+     *  are enumerated concurrently, by default the maximum clause count of
+     *  a {@link BooleanQuery} */
+    public int maxBufferedTerms() {
+      return BooleanQuery.getMaxClauseCount();
+    }
   }
 }
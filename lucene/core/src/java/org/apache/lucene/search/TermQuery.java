@@ -85,12 +85,17 @@ public class TermQuery extends Query {
       }
       DocsEnum docs = termsEnum.docs(acceptDocs, null, true);
       if (docs != null) {
-        return new TermScorer(this, docs, createDocScorer(context));
+        // a term can't occur more often in a doc than in all other docs together
+        final long totalTermFreq = termsEnum.totalTermFreq();
+        final int maxFreq = totalTermFreq == -1
+          ? Integer.MAX_VALUE
+          : (int) Math.min(Integer.MAX_VALUE, totalTermFreq - termsEnum.docFreq() + 1);
+        return new TermScorer(this, docs, createDocScorer(context), termsEnum.docFreq(), maxFreq);
       } else {
         // Index does not store freq info
         docs = termsEnum.docs(acceptDocs, null, false);
         assert docs != null;
-        return new MatchOnlyTermScorer(this, docs, createDocScorer(context));
+        return new MatchOnlyTermScorer(this, docs, createDocScorer(context), termsEnum.docFreq());
       }
     }
     
@@ -27,6 +27,19 @@ import org.apache.lucene.search.similarities.Similarity;
 final class TermScorer extends Scorer {
   private final DocsEnum docsEnum;
   private final Similarity.ExactSimScorer docScorer;
+  private final int docFreq;
+  private final int maxFreq; // upper bound of the term's freqs, from the term statistics
+
+  // postings are read from the DocsEnum in bulk, see DocsEnum#read
+  private final int[] docs = new int[BUFFER_SIZE];
+  private final int[] freqs = new int[BUFFER_SIZE];
+  private final float[] scores = new float[BUFFER_SIZE];
+  private int pointer;
+  private int pointerMax;
+  private int doc = -1;
+  private int freq;
+
+  static final int BUFFER_SIZE = 32;
   
   /**
    * Construct a <code>TermScorer</code>.
@@ -40,19 +53,30 @@ final class TermScorer extends Scorer {
    *          to be used for score computations.
    */
   TermScorer(Weight weight, DocsEnum td, Similarity.ExactSimScorer docScorer) throws IOException {
+    this(weight, td, docScorer, Integer.MAX_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Construct a <code>TermScorer</code> whose term occurs in
+   * <code>docFreq</code> documents, at most <code>maxFreq</code> times in
+   * any document.
+   */
+  TermScorer(Weight weight, DocsEnum td, Similarity.ExactSimScorer docScorer, int docFreq, int maxFreq) throws IOException {
     super(weight);
     this.docScorer = docScorer;
     this.docsEnum = td;
+    this.docFreq = docFreq;
+    this.maxFreq = maxFreq;
   }
 
   @Override
   public int docID() {
-    return docsEnum.docID();
+    return doc;
   }
 
   @Override
   public float freq() throws IOException {
-    return docsEnum.freq();
+    return freq;
   }
 
   /**
@@ -62,19 +86,70 @@ final class TermScorer extends Scorer {
    */
   @Override
   public int nextDoc() throws IOException {
-    return docsEnum.nextDoc();
+    if (++pointer >= pointerMax) {
+      pointerMax = docsEnum.read(docs, freqs);    // refill buffer
+      if (pointerMax == 0) {
+        return doc = NO_MORE_DOCS;
+      }
+      pointer = 0;
+    }
+    freq = freqs[pointer];
+    return doc = docs[pointer];
   }
   
   @Override
   public float score() throws IOException {
     assert docID() != NO_MORE_DOCS;
-    return docScorer.score(docsEnum.docID(), docsEnum.freq());  
+    return docScorer.score(doc, freq);  
+  }
+
+  @Override
+  public boolean score(Collector collector, int max, int firstDocID) throws IOException {
+    // firstDocID is ignored since nextDoc() sets 'doc'
+    collector.setScorer(this);
+    while (doc < max) {                           // for docs in window
+      collector.collect(doc);
+      nextDoc();
+    }
+    return doc != NO_MORE_DOCS;
+  }
+
+  /**
+   * Adds the scores of the documents before <code>max</code>
+   * to the bucket table of a {@link BooleanScorer}, without
+   * going through a {@link Collector}.
+   *
+   * @return true if more matching documents may remain.
+   */
+  boolean score(BooleanScorer.BucketTable table, int mask, int max) throws IOException {
+    final Similarity.ExactSimScorer docScorer = this.docScorer;
+    while (doc < max) {
+      if (pointer < pointerMax) {
+        // push the buffered documents of the window at once
+        assert docs[pointer] == doc;
+        int upTo = pointer + 1;
+        while (upTo < pointerMax && docs[upTo] < max) {
+          upTo++;
+        }
+        for (int i = pointer; i < upTo; ++i) {
+          scores[i] = docScorer.score(docs[i], freqs[i]);
+        }
+        table.collect(docs, scores, pointer, upTo, mask);
+        pointer = upTo - 1;
+      } else {
+        // positioned by advance(), outside of the buffer
+        table.collect(doc, docScorer.score(doc, freq), mask);
+      }
+      nextDoc();
+    }
+    return doc != NO_MORE_DOCS;
   }
 
   /**
    * Advances to the first match beyond the current whose document number is
    * greater than or equal to a given target. <br>
-   * The implementation uses {@link DocsEnum#advance(int)}.
+   * Documents that were already read in bulk are scanned first, then
+   * the implementation uses {@link DocsEnum#advance(int)}.
    * 
    * @param target
    *          The target document number.
@@ -82,7 +157,49 @@ final class TermScorer extends Scorer {
    */
   @Override
   public int advance(int target) throws IOException {
-    return docsEnum.advance(target);
+    // first scan in buffer
+    for (pointer++; pointer < pointerMax; pointer++) {
+      if (docs[pointer] >= target) {
+        freq = freqs[pointer];
+        return doc = docs[pointer];
+      }
+    }
+
+    // not found in buffer, seek the enum
+    pointer = pointerMax = 0;
+    doc = docsEnum.advance(target);
+    if (doc != NO_MORE_DOCS) {
+      freq = docsEnum.freq();
+    }
+    return doc;
+  }
+
+  @Override
+  public long cost() {
+    return docFreq;
+  }
+
+  /** Returns an upper bound of the scores of all documents. */
+  float maxScore() {
+    return docScorer.maxScore(maxFreq);
+  }
+
+  /**
+   * Moves to the block of postings that contains <code>target</code>
+   * without moving this scorer, see {@link DocsEnum#advanceShallow(int)}.
+   *
+   * @return the last document of the block.
+   */
+  int advanceShallow(int target) throws IOException {
+    return docsEnum.advanceShallow(target);
+  }
+
+  /**
+   * Returns an upper bound of the scores of the documents in the
+   * block of the last call to {@link #advanceShallow(int)}.
+   */
+  float maxBlockScore() throws IOException {
+    return docScorer.maxScore(Math.min(maxFreq, docsEnum.getMaxFreq()));
   }
 
   /** Returns a string representation of this <code>TermScorer</code>. */
@@ -269,6 +269,14 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
   ScoreDoc pqTop;
   int docBase = 0;
   Scorer scorer;
+
+  /** Returns the score that a document must exceed to be
+   *  collected: documents that are collected in order and
+   *  score the same as the current bottom of the queue are
+   *  rejected too. */
+  float minCompetitiveScore() {
+    return pqTop.score;
+  }
     
   // prevents instantiation
   private TopScoreDocCollector(int numHits) {
@@ -0,0 +1,57 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * A two-phase view of a {@link Scorer}: an {@link #approximation()} which
+ * iterates over a superset of the matching documents and is cheap to advance,
+ * and a {@link #matches()} check which confirms whether the current document
+ * of the approximation actually matches. For instance the approximation of a
+ * phrase query is the conjunction of its terms, and {@link #matches()} reads
+ * positions to look for the phrase.
+ * <p>
+ * This allows conjunctions to only run the expensive check on documents that
+ * all their clauses agree on.
+ *
+ * @see Scorer#asTwoPhaseIterator()
+ * @lucene.experimental
+ */
+public abstract class TwoPhaseIterator {
+
+  protected final DocIdSetIterator approximation;
+
+  /** Sole constructor. */
+  protected TwoPhaseIterator(DocIdSetIterator approximation) {
+    this.approximation = approximation;
+  }
+
+  /** Returns the approximation of the matching documents. Its
+   *  {@link DocIdSetIterator#docID()} is always the one of the
+   *  scorer this two-phase view was created from. */
+  public final DocIdSetIterator approximation() {
+    return approximation;
+  }
+
+  /** Returns whether the current document of the {@link #approximation()}
+   *  matches. This must be called at most once per document, and the
+   *  scorer may only be scored on documents this method accepted. */
+  public abstract boolean matches() throws IOException;
+
+}
@@ -21,6 +21,7 @@ import java.io.IOException;
 
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValues.Source;
 import org.apache.lucene.index.FieldInvertState;
 import org.apache.lucene.index.Norm;
 import org.apache.lucene.search.CollectionStatistics;
@@ -184,25 +185,47 @@ public class BM25Similarity extends Similarity {
   private class ExactBM25DocScorer extends ExactSimScorer {
     private final BM25Stats stats;
     private final float weightValue;
-    private final byte[] norms;
+    private final Source normSource;
+    private final byte[] norms; // null unless normSource has an array
     private final float[] cache;
+    private float minCache = Float.NaN; // lazily computed by maxScore
     
     ExactBM25DocScorer(BM25Stats stats, DocValues norms) throws IOException {
       assert norms != null;
       this.stats = stats;
       this.weightValue = stats.weight * (k1 + 1); // boost * idf * (k1 + 1)
       this.cache = stats.cache;
-      this.norms = (byte[])norms.getSource().getArray();
+      this.normSource = norms.getSource();
+      this.norms = NormBytes.array(normSource);
     }
     
     @Override
     public float score(int doc, int freq) {
-      return weightValue * freq / (freq + cache[norms[doc] & 0xFF]);
+      return weightValue * freq / (freq + cache[NormBytes.get(norms, normSource, doc) & 0xFF]);
+    }
+
+    @Override
+    public float maxScore(int maxFreq) {
+      if (weightValue < 0) {
+        return Float.POSITIVE_INFINITY;
+      }
+      if (Float.isNaN(minCache)) {
+        // the score is highest for the shortest document
+        final long[] present = norms != null ? NormBytes.get(norms) : NormBytes.ALL;
+        float min = Float.POSITIVE_INFINITY;
+        for (int b = 0; b < 256; b++) {
+          if (NormBytes.isSet(present, b)) {
+            min = Math.min(min, cache[b]);
+          }
+        }
+        minCache = min;
+      }
+      return weightValue * maxFreq / (maxFreq + minCache);
     }
     
     @Override
     public Explanation explain(int doc, Explanation freq) {
-      return explainScore(doc, freq, stats, norms);
+      return explainScore(doc, freq, stats, normSource);
     }
   }
   
@@ -227,6 +250,11 @@ public class BM25Similarity extends Similarity {
         ? scoreCache[freq]                  // cache hit
         : weightValue * freq / (freq + k1); // cache miss
     }
+
+    @Override
+    public float maxScore(int maxFreq) {
+      return weightValue < 0 ? Float.POSITIVE_INFINITY : weightValue * maxFreq / (maxFreq + k1);
+    }
     
     @Override
     public Explanation explain(int doc, Explanation freq) {
@@ -237,26 +265,28 @@ public class BM25Similarity extends Similarity {
   private class SloppyBM25DocScorer extends SloppySimScorer {
     private final BM25Stats stats;
     private final float weightValue; // boost * idf * (k1 + 1)
-    private final byte[] norms;
+    private final Source normSource;
+    private final byte[] norms; // null unless normSource has an array
     private final float[] cache;
     
     SloppyBM25DocScorer(BM25Stats stats, DocValues norms) throws IOException {
       this.stats = stats;
       this.weightValue = stats.weight * (k1 + 1);
       this.cache = stats.cache;
-      this.norms = norms == null ? null : (byte[])norms.getSource().getArray();
+      this.normSource = norms == null ? null : norms.getSource();
+      this.norms = NormBytes.array(normSource);
     }
     
     @Override
     public float score(int doc, float freq) {
       // if there are no norms, we act as if b=0
-      float norm = norms == null ? k1 : cache[norms[doc] & 0xFF];
+      float norm = normSource == null ? k1 : cache[NormBytes.get(norms, normSource, doc) & 0xFF];
       return weightValue * freq / (freq + norm);
     }
     
     @Override
     public Explanation explain(int doc, Explanation freq) {
-      return explainScore(doc, freq, stats, norms);
+      return explainScore(doc, freq, stats, normSource);
     }
 
     @Override
@@ -310,7 +340,7 @@ public class BM25Similarity extends Similarity {
     } 
   }
   
-  private Explanation explainScore(int doc, Explanation freq, BM25Stats stats, byte[] norms) {
+  private Explanation explainScore(int doc, Explanation freq, BM25Stats stats, Source norms) {
     Explanation result = new Explanation();
     result.setDescription("score(doc="+doc+",freq="+freq+"), product of:");
     
@@ -328,7 +358,7 @@ public class BM25Similarity extends Similarity {
       tfNormExpl.addDetail(new Explanation(0, "parameter b (norms omitted for field)"));
       tfNormExpl.setValue((freq.getValue() * (k1 + 1)) / (freq.getValue() + k1));
     } else {
-      float doclen = decodeNormValue(norms[doc]);
+      float doclen = decodeNormValue((byte) norms.getInt(doc));
       tfNormExpl.addDetail(new Explanation(b, "parameter b"));
       tfNormExpl.addDetail(new Explanation(stats.avgdl, "avgFieldLength"));
       tfNormExpl.addDetail(new Explanation(doclen, "fieldLength"));
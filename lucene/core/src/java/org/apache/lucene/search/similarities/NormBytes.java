@@ -0,0 +1,73 @@
+package org.apache.lucene.search.similarities;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.index.DocValues.Source;
+
+/**
+ * Caches which byte values occur in a norms array, so that
+ * {@link Similarity.ExactSimScorer#maxScore(int)} can bound the
+ * norm factor of a segment without scanning all of its documents
+ * for every query. Also gives access to byte norms whose
+ * {@link Source} is not backed by an array, such as packed norms.
+ */
+final class NormBytes {
+  // keyed by identity: the arrays are owned by the (cached) norms sources
+  private static final Map<byte[],long[]> cache = Collections.synchronizedMap(new WeakHashMap<byte[],long[]>());
+
+  /** All 256 byte values, for norms which are not backed by an array. */
+  static final long[] ALL = new long[] { -1L, -1L, -1L, -1L };
+
+  private NormBytes() {}
+
+  /** Returns the array backing <code>norms</code>, or null
+   *  if <code>norms</code> is null or has no array. */
+  static byte[] array(Source norms) {
+    return norms != null && norms.hasArray() ? (byte[]) norms.getArray() : null;
+  }
+
+  /** Returns the norm of <code>doc</code>, from <code>array</code>
+   *  if it is not null, or else from <code>norms</code>. */
+  static byte get(byte[] array, Source norms, int doc) {
+    return array != null ? array[doc] : (byte) norms.getInt(doc);
+  }
+
+  /** Returns a set of 256 bits, where bit <code>b</code> is set
+   *  if the unsigned byte value <code>b</code> occurs in <code>norms</code>. */
+  static long[] get(byte[] norms) {
+    long[] bits = cache.get(norms);
+    if (bits == null) {
+      bits = new long[4];
+      for (byte b : norms) {
+        final int value = b & 0xFF;
+        bits[value >>> 6] |= 1L << value;
+      }
+      cache.put(norms, bits);
+    }
+    return bits;
+  }
+
+  /** Returns true if the unsigned byte value <code>b</code> is set in <code>bits</code>. */
+  static boolean isSet(long[] bits, int b) {
+    return (bits[b >>> 6] & (1L << b)) != 0;
+  }
+}
@@ -200,6 +200,20 @@ public abstract class Similarity {
      * @return document's score
      */
     public abstract float score(int doc, int freq);
+
+    /**
+     * Returns an upper bound of {@link #score(int, int)} over all
+     * documents with a term frequency of at most <code>maxFreq</code>.
+     * Top-level scorers use it to skip documents which cannot
+     * compete. The default implementation returns
+     * {@link Float#POSITIVE_INFINITY}, ie. no bound is known.
+     * @param maxFreq upper bound of the term frequency
+     * @return upper bound of the score
+     * @lucene.experimental
+     */
+    public float maxScore(int maxFreq) {
+      return Float.POSITIVE_INFINITY;
+    }
     
     /**
      * Explain the score for a single document
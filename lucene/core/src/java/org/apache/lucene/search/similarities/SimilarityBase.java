@@ -21,6 +21,7 @@ import java.io.IOException;
 
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValues.Source;
 import org.apache.lucene.index.FieldInvertState;
 import org.apache.lucene.index.Norm;
 import org.apache.lucene.search.CollectionStatistics;
@@ -274,24 +275,26 @@ public abstract class SimilarityBase extends Similarity {
    */
   private class BasicExactDocScorer extends ExactSimScorer {
     private final BasicStats stats;
-    private final byte[] norms;
+    private final Source normSource;
+    private final byte[] norms; // null unless normSource has an array
     
     BasicExactDocScorer(BasicStats stats, DocValues norms) throws IOException {
       this.stats = stats;
-      this.norms = norms == null ? null : (byte[])norms.getSource().getArray();
+      this.normSource = norms == null ? null : norms.getSource();
+      this.norms = NormBytes.array(normSource);
     }
     
     @Override
     public float score(int doc, int freq) {
       // We have to supply something in case norms are omitted
       return SimilarityBase.this.score(stats, freq,
-          norms == null ? 1F : decodeNormValue(norms[doc]));
+          normSource == null ? 1F : decodeNormValue(NormBytes.get(norms, normSource, doc)));
     }
     
     @Override
     public Explanation explain(int doc, Explanation freq) {
       return SimilarityBase.this.explain(stats, doc, freq,
-          norms == null ? 1F : decodeNormValue(norms[doc]));
+          normSource == null ? 1F : decodeNormValue(NormBytes.get(norms, normSource, doc)));
     }
   }
   
@@ -303,23 +306,25 @@ public abstract class SimilarityBase extends Similarity {
    */
   private class BasicSloppyDocScorer extends SloppySimScorer {
     private final BasicStats stats;
-    private final byte[] norms;
+    private final Source normSource;
+    private final byte[] norms; // null unless normSource has an array
     
     BasicSloppyDocScorer(BasicStats stats, DocValues norms) throws IOException {
       this.stats = stats;
-      this.norms = norms == null ? null : (byte[])norms.getSource().getArray();
+      this.normSource = norms == null ? null : norms.getSource();
+      this.norms = NormBytes.array(normSource);
     }
     
     @Override
     public float score(int doc, float freq) {
       // We have to supply something in case norms are omitted
       return SimilarityBase.this.score(stats, freq,
-          norms == null ? 1F : decodeNormValue(norms[doc]));
+          normSource == null ? 1F : decodeNormValue(NormBytes.get(norms, normSource, doc)));
     }
     @Override
     public Explanation explain(int doc, Explanation freq) {
       return SimilarityBase.this.explain(stats, doc, freq,
-          norms == null ? 1F : decodeNormValue(norms[doc]));
+          normSource == null ? 1F : decodeNormValue(NormBytes.get(norms, normSource, doc)));
     }
 
     @Override
@@ -22,6 +22,7 @@ import java.io.IOException;
 
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValues.Source;
 import org.apache.lucene.search.CollectionStatistics;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.IndexSearcher;
@@ -749,14 +750,17 @@ public abstract class TFIDFSimilarity extends Similarity {
   private final class ExactTFIDFDocScorer extends ExactSimScorer {
     private final IDFStats stats;
     private final float weightValue;
-    private final byte[] norms;
+    private final Source normSource;
+    private final byte[] norms; // null unless normSource has an array
     private static final int SCORE_CACHE_SIZE = 32;
     private float[] scoreCache = new float[SCORE_CACHE_SIZE];
+    private float maxNorm = Float.NaN; // lazily computed by maxScore
     
     ExactTFIDFDocScorer(IDFStats stats, DocValues norms) throws IOException {
       this.stats = stats;
       this.weightValue = stats.value;
-      this.norms = norms == null ? null : (byte[])norms.getSource().getArray(); 
+      this.normSource = norms == null ? null : norms.getSource();
+      this.norms = NormBytes.array(normSource);
       for (int i = 0; i < SCORE_CACHE_SIZE; i++)
         scoreCache[i] = tf(i) * weightValue;
     }
@@ -768,31 +772,56 @@ public abstract class TFIDFSimilarity extends Similarity {
         ? scoreCache[freq]                             // cache hit
         : tf(freq)*weightValue;        // cache miss
 
-      return norms == null ? raw : raw * decodeNormValue(norms[doc]); // normalize for field
+      return normSource == null ? raw : raw * decodeNormValue(NormBytes.get(norms, normSource, doc)); // normalize for field
+    }
+
+    /** Assumes that {@link #tf(float)} does not decrease as freq grows. */
+    @Override
+    public float maxScore(int maxFreq) {
+      if (weightValue < 0) {
+        return Float.POSITIVE_INFINITY;
+      }
+      final float raw = tf(maxFreq) * weightValue;
+      if (normSource == null) {
+        return raw;
+      }
+      if (Float.isNaN(maxNorm)) {
+        final long[] present = norms != null ? NormBytes.get(norms) : NormBytes.ALL;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int b = 0; b < 256; b++) {
+          if (NormBytes.isSet(present, b)) {
+            max = Math.max(max, decodeNormValue((byte) b));
+          }
+        }
+        maxNorm = max;
+      }
+      return maxNorm < 0 ? Float.POSITIVE_INFINITY : raw * maxNorm;
     }
 
     @Override
     public Explanation explain(int doc, Explanation freq) {
-      return explainScore(doc, freq, stats, norms);
+      return explainScore(doc, freq, stats, normSource);
     }
   }
   
   private final class SloppyTFIDFDocScorer extends SloppySimScorer {
     private final IDFStats stats;
     private final float weightValue;
-    private final byte[] norms;
+    private final Source normSource;
+    private final byte[] norms; // null unless normSource has an array
     
     SloppyTFIDFDocScorer(IDFStats stats, DocValues norms) throws IOException {
       this.stats = stats;
       this.weightValue = stats.value;
-      this.norms = norms == null ? null : (byte[])norms.getSource().getArray();
+      this.normSource = norms == null ? null : norms.getSource();
+      this.norms = NormBytes.array(normSource);
     }
     
     @Override
     public float score(int doc, float freq) {
       final float raw = tf(freq) * weightValue; // compute tf(f)*weight
       
-      return norms == null ? raw : raw * decodeNormValue(norms[doc]);  // normalize for field
+      return normSource == null ? raw : raw * decodeNormValue(NormBytes.get(norms, normSource, doc));  // normalize for field
     }
     
     @Override
@@ -807,7 +836,7 @@ public abstract class TFIDFSimilarity extends Similarity {
 
     @Override
     public Explanation explain(int doc, Explanation freq) {
-      return explainScore(doc, freq, stats, norms);
+      return explainScore(doc, freq, stats, normSource);
     }
   }
   
@@ -844,7 +873,7 @@ public abstract class TFIDFSimilarity extends Similarity {
     }
   }
   
-  private Explanation explainScore(int doc, Explanation freq, IDFStats stats, byte[] norms) {
+  private Explanation explainScore(int doc, Explanation freq, IDFStats stats, Source norms) {
     Explanation result = new Explanation();
     result.setDescription("score(doc="+doc+",freq="+freq+"), product of:");
 
@@ -880,7 +909,7 @@ public abstract class TFIDFSimilarity extends Similarity {
 
     Explanation fieldNormExpl = new Explanation();
     float fieldNorm =
-      norms!=null ? decodeNormValue(norms[doc]) : 1.0f;
+      norms!=null ? decodeNormValue((byte) norms.getInt(doc)) : 1.0f;
     fieldNormExpl.setValue(fieldNorm);
     fieldNormExpl.setDescription("fieldNorm(doc="+doc+")");
     fieldExpl.addDetail(fieldNormExpl);
@@ -105,9 +105,14 @@ public class FieldMaskingSpanQuery extends SpanQuery {
     maskedQuery.extractTerms(terms);
   }  
 
+  @Override
+  public void extractRequiredTerms(Set<Term> terms) {
+    maskedQuery.extractRequiredTerms(terms);
+  }
+
   @Override
   public Weight createWeight(IndexSearcher searcher) throws IOException {
-    return maskedQuery.createWeight(searcher);
+    return searcher.createWeight(maskedQuery);
   }
 
   @Override
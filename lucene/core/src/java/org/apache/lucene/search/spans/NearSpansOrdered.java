@@ -116,6 +116,16 @@ public class NearSpansOrdered extends Spans {
   @Override
   public int end() { return matchEnd; }
   
+  @Override
+  public long cost() {
+    // a match requires all the sub spans to match
+    long cost = Long.MAX_VALUE;
+    for (Spans spans : subSpans) {
+      cost = Math.min(cost, spans.cost());
+    }
+    return cost;
+  }
+
   public Spans[] getSubSpans() {
 	  return subSpans;
   }  
@@ -150,6 +150,16 @@ public class NearSpansUnordered extends Spans {
       subSpans[i] = cell.spans;
     }
   }
+  @Override
+  public long cost() {
+    // a match requires all the sub spans to match
+    long cost = Long.MAX_VALUE;
+    for (Spans spans : subSpans) {
+      cost = Math.min(cost, spans.cost());
+    }
+    return cost;
+  }
+
   public Spans[] getSubSpans() {
 	  return subSpans;
   }
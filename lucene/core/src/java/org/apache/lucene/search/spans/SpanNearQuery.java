@@ -96,6 +96,13 @@ public class SpanNearQuery extends SpanQuery implements Cloneable {
 	      clause.extractTerms(terms);
 	    }
   }  
+
+  @Override
+  public void extractRequiredTerms(Set<Term> terms) {
+    for (final SpanQuery clause : clauses) {
+      clause.extractRequiredTerms(terms);
+    }
+  }
   
 
   @Override
@@ -58,6 +58,9 @@ public class SpanNotQuery extends SpanQuery implements Cloneable {
   @Override
   public void extractTerms(Set<Term> terms) { include.extractTerms(terms); }
 
+  @Override
+  public void extractRequiredTerms(Set<Term> terms) { include.extractRequiredTerms(terms); }
+
   @Override
   public String toString(String field) {
     StringBuilder buffer = new StringBuilder();
@@ -141,6 +144,8 @@ public class SpanNotQuery extends SpanQuery implements Cloneable {
         @Override
         public int doc() { return includeSpans.doc(); }
         @Override
+        public long cost() { return includeSpans.cost(); }
+        @Override
         public int start() { return includeSpans.start(); }
         @Override
         public int end() { return includeSpans.end(); }
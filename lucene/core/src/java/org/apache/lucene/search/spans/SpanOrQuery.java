@@ -24,6 +24,7 @@ import java.util.Collection;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.HashSet;
 import java.util.Set;
 
 import org.apache.lucene.index.AtomicReaderContext;
@@ -74,6 +75,24 @@ public class SpanOrQuery extends SpanQuery implements Cloneable {
       clause.extractTerms(terms);
     }
   }
+
+  /** Adds the terms which all the clauses require. */
+  @Override
+  public void extractRequiredTerms(Set<Term> terms) {
+    Set<Term> required = null;
+    for (final SpanQuery clause : clauses) {
+      final Set<Term> clauseTerms = new HashSet<Term>();
+      clause.extractRequiredTerms(clauseTerms);
+      if (required == null) {
+        required = clauseTerms;
+      } else {
+        required.retainAll(clauseTerms);
+      }
+    }
+    if (required != null) {
+      terms.addAll(required);
+    }
+  }
   
   @Override
   public SpanOrQuery clone() {
@@ -60,6 +60,11 @@ public abstract class SpanPositionCheckQuery extends SpanQuery implements Clonea
 	    match.extractTerms(terms);
   }
 
+  @Override
+  public void extractRequiredTerms(Set<Term> terms) {
+    match.extractRequiredTerms(terms);
+  }
+
   /** 
    * Return value for {@link SpanPositionCheckQuery#acceptPosition(Spans)}.
    */
@@ -158,6 +163,9 @@ public abstract class SpanPositionCheckQuery extends SpanQuery implements Clonea
     @Override
     public int doc() { return spans.doc(); }
 
+    @Override
+    public long cost() { return spans.cost(); }
+
     @Override
     public int start() { return spans.start(); }
 
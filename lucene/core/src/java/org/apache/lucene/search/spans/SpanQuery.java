@@ -19,6 +19,7 @@ package org.apache.lucene.search.spans;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.Term;
@@ -37,6 +38,18 @@ public abstract class SpanQuery extends Query {
   /** Returns the name of the field matched by this query.*/
   public abstract String getField();
 
+  /**
+   * Expert: adds the terms which occur in all the documents this query
+   * matches to <code>terms</code>. {@link SpanWeight} intersects their
+   * documents to build the {@link org.apache.lucene.search.TwoPhaseIterator#approximation()
+   * approximation} of the matches, so that the spans only read positions
+   * on documents which have all these terms. The default implementation
+   * adds no terms, which disables the approximation.
+   * @lucene.experimental
+   */
+  public void extractRequiredTerms(Set<Term> terms) {
+  }
+
   @Override
   public Weight createWeight(IndexSearcher searcher) throws IOException {
     return new SpanWeight(this, searcher);
@@ -19,6 +19,8 @@ package org.apache.lucene.search.spans;
 
 import java.io.IOException;
 
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.TwoPhaseIterator;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.similarities.Similarity;
@@ -34,12 +36,26 @@ public class SpanScorer extends Scorer {
   protected int doc;
   protected float freq;
   protected final Similarity.SloppySimScorer docScorer;
+  // superset of the documents of the spans, or null
+  private final DocIdSetIterator approximation;
   
   protected SpanScorer(Spans spans, Weight weight, Similarity.SloppySimScorer docScorer)
   throws IOException {
+    this(spans, weight, docScorer, null);
+  }
+
+  /**
+   * Creates a scorer which exposes a {@link #asTwoPhaseIterator() two-phase view}:
+   * <code>approximation</code> must iterate over a superset of the documents
+   * of <code>spans</code>, and the spans are only positioned on the documents
+   * it agrees on. If it is null, this scorer has no two-phase view.
+   */
+  protected SpanScorer(Spans spans, Weight weight, Similarity.SloppySimScorer docScorer,
+      DocIdSetIterator approximation) throws IOException {
     super(weight);
     this.docScorer = docScorer;
     this.spans = spans;
+    this.approximation = approximation;
 
     if (this.spans.next()) {
       doc = -1;
@@ -88,6 +104,51 @@ public class SpanScorer extends Scorer {
   @Override
   public int docID() { return doc; }
 
+  @Override
+  public long cost() {
+    return spans.cost();
+  }
+
+  @Override
+  public TwoPhaseIterator asTwoPhaseIterator() {
+    if (approximation == null || !more) {
+      return null;
+    }
+    return new TwoPhaseIterator(new DocIdSetIterator() {
+      @Override
+      public int docID() {
+        return doc;
+      }
+
+      @Override
+      public int nextDoc() throws IOException {
+        return doc = approximation.nextDoc();
+      }
+
+      @Override
+      public int advance(int target) throws IOException {
+        return doc = approximation.advance(target);
+      }
+
+      @Override
+      public long cost() {
+        return approximation.cost();
+      }
+    }) {
+      @Override
+      public boolean matches() throws IOException {
+        if (more && spans.doc() < doc) {
+          more = spans.skipTo(doc);
+        }
+        if (!more || spans.doc() != doc) {
+          return false;
+        }
+        setFreqCurrentDoc();
+        return true;
+      }
+    };
+  }
+
   @Override
   public float score() throws IOException {
     return docScorer.score(doc, freq);
@@ -50,6 +50,11 @@ public class SpanTermQuery extends SpanQuery {
     terms.add(term);
   }
 
+  @Override
+  public void extractRequiredTerms(Set<Term> terms) {
+    terms.add(term);
+  }
+
   @Override
   public String toString(String field) {
     StringBuilder buffer = new StringBuilder();
@@ -123,7 +128,7 @@ public class SpanTermQuery extends SpanQuery {
     final DocsAndPositionsEnum postings = termsEnum.docsAndPositions(acceptDocs, null, false);
 
     if (postings != null) {
-      return new TermSpans(postings, term);
+      return new TermSpans(postings, term, termsEnum.docFreq());
     } else {
       // term does exist, but has no positions
       throw new IllegalStateException("field \"" + term.field() + "\" was indexed without position data; cannot run SpanTermQuery (term=" + term.text() + ")");
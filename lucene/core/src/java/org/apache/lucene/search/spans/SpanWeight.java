@@ -18,15 +18,20 @@ package org.apache.lucene.search.spans;
  */
 
 import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocsEnum;
 import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermState;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.search.similarities.Similarity.SloppySimScorer;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.TermContext;
 
 import java.io.IOException;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeSet;
@@ -39,6 +44,8 @@ public class SpanWeight extends Weight {
   protected Map<Term,TermContext> termContexts;
   protected SpanQuery query;
   protected Similarity.SimWeight stats;
+  /** The terms all matches contain, see {@link SpanQuery#extractRequiredTerms} */
+  protected Term[] requiredTerms;
 
   public SpanWeight(SpanQuery query, IndexSearcher searcher)
     throws IOException {
@@ -57,6 +64,14 @@ public class SpanWeight extends Weight {
       termContexts.put(term, state);
       i++;
     }
+    if (query instanceof SpanTermQuery) {
+      // the spans match all the documents of the term
+      requiredTerms = new Term[0];
+    } else {
+      TreeSet<Term> required = new TreeSet<Term>();
+      query.extractRequiredTerms(required);
+      requiredTerms = required.toArray(new Term[required.size()]);
+    }
     final String field = query.getField();
     if (field != null) {
       stats = similarity.computeWeight(query.getBoost(), 
@@ -86,7 +101,90 @@ public class SpanWeight extends Weight {
     if (stats == null) {
       return null;
     } else {
-      return new SpanScorer(query.getSpans(context, acceptDocs, termContexts), this, similarity.sloppySimScorer(stats, context));
+      return new SpanScorer(query.getSpans(context, acceptDocs, termContexts), this, similarity.sloppySimScorer(stats, context),
+          approximation(context, acceptDocs));
+    }
+  }
+
+  /**
+   * Returns the intersection of the documents of the {@link #requiredTerms},
+   * which the scorer uses as the approximation of its matches, or null if
+   * there are no required terms or one of them is missing in this segment.
+   */
+  protected DocIdSetIterator approximation(AtomicReaderContext context, Bits acceptDocs) throws IOException {
+    if (requiredTerms.length == 0) {
+      return null;
+    }
+    final DocsEnum[] docs = new DocsEnum[requiredTerms.length];
+    for (int i = 0; i < requiredTerms.length; i++) {
+      final Term term = requiredTerms[i];
+      final TermContext termContext = termContexts.get(term);
+      final TermState state = termContext == null ? null : termContext.get(context.ord);
+      if (state == null) { // the term is not present in this segment, so the spans are empty
+        return null;
+      }
+      final TermsEnum termsEnum = context.reader().terms(term.field()).iterator(null);
+      termsEnum.seekExact(term.bytes(), state);
+      docs[i] = termsEnum.docs(acceptDocs, null, false);
+    }
+    return docs.length == 1 ? docs[0] : new ConjunctionDocs(docs);
+  }
+
+  /** Leap-frogs over the documents of several terms, led by the rarest one. */
+  private static final class ConjunctionDocs extends DocIdSetIterator {
+    private final DocIdSetIterator lead;
+    private final DocIdSetIterator[] others;
+    private int doc = -1;
+
+    ConjunctionDocs(DocIdSetIterator[] iterators) {
+      ArrayUtil.mergeSort(iterators, new Comparator<DocIdSetIterator>() {
+        public int compare(DocIdSetIterator o1, DocIdSetIterator o2) {
+          final long cost1 = o1.cost(), cost2 = o2.cost();
+          return cost1 < cost2 ? -1 : (cost1 == cost2 ? 0 : 1);
+        }
+      });
+      lead = iterators[0];
+      others = new DocIdSetIterator[iterators.length - 1];
+      System.arraycopy(iterators, 1, others, 0, others.length);
+    }
+
+    private int doNext(int target) throws IOException {
+      advanceHead: for (;;) {
+        if (target == NO_MORE_DOCS) {
+          return doc = NO_MORE_DOCS;
+        }
+        for (DocIdSetIterator other : others) {
+          int next = other.docID();
+          if (next < target) {
+            next = other.advance(target);
+          }
+          if (next > target) {
+            target = lead.advance(next);
+            continue advanceHead;
+          }
+        }
+        return doc = target;
+      }
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      return doNext(lead.nextDoc());
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      return doNext(lead.advance(target));
+    }
+
+    @Override
+    public long cost() {
+      return lead.cost();
     }
   }
 
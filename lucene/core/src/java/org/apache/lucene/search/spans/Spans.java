@@ -83,5 +83,18 @@ public abstract class Spans {
    * @return true if there is a payload available at this position that can be loaded
    */
   public abstract boolean isPayloadAvailable();
+
+  /**
+   * Returns the estimated cost of these spans, usually an upper bound of the
+   * number of documents they match, such as the document frequency of a term.
+   * The default implementation returns {@link Long#MAX_VALUE}, meaning that
+   * the cost is unknown.
+   *
+   * @see org.apache.lucene.search.DocIdSetIterator#cost()
+   * @lucene.experimental
+   */
+  public long cost() {
+    return Long.MAX_VALUE;
+  }
   
 }
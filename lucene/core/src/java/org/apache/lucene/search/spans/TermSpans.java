@@ -33,13 +33,21 @@ public class TermSpans extends Spans {
   protected final DocsAndPositionsEnum postings;
   protected final Term term;
   protected int doc;
+  private final long cost;
   protected int freq;
   protected int count;
   protected int position;
 
   public TermSpans(DocsAndPositionsEnum postings, Term term) throws IOException {
+    this(postings, term, Long.MAX_VALUE);
+  }
+
+  /** Creates spans over the positions of a term which occurs in
+   *  <code>docFreq</code> documents. */
+  public TermSpans(DocsAndPositionsEnum postings, Term term, long docFreq) throws IOException {
     this.postings = postings;
     this.term = term;
+    this.cost = docFreq;
     doc = -1;
   }
 
@@ -47,6 +55,12 @@ public class TermSpans extends Spans {
   TermSpans() {
     term = null;
     postings = null;
+    cost = 0;
+  }
+
+  @Override
+  public long cost() {
+    return cost;
   }
 
   @Override
@@ -79,6 +79,56 @@ public abstract class IndexInput extends DataInput implements Cloneable,Closeabl
     }
   }
 
+  /**
+   * Returns a {@link RandomAccessInput} over the <code>length</code>
+   * bytes of this file that start at <code>offset</code>. Positions
+   * passed to the returned instance are relative to <code>offset</code>
+   * and the file pointer of this input is not modified.
+   * <p>
+   * The default implementation seeks a clone of this input before
+   * every read, so the returned instance must not be used by several
+   * threads concurrently. Implementations which can read at absolute
+   * positions without seeking (such as {@link MMapDirectory}) override
+   * this method.
+   * @lucene.experimental
+   */
+  public RandomAccessInput randomAccessSlice(final long offset, long length) throws IOException {
+    if (offset < 0 || length < 0 || offset + length > length()) {
+      throw new IllegalArgumentException("slice() out of bounds: offset=" + offset + ",length=" + length + ",fileLength=" + length() + ": " + this);
+    }
+    final IndexInput slice = (IndexInput) clone();
+    return new RandomAccessInput() {
+      @Override
+      public byte readByte(long pos) throws IOException {
+        slice.seek(offset + pos);
+        return slice.readByte();
+      }
+
+      @Override
+      public short readShort(long pos) throws IOException {
+        slice.seek(offset + pos);
+        return slice.readShort();
+      }
+
+      @Override
+      public int readInt(long pos) throws IOException {
+        slice.seek(offset + pos);
+        return slice.readInt();
+      }
+
+      @Override
+      public long readLong(long pos) throws IOException {
+        slice.seek(offset + pos);
+        return slice.readLong();
+      }
+
+      @Override
+      public String toString() {
+        return "RandomAccessInput(" + slice + ")";
+      }
+    };
+  }
+
   @Override
   public String toString() {
     return resourceDescription;
@@ -372,6 +372,88 @@ public class MMapDirectory extends FSDirectory {
       }
     }
     
+    // positional reads: absolute gets on the mapped buffers never
+    // touch their position, so these are safe to use concurrently
+
+    private byte readByte(long pos) throws IOException {
+      try {
+        return buffers[(int) (pos >> chunkSizePower)].get((int) (pos & chunkSizeMask));
+      } catch (IndexOutOfBoundsException ioobe) {
+        if (pos < 0L) {
+          throw new IllegalArgumentException("Seeking to negative position: " + this);
+        }
+        throw new EOFException("read past EOF: " + this);
+      } catch (NullPointerException npe) {
+        throw new AlreadyClosedException("MMapIndexInput already closed: " + this);
+      }
+    }
+
+    private short readShort(long pos) throws IOException {
+      try {
+        return buffers[(int) (pos >> chunkSizePower)].getShort((int) (pos & chunkSizeMask));
+      } catch (IndexOutOfBoundsException ioobe) {
+        // value spans two buffers, or pos is out of bounds
+        return (short) (((readByte(pos) & 0xFF) << 8) | (readByte(pos + 1) & 0xFF));
+      } catch (NullPointerException npe) {
+        throw new AlreadyClosedException("MMapIndexInput already closed: " + this);
+      }
+    }
+
+    private int readInt(long pos) throws IOException {
+      try {
+        return buffers[(int) (pos >> chunkSizePower)].getInt((int) (pos & chunkSizeMask));
+      } catch (IndexOutOfBoundsException ioobe) {
+        return (readShort(pos) << 16) | (readShort(pos + 2) & 0xFFFF);
+      } catch (NullPointerException npe) {
+        throw new AlreadyClosedException("MMapIndexInput already closed: " + this);
+      }
+    }
+
+    private long readLong(long pos) throws IOException {
+      try {
+        return buffers[(int) (pos >> chunkSizePower)].getLong((int) (pos & chunkSizeMask));
+      } catch (IndexOutOfBoundsException ioobe) {
+        return (((long) readInt(pos)) << 32) | (readInt(pos + 4) & 0xFFFFFFFFL);
+      } catch (NullPointerException npe) {
+        throw new AlreadyClosedException("MMapIndexInput already closed: " + this);
+      }
+    }
+
+    @Override
+    public RandomAccessInput randomAccessSlice(final long offset, long length) throws IOException {
+      if (offset < 0 || length < 0 || offset + length > this.length) {
+        throw new IllegalArgumentException("slice() out of bounds: offset=" + offset + ",length=" + length + ",fileLength=" + this.length + ": " + this);
+      }
+      // a clone is registered with this input, so closing it invalidates the slice
+      final MMapIndexInput slice = clone();
+      return new RandomAccessInput() {
+        @Override
+        public byte readByte(long pos) throws IOException {
+          return slice.readByte(offset + pos);
+        }
+
+        @Override
+        public short readShort(long pos) throws IOException {
+          return slice.readShort(offset + pos);
+        }
+
+        @Override
+        public int readInt(long pos) throws IOException {
+          return slice.readInt(offset + pos);
+        }
+
+        @Override
+        public long readLong(long pos) throws IOException {
+          return slice.readLong(offset + pos);
+        }
+
+        @Override
+        public String toString() {
+          return "RandomAccessInput(" + slice + ")";
+        }
+      };
+    }
+
     @Override
     public long getFilePointer() {
       try {
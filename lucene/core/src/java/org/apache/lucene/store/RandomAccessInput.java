@@ -0,0 +1,49 @@
+package org.apache.lucene.store;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * Random access reads of primitive values at absolute
+ * positions. Unlike {@link IndexInput}, reads do not depend
+ * on a file pointer, so a single instance can be shared by
+ * several threads if the implementation allows it.
+ * <p>
+ * Multi-byte values are read in the same (big-endian) byte
+ * order as {@link DataInput}.
+ * @see IndexInput#randomAccessSlice(long, long)
+ * @lucene.experimental
+ */
+public interface RandomAccessInput {
+
+  /** Reads a byte at the given position. */
+  public byte readByte(long pos) throws IOException;
+
+  /** Reads a short at the given position.
+   * @see DataInput#readShort() */
+  public short readShort(long pos) throws IOException;
+
+  /** Reads an integer at the given position.
+   * @see DataInput#readInt() */
+  public int readInt(long pos) throws IOException;
+
+  /** Reads a long at the given position.
+   * @see DataInput#readLong() */
+  public long readLong(long pos) throws IOException;
+}
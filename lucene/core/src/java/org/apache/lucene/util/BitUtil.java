@@ -49,6 +49,20 @@ public final class BitUtil {
     return ((int)x) & 0x7F;
   }
 
+  /** Estimates the number of set bits in an array of longs by counting the
+   * bits of at most <code>maxSampledWords</code> words spread evenly over the
+   * range. The count is exact if the range has no more words than that. */
+  public static long pop_array_sampled(long A[], int wordOffset, int numWords, int maxSampledWords) {
+    if (numWords <= maxSampledWords) {
+      return pop_array(A, wordOffset, numWords);
+    }
+    long popCount = 0;
+    for (int i = 0; i < maxSampledWords; ++i) {
+      popCount += Long.bitCount(A[wordOffset + (int) ((long) i * numWords / maxSampledWords)]);
+    }
+    return popCount * numWords / maxSampledWords;
+  }
+
   /*** Returns the number of set bits in an array of longs. */
   public static long pop_array(long A[], int wordOffset, int numWords) {
     /*
@@ -95,5 +95,10 @@ public class DocIdBitSet extends DocIdSet implements Bits {
       docId = d == -1 ? NO_MORE_DOCS : d;
       return docId;
     }
+
+    @Override
+    public long cost() {
+      return bitSet.cardinality();
+    }
   }
 }
@@ -86,14 +86,26 @@ public class OpenBitSetIterator extends DocIdSetIterator {
   private int wordShift;
   private int indexArray;
   private int curDocId = -1;
+  private long cost; // -1 until estimated
+
+  /** Number of words whose bits are counted to estimate the {@link #cost()}. */
+  static final int COST_SAMPLED_WORDS = 128;
 
   public OpenBitSetIterator(OpenBitSet obs) {
     this(obs.getBits(), obs.getNumWords());
   }
 
   public OpenBitSetIterator(long[] bits, int numWords) {
+    this(bits, numWords, -1);
+  }
+
+  /** Creates an iterator over a set whose number of set bits is known,
+   *  which is returned as the {@link #cost()}. A cost of <code>-1</code>
+   *  means that it is unknown and should be estimated. */
+  public OpenBitSetIterator(long[] bits, int numWords, long cost) {
     arr = bits;
     words = numWords;
+    this.cost = cost;
   }
 
   // 64 bit shifts
@@ -189,5 +201,16 @@ public class OpenBitSetIterator extends DocIdSetIterator {
   public int docID() {
     return curDocId;
   }
+
+  /** Returns the number of set bits if it was given to the constructor.
+   *  Otherwise it is estimated on the first call from the bits of
+   *  a sample of the words, which is exact for small sets. */
+  @Override
+  public long cost() {
+    if (cost == -1) {
+      cost = BitUtil.pop_array_sampled(arr, 0, words, COST_SAMPLED_WORDS);
+    }
+    return cost;
+  }
   
 }
@@ -0,0 +1,649 @@
+package org.apache.lucene.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+
+/**
+ * A compressed, immutable {@link DocIdSet} based on word-aligned hybrid
+ * encoding, in its "enhanced" (EWAH) flavor on 64-bit words.
+ * <p>
+ * The set is split into 64-bit words like a {@link FixedBitSet}. Runs of
+ * words which are either all 0s or all 1s (fills) are collapsed into a
+ * marker word, which is followed by the words that are neither (literals),
+ * stored verbatim. A marker word stores the bit of its fill in its lowest
+ * bit, the number of words of the fill in the next 32 bits and the number of
+ * literals that follow in the upper 31 bits. As a consequence, a set never
+ * needs more than about twice the memory of a {@link FixedBitSet} of the
+ * same length and much less for sparse or clustered sets.
+ * <p>
+ * Unlike {@link SortedVIntList}, sets can be intersected, merged and
+ * subtracted without decompressing them, see
+ * {@link #intersect(WAHDocIdSet, WAHDocIdSet)},
+ * {@link #union(WAHDocIdSet, WAHDocIdSet)} and
+ * {@link #andNot(WAHDocIdSet, WAHDocIdSet)}. Every
+ * {@value #INDEX_INTERVAL}th marker is indexed so that
+ * {@link DocIdSetIterator#advance(int)} and {@link #get(int)} run in
+ * logarithmic time.
+ * <p>
+ * Sets are created with a {@link Builder} or with
+ * {@link #copyOf(long[], int)}.
+ *
+ * @lucene.experimental
+ */
+public final class WAHDocIdSet extends DocIdSet {
+
+  /** Every <code>INDEX_INTERVAL</code>th marker word is indexed. */
+  public static final int INDEX_INTERVAL = 16;
+
+  private static final int RUN_LENGTH_SHIFT = 1;
+  private static final long RUN_LENGTH_MASK = 0xFFFFFFFFL;
+  private static final int NUM_LITERALS_SHIFT = 33;
+
+  private static final WAHDocIdSet EMPTY = new WAHDocIdSet(new long[0], 0, 0, new int[0], new int[0]);
+
+  private final long[] words;
+  private final int numWords;
+  private final int cardinality;
+  // logical word number and position in words of indexed markers
+  private final int[] indexWordNums;
+  private final int[] indexPositions;
+
+  private WAHDocIdSet(long[] words, int numWords, int cardinality, int[] indexWordNums, int[] indexPositions) {
+    this.words = words;
+    this.numWords = numWords;
+    this.cardinality = cardinality;
+    this.indexWordNums = indexWordNums;
+    this.indexPositions = indexPositions;
+  }
+
+  static boolean fillBit(long marker) {
+    return (marker & 1L) != 0;
+  }
+
+  static int runLength(long marker) {
+    return (int) ((marker >>> RUN_LENGTH_SHIFT) & RUN_LENGTH_MASK);
+  }
+
+  static int numLiterals(long marker) {
+    return (int) (marker >>> NUM_LITERALS_SHIFT);
+  }
+
+  static long marker(boolean fillBit, long runLength, long numLiterals) {
+    return (fillBit ? 1L : 0L) | (runLength << RUN_LENGTH_SHIFT) | (numLiterals << NUM_LITERALS_SHIFT);
+  }
+
+  /** Builds a {@link WAHDocIdSet} from doc IDs added in increasing order. */
+  public static final class Builder {
+
+    private long[] words = new long[8];
+    private int numWords;
+    private int cardinality;
+    // position of the current marker in words, -1 if there is none yet
+    private int markerPos = -1;
+    private boolean fillBit;
+    private long runLength;
+    private int numLiterals;
+    // number of logical words which have been written so far
+    private int wordNum;
+    private int numMarkers;
+    private int[] indexWordNums = new int[1];
+    private int[] indexPositions = new int[1];
+
+    // the word which is being filled by add(int)
+    private int currentWordNum = -1;
+    private long currentWord;
+    private int lastDocID = -1;
+
+    /** Sole constructor. */
+    public Builder() {}
+
+    /** Adds a document to the set. Doc IDs must be added in increasing
+     *  order. */
+    public Builder add(int docID) {
+      if (docID <= lastDocID) {
+        throw new IllegalArgumentException("Doc ids must be added in-order, got " + docID + " which is <= lastDocID=" + lastDocID);
+      }
+      lastDocID = docID;
+      final int docWordNum = docID >>> 6;
+      if (docWordNum != currentWordNum) {
+        flushCurrentWord();
+        addFill(false, docWordNum - wordNum);
+        currentWordNum = docWordNum;
+      }
+      currentWord |= 1L << docID;
+      return this;
+    }
+
+    /** Adds all documents of the given iterator to the set. The iterator
+     *  must not be positioned and its documents must all be greater than
+     *  those which have been added so far. */
+    public Builder add(DocIdSetIterator it) throws IOException {
+      for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+        add(doc);
+      }
+      return this;
+    }
+
+    private void flushCurrentWord() {
+      if (currentWord != 0) {
+        addWord(currentWord);
+        currentWord = 0;
+      }
+    }
+
+    private void newMarker(boolean bit) {
+      if ((numMarkers % INDEX_INTERVAL) == 0) {
+        final int i = numMarkers / INDEX_INTERVAL;
+        if (i == indexWordNums.length) {
+          indexWordNums = ArrayUtil.grow(indexWordNums);
+          indexPositions = ArrayUtil.grow(indexPositions, indexWordNums.length);
+        }
+        indexWordNums[i] = wordNum;
+        indexPositions[i] = numWords;
+      }
+      ++numMarkers;
+      words = ArrayUtil.grow(words, numWords + 1);
+      markerPos = numWords++;
+      fillBit = bit;
+      runLength = 0;
+      numLiterals = 0;
+    }
+
+    private void writeMarker() {
+      words[markerPos] = marker(fillBit, runLength, numLiterals);
+    }
+
+    /** Appends <code>count</code> words whose bits are all equal to
+     *  <code>bit</code>. */
+    void addFill(boolean bit, int count) {
+      if (count == 0) {
+        return;
+      }
+      assert wordNum + (long) count <= (1L << 26);
+      if (markerPos == -1 || numLiterals > 0 || (runLength > 0 && fillBit != bit)) {
+        newMarker(bit);
+      }
+      fillBit = bit;
+      runLength += count;
+      writeMarker();
+      wordNum += count;
+      if (bit) {
+        cardinality += count << 6;
+      }
+    }
+
+    /** Appends an arbitrary word. */
+    void addWord(long word) {
+      if (word == 0L) {
+        addFill(false, 1);
+      } else if (word == ~0L) {
+        addFill(true, 1);
+      } else {
+        if (markerPos == -1) {
+          newMarker(false);
+        }
+        words = ArrayUtil.grow(words, numWords + 1);
+        words[numWords++] = word;
+        ++numLiterals;
+        writeMarker();
+        ++wordNum;
+        cardinality += Long.bitCount(word);
+      }
+    }
+
+    /** Builds the set. The builder must not be used afterwards. */
+    public WAHDocIdSet build() {
+      flushCurrentWord();
+      if (cardinality == 0) {
+        return EMPTY;
+      }
+      final int indexSize = (numMarkers + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+      return new WAHDocIdSet(Arrays.copyOf(words, numWords), numWords, cardinality,
+          Arrays.copyOf(indexWordNums, indexSize), Arrays.copyOf(indexPositions, indexSize));
+    }
+  }
+
+  /** Returns a set which contains the same documents as the first
+   *  <code>numWords</code> words of the given bits, as returned by
+   *  {@link FixedBitSet#getBits()} or {@link OpenBitSet#getBits()}. */
+  public static WAHDocIdSet copyOf(long[] bits, int numWords) {
+    final Builder builder = new Builder();
+    // trailing 0s do not need to be encoded
+    while (numWords > 0 && bits[numWords - 1] == 0L) {
+      --numWords;
+    }
+    for (int i = 0; i < numWords; ++i) {
+      builder.addWord(bits[i]);
+    }
+    return builder.build();
+  }
+
+  /** Cursor over the encoded words, which returns fills as a whole. */
+  private static final class WordCursor {
+    final long[] words;
+    final int numWords;
+    int markerPos;
+    boolean fillBit;
+    int runLength;
+    int numLiterals;
+    int literalPos;
+
+    WordCursor(WAHDocIdSet set) {
+      words = set.words;
+      numWords = set.numWords;
+      markerPos = -1;
+    }
+
+    /** Makes sure the cursor is on a fill or literal, returns false when
+     *  all words have been consumed. */
+    boolean ensure() {
+      while (runLength == 0 && numLiterals == 0) {
+        markerPos = markerPos == -1 ? 0 : literalPos;
+        if (markerPos >= numWords) {
+          return false;
+        }
+        final long marker = words[markerPos];
+        fillBit = fillBit(marker);
+        runLength = runLength(marker);
+        numLiterals = numLiterals(marker);
+        literalPos = markerPos + 1;
+      }
+      return true;
+    }
+
+    boolean inFill() {
+      return runLength > 0;
+    }
+
+    long nextLiteral() {
+      --numLiterals;
+      return words[literalPos++];
+    }
+
+    /** Copies all remaining words to the given builder. */
+    void copyTo(Builder builder) {
+      while (ensure()) {
+        builder.addFill(fillBit, runLength);
+        runLength = 0;
+        while (numLiterals > 0) {
+          builder.addWord(nextLiteral());
+        }
+      }
+    }
+  }
+
+  private static final int AND = 0, OR = 1, AND_NOT = 2;
+
+  private static long apply(int op, long a, long b) {
+    switch (op) {
+      case AND:
+        return a & b;
+      case OR:
+        return a | b;
+      case AND_NOT:
+        return a & ~b;
+      default:
+        throw new AssertionError();
+    }
+  }
+
+  private static WAHDocIdSet combine(WAHDocIdSet a, WAHDocIdSet b, int op) {
+    final Builder builder = new Builder();
+    final WordCursor ca = new WordCursor(a), cb = new WordCursor(b);
+    while (ca.ensure() && cb.ensure()) {
+      if (ca.inFill() && cb.inFill()) {
+        final int count = Math.min(ca.runLength, cb.runLength);
+        final long word = apply(op, ca.fillBit ? ~0L : 0L, cb.fillBit ? ~0L : 0L);
+        builder.addFill(word != 0L, count);
+        ca.runLength -= count;
+        cb.runLength -= count;
+      } else if (ca.inFill()) {
+        final int count = Math.min(ca.runLength, cb.numLiterals);
+        final long fill = ca.fillBit ? ~0L : 0L;
+        for (int i = 0; i < count; ++i) {
+          builder.addWord(apply(op, fill, cb.nextLiteral()));
+        }
+        ca.runLength -= count;
+      } else if (cb.inFill()) {
+        final int count = Math.min(ca.numLiterals, cb.runLength);
+        final long fill = cb.fillBit ? ~0L : 0L;
+        for (int i = 0; i < count; ++i) {
+          builder.addWord(apply(op, ca.nextLiteral(), fill));
+        }
+        cb.runLength -= count;
+      } else {
+        final int count = Math.min(ca.numLiterals, cb.numLiterals);
+        for (int i = 0; i < count; ++i) {
+          builder.addWord(apply(op, ca.nextLiteral(), cb.nextLiteral()));
+        }
+      }
+    }
+    // words after the end of a set are 0s
+    if (op == OR) {
+      ca.copyTo(builder);
+      cb.copyTo(builder);
+    } else if (op == AND_NOT) {
+      ca.copyTo(builder);
+    }
+    return builder.build();
+  }
+
+  /** Returns the intersection of two sets. */
+  public static WAHDocIdSet intersect(WAHDocIdSet a, WAHDocIdSet b) {
+    return combine(a, b, AND);
+  }
+
+  /** Returns the union of two sets. */
+  public static WAHDocIdSet union(WAHDocIdSet a, WAHDocIdSet b) {
+    return combine(a, b, OR);
+  }
+
+  /** Returns the documents of <code>a</code> which are not in
+   *  <code>b</code>. */
+  public static WAHDocIdSet andNot(WAHDocIdSet a, WAHDocIdSet b) {
+    return combine(a, b, AND_NOT);
+  }
+
+  /** Returns the number of documents in the intersection of two sets,
+   *  without building it. */
+  public static long intersectionCount(WAHDocIdSet a, WAHDocIdSet b) {
+    long count = 0;
+    final WordCursor ca = new WordCursor(a), cb = new WordCursor(b);
+    while (ca.ensure() && cb.ensure()) {
+      if (ca.inFill() && cb.inFill()) {
+        final int n = Math.min(ca.runLength, cb.runLength);
+        if (ca.fillBit && cb.fillBit) {
+          count += (long) n << 6;
+        }
+        ca.runLength -= n;
+        cb.runLength -= n;
+      } else if (ca.inFill()) {
+        final int n = Math.min(ca.runLength, cb.numLiterals);
+        for (int i = 0; i < n; ++i) {
+          final long word = cb.nextLiteral();
+          if (ca.fillBit) {
+            count += Long.bitCount(word);
+          }
+        }
+        ca.runLength -= n;
+      } else if (cb.inFill()) {
+        final int n = Math.min(ca.numLiterals, cb.runLength);
+        for (int i = 0; i < n; ++i) {
+          final long word = ca.nextLiteral();
+          if (cb.fillBit) {
+            count += Long.bitCount(word);
+          }
+        }
+        cb.runLength -= n;
+      } else {
+        final int n = Math.min(ca.numLiterals, cb.numLiterals);
+        for (int i = 0; i < n; ++i) {
+          count += Long.bitCount(ca.nextLiteral() & cb.nextLiteral());
+        }
+      }
+    }
+    return count;
+  }
+
+  /** Returns the number of documents which are in both this set and the
+   *  first <code>numWords</code> words of the given bits, as returned by
+   *  {@link FixedBitSet#getBits()} or {@link OpenBitSet#getBits()}. Words
+   *  after <code>numWords</code> are considered to be 0. */
+  public long intersectionCount(long[] bits, int numWords) {
+    long count = 0;
+    final WordCursor c = new WordCursor(this);
+    int wordNum = 0;
+    while (wordNum < numWords && c.ensure()) {
+      if (c.fillBit) {
+        final int end = (int) Math.min(numWords, (long) wordNum + c.runLength);
+        count += BitUtil.pop_array(bits, wordNum, end - wordNum);
+      }
+      wordNum += c.runLength;
+      c.runLength = 0;
+      while (c.numLiterals > 0 && wordNum < numWords) {
+        count += Long.bitCount(c.nextLiteral() & bits[wordNum++]);
+      }
+      wordNum += c.numLiterals;
+      c.numLiterals = 0;
+    }
+    return count;
+  }
+
+  /** Sets the bits of the documents of this set in the given words. Words
+   *  after the end of <code>bits</code> are ignored. */
+  public void orInto(long[] bits) {
+    final WordCursor c = new WordCursor(this);
+    int wordNum = 0;
+    while (wordNum < bits.length && c.ensure()) {
+      if (c.fillBit) {
+        Arrays.fill(bits, wordNum, (int) Math.min(bits.length, (long) wordNum + c.runLength), ~0L);
+      }
+      wordNum += c.runLength;
+      c.runLength = 0;
+      while (c.numLiterals > 0 && wordNum < bits.length) {
+        bits[wordNum++] |= c.nextLiteral();
+      }
+      wordNum += c.numLiterals;
+      c.numLiterals = 0;
+    }
+  }
+
+  /** Clears the bits of the documents which are not in this set in the
+   *  given words. */
+  public void andInto(long[] bits) {
+    final WordCursor c = new WordCursor(this);
+    int wordNum = 0;
+    while (wordNum < bits.length && c.ensure()) {
+      final int fillEnd = (int) Math.min(bits.length, (long) wordNum + c.runLength);
+      if (!c.fillBit) {
+        Arrays.fill(bits, wordNum, fillEnd, 0L);
+      }
+      wordNum = fillEnd;
+      c.runLength = 0;
+      while (c.numLiterals > 0 && wordNum < bits.length) {
+        bits[wordNum++] &= c.nextLiteral();
+      }
+      c.numLiterals = 0;
+    }
+    if (wordNum < bits.length) {
+      Arrays.fill(bits, wordNum, bits.length, 0L);
+    }
+  }
+
+  /** Returns the position of the indexed marker which is the closest to
+   *  <code>wordNum</code> without being after it. */
+  private int indexFloor(int wordNum) {
+    int lo = 0, hi = indexWordNums.length - 1;
+    while (lo <= hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (indexWordNums[mid] <= wordNum) {
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return hi;
+  }
+
+  /** Returns whether the given document is in this set. Random access is
+   *  slower than on a {@link FixedBitSet}: this method needs to look up the
+   *  index, then to decode up to {@value #INDEX_INTERVAL} marker words. */
+  public boolean get(int docID) {
+    final int targetWordNum = docID >>> 6;
+    final int i = indexFloor(targetWordNum);
+    if (i < 0) {
+      return false;
+    }
+    int wordNum = indexWordNums[i];
+    int pos = indexPositions[i];
+    while (pos < numWords) {
+      final long marker = words[pos];
+      final int runLength = runLength(marker);
+      if (targetWordNum < wordNum + runLength) {
+        return fillBit(marker);
+      }
+      wordNum += runLength;
+      final int numLiterals = numLiterals(marker);
+      if (targetWordNum < wordNum + numLiterals) {
+        return (words[pos + 1 + targetWordNum - wordNum] & (1L << docID)) != 0;
+      }
+      wordNum += numLiterals;
+      pos += 1 + numLiterals;
+    }
+    return false;
+  }
+
+  /** Returns the number of documents in this set. */
+  public int cardinality() {
+    return cardinality;
+  }
+
+  /** Returns the approximate memory usage of this set, in bytes. */
+  public long ramBytesUsed() {
+    return RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_OBJECT_HEADER
+          + 3 * RamUsageEstimator.NUM_BYTES_OBJECT_REF + 2 * RamUsageEstimator.NUM_BYTES_INT)
+        + RamUsageEstimator.sizeOf(words)
+        + RamUsageEstimator.sizeOf(indexWordNums)
+        + RamUsageEstimator.sizeOf(indexPositions);
+  }
+
+  /** This DocIdSet implementation is cacheable.
+   * @return <code>true</code>
+   */
+  @Override
+  public boolean isCacheable() {
+    return true;
+  }
+
+  @Override
+  public DocIdSetIterator iterator() {
+    return new Iterator();
+  }
+
+  private final class Iterator extends DocIdSetIterator {
+
+    int markerPos = -1;
+    int runStart, runLength, numLiterals;
+    boolean fillBit;
+    int wordNum = -1;
+    long word;
+    int doc = -1;
+
+    private boolean nextMarker() {
+      final int pos = markerPos == -1 ? 0 : markerPos + 1 + numLiterals;
+      if (pos >= numWords) {
+        return false;
+      }
+      readMarker(pos, markerPos == -1 ? 0 : runStart + runLength + numLiterals);
+      return true;
+    }
+
+    private void readMarker(int pos, int wordNum) {
+      final long marker = words[pos];
+      markerPos = pos;
+      runStart = wordNum;
+      fillBit = fillBit(marker);
+      runLength = runLength(marker);
+      numLiterals = numLiterals(marker);
+    }
+
+    /** Loads the first word, at or after <code>target</code>, which may
+     *  contain documents. */
+    private boolean loadWord(int target) {
+      if (markerPos == -1 && !nextMarker()) {
+        return false;
+      }
+      while (true) {
+        final int runEnd = runStart + runLength;
+        if (target < runEnd) {
+          if (fillBit) {
+            wordNum = target;
+            word = ~0L;
+            return true;
+          }
+          target = runEnd;
+        }
+        if (target < runEnd + numLiterals) {
+          wordNum = target;
+          word = words[markerPos + 1 + target - runEnd];
+          return true;
+        }
+        if (!nextMarker()) {
+          return false;
+        }
+      }
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+      while (word == 0L) {
+        if (!loadWord(wordNum + 1)) {
+          word = 0L;
+          return doc = NO_MORE_DOCS;
+        }
+      }
+      final int bit = Long.numberOfTrailingZeros(word);
+      word &= word - 1;
+      return doc = (wordNum << 6) | bit;
+    }
+
+    @Override
+    public int advance(int target) {
+      if (target == NO_MORE_DOCS) {
+        word = 0L;
+        return doc = NO_MORE_DOCS;
+      }
+      final int targetWordNum = target >>> 6;
+      if (targetWordNum > wordNum) {
+        // skip markers using the index
+        final int i = indexFloor(targetWordNum);
+        if (i >= 0 && indexPositions[i] > markerPos) {
+          readMarker(indexPositions[i], indexWordNums[i]);
+        }
+        if (!loadWord(targetWordNum)) {
+          word = 0L;
+          return doc = NO_MORE_DOCS;
+        }
+      }
+      if (wordNum == targetWordNum) {
+        word &= ~0L << target;
+      }
+      return nextDoc();
+    }
+
+    @Override
+    public long cost() {
+      return cardinality;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "WAHDocIdSet(cardinality=" + cardinality + ",words=" + numWords + ")";
+  }
+}
@@ -21,6 +21,7 @@ import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -98,6 +99,17 @@ public final class WeakIdentityMap<K,V> {
     return backingStore.size();
   }
 
+  /** Returns an iterator over all values of this map.
+   *  This iterator may return values whose key is already
+   *  garbage collected while iterator is consumed. If the
+   *  backing map is a {@link ConcurrentHashMap}, the iterator
+   *  is weakly consistent and does not fail on concurrent
+   *  modifications. */
+  public Iterator<V> valueIterator() {
+    reap();
+    return backingStore.values().iterator();
+  }
+
   private void reap() {
     Reference<?> zombie;
     while ((zombie = queue.poll()) != null) {
@@ -19,20 +19,18 @@ package org.apache.lucene.util.packed;
 
 import java.io.IOException;
 
-import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.RandomAccessInput;
 
 final class DirectPacked64SingleBlockReader extends PackedInts.ReaderImpl {
 
-  private final IndexInput in;
-  private final long startPointer;
+  private final RandomAccessInput in;
   private final int valuesPerBlock;
   private final long mask;
 
   DirectPacked64SingleBlockReader(int bitsPerValue, int valueCount,
-      IndexInput in) {
+      RandomAccessInput in) {
     super(valueCount, bitsPerValue);
     this.in = in;
-    startPointer = in.getFilePointer();
     valuesPerBlock = 64 / bitsPerValue;
     mask = ~(~0L << bitsPerValue);
   }
@@ -42,9 +40,7 @@ final class DirectPacked64SingleBlockReader extends PackedInts.ReaderImpl {
     final int blockOffset = index / valuesPerBlock;
     final long skip = ((long) blockOffset) << 3;
     try {
-      in.seek(startPointer + skip);
-
-      long block = in.readLong();
+      long block = in.readLong(skip);
       final int offsetInBlock = index % valuesPerBlock;
       return (block >>> (offsetInBlock * bitsPerValue)) & mask;
     } catch (IOException e) {
@@ -17,14 +17,13 @@ package org.apache.lucene.util.packed;
  * limitations under the License.
  */
 
-import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.RandomAccessInput;
 
 import java.io.IOException;
 
 /* Reads directly from disk on each get */
 final class DirectPackedReader extends PackedInts.ReaderImpl {
-  private final IndexInput in;
-  private final long startPointer;
+  private final RandomAccessInput in;
 
   private static final int BLOCK_BITS = Packed64.BLOCK_BITS;
   private static final int MOD_MASK = Packed64.MOD_MASK;
@@ -32,8 +31,7 @@ final class DirectPackedReader extends PackedInts.ReaderImpl {
   // masks[n-1] masks for bottom n bits
   private final long[] masks;
 
-  public DirectPackedReader(int bitsPerValue, int valueCount, IndexInput in)
-    throws IOException {
+  public DirectPackedReader(int bitsPerValue, int valueCount, RandomAccessInput in) {
     super(valueCount, bitsPerValue);
     this.in = in;
 
@@ -43,8 +41,6 @@ final class DirectPackedReader extends PackedInts.ReaderImpl {
       v *= 2;
       masks[i] = v - 1;
     }
-
-    startPointer = in.getFilePointer();
   }
 
   @Override
@@ -55,15 +51,15 @@ final class DirectPackedReader extends PackedInts.ReaderImpl {
 
     final long result;
     try {
-      in.seek(startPointer + (elementPos << 3));
-      final long l1 = in.readLong();
+      final long pos = ((long) elementPos) << 3;
+      final long l1 = in.readLong(pos);
       final int bits1 = 64 - bitPos;
       if (bits1 >= bitsPerValue) { // not split
         result = l1 >> (bits1-bitsPerValue) & masks[bitsPerValue-1];
       } else {
         final int bits2 = bitsPerValue - bits1;
         final long result1 = (l1 & masks[bits1-1]) << bits2;
-        final long l2 = in.readLong();
+        final long l2 = in.readLong(pos + 8);
         final long result2 = l2 >> (64 - bits2) & masks[bits2-1];
         result = result1 | result2;
       }
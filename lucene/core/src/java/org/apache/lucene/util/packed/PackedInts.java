@@ -22,6 +22,8 @@ import java.io.Closeable;
 import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.MMapDirectory; // javadocs
+import org.apache.lucene.store.RandomAccessInput;
 import org.apache.lucene.util.CodecUtil;
 
 import java.io.IOException;
@@ -391,7 +393,13 @@ public class PackedInts {
    * Retrieve PackedInts.Reader that does not load values
    * into RAM but rather accesses all values via the
    * provided IndexInput.
+   * <p>
+   * Values are read through a {@link IndexInput#randomAccessSlice
+   * random-access slice} of the input, so when the input is memory-mapped
+   * (see {@link MMapDirectory}) the returned reader uses no heap and
+   * does not need to seek.
    * @param in positioned at the beginning of a stored packed int structure.
+   *        On return, it is positioned right after the packed values.
    * @return an Reader to access the values
    * @throws IOException if the structure could not be retrieved.
    * @lucene.internal
@@ -402,14 +410,28 @@ public class PackedInts {
     assert bitsPerValue > 0 && bitsPerValue <= 64: "bitsPerValue=" + bitsPerValue;
     final int valueCount = in.readVInt();
     final int format = in.readVInt();
+    final long numBlocks;
     switch (format) {
       case PACKED:
-        return new DirectPackedReader(bitsPerValue, valueCount, in);
+        numBlocks = ((long) valueCount * bitsPerValue + 63) >>> 6;
+        break;
       case PACKED_SINGLE_BLOCK:
-        return new DirectPacked64SingleBlockReader(bitsPerValue, valueCount, in);
+        final int valuesPerBlock = 64 / bitsPerValue;
+        numBlocks = ((long) valueCount + valuesPerBlock - 1) / valuesPerBlock;
+        break;
       default:
         throw new AssertionError("Unknwown Writer format: " + format);
     }
+    final long startPointer = in.getFilePointer();
+    final long byteCount = numBlocks << 3;
+    final RandomAccessInput slice = in.randomAccessSlice(startPointer, byteCount);
+    in.seek(startPointer + byteCount);
+    switch (format) {
+      case PACKED:
+        return new DirectPackedReader(bitsPerValue, valueCount, slice);
+      default:
+        return new DirectPacked64SingleBlockReader(bitsPerValue, valueCount, slice);
+    }
   }
   
   /**
@@ -0,0 +1,144 @@
+package org.apache.lucene.codecs.block;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.codecs.sep.IntIndexInput;
+import org.apache.lucene.codecs.sep.IntIndexOutput;
+import org.apache.lucene.codecs.sep.IntStreamFactory;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util._TestUtil;
+
+public class TestBlockPostingsFormat extends LuceneTestCase {
+
+  public void testForUtilRoundTrip() throws Exception {
+    final int[] values = new int[ForUtil.BLOCK_SIZE];
+    final int[] decoded = new int[ForUtil.BLOCK_SIZE];
+    final long[] scratch = new long[ForUtil.BLOCK_SIZE >>> 1];
+    final byte[] bytes = new byte[ForUtil.BLOCK_SIZE * 8];
+    final int iters = atLeast(200);
+    for (int iter = 0; iter < iters; ++iter) {
+      final int bpv = random().nextInt(33);
+      final long max = (1L << bpv) - 1;
+      final boolean allEqual = random().nextInt(10) == 0;
+      final int numExceptions = random().nextInt(10) == 0 ? random().nextInt(ForUtil.BLOCK_SIZE) : 0;
+      for (int i = 0; i < values.length; ++i) {
+        if (allEqual && i > 0) {
+          values[i] = values[0];
+        } else {
+          values[i] = (int) (max == 0 ? 0 : _TestUtil.nextLong(random(), 0, max));
+        }
+      }
+      for (int i = 0; i < numExceptions; ++i) {
+        values[random().nextInt(values.length)] = random().nextInt();
+      }
+
+      final ByteArrayDataOutput out = new ByteArrayDataOutput(bytes);
+      ForUtil.encode(values, scratch, out);
+      final int length = out.getPosition();
+      final ByteArrayDataInput in = new ByteArrayDataInput(bytes, 0, length);
+      ForUtil.decode(in, scratch, decoded);
+      assertEquals(length, in.getPosition());
+      for (int i = 0; i < values.length; ++i) {
+        assertEquals("iter=" + iter + " bpv=" + bpv + " i=" + i, values[i], decoded[i]);
+      }
+    }
+  }
+
+  public void testIntStream() throws Exception {
+    Directory dir = newDirectory();
+    IntStreamFactory f = new ForFactory();
+
+    final int count = _TestUtil.nextInt(random(), 1, 10000);
+    final int[] values = new int[count];
+    for (int i = 0; i < count; ++i) {
+      values[i] = random().nextInt(10) == 0 ? random().nextInt() : random().nextInt(100);
+    }
+
+    IntIndexOutput out = f.createOutput(dir, "test", newIOContext(random()));
+    for (int v : values) {
+      out.write(v);
+    }
+    out.close();
+
+    IntIndexInput in = f.openInput(dir, "test", newIOContext(random()));
+    IntIndexInput.Reader r = in.reader();
+    for (int i = 0; i < count; ++i) {
+      assertEquals(values[i], r.next());
+    }
+    in.close();
+    dir.close();
+  }
+
+  public void testHighDocFreqTerm() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random()));
+    iwc.setCodec(_TestUtil.alwaysPostingsFormat(new BlockPostingsFormat()));
+    // the test relies on docIDs following the order of addition
+    iwc.setMergePolicy(newLogMergePolicy());
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+    final int numDocs = atLeast(1000);
+    int numEven = 0;
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(newTextField("body", "all" + ((i & 1) == 0 ? " even even" : ""), Field.Store.NO));
+      if ((i & 1) == 0) {
+        numEven++;
+      }
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    IndexReader r = w.getReader();
+    w.close();
+
+    DocsEnum docs = _TestUtil.docs(random(), r, "body", new BytesRef("all"), MultiFields.getLiveDocs(r), null, false);
+    int count = 0;
+    while (docs.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+      count++;
+    }
+    assertEquals(numDocs, count);
+
+    docs = _TestUtil.docs(random(), r, "body", new BytesRef("even"), MultiFields.getLiveDocs(r), null, true);
+    count = 0;
+    int doc = -1;
+    while ((doc = docs.advance(doc + 1 + random().nextInt(3))) != DocIdSetIterator.NO_MORE_DOCS) {
+      assertEquals(0, doc & 1);
+      assertEquals(2, docs.freq());
+      count++;
+    }
+    assertTrue(count <= numEven);
+    assertEquals(numEven, r.docFreq(new Term("body", "even")));
+
+    r.close();
+    dir.close();
+  }
+}
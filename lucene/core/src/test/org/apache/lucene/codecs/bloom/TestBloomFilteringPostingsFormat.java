@@ -0,0 +1,125 @@
+package org.apache.lucene.codecs.bloom;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util._TestUtil;
+
+public class TestBloomFilteringPostingsFormat extends LuceneTestCase {
+
+  public void testFilter() throws Exception {
+    final int numTerms = atLeast(1000);
+    final int[] hashes = new int[2 * numTerms];
+    for (int i = 0; i < numTerms; i++) {
+      final BytesRef term = new BytesRef("id" + i);
+      hashes[2 * i] = BloomFilter.hash1(term);
+      hashes[2 * i + 1] = BloomFilter.hash2(term);
+    }
+    final BloomFilter filter = BloomFilter.create(hashes, numTerms, BloomFilteringPostingsFormat.DEFAULT_BITS_PER_TERM);
+    for (int i = 0; i < numTerms; i++) {
+      assertTrue(filter.mayContain(new BytesRef("id" + i)));
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < numTerms; i++) {
+      if (filter.mayContain(new BytesRef("missing" + i))) {
+        falsePositives++;
+      }
+    }
+    // ~1% expected with 10 bits per term
+    assertTrue("falsePositives=" + falsePositives, falsePositives < numTerms / 20);
+  }
+
+  public void testSPI() throws Exception {
+    assertTrue(PostingsFormat.forName("BloomFilter") instanceof BloomFilteringPostingsFormat);
+  }
+
+  public void testPrimaryKeyLookups() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random()));
+    iwc.setCodec(_TestUtil.alwaysPostingsFormat(new BloomFilteringPostingsFormat(PostingsFormat.forName("Lucene40"), _TestUtil.nextInt(random(), 1, 16))));
+    iwc.setMaxBufferedDocs(_TestUtil.nextInt(random(), 10, 100));
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+    final int numIds = atLeast(500);
+    final Set<String> ids = new HashSet<String>();
+    for (int i = 0; i < numIds; i++) {
+      final String id = _TestUtil.randomRealisticUnicodeString(random(), 1, 20);
+      ids.add(id);
+      Document doc = new Document();
+      doc.add(newStringField("id", id, Field.Store.NO));
+      doc.add(newTextField("body", "text " + i, Field.Store.NO));
+      w.updateDocument(new Term("id", id), doc);
+    }
+    if (random().nextBoolean()) {
+      w.forceMerge(1);
+    }
+    DirectoryReader r = w.getReader();
+    w.close();
+
+    for (String id : ids) {
+      int found = 0;
+      for (AtomicReaderContext ctx : r.getTopReaderContext().leaves()) {
+        final Terms terms = ctx.reader().fields().terms("id");
+        if (terms != null && terms.iterator(null).seekExact(new BytesRef(id), random().nextBoolean())) {
+          found++;
+        }
+      }
+      assertTrue("id=" + id, found > 0);
+    }
+    for (int i = 0; i < numIds; i++) {
+      final String id = _TestUtil.randomRealisticUnicodeString(random(), 21, 30);
+      for (AtomicReaderContext ctx : r.getTopReaderContext().leaves()) {
+        final Terms terms = ctx.reader().fields().terms("id");
+        assertFalse(terms != null && terms.iterator(null).seekExact(new BytesRef(id), random().nextBoolean()));
+      }
+    }
+
+    // enumeration is unaffected
+    final Set<String> seen = new HashSet<String>();
+    TermsEnum te = null;
+    for (AtomicReaderContext ctx : r.getTopReaderContext().leaves()) {
+      final Terms terms = ctx.reader().fields().terms("id");
+      if (terms != null) {
+        te = terms.iterator(te);
+        BytesRef term;
+        while ((term = te.next()) != null) {
+          seen.add(term.utf8ToString());
+        }
+      }
+    }
+    assertEquals(ids, seen);
+
+    r.close();
+    dir.close();
+  }
+}
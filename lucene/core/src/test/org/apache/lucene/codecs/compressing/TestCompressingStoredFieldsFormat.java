@@ -0,0 +1,144 @@
+package org.apache.lucene.codecs.compressing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util._TestUtil;
+
+public class TestCompressingStoredFieldsFormat extends LuceneTestCase {
+
+  private void assertLZ4RoundTrip(byte[] data, int off, int len) throws Exception {
+    final GrowableByteArrayDataOutput out = new GrowableByteArrayDataOutput(16);
+    LZ4.compress(data, off, len, out, new int[LZ4.HASH_TABLE_SIZE]);
+    final byte[] restored = new byte[len + random().nextInt(10)];
+    final ByteArrayDataInput in = new ByteArrayDataInput(out.bytes, 0, out.length);
+    LZ4.decompress(in, len, restored, 0);
+    assertEquals(out.length, in.getPosition());
+    assertTrue(Arrays.equals(Arrays.copyOfRange(data, off, off + len), Arrays.copyOf(restored, len)));
+  }
+
+  public void testLZ4() throws Exception {
+    final int iters = atLeast(100);
+    for (int iter = 0; iter < iters; ++iter) {
+      final int len = random().nextBoolean() ? random().nextInt(20) : random().nextInt(1 << 17);
+      final byte[] data = new byte[len + 5];
+      final int max = random().nextBoolean() ? 3 : 256;
+      for (int i = 0; i < data.length; ++i) {
+        data[i] = (byte) random().nextInt(max);
+      }
+      if (random().nextBoolean() && len > 100) {
+        // long repetitions
+        final int runLength = _TestUtil.nextInt(random(), 1, len / 10);
+        final int start = random().nextInt(len - runLength);
+        Arrays.fill(data, start, start + runLength, data[start]);
+      }
+      assertLZ4RoundTrip(data, random().nextInt(5), len);
+    }
+  }
+
+  public void testLZ4Compresses() throws Exception {
+    final byte[] data = new byte[1 << 14];
+    for (int i = 0; i < data.length; ++i) {
+      data[i] = (byte) ('a' + (i % 7));
+    }
+    final GrowableByteArrayDataOutput out = new GrowableByteArrayDataOutput(16);
+    LZ4.compress(data, 0, data.length, out, new int[LZ4.HASH_TABLE_SIZE]);
+    assertTrue(out.length < data.length / 10);
+    assertLZ4RoundTrip(data, 0, data.length);
+  }
+
+  public void testRandomDocs() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random()));
+    final int chunkSize = random().nextBoolean() ? _TestUtil.nextInt(random(), 1, 100) : _TestUtil.nextInt(random(), 1, 1 << 16);
+    iwc.setCodec(new Compressing40Codec(chunkSize));
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+
+    final int numDocs = atLeast(500);
+    final String[] strings = new String[numDocs];
+    final byte[][] binaries = new byte[numDocs][];
+    final FieldType onlyStored = new FieldType();
+    onlyStored.setStored(true);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Field.Store.YES));
+      doc.add(new IntField("num", i, Field.Store.YES));
+      strings[i] = random().nextBoolean() ? _TestUtil.randomSimpleString(random()) : _TestUtil.randomUnicodeString(random(), 200);
+      doc.add(new Field("string", strings[i], onlyStored));
+      if (random().nextBoolean()) {
+        binaries[i] = new byte[random().nextInt(300)];
+        random().nextBytes(binaries[i]);
+        doc.add(new StoredField("binary", binaries[i]));
+      }
+      w.addDocument(doc);
+      if (rarely()) {
+        w.commit();
+      }
+    }
+
+    // delete some docs so that merges can't always copy chunks
+    final int numDeletes = random().nextInt(numDocs / 10);
+    final boolean[] deleted = new boolean[numDocs];
+    for (int i = 0; i < numDeletes; ++i) {
+      final int id = random().nextInt(numDocs);
+      deleted[id] = true;
+      w.deleteDocuments(new Term("id", Integer.toString(id)));
+    }
+    if (random().nextBoolean()) {
+      w.forceMerge(1);
+    }
+
+    DirectoryReader r = w.getReader();
+    w.close();
+
+    for (int i = 0; i < r.maxDoc(); ++i) {
+      final int docID = random().nextInt(r.maxDoc());
+      final Document doc = r.document(docID);
+      final int id = Integer.parseInt(doc.get("id"));
+      assertFalse(deleted[id] && r.hasDeletions() && r.maxDoc() == r.numDocs());
+      assertEquals(id, doc.getField("num").numericValue().intValue());
+      assertEquals(strings[id], doc.get("string"));
+      final BytesRef binary = doc.getBinaryValue("binary");
+      if (binaries[id] == null) {
+        assertNull(binary);
+      } else {
+        assertEquals(new BytesRef(binaries[id]), binary);
+      }
+    }
+
+    r.close();
+    dir.close();
+  }
+
+}
@@ -21,17 +21,23 @@ import java.util.ArrayList;
 import java.util.Collections;
 
 import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.analysis.MockTokenizer;
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocsEnum;
 import org.apache.lucene.index.FieldInfo.IndexOptions;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util._TestUtil;
 
@@ -96,6 +102,65 @@ public class TestLucene40PostingsReader extends LuceneTestCase {
     dir.close(); // checkindex
   }
   
+  /** tests that the max freqs of the skip data blocks bound the actual freqs */
+  public void testBlockMaxFreqs() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random(), MockTokenizer.WHITESPACE, false));
+    iwc.setCodec(Codec.forName("Lucene40"));
+    RandomIndexWriter iw = new RandomIndexWriter(random(), dir, iwc);
+    int numDocs = atLeast(1000);
+    int[] freqs = new int[numDocs];
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      if (random().nextInt(3) != 0) {
+        freqs[i] = random().nextInt(10) == 0 ? _TestUtil.nextInt(random(), 1, 50) : _TestUtil.nextInt(random(), 1, 3);
+        StringBuilder sb = new StringBuilder();
+        for (int j = 0; j < freqs[i]; j++) {
+          sb.append("a ");
+        }
+        doc.add(new TextField("body", sb.toString(), Field.Store.NO));
+      }
+      doc.add(newStringField("id", Integer.toString(i), Field.Store.NO));
+      iw.addDocument(doc);
+    }
+    iw.forceMerge(1);
+    DirectoryReader reader = iw.getReader();
+    iw.close();
+    AtomicReader leaf = getOnlySegmentReader(reader);
+    int[] docFreqs = new int[leaf.maxDoc()];
+    DocsEnum all = leaf.termDocsEnum(null, "body", new BytesRef("a"), true);
+    for (int doc = all.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = all.nextDoc()) {
+      docFreqs[doc] = all.freq();
+    }
+
+    DocsEnum docsEnum = leaf.termDocsEnum(null, "body", new BytesRef("a"), true);
+    int target = 0;
+    int numBounded = 0;
+    while (target < leaf.maxDoc()) {
+      int blockEnd = docsEnum.advanceShallow(target);
+      assertTrue(blockEnd >= target);
+      int maxFreq = docsEnum.getMaxFreq();
+      if (blockEnd != DocIdSetIterator.NO_MORE_DOCS) {
+        assertTrue(maxFreq != Integer.MAX_VALUE);
+        numBounded++;
+      }
+      for (int doc = target; doc <= blockEnd && doc < docFreqs.length; doc++) {
+        assertTrue("doc=" + doc + " freq=" + docFreqs[doc] + " maxFreq=" + maxFreq, docFreqs[doc] <= maxFreq);
+      }
+      if (random().nextBoolean() && docsEnum.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+        // moving the enum must not change its skip data blocks
+        assertEquals(docFreqs[docsEnum.docID()], docsEnum.freq());
+      }
+      if (blockEnd == DocIdSetIterator.NO_MORE_DOCS) {
+        break;
+      }
+      target = random().nextBoolean() ? blockEnd + 1 : _TestUtil.nextInt(random(), target, blockEnd + 1);
+    }
+    assertTrue(numBounded > 0);
+    reader.close();
+    dir.close();
+  }
+  
   IndexOptions indexOptions() {
     switch(random().nextInt(4)) {
       case 0: return IndexOptions.DOCS_ONLY;
@@ -35,6 +35,7 @@ import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.IndexableFieldType;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.Counter;
 import org.apache.lucene.util.LuceneTestCase;
@@ -383,6 +384,67 @@ public class TestDocValues extends LuceneTestCase {
     }
   }
 
+  public void testDirectSourceMMap() throws IOException {
+    MMapDirectory dir = new MMapDirectory(_TestUtil.getTempDir("testDirectSourceMMap"));
+    // small chunks so that values span several mapped buffers
+    dir.setMaxChunkSize(1 << _TestUtil.nextInt(random(), 4, 10));
+    DocValueHolder valueHolder = new DocValueHolder();
+    final Type[] types = new Type[] {Type.VAR_INTS, Type.FIXED_INTS_8, Type.FIXED_INTS_16,
+        Type.FIXED_INTS_32, Type.FIXED_INTS_64, Type.FLOAT_32, Type.FLOAT_64};
+    for (Type type : types) {
+      final String name = "test_" + type.name();
+      final int numValues = 333 + random().nextInt(333);
+      final long[] values = new long[numValues];
+      final Counter trackBytes = Counter.newCounter();
+      final boolean isFloat = type == Type.FLOAT_32 || type == Type.FLOAT_64;
+      DocValuesConsumer w = isFloat
+          ? Floats.getWriter(dir, name, trackBytes, newIOContext(random()), type)
+          : Ints.getWriter(dir, name, trackBytes, type, newIOContext(random()));
+      for (int i = 0; i < numValues; i++) {
+        switch (type) {
+          case FIXED_INTS_8:
+            values[i] = (byte) random().nextInt();
+            break;
+          case FIXED_INTS_16:
+            values[i] = (short) random().nextInt();
+            break;
+          case FIXED_INTS_32:
+          case FLOAT_32:
+            values[i] = random().nextInt();
+            break;
+          default:
+            values[i] = random().nextLong();
+        }
+        if (type == Type.FLOAT_32) {
+          valueHolder.numberValue = Float.intBitsToFloat((int) values[i]);
+        } else if (type == Type.FLOAT_64) {
+          valueHolder.numberValue = Double.longBitsToDouble(values[i]);
+        } else {
+          valueHolder.numberValue = values[i];
+        }
+        w.add(i, valueHolder);
+      }
+      w.finish(numValues);
+
+      DocValues r = isFloat
+          ? Floats.getValues(dir, name, numValues, newIOContext(random()), type)
+          : Ints.getValues(dir, name, numValues, type, newIOContext(random()));
+      Source direct = r.getDirectSource();
+      Source loaded = r.load();
+      for (int iter = 0; iter < numValues; iter++) {
+        final int i = random().nextInt(numValues);
+        if (isFloat) {
+          assertEquals(loaded.getFloat(i), direct.getFloat(i), 0.0d);
+        } else {
+          assertEquals(values[i], direct.getInt(i));
+          assertEquals(loaded.getInt(i), direct.getInt(i));
+        }
+      }
+      r.close();
+    }
+    dir.close();
+  }
+
   public void testFloats4() throws IOException {
     runTestFloats(Type.FLOAT_32);
   }
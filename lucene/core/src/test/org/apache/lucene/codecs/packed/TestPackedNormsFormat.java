@@ -0,0 +1,303 @@
+package org.apache.lucene.codecs.packed;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.codecs.lucene40.Lucene40Codec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValues.Source;
+import org.apache.lucene.index.DocValues.Type;
+import org.apache.lucene.index.FieldInvertState;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Norm;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util._TestUtil;
+import org.apache.lucene.util.packed.PackedInts;
+
+public class TestPackedNormsFormat extends LuceneTestCase {
+
+  private static final String[] TERMS = new String[] { "a", "b", "c", "d", "e" };
+
+  private static PackedNorms40Codec newCodec() {
+    final float acceptableOverheadRatio = random().nextBoolean() ? PackedInts.COMPACT : PackedInts.FAST;
+    return new PackedNorms40Codec(new PackedNormsFormat(acceptableOverheadRatio, random().nextBoolean()));
+  }
+
+  private static String randomText(Random random) {
+    final StringBuilder sb = new StringBuilder();
+    final int numTokens = random.nextInt(10) == 0 ? _TestUtil.nextInt(random, 50, 200) : _TestUtil.nextInt(random, 1, 10);
+    for (int i = 0; i < numTokens; i++) {
+      sb.append(TERMS[random.nextInt(TERMS.length)]).append(' ');
+    }
+    return sb.toString();
+  }
+
+  private static Document doc(Random random) {
+    final Document doc = new Document();
+    doc.add(newTextField(random, "body", randomText(random), Field.Store.NO));
+    doc.add(newTextField(random, "constant", "a b", Field.Store.NO));
+    if (random.nextBoolean()) {
+      doc.add(newTextField(random, "sparse", randomText(random), Field.Store.NO));
+    }
+    return doc;
+  }
+
+  private static DirectoryReader index(Directory dir, IndexWriterConfig iwc, long seed, int numDocs) throws Exception {
+    final Random random = new Random(seed);
+    final IndexWriter w = new IndexWriter(dir, iwc);
+    for (int i = 0; i < numDocs; i++) {
+      w.addDocument(doc(random));
+    }
+    w.forceMerge(1);
+    w.close();
+    return DirectoryReader.open(dir);
+  }
+
+  /** Packed norms must give the same norms, and thus the same scores, as Lucene40. */
+  public void testSameScoresAsLucene40() throws Exception {
+    final long seed = random().nextLong();
+    final int numDocs = atLeast(300);
+    final Directory dir1 = newDirectory();
+    final Directory dir2 = newDirectory();
+    final DirectoryReader r1 = index(dir1, newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(new Random(seed)))
+        .setCodec(new Lucene40Codec()).setMergePolicy(newLogMergePolicy()), seed, numDocs);
+    final DirectoryReader r2 = index(dir2, newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(new Random(seed)))
+        .setCodec(newCodec()).setMergePolicy(newLogMergePolicy()), seed, numDocs);
+
+    final AtomicReader leaf1 = getOnlySegmentReader(r1);
+    final AtomicReader leaf2 = getOnlySegmentReader(r2);
+    for (String field : new String[] { "body", "constant", "sparse" }) {
+      final DocValues norms1 = leaf1.normValues(field);
+      final DocValues norms2 = leaf2.normValues(field);
+      assertEquals(Type.FIXED_INTS_8, norms2.getType());
+      assertEquals(norms1.getValueSize(), norms2.getValueSize());
+      final Source expected = norms1.getSource();
+      final Source source = norms2.getSource();
+      final Source direct = norms2.getDirectSource();
+      for (int docID = 0; docID < numDocs; docID++) {
+        assertEquals(expected.getInt(docID), source.getInt(docID));
+        assertEquals(expected.getInt(docID), direct.getInt(docID));
+      }
+    }
+
+    final IndexSearcher s1 = newSearcher(r1, false);
+    final IndexSearcher s2 = newSearcher(r2, false);
+    s2.setSimilarity(s1.getSimilarity());
+    final int iters = atLeast(10);
+    for (int iter = 0; iter < iters; iter++) {
+      final String field = random().nextBoolean() ? "body" : "sparse";
+      final Query q;
+      if (random().nextBoolean()) {
+        q = new TermQuery(new Term(field, TERMS[random().nextInt(TERMS.length)]));
+      } else {
+        final PhraseQuery pq = new PhraseQuery();
+        pq.add(new Term(field, TERMS[random().nextInt(TERMS.length)]));
+        pq.add(new Term(field, TERMS[random().nextInt(TERMS.length)]));
+        pq.setSlop(random().nextInt(3));
+        q = pq;
+      }
+      final ScoreDoc[] hits1 = s1.search(q, numDocs).scoreDocs;
+      final ScoreDoc[] hits2 = s2.search(q, numDocs).scoreDocs;
+      assertEquals(hits1.length, hits2.length);
+      for (int i = 0; i < hits1.length; i++) {
+        assertEquals(hits1[i].doc, hits2[i].doc);
+        assertEquals(hits1[i].score, hits2[i].score, 0f);
+      }
+      if (hits2.length > 0) {
+        final ScoreDoc hit = hits2[random().nextInt(hits2.length)];
+        assertEquals(hit.score, s2.explain(q, hit.doc).getValue(), 0.0001f);
+      }
+    }
+    r1.close();
+    r2.close();
+    dir1.close();
+    dir2.close();
+  }
+
+  /** A field whose norms are all equal takes no space per document. */
+  public void testConstantNorms() throws Exception {
+    final Directory dir = newDirectory();
+    final IndexWriterConfig iwc = newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random()))
+        .setCodec(new PackedNorms40Codec()).setMergePolicy(newLogMergePolicy(false));
+    final IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; i++) {
+      final Document doc = new Document();
+      doc.add(newTextField("constant", "a b", Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    w.close();
+
+    final DirectoryReader r = DirectoryReader.open(dir);
+    final String fileName = getOnlySegmentReader(r).getSegmentInfo().info.name + "." + PackedNormsFormat.NORMS_EXTENSION;
+    assertTrue(dir.fileLength(fileName) < 100);
+    final DocValues norms = getOnlySegmentReader(r).normValues("constant");
+    final long expected = norms.getSource().getInt(0);
+    for (int docID = 0; docID < numDocs; docID++) {
+      assertEquals(expected, norms.getSource().getInt(docID));
+    }
+    r.close();
+    dir.close();
+  }
+
+  /** Writes norms of every supported type, from the boost of the field. */
+  private static class TypedNormsSimilarity extends DefaultSimilarity {
+    @Override
+    public void computeNorm(FieldInvertState state, Norm norm) {
+      setNorm(Type.valueOf(state.getName()), state.getBoost(), norm);
+    }
+  }
+
+  private static void setNorm(Type type, float boost, Norm norm) {
+    switch (type) {
+      case FIXED_INTS_8:
+        norm.setByte((byte) boost);
+        break;
+      case FIXED_INTS_16:
+        norm.setShort((short) boost);
+        break;
+      case FIXED_INTS_32:
+        norm.setInt((int) boost);
+        break;
+      case FIXED_INTS_64:
+        norm.setLong((long) boost);
+        break;
+      case FLOAT_32:
+        norm.setFloat(boost);
+        break;
+      case FLOAT_64:
+        norm.setDouble(boost);
+        break;
+      default:
+        throw new AssertionError();
+    }
+  }
+
+  private static final Type[] TYPES = new Type[] {
+    Type.FIXED_INTS_8, Type.FIXED_INTS_16, Type.FIXED_INTS_32, Type.FIXED_INTS_64, Type.FLOAT_32, Type.FLOAT_64
+  };
+
+  public void testNormTypes() throws Exception {
+    final Directory dir = newDirectory();
+    final IndexWriterConfig iwc = newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random()))
+        .setCodec(newCodec()).setSimilarity(new TypedNormsSimilarity())
+        .setMaxBufferedDocs(_TestUtil.nextInt(random(), 5, 100));
+    final IndexWriter w = new IndexWriter(dir, iwc);
+    final Map<String,float[]> expected = new HashMap<String,float[]>();
+    final int numDocs = atLeast(300);
+    // some fields are constant, some span all the values of their type
+    final boolean[] constant = new boolean[TYPES.length];
+    for (int i = 0; i < TYPES.length; i++) {
+      constant[i] = random().nextInt(4) == 0;
+    }
+    for (int i = 0; i < numDocs; i++) {
+      final String id = Integer.toString(i);
+      final Document doc = new Document();
+      doc.add(newStringField("id", id, Field.Store.YES));
+      final float[] boosts = new float[TYPES.length];
+      for (int j = 0; j < TYPES.length; j++) {
+        if (constant[j] || random().nextInt(10) != 0) {
+          final float boost;
+          if (constant[j]) {
+            boost = 3;
+          } else if (random().nextBoolean()) {
+            boost = random().nextInt(100);
+          } else {
+            boost = (random().nextFloat() - 0.5f) * Float.MAX_VALUE;
+          }
+          final Field field = newTextField(TYPES[j].name(), "a", Field.Store.NO);
+          field.setBoost(boost);
+          doc.add(field);
+          boosts[j] = boost;
+        }
+      }
+      w.addDocument(doc);
+      expected.put(id, boosts);
+      if (random().nextInt(10) == 0) {
+        final String toDelete = Integer.toString(random().nextInt(i + 1));
+        w.deleteDocuments(new Term("id", toDelete));
+        expected.remove(toDelete);
+      }
+    }
+    if (random().nextBoolean()) {
+      w.forceMerge(1);
+    }
+    w.close();
+
+    final DirectoryReader r = DirectoryReader.open(dir);
+    assertEquals(expected.size(), r.numDocs());
+    for (AtomicReaderContext context : r.getTopReaderContext().leaves()) {
+      final AtomicReader leaf = context.reader();
+      final Bits liveDocs = leaf.getLiveDocs();
+      for (int j = 0; j < TYPES.length; j++) {
+        final DocValues norms = leaf.normValues(TYPES[j].name());
+        final Source source;
+        if (norms == null) {
+          // no document of this segment has the field
+          source = null;
+        } else {
+          assertEquals(TYPES[j], norms.getType());
+          source = random().nextBoolean() ? norms.getSource() : norms.getDirectSource();
+        }
+        final Norm norm = new Norm();
+        for (int docID = 0; docID < leaf.maxDoc(); docID++) {
+          if (liveDocs != null && !liveDocs.get(docID)) {
+            continue;
+          }
+          final float boost = expected.get(leaf.document(docID).get("id"))[j];
+          if (source == null) {
+            assertEquals(0f, boost, 0f);
+            continue;
+          }
+          setNorm(TYPES[j], boost, norm);
+          final Number value = norm.field().numericValue();
+          switch (TYPES[j]) {
+            case FLOAT_32:
+            case FLOAT_64:
+              assertEquals(value.doubleValue(), source.getFloat(docID), 0d);
+              break;
+            default:
+              assertEquals(value.longValue(), source.getInt(docID));
+          }
+        }
+      }
+    }
+    r.close();
+    dir.close();
+  }
+}
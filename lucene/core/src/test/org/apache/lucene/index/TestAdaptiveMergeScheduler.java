@@ -0,0 +1,115 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util._TestUtil;
+
+public class TestAdaptiveMergeScheduler extends LuceneTestCase {
+
+  public void testComputeMBPerSec() {
+    AdaptiveMergeScheduler ams = new AdaptiveMergeScheduler(10);
+    ams.setMaxThreadCount(2);
+    assertEquals(10, ams.computeMBPerSec(0, 0), 0);
+    assertEquals(10, ams.computeMBPerSec(2, 0), 0);
+    // merges back up: speed up
+    assertEquals(20, ams.computeMBPerSec(3, 0), 0);
+    assertEquals(40, ams.computeMBPerSec(5, 0), 0);
+    assertEquals(100, ams.computeMBPerSec(1000, 0), 0);
+
+    // slow searches: slow down, unless merges back up
+    ams.setTargetSearchLatencyMillis(50);
+    assertEquals(10, ams.computeMBPerSec(0, 40), 0);
+    assertEquals(5, ams.computeMBPerSec(0, 100), 0);
+    assertEquals(1, ams.computeMBPerSec(0, 100000), 0);
+    assertEquals(20, ams.computeMBPerSec(3, 100), 0);
+
+    ams.setMinMBPerSec(2);
+    ams.setMaxMBPerSec(30);
+    assertEquals(2, ams.computeMBPerSec(0, 100000), 0);
+    assertEquals(30, ams.computeMBPerSec(1000, 0), 0);
+  }
+
+  public void testRecordSearchLatency() {
+    AdaptiveMergeScheduler ams = new AdaptiveMergeScheduler(10);
+    ams.setTargetSearchLatencyMillis(10);
+    for (int i = 0; i < 100; i++) {
+      ams.recordSearchLatency(100);
+    }
+    assertTrue(ams.getAverageSearchLatencyMillis() > 10);
+    assertTrue(ams.getMBPerSecLimit() < 10);
+    for (int i = 0; i < 200; i++) {
+      ams.recordSearchLatency(1);
+    }
+    assertTrue(ams.getAverageSearchLatencyMillis() < 10);
+    assertEquals(10, ams.getMBPerSecLimit(), 0);
+  }
+
+  public void testConcurrentSearchLatencies() throws Exception {
+    final AdaptiveMergeScheduler ams = new AdaptiveMergeScheduler(10);
+    final Thread[] threads = new Thread[_TestUtil.nextInt(random(), 2, 4)];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 1000; j++) {
+            ams.recordSearchLatency(42);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    // the average converged to the only latency that was recorded
+    assertEquals(42, ams.getAverageSearchLatencyMillis(), 0.001);
+  }
+
+  public void testThrottlesMergeWrites() throws Exception {
+    FSDirectory dir = FSDirectory.open(_TestUtil.getTempDir("TestAdaptiveMergeScheduler"));
+    AdaptiveMergeScheduler ams = new AdaptiveMergeScheduler(1000);
+    IndexWriterConfig iwc = newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random()))
+        .setMergeScheduler(ams)
+        .setMaxBufferedDocs(10)
+        .setMergePolicy(newLogMergePolicy());
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newField("id", Integer.toString(i), StringField.TYPE_STORED));
+      doc.add(newField("body", _TestUtil.randomSimpleString(random()), TextField.TYPE_NOT_STORED));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    w.close();
+
+    // the scheduler installed its limiter on the directory
+    assertNotNull(dir.getMaxMergeWriteMBPerSec());
+    assertEquals(ams.getMBPerSecLimit(), dir.getMaxMergeWriteMBPerSec(), 0);
+    assertTrue(ams.getBytesWritten() > 0);
+    assertEquals(0, ams.getMergeBacklog());
+    assertEquals(0, ams.getCurrentMBPerSec(), 0);
+    dir.close();
+  }
+}
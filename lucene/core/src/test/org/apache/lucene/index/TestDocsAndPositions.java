@@ -367,4 +367,105 @@ public class TestDocsAndPositions extends LuceneTestCase {
     r.close();
     dir.close();
   }
+
+  /**
+   * Checks that {@link DocsEnum#read} returns the same docs and freqs as
+   * {@link DocsEnum#nextDoc}, with deletions and when mixed with
+   * {@link DocsEnum#nextDoc} and {@link DocsEnum#advance}.
+   */
+  public void testBulkRead() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter writer = new RandomIndexWriter(random(), dir);
+    int numDocs = atLeast(500);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("id", "" + i, Field.Store.NO));
+      StringBuilder builder = new StringBuilder();
+      int numTerms = _TestUtil.nextInt(random(), 1, 20);
+      for (int j = 0; j < numTerms; j++) {
+        builder.append((char) ('a' + random().nextInt(5))).append(' ');
+      }
+      doc.add(newTextField(fieldName, builder.toString(), Field.Store.NO));
+      doc.add(newStringField("docsOnly", "" + (char) ('a' + random().nextInt(3)), Field.Store.NO));
+      writer.addDocument(doc);
+      if (random().nextInt(10) == 0) {
+        writer.deleteDocuments(new Term("id", "" + random().nextInt(i + 1)));
+      }
+    }
+    DirectoryReader reader = writer.getReader();
+    writer.close();
+
+    for (AtomicReaderContext context : reader.getTopReaderContext().leaves()) {
+      AtomicReader r = context.reader();
+      for (String field : new String[] {fieldName, "docsOnly", "id"}) {
+        boolean needsFreqs = field.equals(fieldName);
+        Terms terms = r.terms(field);
+        if (terms == null) {
+          continue;
+        }
+        TermsEnum te = terms.iterator(null);
+        while (te.next() != null) {
+          DocsEnum expected = te.docs(r.getLiveDocs(), null, needsFreqs);
+          ArrayList<Integer> docs = new ArrayList<Integer>();
+          ArrayList<Integer> freqs = new ArrayList<Integer>();
+          while (expected.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+            docs.add(expected.docID());
+            freqs.add(needsFreqs ? expected.freq() : 1);
+          }
+
+          DocsEnum actual = _TestUtil.docs(random(), te, r.getLiveDocs(), null, needsFreqs);
+          int[] docBuffer = new int[_TestUtil.nextInt(random(), 1, 200)];
+          int[] freqBuffer = needsFreqs ? new int[docBuffer.length] : null;
+          int upto = 0;
+          while (true) {
+            int what = random().nextInt(10);
+            if (what < 6) {
+              int count = actual.read(docBuffer, freqBuffer);
+              assertTrue(count <= docBuffer.length);
+              assertTrue(count == docBuffer.length || upto + count == docs.size());
+              for (int i = 0; i < count; i++) {
+                assertEquals(docs.get(upto).intValue(), docBuffer[i]);
+                if (needsFreqs) {
+                  assertEquals(freqs.get(upto).intValue(), freqBuffer[i]);
+                }
+                upto++;
+              }
+              if (count == 0) {
+                break;
+              }
+            } else if (what < 8) {
+              int doc = actual.nextDoc();
+              if (upto == docs.size()) {
+                assertEquals(DocIdSetIterator.NO_MORE_DOCS, doc);
+                break;
+              }
+              assertEquals(docs.get(upto).intValue(), doc);
+              if (needsFreqs) {
+                assertEquals(freqs.get(upto).intValue(), actual.freq());
+              }
+              upto++;
+            } else {
+              int target = (upto == 0 ? 0 : docs.get(upto - 1) + 1) + random().nextInt(20);
+              int doc = actual.advance(target);
+              while (upto < docs.size() && docs.get(upto) < target) {
+                upto++;
+              }
+              if (upto == docs.size()) {
+                assertEquals(DocIdSetIterator.NO_MORE_DOCS, doc);
+                break;
+              }
+              assertEquals(docs.get(upto).intValue(), doc);
+              if (needsFreqs) {
+                assertEquals(freqs.get(upto).intValue(), actual.freq());
+              }
+              upto++;
+            }
+          }
+          assertEquals(docs.size(), upto);
+        }
+      }
+    }
+    reader.close();
+    dir.close();
+  }
 }
@@ -25,6 +25,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.analysis.*;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
@@ -34,6 +37,7 @@ import org.apache.lucene.codecs.simpletext.SimpleTextCodec;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.IntDocValuesField;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.FieldInfo.IndexOptions;
@@ -55,6 +59,7 @@ import org.apache.lucene.store.SimpleFSLockFactory;
 import org.apache.lucene.store.SingleInstanceLockFactory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.ThreadInterruptedException;
 import org.apache.lucene.util._TestUtil;
 import org.apache.lucene.util.packed.PackedInts;
@@ -1799,4 +1804,58 @@ public class TestIndexWriter extends LuceneTestCase {
     r.close();
     dir.close();
   }
+
+  // writes the parts of every flushed segment concurrently using a flush executor
+  public void testFlushExecutor() throws Exception {
+    Directory dir = newDirectory();
+    ExecutorService executor = Executors.newFixedThreadPool(_TestUtil.nextInt(random(), 1, 4),
+                                                            new NamedThreadFactory("TestIndexWriter"));
+    IndexWriterConfig conf = newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random()))
+        .setMaxBufferedDocs(_TestUtil.nextInt(random(), 2, 50))
+        .setFlushExecutor(executor);
+    IndexWriter writer = new IndexWriter(dir, conf);
+    final FlushStats stats = writer.getFlushStats();
+    assertEquals(0, stats.getFlushCount());
+
+    FieldType vectorsType = new FieldType(TextField.TYPE_NOT_STORED);
+    vectorsType.setStoreTermVectors(true);
+    vectorsType.setStoreTermVectorPositions(true);
+    final int numDocs = atLeast(300);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("id", Integer.toString(i), Field.Store.YES));
+      doc.add(newField("body", "text " + (i % 7) + " more text", vectorsType));
+      doc.add(new IntDocValuesField("dv", i));
+      writer.addDocument(doc);
+    }
+    final int numDeletes = random().nextInt(numDocs / 10);
+    for (int i = 0; i < numDeletes; i++) {
+      writer.deleteDocuments(new Term("id", Integer.toString(i * 10)));
+    }
+    writer.commit();
+    assertTrue(stats.getFlushCount() > 0);
+    assertEquals(numDocs, stats.getFlushedDocCount());
+    assertTrue(stats.getFlushNanos() > 0);
+    assertTrue(stats.getPhaseNanos(FlushStats.Phase.POSTINGS) > 0);
+    assertTrue(stats.getPhaseNanos(FlushStats.Phase.STORED_FIELDS) > 0);
+    assertTrue(stats.getPhaseNanos(FlushStats.Phase.DOC_VALUES) > 0);
+    writer.close();
+    executor.shutdown();
+    executor.awaitTermination(1000, TimeUnit.MILLISECONDS);
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    assertEquals(numDocs - numDeletes, reader.numDocs());
+    for (AtomicReaderContext ctx : reader.getTopReaderContext().leaves()) {
+      final AtomicReader leaf = ctx.reader();
+      final DocValues.Source dv = leaf.docValues("dv").getSource();
+      for (int docID = 0; docID < leaf.maxDoc(); docID++) {
+        final int id = Integer.parseInt(leaf.document(docID).get("id"));
+        assertEquals(id, dv.getInt(docID));
+        assertNotNull(leaf.getTermVectors(docID).terms("body"));
+      }
+      assertNotNull(leaf.normValues("body"));
+    }
+    reader.close();
+    dir.close();
+  }
 }
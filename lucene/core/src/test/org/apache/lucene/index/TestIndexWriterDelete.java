@@ -21,8 +21,13 @@ import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -31,6 +36,8 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TermQuery;
@@ -38,6 +45,7 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MockDirectoryWrapper;
 import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util._TestUtil;
 
 public class TestIndexWriterDelete extends LuceneTestCase {
@@ -1068,4 +1076,65 @@ public class TestIndexWriterDelete extends LuceneTestCase {
     w.close();
     dir.close();
   }
+
+  // buffered deletes resolved against many segments at once
+  public void testApplyDeletesConcurrently() throws Exception {
+    Directory dir = newDirectory();
+    ExecutorService executor = Executors.newFixedThreadPool(_TestUtil.nextInt(random(), 1, 4),
+                                                            new NamedThreadFactory("TestIndexWriterDelete"));
+    IndexWriterConfig iwc = newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random()))
+        .setMaxBufferedDocs(_TestUtil.nextInt(random(), 2, 20))
+        .setFlushExecutor(executor);
+    IndexWriter w = new IndexWriter(dir, iwc);
+
+    // id -> group of the live documents
+    final Map<String,Integer> expected = new HashMap<String,Integer>();
+    final int numIDs = atLeast(100);
+    final int numGroups = _TestUtil.nextInt(random(), 5, 20);
+    final int numOps = atLeast(1000);
+    for (int i = 0; i < numOps; i++) {
+      final int what = random().nextInt(100);
+      if (what < 3) {
+        final int group = random().nextInt(numGroups);
+        w.deleteDocuments(new Term("group", Integer.toString(group)));
+        expected.values().removeAll(Collections.singleton(group));
+      } else if (what < 5) {
+        final int group = random().nextInt(numGroups);
+        w.deleteDocuments(new TermQuery(new Term("group", Integer.toString(group))));
+        expected.values().removeAll(Collections.singleton(group));
+      } else {
+        final String id = Integer.toString(random().nextInt(numIDs));
+        final int group = random().nextInt(numGroups);
+        Document doc = new Document();
+        doc.add(newStringField("id", id, Field.Store.NO));
+        doc.add(newStringField("group", Integer.toString(group), Field.Store.NO));
+        w.updateDocument(new Term("id", id), doc);
+        expected.put(id, group);
+      }
+      if (random().nextInt(50) == 17) {
+        DirectoryReader.open(w, true).close();
+      }
+    }
+
+    DirectoryReader r = DirectoryReader.open(w, true);
+    w.close();
+    executor.shutdown();
+    executor.awaitTermination(1000, TimeUnit.MILLISECONDS);
+
+    assertEquals(expected.size(), r.numDocs());
+    IndexSearcher s = newSearcher(r);
+    for (int i = 0; i < numIDs; i++) {
+      final String id = Integer.toString(i);
+      final Integer group = expected.get(id);
+      assertEquals("id=" + id, group == null ? 0 : 1, s.search(new TermQuery(new Term("id", id)), 1).totalHits);
+      if (group != null) {
+        BooleanQuery bq = new BooleanQuery();
+        bq.add(new TermQuery(new Term("id", id)), BooleanClause.Occur.MUST);
+        bq.add(new TermQuery(new Term("group", group.toString())), BooleanClause.Occur.MUST);
+        assertEquals("id=" + id, 1, s.search(bq, 1).totalHits);
+      }
+    }
+    r.close();
+    dir.close();
+  }
 }
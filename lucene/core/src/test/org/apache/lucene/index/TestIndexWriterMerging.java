@@ -21,13 +21,20 @@ import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.IntDocValuesField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util._TestUtil;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 
 public class TestIndexWriterMerging extends LuceneTestCase
@@ -352,6 +359,53 @@ public class TestIndexWriterMerging extends LuceneTestCase
     dir.close();
   }
   
+  // merges all parts of the segments concurrently using a merge executor
+  public void testMergeExecutor() throws Exception {
+    Directory directory = newDirectory();
+    ExecutorService executor = Executors.newFixedThreadPool(_TestUtil.nextInt(random(), 1, 4),
+                                                            new NamedThreadFactory("TestIndexWriterMerging"));
+    IndexWriterConfig conf = newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random()))
+        .setMergePolicy(newLogMergePolicy())
+        .setMaxBufferedDocs(_TestUtil.nextInt(random(), 2, 20))
+        .setMergeExecutor(executor);
+    IndexWriter writer = new IndexWriter(directory, conf);
+
+    FieldType vectorsType = new FieldType(TextField.TYPE_NOT_STORED);
+    vectorsType.setStoreTermVectors(true);
+    vectorsType.setStoreTermVectorPositions(true);
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newField("id", Integer.toString(i), StringField.TYPE_STORED));
+      doc.add(newField("body", "text " + (i % 7) + " more text", vectorsType));
+      doc.add(new IntDocValuesField("dv", i));
+      writer.addDocument(doc);
+    }
+    final int numDeletes = random().nextInt(numDocs / 10);
+    for (int i = 0; i < numDeletes; i++) {
+      writer.deleteDocuments(new Term("id", Integer.toString(i * 10)));
+    }
+    writer.forceMerge(1);
+    writer.close();
+    executor.shutdown();
+    executor.awaitTermination(1000, TimeUnit.MILLISECONDS);
+
+    DirectoryReader reader = DirectoryReader.open(directory);
+    assertEquals(1, reader.getTopReaderContext().leaves().size());
+    assertEquals(numDocs - numDeletes, reader.numDocs());
+    final AtomicReader leaf = reader.getTopReaderContext().leaves().get(0).reader();
+    final DocValues.Source dv = leaf.docValues("dv").getSource();
+    for (int docID = 0; docID < leaf.maxDoc(); docID++) {
+      final int id = Integer.parseInt(leaf.document(docID).get("id"));
+      assertEquals(id, dv.getInt(docID));
+      assertNotNull(leaf.getTermVectors(docID).terms("body"));
+    }
+    assertEquals(numDocs - numDeletes, leaf.docFreq(new Term("body", "text")));
+    assertNotNull(leaf.normValues("body"));
+    reader.close();
+    directory.close();
+  }
+
   public void testNoWaitClose() throws Throwable {
     Directory directory = newDirectory();
 
@@ -0,0 +1,328 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntDocValuesField;
+import org.apache.lucene.document.LongDocValuesField;
+import org.apache.lucene.document.PackedLongDocValuesField;
+import org.apache.lucene.index.DocValues.Source;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util._TestUtil;
+
+public class TestNumericDocValuesUpdates extends LuceneTestCase {
+
+  private static Document doc(String id, long value) {
+    Document doc = new Document();
+    doc.add(newStringField("id", id, Field.Store.YES));
+    doc.add(newStringField("group", "g" + (id.hashCode() & 3), Field.Store.NO));
+    doc.add(new PackedLongDocValuesField("packed", value));
+    doc.add(new LongDocValuesField("long", value));
+    doc.add(new IntDocValuesField("int", (int) value));
+    return doc;
+  }
+
+  // Returns the value of the field for each live document, by id
+  private static Map<String,Long> values(IndexReader reader, String field) throws IOException {
+    final Map<String,Long> values = new HashMap<String,Long>();
+    for (AtomicReaderContext context : reader.getTopReaderContext().leaves()) {
+      final AtomicReader r = context.reader();
+      final DocValues docValues = r.docValues(field);
+      final Source source = docValues == null ? null : (random().nextBoolean() ? docValues.getSource() : docValues.getDirectSource());
+      final Bits liveDocs = r.getLiveDocs();
+      for (int docID = 0; docID < r.maxDoc(); docID++) {
+        if (liveDocs == null || liveDocs.get(docID)) {
+          final Long previous = values.put(r.document(docID).get("id"), source == null ? 0 : source.getInt(docID));
+          assertNull(previous);
+        }
+      }
+    }
+    return values;
+  }
+
+  private static Map<String,Long> expected(Object... idsAndValues) {
+    final Map<String,Long> expected = new HashMap<String,Long>();
+    for (int i = 0; i < idsAndValues.length; i += 2) {
+      expected.put((String) idsAndValues[i], ((Number) idsAndValues[i+1]).longValue());
+    }
+    return expected;
+  }
+
+  public void testUpdateFlushedAndBufferedDocs() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random())));
+    w.addDocument(doc("a", 1));
+    w.addDocument(doc("b", 2));
+    w.commit();
+    w.addDocument(doc("c", 3));
+
+    w.updateNumericDocValue(new Term("id", "a"), "packed", 10);
+    w.updateNumericDocValue(new Term("id", "c"), "packed", Long.MAX_VALUE);
+    w.updateNumericDocValue(new Term("id", "a"), "long", -10);
+    w.updateNumericDocValue(new Term("id", "b"), "long", Long.MIN_VALUE);
+    // no such document:
+    w.updateNumericDocValue(new Term("id", "x"), "long", 42);
+    // a document added after the update keeps its value:
+    w.updateNumericDocValue(new Term("id", "d"), "packed", 40);
+    w.addDocument(doc("d", 4));
+
+    DirectoryReader r = DirectoryReader.open(w, true);
+    assertEquals(expected("a", 10, "b", 2, "c", Long.MAX_VALUE, "d", 4), values(r, "packed"));
+    assertEquals(expected("a", -10, "b", Long.MIN_VALUE, "c", 3, "d", 4), values(r, "long"));
+    assertEquals(expected("a", 1, "b", 2, "c", 3, "d", 4), values(r, "int"));
+    r.close();
+
+    w.close();
+    r = DirectoryReader.open(dir);
+    assertEquals(expected("a", 10, "b", 2, "c", Long.MAX_VALUE, "d", 4), values(r, "packed"));
+    assertEquals(expected("a", -10, "b", Long.MIN_VALUE, "c", 3, "d", 4), values(r, "long"));
+    r.close();
+    dir.close();
+  }
+
+  public void testFieldsWhichCannotBeUpdated() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random())));
+    w.addDocument(doc("a", 1));
+    w.updateNumericDocValue(new Term("id", "a"), "int", 5);
+    w.updateNumericDocValue(new Term("id", "a"), "missing", 5);
+    w.commit();
+    DirectoryReader r = DirectoryReader.open(dir);
+    assertFalse(getOnlySegmentReader(r).getSegmentInfo().hasNumericUpdates());
+    assertEquals(expected("a", 1), values(r, "int"));
+    assertNull(getOnlySegmentReader(r).docValues("missing"));
+    r.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testLatestUpdateWins() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random())));
+    w.addDocument(doc("a", 1));
+    w.addDocument(doc("b", 2));
+    w.commit();
+    final Term group = new Term("group", "g" + ("a".hashCode() & 3));
+    w.updateNumericDocValue(new Term("id", "a"), "long", 10);
+    w.updateNumericDocValue(group, "long", 20);
+    w.updateNumericDocValue(new Term("id", "b"), "long", 30);
+    w.updateNumericDocValue(new Term("id", "a"), "long", 40);
+    DirectoryReader r = DirectoryReader.open(w, true);
+    final Map<String,Long> expected = expected("a", 40, "b", 30);
+    assertEquals(expected, values(r, "long"));
+    r.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testReopen() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random())));
+    w.addDocument(doc("a", 1));
+    w.addDocument(doc("b", 2));
+    w.commit();
+    DirectoryReader r1 = DirectoryReader.open(dir);
+
+    w.updateNumericDocValue(new Term("id", "a"), "packed", 5);
+    w.commit();
+    DirectoryReader r2 = DirectoryReader.openIfChanged(r1);
+    assertNotNull(r2);
+    assertEquals(expected("a", 1, "b", 2), values(r1, "packed"));
+    assertEquals(expected("a", 5, "b", 2), values(r2, "packed"));
+    // the segment's core is shared
+    assertSame(getOnlySegmentReader(r1).getCoreCacheKey(), getOnlySegmentReader(r2).getCoreCacheKey());
+
+    w.updateNumericDocValue(new Term("id", "b"), "packed", 6);
+    w.deleteDocuments(new Term("id", "a"));
+    w.close();
+    DirectoryReader r3 = DirectoryReader.openIfChanged(r2);
+    assertNotNull(r3);
+    assertEquals(expected("b", 6), values(r3, "packed"));
+    assertEquals(expected("a", 5, "b", 2), values(r2, "packed"));
+
+    // a new writer sees the updates and updates them again
+    w = new IndexWriter(dir, newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random())));
+    w.updateNumericDocValue(new Term("id", "b"), "packed", 7);
+    w.close();
+    DirectoryReader r4 = DirectoryReader.openIfChanged(r3);
+    assertNotNull(r4);
+    assertEquals(expected("b", 7), values(r4, "packed"));
+
+    r1.close();
+    r2.close();
+    r3.close();
+    r4.close();
+    dir.close();
+  }
+
+  public void testUpdatesAreMerged() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random()));
+    iwc.setMaxBufferedDocs(10);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final Map<String,Long> expected = new HashMap<String,Long>();
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; i++) {
+      w.addDocument(doc(Integer.toString(i), i));
+      expected.put(Integer.toString(i), (long) i);
+    }
+    w.commit();
+    for (int i = 0; i < numDocs; i += 3) {
+      w.updateNumericDocValue(new Term("id", Integer.toString(i)), "long", -i);
+      expected.put(Integer.toString(i), (long) -i);
+    }
+    if (random().nextBoolean()) {
+      w.commit();
+    }
+    w.forceMerge(1);
+    DirectoryReader r = DirectoryReader.open(w, true);
+    assertEquals(1, r.getTopReaderContext().leaves().size());
+    assertEquals(expected, values(r, "long"));
+    r.close();
+    w.close();
+
+    r = DirectoryReader.open(dir);
+    assertEquals(expected, values(r, "long"));
+    r.close();
+    dir.close();
+  }
+
+  public void testUpdatesUseRAMPerUpdatedDoc() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random())));
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; i++) {
+      w.addDocument(doc(Integer.toString(i), i));
+    }
+    w.forceMerge(1);
+    DirectoryReader r = DirectoryReader.open(w, true);
+    assertEquals(0, w.numericUpdatesBytesUsed.get());
+    final long ramSizeInBytes = w.ramSizeInBytes();
+
+    w.updateNumericDocValue(new Term("id", "7"), "long", -7);
+    DirectoryReader r2 = DirectoryReader.openIfChanged(r, w, true);
+    assertNotNull(r2);
+    final Map<String,Long> expected = values(r, "long");
+    expected.put("7", -7L);
+    assertEquals(expected, values(r2, "long"));
+    // one updated document doesn't cost a value per
+    // document, but it's counted against the RAM buffer:
+    final long bytesUsed = w.numericUpdatesBytesUsed.get();
+    assertTrue(bytesUsed > 0);
+    assertTrue("bytesUsed=" + bytesUsed, bytesUsed < numDocs);
+    assertEquals(ramSizeInBytes + bytesUsed, w.ramSizeInBytes());
+
+    r.close();
+    r2.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testUpdatesAreWrittenWhenOverRAMBuffer() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random())));
+    w.addDocument(doc("a", 1));
+    w.addDocument(doc("b", 2));
+    w.commit();
+    DirectoryReader r = DirectoryReader.open(w, true);
+    w.updateNumericDocValue(new Term("id", "a"), "long", 10);
+    DirectoryReader r2 = DirectoryReader.openIfChanged(r, w, true);
+    assertNotNull(r2);
+    assertTrue(w.numericUpdatesBytesUsed.get() > 0);
+    assertFalse(getOnlySegmentReader(r2).getSegmentInfo().hasNumericUpdates());
+
+    // the updates use more than half the RAM buffer, so
+    // applying deletes writes and drops them:
+    w.getConfig().setRAMBufferSizeMB(0.00001);
+    w.updateNumericDocValue(new Term("id", "b"), "long", 20);
+    DirectoryReader r3 = DirectoryReader.openIfChanged(r2, w, true);
+    assertNotNull(r3);
+    assertEquals(0, w.numericUpdatesBytesUsed.get());
+    assertTrue(getOnlySegmentReader(r3).getSegmentInfo().hasNumericUpdates());
+    assertEquals(expected("a", 10, "b", 20), values(r3, "long"));
+
+    // and they are read back when needed
+    w.updateNumericDocValue(new Term("id", "a"), "long", 30);
+    DirectoryReader r4 = DirectoryReader.openIfChanged(r3, w, true);
+    assertNotNull(r4);
+    assertEquals(expected("a", 30, "b", 20), values(r4, "long"));
+    assertEquals(expected("a", 10, "b", 2), values(r2, "long"));
+
+    r.close();
+    r2.close();
+    r3.close();
+    r4.close();
+    w.close();
+    r = DirectoryReader.open(dir);
+    assertEquals(expected("a", 30, "b", 20), values(r, "long"));
+    r.close();
+    dir.close();
+  }
+
+  public void testRandom() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random()));
+    iwc.setMaxBufferedDocs(_TestUtil.nextInt(random(), 2, 30));
+    if (random().nextBoolean()) {
+      // write and drop the numeric updates often
+      iwc.setRAMBufferSizeMB(0.001 * _TestUtil.nextInt(random(), 1, 10));
+    }
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+    final Map<String,Long> expected = new HashMap<String,Long>();
+    final int numIDs = _TestUtil.nextInt(random(), 10, 100);
+    final int iters = atLeast(500);
+    for (int iter = 0; iter < iters; iter++) {
+      final String id = Integer.toString(random().nextInt(numIDs));
+      final int op = random().nextInt(10);
+      if (op < 3) {
+        final long value = random().nextInt(1000);
+        w.updateDocument(new Term("id", id), doc(id, value));
+        expected.put(id, value);
+      } else if (op < 8) {
+        final long value = random().nextBoolean() ? random().nextLong() : random().nextInt(100);
+        w.w.updateNumericDocValue(new Term("id", id), "long", value);
+        if (expected.containsKey(id)) {
+          expected.put(id, value);
+        }
+      } else if (op < 9) {
+        w.deleteDocuments(new Term("id", id));
+        expected.remove(id);
+      } else {
+        final DirectoryReader r = w.getReader();
+        assertEquals(expected, values(r, "long"));
+        r.close();
+      }
+      if (random().nextInt(100) == 7) {
+        w.forceMerge(_TestUtil.nextInt(random(), 1, 3));
+      }
+    }
+    w.close();
+    final DirectoryReader r = DirectoryReader.open(dir);
+    assertEquals(expected, values(r, "long"));
+    r.close();
+    dir.close();
+  }
+}
@@ -18,6 +18,9 @@ package org.apache.lucene.index;
  */
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.document.Document;
@@ -28,6 +31,7 @@ import org.apache.lucene.util.Constants;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.InfoStream;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util._TestUtil;
 import org.apache.lucene.util.packed.PackedInts;
 
@@ -78,11 +82,27 @@ public class TestSegmentMerger extends LuceneTestCase {
   }
 
   public void testMerge() throws IOException {
+    doTestMerge(null);
+  }
+
+  public void testMergeConcurrently() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(_TestUtil.nextInt(random(), 1, 4),
+                                                            new NamedThreadFactory("TestSegmentMerger"));
+    try {
+      doTestMerge(executor);
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(1000, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void doTestMerge(ExecutorService executor) throws IOException {
     final Codec codec = Codec.getDefault();
     final SegmentInfo si = new SegmentInfo(mergedDir, Constants.LUCENE_MAIN_VERSION, mergedSegment, -1, false, codec, null, null);
 
     SegmentMerger merger = new SegmentMerger(si, InfoStream.getDefault(), mergedDir, IndexWriterConfig.DEFAULT_TERM_INDEX_INTERVAL,
-                                             MergeState.CheckAbort.NONE, null, new FieldInfos.FieldNumbers(), newIOContext(random()));
+                                             MergeState.CheckAbort.NONE, null, new FieldInfos.FieldNumbers(), newIOContext(random()),
+                                             executor);
     merger.add(reader1);
     merger.add(reader2);
     MergeState mergeState = merger.merge();
@@ -0,0 +1,96 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.ByteBlockPool;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.RecyclingByteBlockAllocator;
+import org.apache.lucene.util._TestUtil;
+
+public class TestSharedByteBlockAllocator extends LuceneTestCase {
+
+  public void testRecycleAcrossFlushes() throws Exception {
+    final RecyclingByteBlockAllocator allocator = new RecyclingByteBlockAllocator(ByteBlockPool.BYTE_BLOCK_SIZE,
+        _TestUtil.nextInt(random(), 1, 100));
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random()));
+    iwc.setByteBlockAllocator(allocator);
+    iwc.setMaxBufferedDocs(_TestUtil.nextInt(random(), 2, 50));
+    iwc.setRAMBufferSizeMB(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    assertSame(allocator, w.getConfig().getByteBlockAllocator());
+
+    final FieldType vectors = new FieldType(TextField.TYPE_NOT_STORED);
+    vectors.setStoreTermVectors(true);
+    vectors.setStoreTermVectorPositions(true);
+    final int numDocs = atLeast(500);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("id", Integer.toString(i), Field.Store.NO));
+      doc.add(newTextField("body", _TestUtil.randomSimpleString(random(), 200) + " common", Field.Store.NO));
+      doc.add(new Field("tv", "some vectors " + i, vectors));
+      w.addDocument(doc);
+      if (random().nextInt(100) == 17) {
+        w.commit();
+      }
+    }
+    w.close();
+
+    // all blocks went back to the allocator
+    assertTrue(allocator.numBufferedBlocks() > 0);
+    assertEquals(allocator.numBufferedBlocks() * (long) ByteBlockPool.BYTE_BLOCK_SIZE, allocator.bytesUsed());
+
+    DirectoryReader r = DirectoryReader.open(dir);
+    assertEquals(numDocs, r.numDocs());
+    assertEquals(numDocs, r.docFreq(new Term("body", "common")));
+    for (int i = 0; i < numDocs; i += 1 + random().nextInt(10)) {
+      assertEquals(1, r.docFreq(new Term("id", Integer.toString(i))));
+      assertEquals(1, r.docFreq(new Term("tv", Integer.toString(i))));
+    }
+    r.close();
+    dir.close();
+  }
+
+  public void testRecyclingIntBlockAllocator() {
+    final int max = _TestUtil.nextInt(random(), 1, 20);
+    final RecyclingIntBlockAllocator allocator = new RecyclingIntBlockAllocator(max);
+    final int[][] blocks = new int[atLeast(30)][];
+    for (int i = 0; i < blocks.length; i++) {
+      blocks[i] = allocator.getIntBlock();
+      assertEquals(DocumentsWriterPerThread.INT_BLOCK_SIZE, blocks[i].length);
+    }
+    final int[] first = blocks[0];
+    allocator.recycleIntBlocks(blocks, 0, blocks.length);
+    assertEquals(max, allocator.numBufferedBlocks());
+    for (int[] block : blocks) {
+      assertNull(block);
+    }
+    boolean reused = false;
+    for (int i = 0; i < max; i++) {
+      reused |= allocator.getIntBlock() == first;
+    }
+    assertTrue(reused);
+    assertEquals(0, allocator.numBufferedBlocks());
+  }
+}
@@ -0,0 +1,137 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.analysis.MockTokenizer;
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util._TestUtil;
+
+/**
+ * Tests that {@link BooleanQuery#setUseBlockMaxWAND(boolean)} finds
+ * the same top hits as scoring all matches.
+ */
+public class TestBlockMaxWAND extends LuceneTestCase {
+  private static final int NUM_TERMS = 50;
+
+  public void testLucene40() throws Exception {
+    IndexWriterConfig iwc = newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random(), MockTokenizer.WHITESPACE, false));
+    iwc.setCodec(Codec.forName("Lucene40"));
+    doTestRandom(iwc);
+  }
+
+  public void testRandomCodec() throws Exception {
+    doTestRandom(newIndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random(), MockTokenizer.WHITESPACE, false)));
+  }
+
+  private void doTestRandom(IndexWriterConfig iwc) throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+    int numDocs = atLeast(2000);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newTextField("body", randomText(), Field.Store.NO));
+      doc.add(newStringField("id", Integer.toString(i), Field.Store.NO));
+      w.addDocument(doc);
+      if (random().nextInt(50) == 0) {
+        w.deleteDocuments(new Term("id", Integer.toString(random().nextInt(i + 1))));
+      }
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+    switch (random().nextInt(3)) {
+      case 0: searcher.setSimilarity(new DefaultSimilarity()); break;
+      case 1: searcher.setSimilarity(new BM25Similarity()); break;
+      default: break; // random per-field similarities
+    }
+
+    int numQueries = atLeast(50);
+    for (int i = 0; i < numQueries; i++) {
+      BooleanQuery query = new BooleanQuery(random().nextInt(5) == 0);
+      int numClauses = _TestUtil.nextInt(random(), 2, 6);
+      for (int j = 0; j < numClauses; j++) {
+        TermQuery term = new TermQuery(new Term("body", randomTerm()));
+        if (random().nextInt(4) == 0) {
+          term.setBoost(1 + random().nextInt(5));
+        }
+        query.add(term, Occur.SHOULD);
+      }
+      BooleanQuery wandQuery = query.clone();
+      wandQuery.setUseBlockMaxWAND(true);
+      assertFalse(query.equals(wandQuery));
+
+      int numHits = _TestUtil.nextInt(random(), 1, 20);
+      TopDocs expected = searcher.search(query, numHits);
+      TopDocs actual = searcher.search(wandQuery, numHits);
+      assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+      assertTrue(actual.totalHits <= expected.totalHits);
+
+      Map<Integer,Float> allScores = new HashMap<Integer,Float>();
+      for (ScoreDoc hit : searcher.search(query, Math.max(1, reader.maxDoc())).scoreDocs) {
+        allScores.put(hit.doc, hit.score);
+      }
+      for (int j = 0; j < expected.scoreDocs.length; j++) {
+        assertEquals(expected.scoreDocs[j].score, actual.scoreDocs[j].score, delta(expected.scoreDocs[j].score));
+        Float score = allScores.get(actual.scoreDocs[j].doc);
+        assertNotNull(score);
+        assertEquals(score.floatValue(), actual.scoreDocs[j].score, delta(score));
+      }
+
+      // other collectors see all matches
+      TotalHitCountCollector counter = new TotalHitCountCollector();
+      searcher.search(wandQuery, counter);
+      assertEquals(expected.totalHits, counter.getTotalHits());
+    }
+    reader.close();
+    dir.close();
+  }
+
+  private static float delta(float score) {
+    return Math.max(1e-6f, Math.abs(score) * 1e-5f);
+  }
+
+  // skewed, so that some terms are frequent and occur many times per doc
+  private static String randomTerm() {
+    final double r = random().nextDouble();
+    return "t" + (int) (NUM_TERMS * r * r * r);
+  }
+
+  private static String randomText() {
+    StringBuilder sb = new StringBuilder();
+    int length = _TestUtil.nextInt(random(), 1, 40);
+    for (int i = 0; i < length; i++) {
+      sb.append(randomTerm()).append(' ');
+    }
+    return sb.toString();
+  }
+}
@@ -125,6 +125,105 @@ public class TestBooleanScorer extends LuceneTestCase
     directory.close();
   }
 
+  // a scorer over a fixed list of docs, whose score is the doc ID
+  private static Scorer docsScorer(Weight weight, final int[] docs) {
+    return new Scorer(weight) {
+      private int i = -1;
+      @Override public float score() { return docs[i]; }
+      @Override public int docID() { return i < 0 ? -1 : (i < docs.length ? docs[i] : NO_MORE_DOCS); }
+      @Override public int nextDoc() { ++i; return docID(); }
+      @Override public int advance(int target) {
+        while (nextDoc() < target) {}
+        return docID();
+      }
+    };
+  }
+
+  public void testWindowsAndMax() throws Exception {
+    Directory directory = newDirectory();
+    RandomIndexWriter writer = new RandomIndexWriter(random(), directory);
+    writer.commit();
+    IndexReader ir = writer.getReader();
+    writer.close();
+    IndexSearcher searcher = newSearcher(ir);
+    BooleanWeight weight = (BooleanWeight) new BooleanQuery(true).createWeight(searcher);
+
+    // docs spread over several windows, matched by one or both scorers
+    final int maxDoc = 5 * BooleanScorer.BucketTable.SIZE;
+    final List<Integer> docs1 = new ArrayList<Integer>(), docs2 = new ArrayList<Integer>();
+    final int[] expectedCoords = new int[maxDoc];
+    for (int doc = 0; doc < maxDoc; doc++) {
+      if (random().nextInt(5) == 0) {
+        docs1.add(doc);
+        expectedCoords[doc]++;
+      }
+      if (random().nextInt(7) == 0) {
+        docs2.add(doc);
+        expectedCoords[doc]++;
+      }
+    }
+    final int minShouldMatch = random().nextInt(3);
+    Scorer[] scorers = new Scorer[] {docsScorer(weight, toArray(docs1)), docsScorer(weight, toArray(docs2))};
+    BooleanScorer bs = new BooleanScorer(weight, true, minShouldMatch, Arrays.asList(scorers), null, scorers.length);
+
+    final List<Integer> hits = new ArrayList<Integer>();
+    Collector collector = new Collector() {
+      Scorer scorer;
+      @Override
+      public void setScorer(Scorer scorer) {
+        this.scorer = scorer;
+      }
+
+      @Override
+      public void collect(int doc) throws IOException {
+        assertEquals(doc, scorer.docID());
+        assertEquals(expectedCoords[doc], (int) scorer.freq());
+        assertEquals(expectedCoords[doc] * doc, scorer.score(), 0f);
+        hits.add(doc);
+      }
+
+      @Override
+      public void setNextReader(AtomicReaderContext context) {
+      }
+
+      @Override
+      public boolean acceptsDocsOutOfOrder() {
+        return true;
+      }
+    };
+
+    // collect in chunks which do not match windows
+    int max = 0;
+    boolean more = true;
+    while (more) {
+      max += random().nextInt(3 * BooleanScorer.BucketTable.SIZE / 2);
+      final int previousHits = hits.size();
+      more = bs.score(collector, max, -1);
+      for (int i = previousHits; i < hits.size(); i++) {
+        assertTrue(hits.get(i) < max);
+      }
+    }
+
+    final List<Integer> expected = new ArrayList<Integer>();
+    for (int doc = 0; doc < maxDoc; doc++) {
+      if (expectedCoords[doc] > 0 && expectedCoords[doc] >= minShouldMatch) {
+        expected.add(doc);
+      }
+    }
+    // docs are collected in order
+    assertEquals(expected, hits);
+    ir.close();
+    directory.close();
+  }
+
+  private static int[] toArray(List<Integer> list) {
+    final int[] array = new int[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+
   public void testMoreThan32ProhibitedClauses() throws Exception {
     final Directory d = newDirectory();
     final RandomIndexWriter w = new RandomIndexWriter(random(), d);
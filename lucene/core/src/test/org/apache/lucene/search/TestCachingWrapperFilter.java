@@ -26,6 +26,7 @@ import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.SegmentReader;
 import org.apache.lucene.index.SerialMergeScheduler;
 import org.apache.lucene.index.SlowCompositeReaderWrapper;
 import org.apache.lucene.index.Term;
@@ -33,6 +34,8 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.SortedVIntList;
+import org.apache.lucene.util.WAHDocIdSet;
 import org.apache.lucene.util._TestUtil;
 
 public class TestCachingWrapperFilter extends LuceneTestCase {
@@ -299,6 +302,132 @@ public class TestCachingWrapperFilter extends LuceneTestCase {
     dir.close();
   }
 
+  public void testCompressSparseSets() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter writer = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("id", Integer.toString(i), Field.Store.NO));
+      doc.add(newStringField("mod", Integer.toString(i % 100), Field.Store.NO));
+      writer.addDocument(doc);
+    }
+    writer.forceMerge(1);
+    IndexReader reader = writer.getReader();
+    writer.close();
+    AtomicReaderContext context = reader.getTopReaderContext().leaves().get(0);
+
+    FilterCache cache = new FilterCache(Long.MAX_VALUE);
+
+    // one doc in a hundred: compressed
+    Filter sparse = new QueryWrapperFilter(new TermQuery(new Term("mod", "42")));
+    DocIdSet cached = new CachingWrapperFilter(sparse, false, cache).getDocIdSet(context, null);
+    assertTrue(cached instanceof SortedVIntList);
+    assertSameDocs(sparse.getDocIdSet(context, null), cached);
+
+    // but not without a FilterCache
+    assertTrue(new CachingWrapperFilter(sparse).getDocIdSet(context, null) instanceof FixedBitSet);
+
+    // all docs: a single run of 1s
+    Filter all = new QueryWrapperFilter(new MatchAllDocsQuery());
+    cached = new CachingWrapperFilter(all, false, cache).getDocIdSet(context, null);
+    assertTrue(cached instanceof WAHDocIdSet);
+    assertSameDocs(all.getDocIdSet(context, null), cached);
+
+    // random docs with no runs: bit set
+    final FixedBitSet denseBits = new FixedBitSet(context.reader().maxDoc());
+    for (int i = 0; i < denseBits.length(); i += 2) {
+      denseBits.set(Math.min(i + random().nextInt(2), denseBits.length() - 1));
+    }
+    Filter dense = new Filter() {
+      @Override
+      public DocIdSet getDocIdSet(AtomicReaderContext context, Bits acceptDocs) {
+        return denseBits;
+      }
+    };
+    cached = new CachingWrapperFilter(dense, false, cache).getDocIdSet(context, null);
+    assertTrue(cached instanceof FixedBitSet);
+    assertSameDocs(denseBits, cached);
+
+    // a sparse bit set returned by a filter is compressed too
+    final FixedBitSet bits = new FixedBitSet(context.reader().maxDoc());
+    bits.set(3);
+    Filter bitsFilter = new Filter() {
+      @Override
+      public DocIdSet getDocIdSet(AtomicReaderContext context, Bits acceptDocs) {
+        return bits;
+      }
+    };
+    cached = new CachingWrapperFilter(bitsFilter, false, cache).getDocIdSet(context, null);
+    assertTrue(cached instanceof SortedVIntList);
+    assertSameDocs(bits, cached);
+
+    reader.close();
+    dir.close();
+  }
+
+  private static void assertSameDocs(DocIdSet expected, DocIdSet actual) throws IOException {
+    DocIdSetIterator expectedIt = expected.iterator();
+    DocIdSetIterator actualIt = actual.iterator();
+    int doc;
+    while ((doc = expectedIt.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+      assertEquals(doc, actualIt.nextDoc());
+    }
+    assertEquals(DocIdSetIterator.NO_MORE_DOCS, actualIt.nextDoc());
+  }
+
+  public void testSharedCache() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter writer = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(500);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("mod", Integer.toString(i % 50), Field.Store.NO));
+      writer.addDocument(doc);
+    }
+    writer.forceMerge(1);
+    DirectoryReader reader = writer.getReader();
+    writer.close();
+    AtomicReaderContext context = reader.getTopReaderContext().leaves().get(0);
+
+    // equal filters share entries
+    FilterCache cache = new FilterCache(1024 * 1024);
+    CachingWrapperFilter cacher1 = new CachingWrapperFilter(new QueryWrapperFilter(new TermQuery(new Term("mod", "7"))), false, cache);
+    CachingWrapperFilter cacher2 = new CachingWrapperFilter(new QueryWrapperFilter(new TermQuery(new Term("mod", "7"))), false, cache);
+    DocIdSet set1 = cacher1.getDocIdSet(context, context.reader().getLiveDocs());
+    DocIdSet set2 = cacher2.getDocIdSet(context, context.reader().getLiveDocs());
+    assertEquals(1, cacher1.missCount);
+    assertEquals(0, cacher2.missCount);
+    assertEquals(1, cacher2.hitCount);
+    assertEquals(1, cache.size());
+    assertSameDocs(set1, set2);
+    assertTrue(cache.ramBytesUsed() > 0);
+
+    // the budget is enforced by evicting the least recently used sets
+    long setSize = cache.ramBytesUsed();
+    cache = new FilterCache(10 * setSize);
+    CachingWrapperFilter first = new CachingWrapperFilter(new QueryWrapperFilter(new TermQuery(new Term("mod", "0"))), false, cache);
+    first.getDocIdSet(context, null);
+    for (int i = 1; i < 50; i++) {
+      new CachingWrapperFilter(new QueryWrapperFilter(new TermQuery(new Term("mod", Integer.toString(i)))), false, cache)
+        .getDocIdSet(context, null);
+      // keep the first one hot
+      first.getDocIdSet(context, null);
+      assertTrue(cache.ramBytesUsed() <= cache.getMaxRamBytes());
+    }
+    assertTrue(cache.getEvictionCount() > 0);
+    assertTrue(cache.size() < 50);
+    assertEquals(1, first.missCount);
+
+    // entries are dropped when the segment is closed
+    reader.close();
+    if (context.reader() instanceof SegmentReader) {
+      assertEquals(0, cache.size());
+      assertEquals(0, cache.ramBytesUsed());
+    }
+    dir.close();
+  }
+
   private static DirectoryReader refreshReader(DirectoryReader reader) throws IOException {
     DirectoryReader oldReader = reader;
     reader = DirectoryReader.openIfChanged(reader);
@@ -0,0 +1,204 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestConjunctionScorer extends LuceneTestCase {
+
+  /** Iterates over a sorted array of docs and counts how it is moved. */
+  private static class ArrayScorer extends Scorer {
+    final int[] docs;
+    final int[] matches; // null if this scorer has no two-phase view
+    int i = -1, doc = -1;
+    int nextDocCalls, advanceCalls, matchesCalls;
+
+    ArrayScorer(int[] docs, int[] matches) {
+      super(null);
+      this.docs = docs;
+      this.matches = matches;
+    }
+
+    private int moveTo(int i) {
+      this.i = i;
+      return doc = i < docs.length ? docs[i] : NO_MORE_DOCS;
+    }
+
+    private int nextApproximation() {
+      nextDocCalls++;
+      return moveTo(i + 1);
+    }
+
+    private int advanceApproximation(int target) {
+      advanceCalls++;
+      int j = i + 1;
+      while (j < docs.length && docs[j] < target) {
+        j++;
+      }
+      return moveTo(j);
+    }
+
+    private boolean matches() {
+      matchesCalls++;
+      return Arrays.binarySearch(matches, doc) >= 0;
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      int doc = nextApproximation();
+      while (matches != null && doc != NO_MORE_DOCS && !matches()) {
+        doc = nextApproximation();
+      }
+      return doc;
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      int doc = advanceApproximation(target);
+      while (matches != null && doc != NO_MORE_DOCS && !matches()) {
+        doc = nextApproximation();
+      }
+      return doc;
+    }
+
+    @Override
+    public long cost() {
+      return docs.length;
+    }
+
+    @Override
+    public float score() {
+      return 1f;
+    }
+
+    @Override
+    public TwoPhaseIterator asTwoPhaseIterator() {
+      if (matches == null) {
+        return null;
+      }
+      return new TwoPhaseIterator(new DocIdSetIterator() {
+        @Override
+        public int docID() {
+          return doc;
+        }
+
+        @Override
+        public int nextDoc() {
+          return nextApproximation();
+        }
+
+        @Override
+        public int advance(int target) {
+          return advanceApproximation(target);
+        }
+
+        @Override
+        public long cost() {
+          return docs.length;
+        }
+      }) {
+        @Override
+        public boolean matches() {
+          return ArrayScorer.this.matches();
+        }
+      };
+    }
+  }
+
+  private static int[] range(int from, int to, int step) {
+    int[] docs = new int[(to - from + step - 1) / step];
+    for (int i = 0; i < docs.length; i++) {
+      docs[i] = from + i * step;
+    }
+    return docs;
+  }
+
+  private static List<Integer> collect(Scorer scorer) throws IOException {
+    List<Integer> docs = new ArrayList<Integer>();
+    for (int doc = scorer.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = scorer.nextDoc()) {
+      docs.add(doc);
+    }
+    return docs;
+  }
+
+  public void testCheapestClauseLeads() throws Exception {
+    ArrayScorer dense = new ArrayScorer(range(0, 1000, 1), null);
+    ArrayScorer medium = new ArrayScorer(range(0, 1000, 10), null);
+    ArrayScorer sparse = new ArrayScorer(new int[] { 50, 500, 999 }, null);
+    // the clauses are given in decreasing cost order
+    ConjunctionScorer conjunction = new ConjunctionScorer(null, 1f, dense, medium, sparse);
+    assertEquals(3, conjunction.cost());
+    assertEquals(Arrays.asList(50, 500), collect(conjunction));
+
+    // the sparse clause leads: the others are only advanced to its docs
+    assertEquals(4, sparse.nextDocCalls + sparse.advanceCalls);
+    assertEquals(0, medium.nextDocCalls);
+    assertEquals(0, dense.nextDocCalls);
+    assertTrue(medium.advanceCalls <= 3);
+    assertTrue(dense.advanceCalls <= 2);
+  }
+
+  public void testTwoPhaseOnlyVerifiesCommonDocs() throws Exception {
+    // approximation on all even docs, but only multiples of 4 match
+    ArrayScorer twoPhase = new ArrayScorer(range(0, 1000, 2), range(0, 1000, 4));
+    ArrayScorer sparse = new ArrayScorer(new int[] { 1, 4, 6, 8, 501, 996 }, null);
+    ConjunctionScorer conjunction = new ConjunctionScorer(null, 1f, twoPhase, sparse);
+    assertEquals(Arrays.asList(4, 8, 996), collect(conjunction));
+    // matches() only ran on 4, 6, 8 and 996
+    assertEquals(4, twoPhase.matchesCalls);
+  }
+
+  public void testTwoPhaseView() throws Exception {
+    ArrayScorer twoPhase = new ArrayScorer(range(0, 1000, 2), range(0, 1000, 4));
+    ArrayScorer other = new ArrayScorer(range(0, 1000, 3), null);
+    ConjunctionScorer conjunction = new ConjunctionScorer(null, 1f, twoPhase, other);
+    TwoPhaseIterator view = conjunction.asTwoPhaseIterator();
+    assertNotNull(view);
+    List<Integer> approximated = new ArrayList<Integer>();
+    List<Integer> matched = new ArrayList<Integer>();
+    DocIdSetIterator approximation = view.approximation();
+    for (int doc = approximation.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = approximation.nextDoc()) {
+      assertEquals(doc, conjunction.docID());
+      approximated.add(doc);
+      if (view.matches()) {
+        matched.add(doc);
+      }
+    }
+    for (int i = 0; i < approximated.size(); i++) {
+      assertEquals(6 * i, approximated.get(i).intValue());
+    }
+    for (int i = 0; i < matched.size(); i++) {
+      assertEquals(12 * i, matched.get(i).intValue());
+    }
+    assertEquals(1000 / 12 + 1, matched.size());
+
+    // without any two-phase clause, there is no two-phase view
+    assertNull(new ConjunctionScorer(null, 1f, new ArrayScorer(range(0, 10, 1), null),
+        new ArrayScorer(range(0, 10, 2), null)).asTwoPhaseIterator());
+  }
+}
@@ -425,4 +425,197 @@ public class TestFieldCache extends LuceneTestCase {
     }
     assertFalse(failed.get());
   }
+
+  public void testRamBytesUsed() throws Exception {
+    final FieldCache cache = FieldCache.DEFAULT;
+    cache.purgeAllCaches();
+    try {
+      assertEquals(0, cache.ramBytesUsed());
+      cache.getInts(reader, "theInt", false);
+      cache.getTermsIndex(reader, "theRandomUnicodeString");
+      assertTrue(cache.ramBytesUsed() >= 4 * NUM_DOCS);
+      long sum = 0;
+      for (FieldCache.CacheEntry entry : cache.getCacheEntries()) {
+        assertTrue(entry.ramBytesUsed() >= 0);
+        sum += entry.ramBytesUsed();
+      }
+      // the entries of the null and the default parser share their value
+      assertEquals(sum, cache.ramBytesUsed());
+      cache.purge(reader);
+      assertEquals(0, cache.ramBytesUsed());
+    } finally {
+      cache.purgeAllCaches();
+    }
+  }
+
+  private static boolean isCached(FieldCache cache, String field) {
+    for (FieldCache.CacheEntry entry : cache.getCacheEntries()) {
+      if (entry.getFieldName().equals(field)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public void testMaxRamBytes() throws Exception {
+    final FieldCache cache = FieldCache.DEFAULT;
+    cache.purgeAllCaches();
+    try {
+      final int[] ints = cache.getInts(reader, "theInt", false);
+      final long intsBytes = cache.ramBytesUsed();
+      cache.setMaxRamBytes(intsBytes * 5 / 2);
+      assertEquals(intsBytes * 5 / 2, cache.getMaxRamBytes());
+      assertTrue(isCached(cache, "theInt"));
+
+      // ints are the least recently used value
+      final long[] longs = cache.getLongs(reader, "theLong", false);
+      assertTrue(cache.ramBytesUsed() <= cache.getMaxRamBytes());
+      assertFalse(isCached(cache, "theInt"));
+      assertTrue(isCached(cache, "theLong"));
+
+      // evicted values are loaded again
+      assertTrue(Arrays.equals(ints, cache.getInts(reader, "theInt", false)));
+      assertTrue(cache.ramBytesUsed() <= cache.getMaxRamBytes());
+      assertTrue(isCached(cache, "theInt"));
+      assertFalse(isCached(cache, "theLong"));
+
+      // values larger than the budget are not cached
+      cache.setMaxRamBytes(1);
+      assertEquals(0, cache.ramBytesUsed());
+      assertTrue(Arrays.equals(longs, cache.getLongs(reader, "theLong", false)));
+      assertEquals(0, cache.ramBytesUsed());
+      assertEquals(0, cache.getCacheEntries().length);
+    } finally {
+      cache.setMaxRamBytes(0);
+      cache.purgeAllCaches();
+    }
+  }
+
+  public void testConcurrentLoading() throws Exception {
+    final FieldCache cache = FieldCache.DEFAULT;
+    cache.purgeAllCaches();
+    if (random().nextBoolean()) {
+      cache.setMaxRamBytes(_TestUtil.nextInt(random(), 1, 16 * NUM_DOCS));
+    }
+    try {
+      final String[] fields = new String[] {"theLong", "theDouble", "theByte", "theShort", "theInt", "theFloat"};
+      final int numThreads = _TestUtil.nextInt(random(), 2, 6);
+      final Thread[] threads = new Thread[numThreads];
+      final AtomicBoolean failed = new AtomicBoolean();
+      final CyclicBarrier start = new CyclicBarrier(numThreads);
+      for (int t = 0; t < numThreads; t++) {
+        final int offset = t;
+        threads[t] = new Thread() {
+          @Override
+          public void run() {
+            try {
+              start.await();
+              for (int iter = 0; iter < 20; iter++) {
+                final String field = fields[(offset + iter) % fields.length];
+                final Object values;
+                if (field.equals("theLong")) {
+                  values = cache.getLongs(reader, field, false);
+                  assertEquals(Long.MAX_VALUE, ((long[]) values)[0]);
+                } else if (field.equals("theDouble")) {
+                  values = cache.getDoubles(reader, field, false);
+                  assertEquals(Double.MAX_VALUE, ((double[]) values)[0], 0d);
+                } else if (field.equals("theByte")) {
+                  values = cache.getBytes(reader, field, false);
+                  assertEquals(Byte.MAX_VALUE, ((byte[]) values)[0]);
+                } else if (field.equals("theShort")) {
+                  values = cache.getShorts(reader, field, false);
+                  assertEquals(Short.MAX_VALUE, ((short[]) values)[0]);
+                } else if (field.equals("theInt")) {
+                  values = cache.getInts(reader, field, false);
+                  assertEquals(Integer.MAX_VALUE, ((int[]) values)[0]);
+                } else {
+                  values = cache.getFloats(reader, field, false);
+                  assertEquals(Float.MAX_VALUE, ((float[]) values)[0], 0f);
+                }
+              }
+            } catch (Throwable t) {
+              failed.set(true);
+              throw new RuntimeException(t);
+            }
+          }
+        };
+        threads[t].start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      assertFalse(failed.get());
+      if (cache.getMaxRamBytes() > 0) {
+        assertTrue(cache.ramBytesUsed() <= cache.getMaxRamBytes());
+      }
+    } finally {
+      cache.setMaxRamBytes(0);
+      cache.purgeAllCaches();
+    }
+  }
+
+  public void testPurgeWhileLoading() throws Exception {
+    final FieldCacheImpl cache = (FieldCacheImpl) FieldCache.DEFAULT;
+    cache.purgeAllCaches();
+    try {
+      final String[] fields = new String[] {"theLong", "theDouble", "theInt", "theFloat"};
+      final int numThreads = _TestUtil.nextInt(random(), 2, 4);
+      final Thread[] threads = new Thread[numThreads];
+      final AtomicBoolean failed = new AtomicBoolean();
+      final CyclicBarrier start = new CyclicBarrier(numThreads + 1);
+      for (int t = 0; t < numThreads; t++) {
+        final int offset = t;
+        threads[t] = new Thread() {
+          @Override
+          public void run() {
+            try {
+              start.await();
+              for (int iter = 0; iter < 500; iter++) {
+                final String field = fields[(offset + iter) % fields.length];
+                if (field.equals("theLong")) {
+                  cache.getLongs(reader, field, false);
+                } else if (field.equals("theDouble")) {
+                  cache.getDoubles(reader, field, false);
+                } else if (field.equals("theInt")) {
+                  cache.getInts(reader, field, false);
+                } else {
+                  cache.getFloats(reader, field, false);
+                }
+              }
+            } catch (Throwable t) {
+              failed.set(true);
+              throw new RuntimeException(t);
+            }
+          }
+        };
+        threads[t].start();
+      }
+      start.await();
+      // without a budget, nothing resyncs the counter
+      boolean alive = true;
+      while (alive) {
+        cache.purge(reader);
+        alive = false;
+        for (Thread thread : threads) {
+          alive |= thread.isAlive();
+        }
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      assertFalse(failed.get());
+
+      // the counter, not resynced by ramBytesUsed(), matches the cached values
+      long sum = 0;
+      for (FieldCache.CacheEntry entry : cache.getCacheEntries()) {
+        sum += entry.ramBytesUsed();
+      }
+      assertEquals(sum, cache.ramBytesUsed.get());
+      cache.purge(reader);
+      assertEquals(0, cache.ramBytesUsed.get());
+    } finally {
+      cache.setMaxRamBytes(0);
+      cache.purgeAllCaches();
+    }
+  }
 }
@@ -30,7 +30,9 @@ import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.DocIdBitSet;
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.OpenBitSet;
 
 /**
  * FilteredQuery JUnit tests.
@@ -294,6 +296,108 @@ public class TestFilteredQuery extends LuceneTestCase {
     QueryUtils.check(random(), query, searcher);    
   }
   
+  public void testFilterStrategies() throws Exception {
+    final FilteredQuery.FilterStrategy[] strategies = new FilteredQuery.FilterStrategy[] {
+      FilteredQuery.DEFAULT_FILTER_STRATEGY,
+      FilteredQuery.LEAP_FROG_FILTER_STRATEGY,
+      FilteredQuery.LEAP_FROG_FILTER_FIRST_STRATEGY,
+      FilteredQuery.LEAP_FROG_QUERY_FIRST_STRATEGY,
+      FilteredQuery.QUERY_FIRST_FILTER_STRATEGY,
+      FilteredQuery.RANDOM_ACCESS_FILTER_STRATEGY
+    };
+    final PhraseQuery phrase = new PhraseQuery();
+    phrase.add(new Term("field", "two"));
+    phrase.add(new Term("field", "three"));
+    final Filter[] filters = new Filter[] {
+      filter, // random-access bits
+      new QueryWrapperFilter(new TermQuery(new Term("field", "four"))) // iterator only
+    };
+    final int[] expectedPhraseHits = new int[] { 1, 2 };
+    for (FilteredQuery.FilterStrategy strategy : strategies) {
+      Query filteredquery = new FilteredQuery(query, filter, strategy);
+      ScoreDoc[] hits = searcher.search(filteredquery, null, 1000).scoreDocs;
+      assertEquals(strategy.toString(), 1, hits.length);
+      assertEquals(strategy.toString(), 1, hits[0].doc);
+      QueryUtils.check(random(), filteredquery, searcher);
+
+      for (int i = 0; i < filters.length; i++) {
+        filteredquery = new FilteredQuery(phrase, filters[i], strategy);
+        assertEquals(strategy.toString(), expectedPhraseHits[i], searcher.search(filteredquery, null, 1000).totalHits);
+        QueryUtils.check(random(), filteredquery, searcher);
+      }
+    }
+  }
+
+  public void testAdaptiveFilterStrategy() throws Exception {
+    final AtomicReaderContext context = reader.getTopReaderContext().leaves().get(0);
+    assertEquals(4, context.reader().maxDoc());
+    final FilteredQuery.FilterStrategy strategy = new FilteredQuery.AdaptiveFilterStrategy(0.5f);
+    // no random access
+    assertSame(FilteredQuery.LEAP_FROG_FILTER_STRATEGY,
+        strategy.select(context, new QueryWrapperFilter(query).getDocIdSet(context, null)));
+    // sparse filter
+    assertSame(FilteredQuery.LEAP_FROG_FILTER_STRATEGY, strategy.select(context, docIdSetWithCost(1)));
+    // dense filter
+    assertSame(FilteredQuery.RANDOM_ACCESS_FILTER_STRATEGY, strategy.select(context, docIdSetWithCost(2)));
+    // unknown cost, the filter accepts docs < 100
+    assertSame(FilteredQuery.RANDOM_ACCESS_FILTER_STRATEGY, strategy.select(context, docIdSetWithCost(Long.MAX_VALUE)));
+  }
+
+  public void testAdaptiveFilterStrategyOnBitSets() throws Exception {
+    final AtomicReaderContext context = reader.getTopReaderContext().leaves().get(0);
+    final FilteredQuery.FilterStrategy strategy = new FilteredQuery.AdaptiveFilterStrategy(0.5f);
+    final FixedBitSet fixedBitSet = new FixedBitSet(4);
+    final OpenBitSet openBitSet = new OpenBitSet(4);
+    final BitSet bitSet = new BitSet(4);
+    final DocIdSet[] sets = new DocIdSet[] { fixedBitSet, openBitSet, new DocIdBitSet(bitSet) };
+    // one doc out of 4: below the threshold, although the first doc is < 100
+    fixedBitSet.set(3);
+    openBitSet.set(3);
+    bitSet.set(3);
+    for (DocIdSet set : sets) {
+      assertEquals(1, set.iterator().cost());
+      assertSame(set.toString(), FilteredQuery.LEAP_FROG_FILTER_STRATEGY, strategy.select(context, set));
+    }
+    // two docs out of 4: the density reaches the threshold
+    fixedBitSet.set(1);
+    openBitSet.set(1);
+    bitSet.set(1);
+    for (DocIdSet set : sets) {
+      assertEquals(2, set.iterator().cost());
+      assertSame(set.toString(), FilteredQuery.RANDOM_ACCESS_FILTER_STRATEGY, strategy.select(context, set));
+    }
+  }
+
+  // a set with random access, whose iterator reports the given cost
+  private static DocIdSet docIdSetWithCost(final long cost) {
+    final BitSet bitset = new BitSet(4);
+    bitset.set(1);
+    bitset.set(3);
+    final DocIdBitSet set = new DocIdBitSet(bitset);
+    return new DocIdSet() {
+      @Override
+      public DocIdSetIterator iterator() {
+        final DocIdSetIterator it = set.iterator();
+        return new FilteredDocIdSetIterator(it) {
+          @Override
+          protected boolean match(int doc) {
+            return true;
+          }
+
+          @Override
+          public long cost() {
+            return cost;
+          }
+        };
+      }
+
+      @Override
+      public Bits bits() {
+        return set.bits();
+      }
+    };
+  }
+
   public void testEqualsHashcode() throws Exception {
     // some tests before, if the used queries and filters work:
     assertEquals(new PrefixFilter(new Term("field", "o")), new PrefixFilter(new Term("field", "o")));
@@ -365,16 +469,16 @@ public class TestFilteredQuery extends LuceneTestCase {
   }
 
   public static final class FilteredQueryRA extends FilteredQuery {
-    private final boolean useRandomAccess;
-  
     public FilteredQueryRA(Query q, Filter f, boolean useRandomAccess) {
-      super(q,f);
-      this.useRandomAccess = useRandomAccess;
+      super(q, f, useRandomAccess ? RANDOM_ACCESS_FILTER_STRATEGY : randomLeapFrogStrategy());
     }
-    
-    @Override
-    protected boolean useRandomAccess(Bits bits, int firstFilterDoc) {
-      return useRandomAccess;
+  }
+
+  private static FilteredQuery.FilterStrategy randomLeapFrogStrategy() {
+    switch (random().nextInt(3)) {
+      case 0: return FilteredQuery.LEAP_FROG_FILTER_STRATEGY;
+      case 1: return FilteredQuery.LEAP_FROG_FILTER_FIRST_STRATEGY;
+      default: return FilteredQuery.LEAP_FROG_QUERY_FIRST_STRATEGY;
     }
   }
 }
@@ -21,6 +21,7 @@ import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FilteredTermsEnum;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.Term;
@@ -31,10 +32,16 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.AttributeSource;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util._TestUtil;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TestMultiTermQueryRewrites extends LuceneTestCase {
 
@@ -112,6 +119,11 @@ public class TestMultiTermQueryRewrites extends LuceneTestCase {
   }
   
   private void checkDuplicateTerms(MultiTermQuery.RewriteMethod method) throws Exception {
+    checkDuplicateTerms(method, multiSearcher, multiSearcherDupls);
+  }
+
+  private void checkDuplicateTerms(MultiTermQuery.RewriteMethod method,
+      IndexSearcher multiSearcher, IndexSearcher multiSearcherDupls) throws Exception {
     final MultiTermQuery mtq = TermRangeQuery.newStringRange("data", "2", "7", true, true);
     mtq.setRewriteMethod(method);
     final Query q1 = searcher.rewrite(mtq);
@@ -155,6 +167,11 @@ public class TestMultiTermQueryRewrites extends LuceneTestCase {
   }
   
   private void checkBoosts(MultiTermQuery.RewriteMethod method) throws Exception {
+    checkBoosts(method, multiSearcher, multiSearcherDupls);
+  }
+
+  private void checkBoosts(MultiTermQuery.RewriteMethod method,
+      IndexSearcher multiSearcher, IndexSearcher multiSearcherDupls) throws Exception {
     final MultiTermQuery mtq = new MultiTermQuery("data") {
       @Override
       protected TermsEnum getTermsEnum(Terms terms, AttributeSource atts) throws IOException {
@@ -239,5 +256,107 @@ public class TestMultiTermQueryRewrites extends LuceneTestCase {
     checkNoMaxClauseLimitation(new MultiTermQuery.TopTermsScoringBooleanQueryRewrite(1024));
     checkNoMaxClauseLimitation(new MultiTermQuery.TopTermsBoostOnlyBooleanQueryRewrite(1024));
   }
+
+  public void testConcurrentRewrites() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(_TestUtil.nextInt(random(), 1, 3),
+        new NamedThreadFactory("TestMultiTermQueryRewrites"));
+    try {
+      // the rewrites take the executor of the searcher
+      final IndexSearcher concurrentSearcher = new IndexSearcher(multiReader, executor);
+      final IndexSearcher concurrentSearcherDupls = new IndexSearcher(multiReaderDupls, executor);
+      final MultiTermQuery.TopTermsScoringBooleanQueryRewrite topTerms = new MultiTermQuery.TopTermsScoringBooleanQueryRewrite(1024);
+      checkDuplicateTerms(topTerms, concurrentSearcher, concurrentSearcherDupls);
+      checkBoosts(topTerms, concurrentSearcher, concurrentSearcherDupls);
+
+      final MultiTermQuery.ConstantScoreAutoRewrite rewrite = new MultiTermQuery.ConstantScoreAutoRewrite();
+      rewrite.setTermCountCutoff(Integer.MAX_VALUE);
+      rewrite.setDocCountPercent(100.);
+      checkDuplicateTerms(rewrite, concurrentSearcher, concurrentSearcherDupls);
+
+      // hitting the term count cutoff stops the collection and falls back to a filter
+      rewrite.setTermCountCutoff(2);
+      final MultiTermQuery mtq = TermRangeQuery.newStringRange("data", "2", "7", true, true);
+      mtq.setRewriteMethod(rewrite);
+      assertTrue(concurrentSearcherDupls.rewrite(mtq) instanceof ConstantScoreQuery);
+      assertNotNull(((ConstantScoreQuery) concurrentSearcherDupls.rewrite(mtq)).getFilter());
+
+      // the segments have more terms than the tasks buffer, the rest is read by the calling thread
+      final int savedMaxClauseCount = BooleanQuery.getMaxClauseCount();
+      BooleanQuery.setMaxClauseCount(2);
+      try {
+        checkBoosts(topTerms, concurrentSearcher, concurrentSearcherDupls);
+      } finally {
+        BooleanQuery.setMaxClauseCount(savedMaxClauseCount);
+      }
+
+      // fuzzy queries share the maximum non-competitive boost across segments, so they are
+      // enumerated serially and rewrite to the same query
+      final FuzzyQuery fuzzy = new FuzzyQuery(new Term("data", "5"), 1, 0, 3, false);
+      assertEquals(multiSearcherDupls.rewrite(fuzzy), concurrentSearcherDupls.rewrite(fuzzy));
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+
+  public void testConcurrentRewriteStopsAtCutOff() throws Exception {
+    final int numSegments = _TestUtil.nextInt(random(), 2, 5);
+    final int termsPerSegment = 200;
+    final Directory[] dirs = new Directory[numSegments];
+    final IndexReader[] subReaders = new IndexReader[numSegments];
+    for (int i = 0; i < numSegments; i++) {
+      dirs[i] = newDirectory();
+      final RandomIndexWriter w = new RandomIndexWriter(random(), dirs[i], new MockAnalyzer(random()));
+      for (int j = 0; j < termsPerSegment; j++) {
+        Document doc = new Document();
+        doc.add(newStringField("data", i + "_" + j, Field.Store.NO));
+        w.addDocument(doc);
+      }
+      w.forceMerge(1);
+      subReaders[i] = w.getReader();
+      w.close();
+    }
+    final IndexReader r = new MultiReader(subReaders, true);
+    final ExecutorService executor = Executors.newFixedThreadPool(_TestUtil.nextInt(random(), 1, 3),
+        new NamedThreadFactory("TestMultiTermQueryRewrites"));
+    try {
+      final AtomicInteger termsRead = new AtomicInteger();
+      final MultiTermQuery mtq = new MultiTermQuery("data") {
+        @Override
+        protected TermsEnum getTermsEnum(Terms terms, AttributeSource atts) throws IOException {
+          return new FilteredTermsEnum(terms.iterator(null), false) {
+            @Override
+            protected AcceptStatus accept(BytesRef term) {
+              termsRead.incrementAndGet();
+              return AcceptStatus.YES;
+            }
+          };
+        }
+
+        @Override
+        public String toString(String field) {
+          return "all";
+        }
+      };
+      final int cutOff = 10;
+      final MultiTermQuery.ConstantScoreAutoRewrite rewrite = new MultiTermQuery.ConstantScoreAutoRewrite();
+      rewrite.setTermCountCutoff(cutOff);
+      rewrite.setDocCountPercent(100.);
+      mtq.setRewriteMethod(rewrite);
+
+      final Query rewritten = new IndexSearcher(r, executor).rewrite(mtq);
+      assertTrue(rewritten instanceof ConstantScoreQuery);
+      assertNotNull(((ConstantScoreQuery) rewritten).getFilter());
+      // no segment was enumerated past the cutoff
+      assertTrue("read " + termsRead.get() + " terms", termsRead.get() <= numSegments * cutOff);
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+      r.close();
+      for (Directory d : dirs) {
+        d.close();
+      }
+    }
+  }
   
 }
@@ -117,6 +117,89 @@ public class TestPhraseQuery extends LuceneTestCase {
     QueryUtils.check(random(), query,searcher);
   }
 
+  public void testPhraseInConjunction() throws Exception {
+    // all terms occur in the document, but only "one two" is a phrase:
+    // the two-phase view of the phrase scorer must reject "two one"
+    for (int slop = 0; slop < 2; slop++) {
+      for (boolean inOrder : new boolean[] { true, false }) {
+        PhraseQuery pq = new PhraseQuery();
+        pq.setSlop(slop);
+        pq.add(new Term("field", inOrder ? "one" : "two"));
+        pq.add(new Term("field", inOrder ? "two" : "one"));
+        BooleanQuery bq = new BooleanQuery();
+        bq.add(pq, BooleanClause.Occur.MUST);
+        bq.add(new TermQuery(new Term("field", "three")), BooleanClause.Occur.MUST);
+        final int expected = inOrder ? 1 : 0;
+        assertEquals(expected, searcher.search(bq, null, 1000).totalHits);
+        QueryUtils.check(random(), bq, searcher);
+
+        Query fq = new FilteredQuery(pq, new QueryWrapperFilter(new TermQuery(new Term("field", "three"))));
+        assertEquals(expected, searcher.search(fq, null, 1000).totalHits);
+        QueryUtils.check(random(), fq, searcher);
+      }
+    }
+  }
+
+  public void testTwoPhaseMatchesScorer() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, new MockAnalyzer(random(), MockTokenizer.WHITESPACE, false));
+    final String[] vocabulary = { "a", "b", "c", "d" };
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; i++) {
+      StringBuilder sb = new StringBuilder();
+      final int length = _TestUtil.nextInt(random(), 1, 10);
+      for (int j = 0; j < length; j++) {
+        sb.append(vocabulary[random().nextInt(vocabulary.length)]).append(' ');
+      }
+      Document doc = new Document();
+      doc.add(newTextField("f", sb.toString(), Field.Store.NO));
+      w.addDocument(doc);
+      if (rarely()) {
+        w.commit();
+      }
+    }
+    IndexReader r = w.getReader();
+    w.close();
+    IndexSearcher s = newSearcher(r);
+
+    final int iters = atLeast(20);
+    for (int i = 0; i < iters; i++) {
+      PhraseQuery pq = new PhraseQuery();
+      pq.setSlop(random().nextInt(3));
+      final int numTerms = _TestUtil.nextInt(random(), 2, 3);
+      for (int j = 0; j < numTerms; j++) {
+        pq.add(new Term("f", vocabulary[random().nextInt(vocabulary.length)]));
+      }
+      assertTrue(QueryUtils.checkTwoPhase(random(), pq, s));
+
+      // the conjunction verifies the phrase through its two-phase view
+      // and must match the same documents as the phrase alone
+      BooleanQuery bq = new BooleanQuery();
+      bq.add(pq, BooleanClause.Occur.MUST);
+      bq.add(new TermQuery(new Term("f", vocabulary[random().nextInt(vocabulary.length)])), BooleanClause.Occur.MUST);
+      final Set<Integer> expected = new HashSet<Integer>();
+      final Set<Integer> phraseDocs = new HashSet<Integer>();
+      for (ScoreDoc hit : s.search(pq, numDocs).scoreDocs) {
+        phraseDocs.add(hit.doc);
+      }
+      final Term term = ((TermQuery) bq.getClauses()[1].getQuery()).getTerm();
+      for (ScoreDoc hit : s.search(new TermQuery(term), numDocs).scoreDocs) {
+        if (phraseDocs.contains(hit.doc)) {
+          expected.add(hit.doc);
+        }
+      }
+      final Set<Integer> actual = new HashSet<Integer>();
+      for (ScoreDoc hit : s.search(bq, numDocs).scoreDocs) {
+        actual.add(hit.doc);
+      }
+      assertEquals(expected, actual);
+      QueryUtils.checkTwoPhase(random(), bq, s);
+    }
+
+    r.close();
+    dir.close();
+  }
+
   public void testBarelyCloseEnough() throws Exception {
     query.setSlop(3);
     query.add(new Term("field", "one"));
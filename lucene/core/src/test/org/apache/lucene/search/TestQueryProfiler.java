@@ -0,0 +1,126 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.QueryProfiler.Operation;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestQueryProfiler extends LuceneTestCase {
+
+  private Directory dir;
+  private IndexReader reader;
+  private IndexSearcher searcher;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newTextField("field", (i % 2 == 0 ? "a b c" : "b c d"), Field.Store.NO));
+      w.addDocument(doc);
+    }
+    reader = w.getReader();
+    w.close();
+    searcher = newSearcher(reader);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    reader.close();
+    dir.close();
+    super.tearDown();
+  }
+
+  public void testProfileTree() throws Exception {
+    final PhraseQuery phrase = new PhraseQuery();
+    phrase.add(new Term("field", "b"));
+    phrase.add(new Term("field", "c"));
+    final BooleanQuery query = new BooleanQuery();
+    query.add(new TermQuery(new Term("field", "a")), BooleanClause.Occur.MUST);
+    query.add(phrase, BooleanClause.Occur.MUST);
+
+    final int expectedHits = searcher.search(query, 1).totalHits;
+    assertTrue(expectedHits > 0);
+
+    final QueryProfiler profiler = QueryProfiler.start();
+    final int hits;
+    try {
+      assertSame(profiler, QueryProfiler.current());
+      hits = searcher.search(query, 10).totalHits;
+    } finally {
+      profiler.stop();
+    }
+    assertNull(QueryProfiler.current());
+    assertEquals(expectedHits, hits);
+
+    final List<QueryProfiler.Node> roots = profiler.getRoots();
+    assertEquals(1, roots.size());
+    final QueryProfiler.Node root = roots.get(0);
+    assertEquals(query, root.getQuery());
+    assertEquals(1, root.getCount(Operation.REWRITE));
+    assertEquals(1, root.getCount(Operation.CREATE_WEIGHT));
+    assertTrue(root.getCount(Operation.CREATE_SCORER) > 0);
+    assertTrue(root.getCount(Operation.BULK_SCORE) + root.getCount(Operation.NEXT_DOC) > 0);
+    assertTrue(root.getCount(Operation.SCORE) >= hits);
+
+    assertEquals(2, root.getChildren().size());
+    for (QueryProfiler.Node child : root.getChildren()) {
+      assertEquals(1, child.getCount(Operation.CREATE_WEIGHT));
+      assertEquals(0, child.getCount(Operation.REWRITE));
+      assertTrue(child.getCount(Operation.NEXT_DOC) + child.getCount(Operation.ADVANCE) > 0);
+      assertTrue(child.getChildren().isEmpty());
+    }
+    assertEquals(phrase, root.getChildren().get(1).getQuery());
+    assertTrue(profiler.toString().contains("PhraseQuery"));
+  }
+
+  public void testDisabled() throws Exception {
+    assertNull(QueryProfiler.current());
+    final Weight weight = searcher.createNormalizedWeight(new TermQuery(new Term("field", "a")));
+    assertFalse(weight instanceof ProfileWeight);
+  }
+
+  public void testStartTwice() throws Exception {
+    final QueryProfiler profiler = QueryProfiler.start();
+    try {
+      QueryProfiler.start();
+      fail("a profiler is already started");
+    } catch (IllegalStateException expected) {
+      // ok
+    } finally {
+      profiler.stop();
+    }
+    try {
+      profiler.stop();
+      fail("the profiler is stopped");
+    } catch (IllegalStateException expected) {
+      // ok
+    }
+  }
+}
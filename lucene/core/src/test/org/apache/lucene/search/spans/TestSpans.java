@@ -31,10 +31,13 @@ import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.CheckHits;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryUtils;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.similarities.DefaultSimilarity;
@@ -502,4 +505,35 @@ public class TestSpans extends LuceneTestCase {
     reader.close();
     dir.close();
   }
+
+  public void testTwoPhase() throws Exception {
+    SpanQuery w1w2 = new SpanNearQuery(new SpanQuery[] {makeSpanTermQuery("w1"), makeSpanTermQuery("w2")}, 1, true);
+    SpanQuery u1u2 = new SpanNearQuery(new SpanQuery[] {makeSpanTermQuery("u1"), makeSpanTermQuery("u2")}, 0, false);
+    SpanQuery w1w3 = new SpanNearQuery(new SpanQuery[] {makeSpanTermQuery("w1"), makeSpanTermQuery("w3")}, 0, true);
+    SpanQuery[] queries = {
+        w1w2,
+        u1u2,
+        new SpanNearQuery(new SpanQuery[] {makeSpanTermQuery("w3"), makeSpanTermQuery("w3")}, 1, true),
+        new SpanNotQuery(w1w2, makeSpanTermQuery("xx")),
+        new SpanNotQuery(u1u2, makeSpanTermQuery("xx")),
+        new SpanFirstQuery(makeSpanTermQuery("u1"), 2),
+        new SpanFirstQuery(w1w3, 2),
+        new SpanOrQuery(w1w2, w1w3),
+        new SpanNearQuery(new SpanQuery[] {new SpanOrQuery(makeSpanTermQuery("t1"), makeSpanTermQuery("t2")), makeSpanTermQuery("t3")}, 0, true)
+    };
+    for (SpanQuery q : queries) {
+      // the approximation only needs the docs of the required terms,
+      // the matches must be the ones of the plain scorer
+      assertTrue(q.toString(), QueryUtils.checkTwoPhase(random(), q, searcher));
+      BooleanQuery bq = new BooleanQuery();
+      bq.add(q, BooleanClause.Occur.MUST);
+      bq.add(new TermQuery(new Term(field, "xx")), BooleanClause.Occur.MUST);
+      QueryUtils.check(random(), bq, searcher);
+    }
+
+    // checked position by position, nothing to gain from an approximation
+    assertFalse(QueryUtils.checkTwoPhase(random(), makeSpanTermQuery("w1"), searcher));
+    // the clauses have no term in common
+    assertFalse(QueryUtils.checkTwoPhase(random(), new SpanOrQuery(w1w2, u1u2), searcher));
+  }
 }
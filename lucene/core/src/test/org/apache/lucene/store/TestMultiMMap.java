@@ -134,6 +134,54 @@ public class TestMultiMMap extends LuceneTestCase {
     }
   }
   
+  public void testRandomAccessSlice() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      MMapDirectory mmapDir = new MMapDirectory(_TestUtil.getTempDir("testRandomAccessSlice"));
+      mmapDir.setMaxChunkSize(1<<i);
+      IndexOutput io = mmapDir.createOutput("bytes", newIOContext(random()));
+      byte bytes[] = new byte[(1<<(i+1)) + 8]; // make sure values span buffers
+      random().nextBytes(bytes);
+      io.writeBytes(bytes, bytes.length);
+      io.close();
+      IndexInput ii = mmapDir.openInput("bytes", newIOContext(random()));
+      for (int sliceStart = 0; sliceStart < bytes.length; sliceStart++) {
+        final int sliceLength = bytes.length - sliceStart;
+        RandomAccessInput slice = ii.randomAccessSlice(sliceStart, sliceLength);
+        for (int pos = 0; pos < sliceLength; pos++) {
+          ii.seek(sliceStart + pos);
+          assertEquals(ii.readByte(), slice.readByte(pos));
+          if (pos + 2 <= sliceLength) {
+            ii.seek(sliceStart + pos);
+            assertEquals(ii.readShort(), slice.readShort(pos));
+          }
+          if (pos + 4 <= sliceLength) {
+            ii.seek(sliceStart + pos);
+            assertEquals(ii.readInt(), slice.readInt(pos));
+          }
+          if (pos + 8 <= sliceLength) {
+            ii.seek(sliceStart + pos);
+            assertEquals(ii.readLong(), slice.readLong(pos));
+          }
+        }
+        try {
+          slice.readByte(sliceLength);
+          fail("Must throw EOFException");
+        } catch (java.io.EOFException ignore) {
+          // pass
+        }
+      }
+      RandomAccessInput slice = ii.randomAccessSlice(0, bytes.length);
+      ii.close();
+      try {
+        slice.readLong(0);
+        fail("Must throw AlreadyClosedException");
+      } catch (AlreadyClosedException ignore) {
+        // pass
+      }
+      mmapDir.close();
+    }
+  }
+
   public void testRandomChunkSizes() throws Exception {
     int num = atLeast(10);
     for (int i = 0; i < num; i++)
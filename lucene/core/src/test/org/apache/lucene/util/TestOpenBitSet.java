@@ -320,7 +320,23 @@ public class TestOpenBitSet extends LuceneTestCase {
     checkPrevSetBitArray(new int[] {0});
     checkPrevSetBitArray(new int[] {0,2});
   }
-}
 
+  public void testIteratorCost() {
+    // small sets are counted exactly
+    OpenBitSet small = makeOpenBitSet(new int[] {0, 2, 65, 1000});
+    assertEquals(4, small.iterator().cost());
 
+    // large sets are estimated from a sample of their words
+    final int numBits = 64 * OpenBitSetIterator.COST_SAMPLED_WORDS * 4;
+    OpenBitSet large = new OpenBitSet(numBits);
+    for (int i = 0; i < numBits; i += 2) {
+      large.set(i);
+    }
+    assertEquals(large.cardinality(), large.iterator().cost());
+    large.set(65); // the second word is not sampled
+    assertEquals(numBits / 2, large.iterator().cost());
 
+    // a known cost is returned as is
+    assertEquals(3, new OpenBitSetIterator(large.getBits(), large.getNumWords(), 3).cost());
+  }
+}
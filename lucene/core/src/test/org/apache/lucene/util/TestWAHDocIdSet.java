@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.search.DocIdSetIterator;
+
+public class TestWAHDocIdSet extends LuceneTestCase {
+
+  // mixes sparse areas, dense areas and long runs of 0s and 1s
+  static FixedBitSet randomSet(int numBits) {
+    final FixedBitSet bits = new FixedBitSet(numBits);
+    int i = 0;
+    while (i < numBits) {
+      final int length = Math.min(numBits - i, random().nextInt(2000));
+      switch (random().nextInt(4)) {
+        case 0: // empty
+          break;
+        case 1: // full
+          bits.set(i, i + length);
+          break;
+        default:
+          final int interval = _TestUtil.nextInt(random(), 1, 100);
+          for (int j = i; j < i + length; j += _TestUtil.nextInt(random(), 1, interval)) {
+            bits.set(j);
+          }
+          break;
+      }
+      i += length;
+    }
+    return bits;
+  }
+
+  static WAHDocIdSet randomCopy(FixedBitSet bits) throws IOException {
+    if (random().nextBoolean()) {
+      return WAHDocIdSet.copyOf(bits.getBits(), bits.getBits().length);
+    } else {
+      return new WAHDocIdSet.Builder().add(bits.iterator()).build();
+    }
+  }
+
+  void assertEquals(FixedBitSet expected, WAHDocIdSet actual) throws IOException {
+    assertEquals(expected.cardinality(), actual.cardinality());
+    final DocIdSetIterator expectedIt = expected.iterator();
+    final DocIdSetIterator actualIt = actual.iterator();
+    for (int doc = expectedIt.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = expectedIt.nextDoc()) {
+      assertEquals(doc, actualIt.nextDoc());
+      assertEquals(doc, actualIt.docID());
+    }
+    assertEquals(DocIdSetIterator.NO_MORE_DOCS, actualIt.nextDoc());
+    final long[] words = new long[expected.getBits().length];
+    actual.orInto(words);
+    assertTrue(Arrays.equals(expected.getBits(), words));
+  }
+
+  public void testCopyAndBuild() throws IOException {
+    final int iters = atLeast(10);
+    for (int iter = 0; iter < iters; ++iter) {
+      final FixedBitSet bits = randomSet(_TestUtil.nextInt(random(), 1, 100000));
+      final WAHDocIdSet set = WAHDocIdSet.copyOf(bits.getBits(), bits.getBits().length);
+      assertEquals(bits, set);
+      assertEquals(bits, new WAHDocIdSet.Builder().add(bits.iterator()).build());
+      for (int i = 0; i < bits.length(); ++i) {
+        assertEquals(bits.get(i), set.get(i));
+      }
+      assertFalse(set.get(bits.length() + random().nextInt(1000)));
+    }
+  }
+
+  public void testAdvance() throws IOException {
+    final int iters = atLeast(10);
+    for (int iter = 0; iter < iters; ++iter) {
+      final FixedBitSet bits = randomSet(_TestUtil.nextInt(random(), 1, 100000));
+      final WAHDocIdSet set = randomCopy(bits);
+      final DocIdSetIterator it = set.iterator();
+      int doc = -1;
+      while (doc != DocIdSetIterator.NO_MORE_DOCS) {
+        final int target = doc + 1 + (random().nextBoolean() ? random().nextInt(64) : random().nextInt(10000));
+        final int expected = target >= bits.length() ? -1 : bits.nextSetBit(target);
+        if (random().nextBoolean()) {
+          doc = it.advance(target);
+        } else {
+          // nextDoc until target
+          do {
+            doc = it.nextDoc();
+          } while (doc < target);
+        }
+        assertEquals(expected == -1 ? DocIdSetIterator.NO_MORE_DOCS : expected, doc);
+      }
+    }
+  }
+
+  public void testBooleanOperations() throws IOException {
+    final int iters = atLeast(10);
+    for (int iter = 0; iter < iters; ++iter) {
+      final FixedBitSet a = randomSet(_TestUtil.nextInt(random(), 1, 50000));
+      final FixedBitSet b = randomSet(_TestUtil.nextInt(random(), 1, 50000));
+      final WAHDocIdSet wa = randomCopy(a), wb = randomCopy(b);
+      final int numBits = Math.max(a.length(), b.length());
+
+      final FixedBitSet and = new FixedBitSet(numBits);
+      and.or(a);
+      and.and(b);
+      assertEquals(and, WAHDocIdSet.intersect(wa, wb));
+      assertEquals(and.cardinality(), WAHDocIdSet.intersectionCount(wa, wb));
+      assertEquals(and.cardinality(), wa.intersectionCount(b.getBits(), b.getBits().length));
+
+      final FixedBitSet or = new FixedBitSet(numBits);
+      or.or(a);
+      or.or(b);
+      assertEquals(or, WAHDocIdSet.union(wa, wb));
+
+      final FixedBitSet andNot = new FixedBitSet(numBits);
+      andNot.or(a);
+      andNot.andNot(b);
+      assertEquals(andNot, WAHDocIdSet.andNot(wa, wb));
+
+      final FixedBitSet andInto = b.clone();
+      wa.andInto(andInto.getBits());
+      final FixedBitSet expectedAndInto = b.clone();
+      expectedAndInto.and(a);
+      assertTrue(Arrays.equals(expectedAndInto.getBits(), andInto.getBits()));
+    }
+  }
+
+  public void testEmpty() throws IOException {
+    final WAHDocIdSet empty = new WAHDocIdSet.Builder().build();
+    assertEquals(0, empty.cardinality());
+    assertEquals(DocIdSetIterator.NO_MORE_DOCS, empty.iterator().nextDoc());
+    assertEquals(DocIdSetIterator.NO_MORE_DOCS, empty.iterator().advance(42));
+    assertFalse(empty.get(0));
+    final WAHDocIdSet set = new WAHDocIdSet.Builder().add(3).add(1000).build();
+    assertEquals(0, WAHDocIdSet.intersect(set, empty).cardinality());
+    assertEquals(2, WAHDocIdSet.union(set, empty).cardinality());
+    assertEquals(2, WAHDocIdSet.andNot(set, empty).cardinality());
+  }
+
+  public void testOutOfOrder() {
+    final WAHDocIdSet.Builder builder = new WAHDocIdSet.Builder().add(10);
+    try {
+      builder.add(10);
+      fail("doc IDs must be added in order");
+    } catch (IllegalArgumentException expected) {
+      // ok
+    }
+  }
+
+  public void testCompression() {
+    // a set of runs takes a few words whatever the number of documents
+    final FixedBitSet bits = new FixedBitSet(1 << 20);
+    bits.set(1000, 300000);
+    bits.set(600000, 900000);
+    final WAHDocIdSet set = WAHDocIdSet.copyOf(bits.getBits(), bits.getBits().length);
+    assertEquals(bits.cardinality(), set.cardinality());
+    assertTrue(set.ramBytesUsed() < 200);
+  }
+
+}
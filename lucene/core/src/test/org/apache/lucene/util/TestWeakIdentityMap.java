@@ -17,7 +17,11 @@
 
 package org.apache.lucene.util;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.Executors;
@@ -83,6 +87,12 @@ public class TestWeakIdentityMap extends LuceneTestCase {
     map.put(key2, "bar2");
     map.put(key3, "bar3");
     assertEquals(3, map.size());
+
+    final Set<String> values = new HashSet<String>();
+    for (Iterator<String> it = map.valueIterator(); it.hasNext(); ) {
+      values.add(it.next());
+    }
+    assertEquals(new HashSet<String>(Arrays.asList("bar1", "bar2", "bar3")), values);
     
     // clear strong refs
     key1 = key2 = key3 = null;
@@ -92,7 +92,7 @@ class TermsIncludingScoreQuery extends Query {
 
   @Override
   public Weight createWeight(IndexSearcher searcher) throws IOException {
-    final Weight originalWeight = originalQuery.createWeight(searcher);
+    final Weight originalWeight = searcher.createWeight(originalQuery);
     return new Weight() {
 
       private TermsEnum segmentTermsEnum;
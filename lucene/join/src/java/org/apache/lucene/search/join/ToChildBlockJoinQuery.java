@@ -77,7 +77,7 @@ public class ToChildBlockJoinQuery extends Query {
 
   @Override
   public Weight createWeight(IndexSearcher searcher) throws IOException {
-    return new ToChildBlockJoinWeight(this, parentQuery.createWeight(searcher), parentsFilter, doScores);
+    return new ToChildBlockJoinWeight(this, searcher.createWeight(parentQuery), parentsFilter, doScores);
   }
 
   private static class ToChildBlockJoinWeight extends Weight {
@@ -121,7 +121,7 @@ public class ToParentBlockJoinQuery extends Query {
 
   @Override
   public Weight createWeight(IndexSearcher searcher) throws IOException {
-    return new BlockJoinWeight(this, childQuery.createWeight(searcher), parentsFilter, scoreMode);
+    return new BlockJoinWeight(this, searcher.createWeight(childQuery), parentsFilter, scoreMode);
   }
 
   private static class BlockJoinWeight extends Weight {
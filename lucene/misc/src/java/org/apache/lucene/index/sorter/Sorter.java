@@ -0,0 +1,213 @@
+package org.apache.lucene.index.sorter;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.SorterTemplate;
+
+/**
+ * Computes the permutation of document IDs that sorts the documents of a
+ * reader according to a {@link Sort}. Documents which compare equal keep
+ * their relative order.
+ * <p>
+ * Values are pulled from each leaf through the {@link FieldComparator}s of
+ * the sort, so the same per-segment caches are used as at search time.
+ * Sorting on the relevance score is not supported.
+ *
+ * @lucene.experimental
+ */
+public final class Sorter {
+
+  /**
+   * A permutation of doc IDs. For every document ID between <tt>0</tt> and
+   * {@link IndexReader#maxDoc()}, <code>oldToNew(newToOld(docID))</code> must
+   * return <code>docID</code>.
+   */
+  public static abstract class DocMap {
+
+    /** Sole constructor, typically invoked from sub-classes constructors. */
+    protected DocMap() {}
+
+    /** Given a doc ID from the original index, return its ordinal in the
+     *  sorted index. */
+    public abstract int oldToNew(int docID);
+
+    /** Given the ordinal of a doc ID, return its doc ID in the original index. */
+    public abstract int newToOld(int docID);
+
+    /** Return the number of documents in this map. This must be equal to the
+     *  {@link IndexReader#maxDoc() number of documents} of the reader which
+     *  is sorted. */
+    public abstract int size();
+  }
+
+  private final Sort sort;
+
+  /** Creates a new Sorter to sort the index with {@code sort}. */
+  public Sorter(Sort sort) {
+    for (SortField field : sort.getSort()) {
+      if (field.getType() == SortField.Type.SCORE) {
+        throw new IllegalArgumentException("Cannot sort an index with a Sort that refers to the relevance score");
+      }
+    }
+    this.sort = sort;
+  }
+
+  /** Returns the {@link Sort} this sorter sorts with. */
+  public Sort getSort() {
+    return sort;
+  }
+
+  /**
+   * Returns a mapping from the old document ID to its new location in the
+   * sorted index.
+   * <p>
+   * <b>NOTE:</b> deleted documents are sorted as well, it is up to the
+   * consumer to skip them.
+   * <p>
+   * Returns <code>null</code> if the reader is already sorted.
+   */
+  public DocMap sort(IndexReader reader) throws IOException {
+    final int maxDoc = reader.maxDoc();
+    final SortField[] fields = sort.getSort();
+    final FieldComparator<?>[] comparators = new FieldComparator<?>[fields.length];
+    final int[] reverseMul = new int[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      comparators[i] = fields[i].getComparator(maxDoc, i);
+      reverseMul[i] = fields[i].getReverse() ? -1 : 1;
+    }
+    // slots are the doc IDs of the top-level reader
+    for (AtomicReaderContext context : reader.getTopReaderContext().leaves()) {
+      for (int i = 0; i < comparators.length; i++) {
+        comparators[i] = comparators[i].setNextReader(context);
+      }
+      final int leafMaxDoc = context.reader().maxDoc();
+      for (int doc = 0; doc < leafMaxDoc; doc++) {
+        for (int i = 0; i < comparators.length; i++) {
+          comparators[i].copy(context.docBase + doc, doc);
+        }
+      }
+    }
+    return sort(maxDoc, comparators, reverseMul);
+  }
+
+  /**
+   * Computes the old-to-new permutation over <code>maxDoc</code> documents
+   * whose values have been copied into the slot of the same number of the
+   * given comparators. Returns <code>null</code> if the documents are
+   * already sorted.
+   */
+  static DocMap sort(final int maxDoc, final FieldComparator<?>[] comparators, final int[] reverseMul) {
+    final int[] docs = new int[maxDoc];
+    for (int i = 0; i < maxDoc; i++) {
+      docs[i] = i;
+    }
+
+    // merge sort is stable, so ties keep their original order
+    new SorterTemplate() {
+      private int pivot;
+
+      @Override
+      protected void swap(int i, int j) {
+        final int tmp = docs[i];
+        docs[i] = docs[j];
+        docs[j] = tmp;
+      }
+
+      @Override
+      protected int compare(int i, int j) {
+        return compareSlots(docs[i], docs[j]);
+      }
+
+      @Override
+      protected void setPivot(int i) {
+        pivot = docs[i];
+      }
+
+      @Override
+      protected int comparePivot(int j) {
+        return compareSlots(pivot, docs[j]);
+      }
+
+      private int compareSlots(int slot1, int slot2) {
+        for (int i = 0; i < comparators.length; i++) {
+          final int c = reverseMul[i] * comparators[i].compare(slot1, slot2);
+          if (c != 0) {
+            return c;
+          }
+        }
+        return 0;
+      }
+    }.mergeSort(0, maxDoc - 1);
+
+    boolean sorted = true;
+    for (int i = 0; i < maxDoc; i++) {
+      if (docs[i] != i) {
+        sorted = false;
+        break;
+      }
+    }
+    if (sorted) {
+      return null;
+    }
+
+    final int[] newToOld = docs;
+    final int[] oldToNew = new int[maxDoc];
+    for (int i = 0; i < maxDoc; i++) {
+      oldToNew[newToOld[i]] = i;
+    }
+
+    return new DocMap() {
+      @Override
+      public int oldToNew(int docID) {
+        return oldToNew[docID];
+      }
+
+      @Override
+      public int newToOld(int docID) {
+        return newToOld[docID];
+      }
+
+      @Override
+      public int size() {
+        return maxDoc;
+      }
+    };
+  }
+
+  /**
+   * Returns the identifier of this {@link Sorter}, which is recorded in the
+   * diagnostics of the segments it sorted. Two sorters with the same
+   * identifier must sort documents the same way.
+   */
+  public String getID() {
+    return sort.toString();
+  }
+
+  @Override
+  public String toString() {
+    return getID();
+  }
+
+}
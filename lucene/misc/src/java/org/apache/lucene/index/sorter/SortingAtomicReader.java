@@ -0,0 +1,677 @@
+package org.apache.lucene.index.sorter;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocsAndPositionsEnum;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.Fields;
+import org.apache.lucene.index.FieldsEnum;
+import org.apache.lucene.index.FilterAtomicReader;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.store.RAMFile;
+import org.apache.lucene.store.RAMInputStream;
+import org.apache.lucene.store.RAMOutputStream;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.SorterTemplate;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
+import org.apache.lucene.util.packed.PackedInts;
+
+/**
+ * An {@link AtomicReader} which presents the documents of another reader
+ * in the order of a {@link Sort}. Stored fields, term vectors, postings,
+ * doc values and norms are all exposed under the new doc IDs.
+ * <p>
+ * Postings are buffered and sorted in memory for every term that is
+ * enumerated, so this reader is meant to be consumed sequentially, for
+ * example by {@link SortingMergePolicy} to write sorted segments, rather
+ * than to be searched.
+ *
+ * @lucene.experimental
+ */
+public class SortingAtomicReader extends FilterAtomicReader {
+
+  /** Return a sorted view of <code>reader</code> according to the order
+   *  defined by <code>sort</code>. If the reader is already sorted, this
+   *  method might return the reader as-is. */
+  public static AtomicReader wrap(AtomicReader reader, Sort sort) throws IOException {
+    return wrap(reader, new Sorter(sort).sort(reader));
+  }
+
+  /** Expert: same as {@link #wrap(AtomicReader, Sort)} but operates directly
+   *  on a {@link Sorter.DocMap}. */
+  static AtomicReader wrap(AtomicReader reader, Sorter.DocMap docMap) {
+    if (docMap == null) {
+      // the reader is already sorted
+      return reader;
+    }
+    if (reader.maxDoc() != docMap.size()) {
+      throw new IllegalArgumentException("reader.maxDoc() should be equal to docMap.size(), got" + reader.maxDoc() + " != " + docMap.size());
+    }
+    return new SortingAtomicReader(reader, docMap);
+  }
+
+  final Sorter.DocMap docMap;
+
+  private SortingAtomicReader(AtomicReader in, Sorter.DocMap docMap) {
+    super(in);
+    this.docMap = docMap;
+  }
+
+  @Override
+  public Bits getLiveDocs() {
+    final Bits inLiveDocs = in.getLiveDocs();
+    return inLiveDocs == null ? null : new SortingBits(inLiveDocs, docMap);
+  }
+
+  @Override
+  public Fields getTermVectors(int docID) throws IOException {
+    return in.getTermVectors(docMap.newToOld(docID));
+  }
+
+  @Override
+  public void document(int docID, StoredFieldVisitor visitor) throws IOException {
+    in.document(docMap.newToOld(docID), visitor);
+  }
+
+  @Override
+  public Fields fields() throws IOException {
+    final Fields fields = in.fields();
+    return fields == null ? null : new SortingFields(fields, docMap);
+  }
+
+  @Override
+  public DocValues docValues(String field) throws IOException {
+    final DocValues values = in.docValues(field);
+    return values == null ? null : new SortingDocValues(values, docMap);
+  }
+
+  @Override
+  public DocValues normValues(String field) throws IOException {
+    final DocValues norms = in.normValues(field);
+    return norms == null ? null : new SortingDocValues(norms, docMap);
+  }
+
+  /** The documents have moved, so this reader must not share caches with
+   *  the wrapped reader. */
+  @Override
+  public Object getCoreCacheKey() {
+    return this;
+  }
+
+  @Override
+  public Object getCombinedCoreAndDeletesKey() {
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "SortingAtomicReader(" + in + ")";
+  }
+
+  /** Maps {@link Bits} over the new doc IDs back to the old doc IDs. */
+  static Bits oldLiveDocs(Bits newLiveDocs, Sorter.DocMap docMap) {
+    if (newLiveDocs == null) {
+      return null;
+    }
+    if (newLiveDocs instanceof SortingBits) {
+      final SortingBits sortingBits = (SortingBits) newLiveDocs;
+      if (sortingBits.docMap == docMap) {
+        return sortingBits.in;
+      }
+    }
+    return new InverseSortingBits(newLiveDocs, docMap);
+  }
+
+  private static class SortingBits implements Bits {
+    final Bits in;
+    final Sorter.DocMap docMap;
+
+    SortingBits(Bits in, Sorter.DocMap docMap) {
+      this.in = in;
+      this.docMap = docMap;
+    }
+
+    @Override
+    public boolean get(int index) {
+      return in.get(docMap.newToOld(index));
+    }
+
+    @Override
+    public int length() {
+      return in.length();
+    }
+  }
+
+  private static class InverseSortingBits implements Bits {
+    final Bits in;
+    final Sorter.DocMap docMap;
+
+    InverseSortingBits(Bits in, Sorter.DocMap docMap) {
+      this.in = in;
+      this.docMap = docMap;
+    }
+
+    @Override
+    public boolean get(int index) {
+      return in.get(docMap.oldToNew(index));
+    }
+
+    @Override
+    public int length() {
+      return in.length();
+    }
+  }
+
+  private static class SortingFields extends FilterFields {
+    private final Sorter.DocMap docMap;
+
+    SortingFields(Fields in, Sorter.DocMap docMap) {
+      super(in);
+      this.docMap = docMap;
+    }
+
+    @Override
+    public FieldsEnum iterator() throws IOException {
+      return new SortingFieldsEnum(in.iterator(), docMap);
+    }
+
+    @Override
+    public Terms terms(String field) throws IOException {
+      final Terms terms = in.terms(field);
+      return terms == null ? null : new SortingTerms(terms, docMap);
+    }
+  }
+
+  private static class SortingFieldsEnum extends FilterFieldsEnum {
+    private final Sorter.DocMap docMap;
+
+    SortingFieldsEnum(FieldsEnum in, Sorter.DocMap docMap) {
+      super(in);
+      this.docMap = docMap;
+    }
+
+    @Override
+    public Terms terms() throws IOException {
+      final Terms terms = in.terms();
+      return terms == null ? null : new SortingTerms(terms, docMap);
+    }
+  }
+
+  private static class SortingTerms extends FilterTerms {
+    private final Sorter.DocMap docMap;
+
+    SortingTerms(Terms in, Sorter.DocMap docMap) {
+      super(in);
+      this.docMap = docMap;
+    }
+
+    @Override
+    public TermsEnum iterator(TermsEnum reuse) throws IOException {
+      if (reuse instanceof SortingTermsEnum) {
+        reuse = ((SortingTermsEnum) reuse).getWrapped();
+      }
+      return new SortingTermsEnum(in.iterator(reuse), docMap);
+    }
+
+    @Override
+    public TermsEnum intersect(CompiledAutomaton automaton, BytesRef bytes) throws IOException {
+      return new SortingTermsEnum(in.intersect(automaton, bytes), docMap);
+    }
+  }
+
+  private static class SortingTermsEnum extends FilterTermsEnum {
+    private final Sorter.DocMap docMap;
+
+    SortingTermsEnum(TermsEnum in, Sorter.DocMap docMap) {
+      super(in);
+      this.docMap = docMap;
+    }
+
+    TermsEnum getWrapped() {
+      return in;
+    }
+
+    @Override
+    public DocsEnum docs(Bits liveDocs, DocsEnum reuse, boolean needsFreqs) throws IOException {
+      final SortingDocsEnum sortingReuse;
+      final DocsEnum inReuse;
+      if (reuse instanceof SortingDocsEnum) {
+        sortingReuse = (SortingDocsEnum) reuse;
+        inReuse = sortingReuse.getWrapped();
+      } else {
+        sortingReuse = null;
+        inReuse = reuse;
+      }
+      final DocsEnum inDocs = in.docs(oldLiveDocs(liveDocs, docMap), inReuse, needsFreqs);
+      if (inDocs == null) {
+        return null;
+      }
+      final SortingDocsEnum docs = sortingReuse != null ? sortingReuse : new SortingDocsEnum();
+      docs.reset(inDocs, needsFreqs, docMap);
+      return docs;
+    }
+
+    @Override
+    public DocsAndPositionsEnum docsAndPositions(Bits liveDocs, DocsAndPositionsEnum reuse, boolean needsOffsets) throws IOException {
+      final SortingDocsAndPositionsEnum sortingReuse;
+      final DocsAndPositionsEnum inReuse;
+      if (reuse instanceof SortingDocsAndPositionsEnum) {
+        sortingReuse = (SortingDocsAndPositionsEnum) reuse;
+        inReuse = sortingReuse.getWrapped();
+      } else {
+        sortingReuse = null;
+        inReuse = reuse;
+      }
+      final DocsAndPositionsEnum inDocsAndPositions = in.docsAndPositions(oldLiveDocs(liveDocs, docMap), inReuse, needsOffsets);
+      if (inDocsAndPositions == null) {
+        return null;
+      }
+      final SortingDocsAndPositionsEnum docsAndPositions = sortingReuse != null ? sortingReuse : new SortingDocsAndPositionsEnum();
+      docsAndPositions.reset(inDocsAndPositions, needsOffsets, docMap);
+      return docsAndPositions;
+    }
+  }
+
+  /** Sorts parallel arrays of doc IDs and per-doc data by doc ID. */
+  private static abstract class DocSorter extends SorterTemplate {
+    final int[] docs;
+    private int pivot;
+
+    DocSorter(int[] docs) {
+      this.docs = docs;
+    }
+
+    @Override
+    protected void swap(int i, int j) {
+      final int tmp = docs[i];
+      docs[i] = docs[j];
+      docs[j] = tmp;
+    }
+
+    @Override
+    protected int compare(int i, int j) {
+      return docs[i] - docs[j];
+    }
+
+    @Override
+    protected void setPivot(int i) {
+      pivot = docs[i];
+    }
+
+    @Override
+    protected int comparePivot(int j) {
+      return pivot - docs[j];
+    }
+  }
+
+  /** Buffers the documents and frequencies of a {@link DocsEnum} and
+   *  returns them in the order of the new doc IDs. */
+  static class SortingDocsEnum extends DocsEnum {
+    private DocsEnum in;
+    private int[] docs = new int[64];
+    private int[] freqs;
+    private boolean withFreqs;
+    private int upto;
+    private int numDocs;
+    private int doc;
+
+    DocsEnum getWrapped() {
+      return in;
+    }
+
+    void reset(DocsEnum in, boolean withFreqs, Sorter.DocMap docMap) throws IOException {
+      this.in = in;
+      this.withFreqs = withFreqs;
+      if (withFreqs && freqs == null) {
+        freqs = new int[docs.length];
+      }
+      int i = 0;
+      int doc;
+      while ((doc = in.nextDoc()) != NO_MORE_DOCS) {
+        if (i == docs.length) {
+          docs = ArrayUtil.grow(docs, i + 1);
+          if (withFreqs) {
+            freqs = ArrayUtil.grow(freqs, docs.length);
+          }
+        }
+        docs[i] = docMap.oldToNew(doc);
+        if (withFreqs) {
+          freqs[i] = in.freq();
+        }
+        ++i;
+      }
+      numDocs = i;
+      if (withFreqs) {
+        final int[] freqs = this.freqs;
+        new DocSorter(docs) {
+          @Override
+          protected void swap(int i, int j) {
+            super.swap(i, j);
+            final int tmp = freqs[i];
+            freqs[i] = freqs[j];
+            freqs[j] = tmp;
+          }
+        }.quickSort(0, numDocs - 1);
+      } else {
+        Arrays.sort(docs, 0, numDocs);
+      }
+      upto = -1;
+      this.doc = -1;
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      if (++upto >= numDocs) {
+        return doc = NO_MORE_DOCS;
+      }
+      return doc = docs[upto];
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      // linear scan: this enum is only meant to be consumed sequentially
+      while (nextDoc() < target) {}
+      return doc;
+    }
+
+    @Override
+    public int freq() throws IOException {
+      return withFreqs && upto < numDocs ? freqs[upto] : 1;
+    }
+  }
+
+  /** Buffers the documents, positions, offsets and payloads of a
+   *  {@link DocsAndPositionsEnum} and returns them in the order of the new
+   *  doc IDs. */
+  static class SortingDocsAndPositionsEnum extends DocsAndPositionsEnum {
+    private DocsAndPositionsEnum in;
+    private int[] docs = new int[64];
+    private long[] offsets = new long[64];
+    private final RAMFile file = new RAMFile();
+    private final RAMOutputStream out = new RAMOutputStream(file);
+    private RAMInputStream postingInput;
+    private boolean storeOffsets;
+    private int upto;
+    private int numDocs;
+    private int doc;
+    private int freq;
+    private int pos;
+    private int startOffset = -1;
+    private int endOffset = -1;
+    private final BytesRef payload = new BytesRef(32);
+    private int payloadLength;
+    private boolean payloadPending;
+
+    DocsAndPositionsEnum getWrapped() {
+      return in;
+    }
+
+    void reset(DocsAndPositionsEnum in, boolean storeOffsets, Sorter.DocMap docMap) throws IOException {
+      this.in = in;
+      this.storeOffsets = storeOffsets;
+      out.reset();
+      int i = 0;
+      int doc;
+      while ((doc = in.nextDoc()) != NO_MORE_DOCS) {
+        if (i == docs.length) {
+          docs = ArrayUtil.grow(docs, i + 1);
+          offsets = ArrayUtil.grow(offsets, docs.length);
+        }
+        docs[i] = docMap.oldToNew(doc);
+        offsets[i] = out.getFilePointer();
+        addPositions(in);
+        ++i;
+      }
+      out.flush();
+      numDocs = i;
+      final long[] offsets = this.offsets;
+      new DocSorter(docs) {
+        @Override
+        protected void swap(int i, int j) {
+          super.swap(i, j);
+          final long tmp = offsets[i];
+          offsets[i] = offsets[j];
+          offsets[j] = tmp;
+        }
+      }.quickSort(0, numDocs - 1);
+      postingInput = new RAMInputStream("sorted-postings", file);
+      upto = -1;
+      this.doc = -1;
+    }
+
+    private void addPositions(DocsAndPositionsEnum in) throws IOException {
+      final int freq = in.freq();
+      out.writeVInt(freq);
+      int previousPosition = 0;
+      int previousEndOffset = 0;
+      for (int i = 0; i < freq; i++) {
+        final int pos = in.nextPosition();
+        // the low bit tells whether there is a payload
+        final BytesRef payload = in.hasPayload() ? in.getPayload() : null;
+        out.writeVInt((pos - previousPosition) << 1 | (payload == null ? 0 : 1));
+        previousPosition = pos;
+        if (storeOffsets) {
+          final int startOffset = in.startOffset();
+          final int endOffset = in.endOffset();
+          out.writeVInt(startOffset - previousEndOffset);
+          out.writeVInt(endOffset - startOffset);
+          previousEndOffset = endOffset;
+        }
+        if (payload != null) {
+          out.writeVInt(payload.length);
+          out.writeBytes(payload.bytes, payload.offset, payload.length);
+        }
+      }
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      if (++upto >= numDocs) {
+        return doc = NO_MORE_DOCS;
+      }
+      postingInput.seek(offsets[upto]);
+      freq = postingInput.readVInt();
+      pos = 0;
+      endOffset = 0;
+      payloadPending = false;
+      return doc = docs[upto];
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      // linear scan: this enum is only meant to be consumed sequentially
+      while (nextDoc() < target) {}
+      return doc;
+    }
+
+    @Override
+    public int freq() throws IOException {
+      return freq;
+    }
+
+    @Override
+    public int nextPosition() throws IOException {
+      if (payloadPending) {
+        // skip the payload of the previous position, it was not read
+        postingInput.seek(postingInput.getFilePointer() + payloadLength);
+      }
+      final int code = postingInput.readVInt();
+      pos += code >>> 1;
+      if (storeOffsets) {
+        startOffset = endOffset + postingInput.readVInt();
+        endOffset = startOffset + postingInput.readVInt();
+      }
+      if ((code & 1) != 0) {
+        payloadLength = postingInput.readVInt();
+        payloadPending = true;
+      } else {
+        payloadLength = 0;
+        payloadPending = false;
+      }
+      return pos;
+    }
+
+    @Override
+    public int startOffset() throws IOException {
+      return storeOffsets ? startOffset : -1;
+    }
+
+    @Override
+    public int endOffset() throws IOException {
+      return storeOffsets ? endOffset : -1;
+    }
+
+    @Override
+    public BytesRef getPayload() throws IOException {
+      if (!payloadPending) {
+        return null;
+      }
+      if (payload.bytes.length < payloadLength) {
+        payload.grow(payloadLength);
+      }
+      postingInput.readBytes(payload.bytes, 0, payloadLength);
+      payload.offset = 0;
+      payload.length = payloadLength;
+      payloadPending = false;
+      return payload;
+    }
+
+    @Override
+    public boolean hasPayload() {
+      return payloadPending;
+    }
+  }
+
+  private static class SortingDocValues extends DocValues {
+    private final DocValues in;
+    private final Sorter.DocMap docMap;
+
+    SortingDocValues(DocValues in, Sorter.DocMap docMap) {
+      this.in = in;
+      this.docMap = docMap;
+    }
+
+    @Override
+    public Source load() throws IOException {
+      return new SortingSource(in.load(), docMap);
+    }
+
+    @Override
+    public Source getDirectSource() throws IOException {
+      return new SortingSource(in.getDirectSource(), docMap);
+    }
+
+    @Override
+    public Type getType() {
+      return in.getType();
+    }
+
+    @Override
+    public int getValueSize() {
+      return in.getValueSize();
+    }
+  }
+
+  private static class SortingSource extends DocValues.Source {
+    private final DocValues.Source in;
+    private final Sorter.DocMap docMap;
+
+    SortingSource(DocValues.Source in, Sorter.DocMap docMap) {
+      super(in.getType());
+      this.in = in;
+      this.docMap = docMap;
+    }
+
+    @Override
+    public long getInt(int docID) {
+      return in.getInt(docMap.newToOld(docID));
+    }
+
+    @Override
+    public double getFloat(int docID) {
+      return in.getFloat(docMap.newToOld(docID));
+    }
+
+    @Override
+    public BytesRef getBytes(int docID, BytesRef ref) {
+      return in.getBytes(docMap.newToOld(docID), ref);
+    }
+
+    @Override
+    public DocValues.SortedSource asSortedSource() {
+      return new SortingSortedSource(in.asSortedSource(), docMap);
+    }
+  }
+
+  private static class SortingSortedSource extends DocValues.SortedSource {
+    private final DocValues.SortedSource in;
+    private final Sorter.DocMap docMap;
+
+    SortingSortedSource(DocValues.SortedSource in, Sorter.DocMap docMap) {
+      super(in.getType(), in.getComparator());
+      this.in = in;
+      this.docMap = docMap;
+    }
+
+    @Override
+    public int ord(int docID) {
+      return in.ord(docMap.newToOld(docID));
+    }
+
+    @Override
+    public BytesRef getByOrd(int ord, BytesRef result) {
+      return in.getByOrd(ord, result);
+    }
+
+    @Override
+    public int getValueCount() {
+      return in.getValueCount();
+    }
+
+    @Override
+    public boolean hasPackedDocToOrd() {
+      return false;
+    }
+
+    @Override
+    public PackedInts.Reader getDocToOrd() {
+      return null;
+    }
+  }
+
+}
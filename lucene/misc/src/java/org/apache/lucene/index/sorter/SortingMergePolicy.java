@@ -0,0 +1,226 @@
+package org.apache.lucene.index.sorter;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergeState;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.SegmentInfoPerCommit;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.SlowCompositeReaderWrapper;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.util.Bits;
+
+/** A {@link MergePolicy} that reorders documents according to a {@link Sort}
+ *  before merging them. As a consequence, all segments resulting from a merge
+ *  will be sorted while segments resulting from a flush will be in the order
+ *  in which documents have been added.
+ *  <p>The sort is recorded in the diagnostics of the merged segments under
+ *  {@link #SORTER_ID_PROP}, so that searches can find out whether a segment
+ *  is sorted, see {@link #isSorted(AtomicReader, Sort)} and
+ *  {@link EarlyTerminatingSortingCollector}.
+ *  <p><b>NOTE</b>: Never use this {@link MergePolicy} if you rely on
+ *  {@link IndexWriter#addDocuments(Iterable, org.apache.lucene.analysis.Analyzer)}
+ *  to have sequentially-assigned doc IDs, this policy will scatter doc IDs.
+ *  @lucene.experimental */
+public final class SortingMergePolicy extends MergePolicy {
+
+  /**
+   * Put in the {@link org.apache.lucene.index.SegmentInfo#getDiagnostics()
+   * diagnostics} to denote that this segment is sorted.
+   */
+  public static final String SORTER_ID_PROP = "sorter";
+
+  class SortingOneMerge extends OneMerge {
+
+    List<AtomicReader> unsortedReaders;
+    Sorter.DocMap docMap;
+    AtomicReader sortedView;
+
+    SortingOneMerge(List<SegmentInfoPerCommit> segments) {
+      super(segments);
+    }
+
+    @Override
+    public List<AtomicReader> getMergeReaders() throws IOException {
+      if (unsortedReaders == null) {
+        unsortedReaders = super.getMergeReaders();
+        if (unsortedReaders.isEmpty()) {
+          sortedView = null;
+        } else {
+          // the readers are owned by IndexWriter, closeSubReaders=true only
+          // prevents the MultiReader from incRef'ing them, it is never closed
+          final AtomicReader atomicView = SlowCompositeReaderWrapper.wrap(
+              new MultiReader(unsortedReaders.toArray(new IndexReader[unsortedReaders.size()]), true));
+          docMap = sorter.sort(atomicView);
+          sortedView = SortingAtomicReader.wrap(atomicView, docMap);
+        }
+      }
+      if (sortedView == null) {
+        return unsortedReaders;
+      }
+      return Collections.singletonList(sortedView);
+    }
+
+    @Override
+    public void setInfo(SegmentInfoPerCommit info) {
+      final Map<String,String> diagnostics = info.info.getDiagnostics();
+      diagnostics.put(SORTER_ID_PROP, sorter.getID());
+      super.setInfo(info);
+    }
+
+    @Override
+    public MergePolicy.DocMap getDocMap(final MergeState mergeState) {
+      if (unsortedReaders == null) {
+        throw new IllegalStateException("getMergeReaders() has not been called");
+      }
+      if (docMap == null) {
+        return super.getDocMap(mergeState);
+      }
+      assert mergeState.docMaps.length == 1; // we returned a singleton reader
+      final MergeState.DocMap sortedToMerged = mergeState.docMaps[0];
+      final Bits liveDocs = sortedView.getLiveDocs();
+      // natural doc ID (live docs in segment order) -> merged doc ID
+      final int[] naturalToMerged = new int[sortedView.numDocs()];
+      int natural = 0;
+      for (int oldDoc = 0; oldDoc < docMap.size(); ++oldDoc) {
+        final int newDoc = docMap.oldToNew(oldDoc);
+        if (liveDocs == null || liveDocs.get(newDoc)) {
+          naturalToMerged[natural++] = sortedToMerged.get(newDoc);
+        }
+      }
+      assert natural == naturalToMerged.length;
+      return new MergePolicy.DocMap() {
+        @Override
+        public int map(int old) {
+          return naturalToMerged[old];
+        }
+      };
+    }
+
+  }
+
+  class SortingMergeSpecification extends MergeSpecification {
+
+    @Override
+    public void add(OneMerge merge) {
+      super.add(new SortingOneMerge(merge.segments));
+    }
+
+    @Override
+    public String segString(org.apache.lucene.store.Directory dir) {
+      return "SortingMergeSpec(" + super.segString(dir) + ", sorter=" + sorter + ")";
+    }
+
+  }
+
+  /** Returns true if the given reader is sorted by the given sort. */
+  public static boolean isSorted(AtomicReader reader, Sort sort) {
+    if (reader instanceof SegmentReader) {
+      final SegmentReader segReader = (SegmentReader) reader;
+      final Map<String, String> diagnostics = segReader.getSegmentInfo().info.getDiagnostics();
+      if (diagnostics != null && new Sorter(sort).getID().equals(diagnostics.get(SORTER_ID_PROP))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private MergeSpecification sortedMergeSpecification(MergeSpecification specification) {
+    if (specification == null) {
+      return null;
+    }
+    MergeSpecification sortingSpec = new SortingMergeSpecification();
+    for (OneMerge merge : specification.merges) {
+      sortingSpec.add(merge);
+    }
+    return sortingSpec;
+  }
+
+  final MergePolicy in;
+  final Sorter sorter;
+  final Sort sort;
+
+  /** Create a new {@link MergePolicy} that sorts documents with <code>sort</code>. */
+  public SortingMergePolicy(MergePolicy in, Sort sort) {
+    this.in = in;
+    this.sorter = new Sorter(sort);
+    this.sort = sort;
+  }
+
+  /** Return the {@link Sort} this merge policy sorts segments with. */
+  public Sort getSort() {
+    return sort;
+  }
+
+  @Override
+  public MergeSpecification findMerges(SegmentInfos segmentInfos)
+      throws CorruptIndexException, IOException {
+    return sortedMergeSpecification(in.findMerges(segmentInfos));
+  }
+
+  @Override
+  public MergeSpecification findForcedMerges(SegmentInfos segmentInfos,
+      int maxSegmentCount, Map<SegmentInfoPerCommit,Boolean> segmentsToMerge)
+      throws CorruptIndexException, IOException {
+    return sortedMergeSpecification(in.findForcedMerges(segmentInfos, maxSegmentCount, segmentsToMerge));
+  }
+
+  @Override
+  public MergeSpecification findForcedDeletesMerges(SegmentInfos segmentInfos)
+      throws CorruptIndexException, IOException {
+    return sortedMergeSpecification(in.findForcedDeletesMerges(segmentInfos));
+  }
+
+  @Override
+  public MergePolicy clone() {
+    return new SortingMergePolicy(in.clone(), sort);
+  }
+
+  @Override
+  public void close() {
+    in.close();
+  }
+
+  @Override
+  public boolean useCompoundFile(SegmentInfos segments,
+      SegmentInfoPerCommit newSegment) throws IOException {
+    return in.useCompoundFile(segments, newSegment);
+  }
+
+  @Override
+  public void setIndexWriter(IndexWriter writer) {
+    in.setIndexWriter(writer);
+  }
+
+  @Override
+  public String toString() {
+    return "SortingMergePolicy(" + in + ", sorter=" + sorter + ")";
+  }
+
+}
@@ -0,0 +1,117 @@
+package org.apache.lucene.index.sorter;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.LuceneTestCase.SuppressCodecs;
+import org.apache.lucene.util._TestUtil;
+
+// codecs that don't support offsets
+@SuppressCodecs({"MockFixedIntBlock", "MockVariableIntBlock", "MockSep", "MockRandom", "Block", "Lucene3x"})
+public class TestEarlyTerminatingSortingCollector extends LuceneTestCase {
+
+  private Directory dir;
+  private DirectoryReader reader;
+  private int numDocs;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    dir = newDirectory();
+    final IndexWriter w = new IndexWriter(dir, TestSortingMergePolicy.newSortingConfig());
+    numDocs = atLeast(150);
+    for (int id = 0; id < numDocs; id++) {
+      w.addDocument(TestSortingMergePolicy.randomDocument(id, random().nextInt(numDocs / 3),
+          TestSortingMergePolicy.randomBody(), false));
+      if (rarely()) {
+        w.commit();
+      }
+    }
+    if (random().nextBoolean()) {
+      w.forceMerge(_TestUtil.nextInt(random(), 1, 3));
+    }
+    // a few flushed segments which are not sorted
+    final int numUnsorted = random().nextInt(10);
+    for (int i = 0; i < numUnsorted; i++) {
+      w.addDocument(TestSortingMergePolicy.randomDocument(numDocs + i, random().nextInt(numDocs / 3),
+          TestSortingMergePolicy.randomBody(), false));
+    }
+    numDocs += numUnsorted;
+    reader = DirectoryReader.open(w, true);
+    w.close();
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    reader.close();
+    dir.close();
+    super.tearDown();
+  }
+
+  public void testEarlyTermination() throws Exception {
+    // the leaves must be SegmentReaders to be detected as sorted
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    final int iters = atLeast(5);
+    for (int i = 0; i < iters; i++) {
+      final int numHits = _TestUtil.nextInt(random(), 1, numDocs);
+      final Query query = random().nextBoolean()
+          ? new MatchAllDocsQuery()
+          : new TermQuery(new Term("body", Character.toString((char) ('a' + random().nextInt(7)))));
+      final boolean inOrder = random().nextBoolean();
+      final TopFieldCollector collector1 = TopFieldCollector.create(TestSortingMergePolicy.SORT, numHits, true, false, false, inOrder);
+      final TopFieldCollector collector2 = TopFieldCollector.create(TestSortingMergePolicy.SORT, numHits, true, false, false, inOrder);
+      searcher.search(query, collector1);
+      searcher.search(query, new EarlyTerminatingSortingCollector(collector2, TestSortingMergePolicy.SORT, numHits));
+      assertTrue(collector1.getTotalHits() >= collector2.getTotalHits());
+      assertTopDocsEquals(collector1.topDocs().scoreDocs, collector2.topDocs().scoreDocs);
+    }
+  }
+
+  public void testEarlyTerminationDifferentSorter() throws Exception {
+    // segments are not sorted by this sort, so nothing may be skipped
+    final Sort sort = new Sort(new SortField("ndv", SortField.Type.LONG, true));
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    final int numHits = _TestUtil.nextInt(random(), 1, numDocs);
+    final TopFieldCollector collector1 = TopFieldCollector.create(sort, numHits, true, false, false, random().nextBoolean());
+    final TopFieldCollector collector2 = TopFieldCollector.create(sort, numHits, true, false, false, random().nextBoolean());
+    searcher.search(new MatchAllDocsQuery(), collector1);
+    searcher.search(new MatchAllDocsQuery(), new EarlyTerminatingSortingCollector(collector2, sort, numHits));
+    assertEquals(collector1.getTotalHits(), collector2.getTotalHits());
+    assertTopDocsEquals(collector1.topDocs().scoreDocs, collector2.topDocs().scoreDocs);
+  }
+
+  private static void assertTopDocsEquals(ScoreDoc[] scoreDocs1, ScoreDoc[] scoreDocs2) {
+    assertEquals(scoreDocs1.length, scoreDocs2.length);
+    for (int i = 0; i < scoreDocs1.length; ++i) {
+      assertEquals(scoreDocs1[i].doc, scoreDocs2[i].doc);
+    }
+  }
+
+}
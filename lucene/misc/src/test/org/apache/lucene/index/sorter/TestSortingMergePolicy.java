@@ -0,0 +1,256 @@
+package org.apache.lucene.index.sorter;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.analysis.MockTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.PackedLongDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocsAndPositionsEnum;
+import org.apache.lucene.index.FieldInfo.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.LuceneTestCase.SuppressCodecs;
+import org.apache.lucene.util._TestUtil;
+
+// codecs that don't support offsets
+@SuppressCodecs({"MockFixedIntBlock", "MockVariableIntBlock", "MockSep", "MockRandom", "Block", "Lucene3x"})
+public class TestSortingMergePolicy extends LuceneTestCase {
+
+  private static final String[] WORDS = new String[] {"a", "b", "c", "d", "e", "f", "g"};
+
+  static final Sort SORT = new Sort(new SortField("ndv", SortField.Type.LONG));
+
+  static Document randomDocument(int id, long value, String body, boolean termVectors) {
+    final Document doc = new Document();
+    doc.add(new StringField("id", Integer.toString(id), Field.Store.YES));
+    doc.add(new StringField("ndv", Long.toString(value), Field.Store.YES));
+    final FieldType bodyType = new FieldType(TextField.TYPE_NOT_STORED);
+    bodyType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+    bodyType.setStoreTermVectors(termVectors);
+    doc.add(new Field("body", body, bodyType));
+    doc.add(new PackedLongDocValuesField("dv", 3 * (long) id));
+    return doc;
+  }
+
+  static String randomBody() {
+    final int numTokens = _TestUtil.nextInt(random(), 1, 10);
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < numTokens; i++) {
+      if (i > 0) {
+        sb.append(' ');
+      }
+      sb.append(WORDS[random().nextInt(WORDS.length)]);
+    }
+    return sb.toString();
+  }
+
+  static IndexWriterConfig newSortingConfig() {
+    final IndexWriterConfig iwc = newIndexWriterConfig(TEST_VERSION_CURRENT,
+        new MockAnalyzer(random(), MockTokenizer.WHITESPACE, false));
+    iwc.setMaxBufferedDocs(_TestUtil.nextInt(random(), 2, 20));
+    iwc.setMergePolicy(new SortingMergePolicy(newLogMergePolicy(_TestUtil.nextInt(random(), 2, 5)), SORT));
+    return iwc;
+  }
+
+  public void testSortedMerge() throws Exception {
+    final Directory dir = newDirectory();
+    final IndexWriter w = new IndexWriter(dir, newSortingConfig());
+    final int numDocs = atLeast(200);
+    final Map<Integer,Long> values = new HashMap<Integer,Long>();
+    final Map<Integer,String> bodies = new HashMap<Integer,String>();
+    final boolean termVectors = random().nextBoolean();
+    for (int id = 0; id < numDocs; id++) {
+      final long value = random().nextInt(numDocs / 4); // plenty of ties
+      final String body = randomBody();
+      w.addDocument(randomDocument(id, value, body, termVectors));
+      values.put(id, value);
+      bodies.put(id, body);
+      if (rarely()) {
+        w.commit();
+      }
+      if (id > 0 && random().nextInt(5) == 0) {
+        // deletes may land while merges are running
+        final int toDelete = random().nextInt(id);
+        w.deleteDocuments(new Term("id", Integer.toString(toDelete)));
+        values.remove(toDelete);
+        bodies.remove(toDelete);
+      }
+    }
+    w.forceMerge(1);
+    w.close();
+
+    final DirectoryReader reader = DirectoryReader.open(dir);
+    assertEquals(1, reader.getSequentialSubReaders().size());
+    final AtomicReader segment = reader.getSequentialSubReaders().get(0);
+    assertTrue(segment instanceof SegmentReader);
+    assertTrue(SortingMergePolicy.isSorted(segment, SORT));
+    assertFalse(SortingMergePolicy.isSorted(segment, new Sort(new SortField("ndv", SortField.Type.LONG, true))));
+    assertEquals(values.size(), segment.numDocs());
+
+    // stored fields are in sort order, all remaining docs are live
+    final int[] docToId = new int[segment.maxDoc()];
+    long previous = Long.MIN_VALUE;
+    final Set<Integer> seen = new HashSet<Integer>();
+    for (int doc = 0; doc < segment.maxDoc(); doc++) {
+      final Document stored = segment.document(doc);
+      final int id = Integer.parseInt(stored.get("id"));
+      final long value = Long.parseLong(stored.get("ndv"));
+      assertTrue("doc " + id + " should have been deleted", values.containsKey(id));
+      assertEquals(values.get(id).longValue(), value);
+      assertTrue(value >= previous);
+      previous = value;
+      assertTrue(seen.add(id));
+      docToId[doc] = id;
+    }
+
+    // doc values follow the documents
+    final DocValues.Source dv = segment.docValues("dv").getDirectSource();
+    for (int doc = 0; doc < segment.maxDoc(); doc++) {
+      assertEquals(3 * (long) docToId[doc], dv.getInt(doc));
+    }
+
+    // postings follow the documents
+    final Map<String,Map<Integer,List<int[]>>> expected = new HashMap<String,Map<Integer,List<int[]>>>();
+    for (Map.Entry<Integer,String> entry : bodies.entrySet()) {
+      final String body = entry.getValue();
+      int position = 0;
+      int start = 0;
+      for (String token : body.split(" ")) {
+        Map<Integer,List<int[]>> postings = expected.get(token);
+        if (postings == null) {
+          expected.put(token, postings = new HashMap<Integer,List<int[]>>());
+        }
+        List<int[]> positions = postings.get(entry.getKey());
+        if (positions == null) {
+          postings.put(entry.getKey(), positions = new ArrayList<int[]>());
+        }
+        positions.add(new int[] {position++, start, start + token.length()});
+        start += token.length() + 1;
+      }
+    }
+    final Terms terms = segment.terms("body");
+    final TermsEnum termsEnum = terms.iterator(null);
+    DocsAndPositionsEnum postings = null;
+    int numTerms = 0;
+    BytesRef term;
+    while ((term = termsEnum.next()) != null) {
+      final Map<Integer,List<int[]>> expectedPostings = expected.get(term.utf8ToString());
+      assertNotNull(expectedPostings);
+      postings = termsEnum.docsAndPositions(segment.getLiveDocs(), postings, true);
+      int previousDoc = -1;
+      int numDocsForTerm = 0;
+      int doc;
+      while ((doc = postings.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        assertTrue(doc > previousDoc);
+        previousDoc = doc;
+        final List<int[]> expectedPositions = expectedPostings.get(docToId[doc]);
+        assertNotNull(expectedPositions);
+        assertEquals(expectedPositions.size(), postings.freq());
+        for (int[] expectedPosition : expectedPositions) {
+          assertEquals(expectedPosition[0], postings.nextPosition());
+          assertEquals(expectedPosition[1], postings.startOffset());
+          assertEquals(expectedPosition[2], postings.endOffset());
+        }
+        numDocsForTerm++;
+      }
+      assertEquals(expectedPostings.size(), numDocsForTerm);
+      numTerms++;
+    }
+    assertEquals(expected.size(), numTerms);
+
+    if (termVectors) {
+      for (int doc = 0; doc < segment.maxDoc(); doc++) {
+        final Set<String> expectedTerms = new HashSet<String>();
+        for (String token : bodies.get(docToId[doc]).split(" ")) {
+          expectedTerms.add(token);
+        }
+        final TermsEnum vector = segment.getTermVectors(doc).terms("body").iterator(null);
+        final Set<String> actualTerms = new HashSet<String>();
+        while ((term = vector.next()) != null) {
+          actualTerms.add(term.utf8ToString());
+        }
+        assertEquals(expectedTerms, actualTerms);
+      }
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testWrapReader() throws Exception {
+    final Directory dir = newDirectory();
+    // keep doc IDs in insertion order
+    final IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(TEST_VERSION_CURRENT,
+        new MockAnalyzer(random(), MockTokenizer.WHITESPACE, false)).setMergePolicy(newLogMergePolicy()));
+    final int numDocs = atLeast(20);
+    for (int id = 0; id < numDocs; id++) {
+      w.addDocument(randomDocument(id, numDocs - id, randomBody(), false));
+    }
+    w.forceMerge(1);
+    w.close();
+
+    final DirectoryReader reader = DirectoryReader.open(dir);
+    final AtomicReader segment = reader.getSequentialSubReaders().get(0);
+    final AtomicReader sorted = SortingAtomicReader.wrap(segment, SORT);
+    assertNotSame(segment, sorted);
+    assertNotSame(segment.getCoreCacheKey(), sorted.getCoreCacheKey());
+    for (int doc = 0; doc < numDocs; doc++) {
+      // values were added in reverse order
+      assertEquals(numDocs - 1 - doc, Integer.parseInt(sorted.document(doc).get("id")));
+    }
+    // the reversed sort matches the order of the segment
+    assertSame(segment, SortingAtomicReader.wrap(segment, new Sort(new SortField("ndv", SortField.Type.LONG, true))));
+    reader.close();
+    dir.close();
+  }
+
+  public void testScoreSortIsRejected() {
+    try {
+      new Sorter(Sort.RELEVANCE);
+      fail("sorting an index by score must not be supported");
+    } catch (IllegalArgumentException expected) {
+      // pass
+    }
+  }
+
+}
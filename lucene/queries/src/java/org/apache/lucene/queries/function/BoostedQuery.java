@@ -71,7 +71,7 @@ public class BoostedQuery extends Query {
 
     public BoostedWeight(IndexSearcher searcher) throws IOException {
       this.searcher = searcher;
-      this.qWeight = q.createWeight(searcher);
+      this.qWeight = searcher.createWeight(q);
       this.fcontext = ValueSource.newContext(searcher);
       boostVal.createWeight(fcontext,searcher);
     }
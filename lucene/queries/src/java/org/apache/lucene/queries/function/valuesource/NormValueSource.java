@@ -19,6 +19,7 @@ package org.apache.lucene.queries.function.valuesource;
 
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValues.Source;
 import org.apache.lucene.queries.function.FunctionValues;
 import org.apache.lucene.queries.function.ValueSource;
 import org.apache.lucene.queries.function.docvalues.FloatDocValues;
@@ -61,12 +62,23 @@ public class NormValueSource extends ValueSource {
       return new ConstDoubleDocValues(0.0, this);
     }
     
-    final byte[] norms = (byte[]) dv.getSource().getArray();
+    final Source norms = dv.getSource();
 
+    if (norms.hasArray()) {
+      final byte[] normsArray = (byte[]) norms.getArray();
+      return new FloatDocValues(this) {
+        @Override
+        public float floatVal(int doc) {
+          return similarity.decodeNormValue(normsArray[doc]);
+        }
+      };
+    }
+
+    // norms which are not backed by an array, such as packed norms
     return new FloatDocValues(this) {
       @Override
       public float floatVal(int doc) {
-        return similarity.decodeNormValue(norms[doc]);
+        return similarity.decodeNormValue((byte) norms.getInt(doc));
       }
     };
   }
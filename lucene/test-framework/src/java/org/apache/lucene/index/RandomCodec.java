@@ -28,6 +28,8 @@ import java.util.Random;
 import java.util.Set;
 
 import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.block.BlockPostingsFormat;
+import org.apache.lucene.codecs.bloom.BloomFilteringPostingsFormat;
 import org.apache.lucene.codecs.lucene40.Lucene40Codec;
 import org.apache.lucene.codecs.lucene40.Lucene40PostingsFormat;
 import org.apache.lucene.codecs.lucene40ords.Lucene40WithOrds;
@@ -100,7 +102,9 @@ public class RandomCodec extends Lucene40Codec {
         new Lucene40WithOrds(),
         new SimpleTextPostingsFormat(),
         new MemoryPostingsFormat(true, random.nextFloat()),
-        new MemoryPostingsFormat(false, random.nextFloat()));
+        new MemoryPostingsFormat(false, random.nextFloat()),
+        new BlockPostingsFormat(minItemsPerBlock, maxItemsPerBlock),
+        new BloomFilteringPostingsFormat(new Lucene40PostingsFormat(minItemsPerBlock, maxItemsPerBlock), _TestUtil.nextInt(random, 1, 16)));
 
     Collections.shuffle(formats, random);
   }
@@ -106,11 +106,26 @@ public class AssertingIndexSearcher extends IndexSearcher {
   protected Query wrapFilter(Query query, Filter filter) {
     if (random.nextBoolean())
       return super.wrapFilter(query, filter);
-    return (filter == null) ? query : new FilteredQuery(query, filter) {
+    return (filter == null) ? query : new FilteredQuery(query, filter, new FilteredQuery.FilterStrategy() {
+      // picks a random strategy for each segment
+      private final FilteredQuery.FilterStrategy[] strategies = new FilteredQuery.FilterStrategy[] {
+        FilteredQuery.DEFAULT_FILTER_STRATEGY,
+        FilteredQuery.LEAP_FROG_FILTER_STRATEGY,
+        FilteredQuery.LEAP_FROG_FILTER_FIRST_STRATEGY,
+        FilteredQuery.LEAP_FROG_QUERY_FIRST_STRATEGY,
+        FilteredQuery.QUERY_FIRST_FILTER_STRATEGY,
+        FilteredQuery.RANDOM_ACCESS_FILTER_STRATEGY
+      };
+
       @Override
-      protected boolean useRandomAccess(Bits bits, int firstFilterDoc) {
-        return random.nextBoolean();
+      public Scorer filteredScorer(AtomicReaderContext context, boolean scoreDocsInOrder,
+          boolean topScorer, Weight weight, DocIdSet docIdSet) throws IOException {
+        final FilteredQuery.FilterStrategy strategy;
+        synchronized (random) {
+          strategy = strategies[random.nextInt(strategies.length)];
+        }
+        return strategy.filteredScorer(context, scoreDocsInOrder, topScorer, weight, docIdSet);
       }
-    };
+    });
   }
 }
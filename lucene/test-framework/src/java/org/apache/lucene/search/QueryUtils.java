@@ -18,7 +18,9 @@ package org.apache.lucene.search;
  */
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import junit.framework.Assert;
@@ -102,6 +104,7 @@ public class QueryUtils {
    * @see #check(Query)
    * @see #checkFirstSkipTo
    * @see #checkSkipTo
+   * @see #checkTwoPhase
    * @see #checkExplanations
    * @see #checkEqual
    */
@@ -114,6 +117,7 @@ public class QueryUtils {
       if (s!=null) {
         checkFirstSkipTo(q1,s);
         checkSkipTo(q1,s);
+        checkTwoPhase(random, q1, s);
         if (wrap) {
           check(random, q1, wrapUnderlyingReader(random, s, -1), false);
           check(random, q1, wrapUnderlyingReader(random, s,  0), false);
@@ -445,4 +449,62 @@ public class QueryUtils {
       }
     }
   }
+
+  /**
+   * Check that the {@link Scorer#asTwoPhaseIterator() two-phase view} of the
+   * scorers of the query, if any, matches the same documents with the same
+   * scores as the scorers themselves, and that its approximation iterates
+   * over a superset of these documents.
+   * @return whether the scorer of at least one segment had a two-phase view
+   */
+  public static boolean checkTwoPhase(Random random, Query q, IndexSearcher s) throws IOException {
+    final float maxDiff = 1e-5f;
+    boolean hasTwoPhase = false;
+    final Weight w = s.createNormalizedWeight(q);
+    for (AtomicReaderContext context : s.getTopReaderContext().leaves()) {
+      final Bits liveDocs = context.reader().getLiveDocs();
+      final Scorer plain = w.scorer(context, true, false, liveDocs);
+      if (plain == null) {
+        continue;
+      }
+      final Map<Integer,Float> expected = new HashMap<Integer,Float>();
+      for (int doc = plain.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = plain.nextDoc()) {
+        expected.put(doc, plain.score());
+      }
+
+      for (boolean skip : new boolean[] { false, true }) {
+        final Scorer scorer = w.scorer(context, true, false, liveDocs);
+        final TwoPhaseIterator twoPhase = scorer.asTwoPhaseIterator();
+        if (twoPhase == null) {
+          continue;
+        }
+        hasTwoPhase = true;
+        final DocIdSetIterator approximation = twoPhase.approximation();
+        int matched = 0;
+        int target = 0;
+        for (;;) {
+          final int doc = skip ? approximation.advance(target) : approximation.nextDoc();
+          for (int i = target; i < doc && i < context.reader().maxDoc(); i++) {
+            Assert.assertFalse("approximation of " + q + " skipped over match " + i, expected.containsKey(i));
+          }
+          if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+            break;
+          }
+          Assert.assertEquals(doc, scorer.docID());
+          if (twoPhase.matches()) {
+            Assert.assertTrue("two-phase view of " + q + " matched " + doc + " but the scorer did not", expected.containsKey(doc));
+            Assert.assertEquals("score of doc " + doc + " for " + q, expected.get(doc), scorer.score(), maxDiff);
+            matched++;
+          } else {
+            Assert.assertFalse("two-phase view of " + q + " rejected match " + doc, expected.containsKey(doc));
+          }
+          target = doc + 1 + (skip ? random.nextInt(3) : 0);
+        }
+        if (!skip) {
+          Assert.assertEquals("matches of the two-phase view of " + q, expected.size(), matched);
+        }
+      }
+    }
+    return hasTwoPhase;
+  }
 }
@@ -124,6 +124,12 @@ public class MockIndexInputWrapper extends IndexInput {
     delegate.copyBytes(out, numBytes);
   }
 
+  @Override
+  public RandomAccessInput randomAccessSlice(long offset, long length) throws IOException {
+    ensureOpen();
+    return delegate.randomAccessSlice(offset, length);
+  }
+
   @Override
   public void readBytes(byte[] b, int offset, int len, boolean useBuffer)
       throws IOException {
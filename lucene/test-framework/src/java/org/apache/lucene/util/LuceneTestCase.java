@@ -357,6 +357,7 @@ public abstract class LuceneTestCase extends Assert {
   @Before
   public void setUp() throws Exception {
     parentChainCallRule.setupCalled = true;
+    flushExecutorsOfTest = new ArrayList<ExecutorService>();
   }
 
   /**
@@ -365,8 +366,24 @@ public abstract class LuceneTestCase extends Assert {
   @After
   public void tearDown() throws Exception {
     parentChainCallRule.teardownCalled = true;
+    final List<ExecutorService> executors = flushExecutorsOfTest;
+    flushExecutorsOfTest = null;
+    if (executors != null) {
+      synchronized (executors) {
+        for (ExecutorService ex : executors) {
+          _TestUtil.shutdownExecutorService(ex);
+        }
+      }
+    }
   }
 
+  /**
+   * Flush executors created by {@link #newIndexWriterConfig} while a test
+   * runs; they are shut down after the test. Executors created outside of a
+   * test (e.g. in a {@link BeforeClass} hook) live until the end of the suite.
+   */
+  private static volatile List<ExecutorService> flushExecutorsOfTest;
+
 
   // -----------------------------------------------------------------
   // Test facilities and facades for subclasses. 
@@ -656,6 +673,14 @@ public abstract class LuceneTestCase extends Assert {
       }
     }
 
+    if (rarely(r)) {
+      c.setByteBlockAllocator(new RecyclingByteBlockAllocator(ByteBlockPool.BYTE_BLOCK_SIZE, _TestUtil.nextInt(r, 1, 64)));
+    }
+
+    if (rarely(r)) {
+      c.setFlushExecutor(newFlushExecutor(r));
+    }
+
     if (rarely(r)) {
       c.setMergePolicy(new MockRandomMergePolicy(r));
     } else if (r.nextBoolean()) {
@@ -671,6 +696,30 @@ public abstract class LuceneTestCase extends Assert {
     return c;
   }
 
+  private static ExecutorService newFlushExecutor(Random r) {
+    final int threads = _TestUtil.nextInt(r, 1, 4);
+    final ExecutorService ex = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new NamedThreadFactory("LuceneTestCase-flush"));
+    if (VERBOSE) {
+      System.out.println("NOTE: newIndexWriterConfig using flush ExecutorService with " + threads + " threads");
+    }
+    final List<ExecutorService> executors = flushExecutorsOfTest;
+    if (executors != null) {
+      synchronized (executors) {
+        executors.add(ex);
+      }
+    } else {
+      closeAfterSuite(new Closeable() {
+        @Override
+        public void close() {
+          _TestUtil.shutdownExecutorService(ex);
+        }
+      });
+    }
+    return ex;
+  }
+
   public static LogMergePolicy newLogMergePolicy() {
     return newLogMergePolicy(random());
   }
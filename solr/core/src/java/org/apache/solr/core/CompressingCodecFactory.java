@@ -0,0 +1,74 @@
+package org.apache.solr.core;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.compressing.Compressing40Codec;
+import org.apache.lucene.codecs.compressing.CompressingStoredFieldsFormat;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SchemaField;
+
+/**
+ * CodecFactory which stores fields with Lucene's
+ * {@link CompressingStoredFieldsFormat}, trading some CPU at
+ * document loading time for a much smaller stored fields footprint.
+ * Postings formats are picked according to the schema configuration,
+ * like {@link DefaultCodecFactory}.
+ * <p>
+ * The size of the compressed chunks can be configured with the
+ * <code>chunkSize</code> init arg (in bytes):
+ * <pre class="prettyprint">
+ * &lt;codecFactory class="solr.CompressingCodecFactory"&gt;
+ *   &lt;int name="chunkSize"&gt;16384&lt;/int&gt;
+ * &lt;/codecFactory&gt;
+ * </pre>
+ * @lucene.experimental
+ */
+public class CompressingCodecFactory extends CodecFactory {
+
+  private int chunkSize = CompressingStoredFieldsFormat.DEFAULT_CHUNK_SIZE;
+
+  @Override
+  public void init(NamedList args) {
+    super.init(args);
+    if (args != null) {
+      chunkSize = SolrParams.toSolrParams(args).getInt("chunkSize", chunkSize);
+    }
+  }
+
+  @Override
+  public Codec create(final IndexSchema schema) {
+    return new Compressing40Codec(chunkSize) {
+      @Override
+      public PostingsFormat getPostingsFormatForField(String field) {
+        final SchemaField fieldOrNull = schema.getFieldOrNull(field);
+        if (fieldOrNull == null) {
+          throw new IllegalArgumentException("no such field " + field);
+        }
+        String postingsFormatName = fieldOrNull.getType().getPostingsFormat();
+        if (postingsFormatName != null) {
+          return PostingsFormat.forName(postingsFormatName);
+        }
+        return super.getPostingsFormatForField(field);
+      }
+    };
+  }
+}
@@ -0,0 +1,110 @@
+package org.apache.solr.core;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NativeUnixDirectory;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+
+/**
+ *  Provides a {@link NativeUnixDirectory} that reads through a {@link MMapDirectory}
+ *  and writes large merges with direct IO (O_DIRECT), so that merging does not
+ *  evict the search working set from the OS page cache.
+ *
+ *  <p>This requires the <code>libNativePosixUtil</code> JNI library from
+ *  lucene/misc (see {@link NativeUnixDirectory}) to be on the
+ *  <code>java.library.path</code>. If it cannot be loaded, a warning is logged
+ *  and the plain {@link MMapDirectory} is used instead.
+ *
+ * Can set the following parameters:
+ * <ul>
+ *  <li>unmap -- See {@link org.apache.lucene.store.MMapDirectory#setUseUnmap(boolean)}</li>
+ *  <li>maxChunkSize -- The Max chunk size.  See {@link org.apache.lucene.store.MMapDirectory#setMaxChunkSize(int)}</li>
+ *  <li>mergeBufferSize -- Size of the direct IO buffer used by merges, must be a multiple of 512.
+ *      See {@link NativeUnixDirectory#DEFAULT_MERGE_BUFFER_SIZE}</li>
+ *  <li>minBytesDirect -- Merges smaller than this do not use direct IO.
+ *      See {@link NativeUnixDirectory#DEFAULT_MIN_BYTES_DIRECT}</li>
+ * </ul>
+ *
+ **/
+public class NativeUnixDirectoryFactory extends CachingDirectoryFactory {
+  private transient static Logger log = LoggerFactory.getLogger(NativeUnixDirectoryFactory.class);
+
+  /** Whether the JNI library used by {@link NativeUnixDirectory} could be loaded. */
+  public static final boolean NATIVE_AVAILABLE;
+
+  static {
+    boolean available;
+    try {
+      // loads libNativePosixUtil in its static initializer
+      Class.forName("org.apache.lucene.store.NativePosixUtil");
+      available = true;
+    } catch (ClassNotFoundException e) {
+      available = false;
+    } catch (LinkageError e) {
+      available = false;
+    }
+    NATIVE_AVAILABLE = available;
+  }
+
+  boolean unmapHack;
+  private int maxChunk;
+  private int mergeBufferSize;
+  private long minBytesDirect;
+
+  @Override
+  public void init(NamedList args) {
+    SolrParams params = SolrParams.toSolrParams( args );
+    maxChunk = params.getInt("maxChunkSize", MMapDirectory.DEFAULT_MAX_BUFF);
+    if (maxChunk <= 0){
+      throw new IllegalArgumentException("maxChunk must be greater than 0");
+    }
+    unmapHack = params.getBool("unmap", true);
+    mergeBufferSize = params.getInt("mergeBufferSize", NativeUnixDirectory.DEFAULT_MERGE_BUFFER_SIZE);
+    if (mergeBufferSize <= 0 || mergeBufferSize % 512 != 0) {
+      throw new IllegalArgumentException("mergeBufferSize must be a positive multiple of 512");
+    }
+    String minBytes = params.get("minBytesDirect");
+    minBytesDirect = minBytes == null ? NativeUnixDirectory.DEFAULT_MIN_BYTES_DIRECT : Long.parseLong(minBytes);
+    if (!NATIVE_AVAILABLE) {
+      log.warn("NativePosixUtil JNI library could not be loaded, merges will not use direct IO");
+    }
+  }
+
+  @Override
+  protected Directory create(String path) throws IOException {
+    MMapDirectory mapDirectory = new MMapDirectory(new File(path));
+    try {
+      mapDirectory.setUseUnmap(unmapHack);
+    } catch (Exception e) {
+      log.warn("Unmap not supported on this JVM, continuing on without setting unmap", e);
+    }
+    mapDirectory.setMaxChunkSize(maxChunk);
+    if (!NATIVE_AVAILABLE) {
+      return mapDirectory;
+    }
+    return new NativeUnixDirectory(new File(path), mergeBufferSize, minBytesDirect, mapDirectory);
+  }
+}
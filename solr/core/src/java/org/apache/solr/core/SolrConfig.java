@@ -164,6 +164,8 @@ public class SolrConfig extends Config {
     queryResultWindowSize = Math.max(1, getInt("query/queryResultWindowSize", 1));
     queryResultMaxDocsCached = getInt("query/queryResultMaxDocsCached", Integer.MAX_VALUE);
     enableLazyFieldLoading = getBool("query/enableLazyFieldLoading", false);
+    parallelSegmentSearchThreads = getInt("query/parallelSegmentSearchThreads", 0);
+    compressFilterCache = getBool("query/compressFilterCache", false);
 
     
     filterCacheConfig = CacheConfig.getConfig(this, "query/filterCache");
@@ -221,7 +223,7 @@ public class SolrConfig extends Config {
 
      loadPluginInfo(DirectoryFactory.class,"directoryFactory",false, true);
      loadPluginInfo(IndexDeletionPolicy.class,indexConfigPrefix+"/deletionPolicy",false, true);
-     loadPluginInfo(CodecFactory.class,"mainIndex/codecFactory",false, false);
+     loadPluginInfo(CodecFactory.class,"codecFactory",false, false);
      loadPluginInfo(IndexReaderFactory.class,"indexReaderFactory",false, true);
      loadPluginInfo(UpdateRequestProcessorChain.class,"updateRequestProcessorChain",false, false);
      loadPluginInfo(UpdateLog.class,"updateHandler/updateLog",false, false);
@@ -273,6 +275,8 @@ public class SolrConfig extends Config {
   public final int queryResultWindowSize;
   public final int queryResultMaxDocsCached;
   public final boolean enableLazyFieldLoading;
+  public final int parallelSegmentSearchThreads;
+  public final boolean compressFilterCache;
   public final boolean reopenReaders;
   // DocSet
   public final float hashSetInverseLoadFactor;
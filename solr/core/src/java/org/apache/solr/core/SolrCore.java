@@ -47,6 +47,7 @@ import org.apache.solr.update.DirectUpdateHandler2;
 import org.apache.solr.update.SolrIndexWriter;
 import org.apache.solr.update.UpdateHandler;
 import org.apache.solr.update.processor.*;
+import org.apache.solr.util.DefaultSolrThreadFactory;
 import org.apache.solr.util.RefCounted;
 import org.apache.solr.util.plugin.NamedListInitializedPlugin;
 import org.apache.solr.util.plugin.PluginInfoInitialized;
@@ -139,6 +140,15 @@ public final class SolrCore implements SolrInfoMBean {
   public SolrConfig getSolrConfig() {
     return solrConfig;
   }
+
+  /**
+   * Gets the executor used by searchers to collect the segments of
+   * the index concurrently, or null if parallelSegmentSearchThreads
+   * is not configured.
+   */
+  public ExecutorService getSegmentSearchExecutor() {
+    return segmentSearchExecutor;
+  }
   
   /**
    * Gets the schema resource name used by this core instance.
@@ -546,6 +556,9 @@ public final class SolrCore implements SolrInfoMBean {
     this.solrConfig = config;
     this.startTime = System.currentTimeMillis();
     this.maxWarmingSearchers = config.maxWarmingSearchers;
+    this.segmentSearchExecutor = config.parallelSegmentSearchThreads > 0
+        ? Executors.newFixedThreadPool(config.parallelSegmentSearchThreads, new DefaultSolrThreadFactory("segmentSearcher"))
+        : null;
 
     booleanQueryMaxClauseCount();
   
@@ -775,6 +788,11 @@ public final class SolrCore implements SolrInfoMBean {
       SolrException.log(log,e);
     }
 
+    if (segmentSearchExecutor != null) {
+      // searchers are closed, nothing can submit work anymore
+      segmentSearchExecutor.shutdown();
+    }
+
     try {
       if (updateHandler != null) updateHandler.close();
     } catch (Throwable e) {
@@ -985,6 +1003,7 @@ public final class SolrCore implements SolrInfoMBean {
   private final LinkedList<RefCounted<SolrIndexSearcher>> _realtimeSearchers = new LinkedList<RefCounted<SolrIndexSearcher>>();
 
   final ExecutorService searcherExecutor = Executors.newSingleThreadExecutor();
+  private final ExecutorService segmentSearchExecutor; // null unless parallelSegmentSearchThreads > 0
   private int onDeckSearchers;  // number of searchers preparing
   // Lock ordering: one can acquire the openSearcherLock and then the searcherLock, but not vice-versa.
   private Object searcherLock = new Object();  // the sync object for the searcher
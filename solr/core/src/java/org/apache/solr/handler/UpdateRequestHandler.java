@@ -53,6 +53,7 @@ public class UpdateRequestHandler extends ContentStreamHandlerBase {
   public static final String OPTIMIZE = "optimize";
   public static final String COMMIT = "commit";
   public static final String ROLLBACK = "rollback";
+  public static final String UPDATE_NUMERIC_DOC_VALUE = "updateNumericDocValue";
   public static final String WAIT_SEARCHER = "waitSearcher";
   public static final String SOFT_COMMIT = "softCommit";
 
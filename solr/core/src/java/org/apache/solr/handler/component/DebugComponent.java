@@ -102,6 +102,9 @@ public class DebugComponent extends SearchComponent
       } else if (rb.isDebugResults()){
         sreq.params.set(CommonParams.DEBUG, CommonParams.RESULTS);
       }
+      if (rb.isDebugProfile()) {
+        sreq.params.add(CommonParams.DEBUG, CommonParams.PROFILE);
+      }
     } else {
       sreq.params.set(CommonParams.DEBUG_QUERY, "false");
     }
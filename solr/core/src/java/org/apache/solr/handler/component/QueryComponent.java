@@ -408,7 +408,17 @@ public class QueryComponent extends SearchComponent
     }
 
     // normal search result
-    searcher.search(result,cmd);
+    if (rb.isDebugProfile()) {
+      rb.addDebugInfo("profile", searcher.profile(result, cmd));
+    } else {
+      if (rb.isDebugQuery()) {
+        cmd.setFlags(SolrIndexSearcher.GET_FILTER_STRATEGIES);
+      }
+      searcher.search(result,cmd);
+      if (result.getFilterStrategies() != null) {
+        rb.addDebugInfo("filter_strategy", result.getFilterStrategies());
+      }
+    }
     rb.setResult( result );
 
 
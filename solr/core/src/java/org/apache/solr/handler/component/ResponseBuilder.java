@@ -62,7 +62,7 @@ public class ResponseBuilder
   private boolean needDocSet = false;
   private int fieldFlags = 0;
   //private boolean debug = false;
-  private boolean debugTimings, debugQuery, debugResults;
+  private boolean debugTimings, debugQuery, debugResults, debugProfile;
 
   private QParser qparser = null;
   private String queryString = null;
@@ -212,7 +212,7 @@ public class ResponseBuilder
   //-------------------------------------------------------------------------
 
   public boolean isDebug() {
-    return debugQuery || debugTimings || debugResults;
+    return debugQuery || debugTimings || debugResults || debugProfile;
   }
 
   /**
@@ -253,6 +253,14 @@ public class ResponseBuilder
     this.debugResults = debugResults;
   }
 
+  public boolean isDebugProfile() {
+    return debugProfile;
+  }
+
+  public void setDebugProfile(boolean debugProfile) {
+    this.debugProfile = debugProfile;
+  }
+
   public NamedList<Object> getDebugInfo() {
     return debugInfo;
   }
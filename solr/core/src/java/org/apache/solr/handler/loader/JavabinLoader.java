@@ -30,6 +30,7 @@ import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.update.AddUpdateCommand;
 import org.apache.solr.update.DeleteUpdateCommand;
+import org.apache.solr.update.UpdateNumericDocValueCommand;
 import org.apache.solr.update.processor.UpdateRequestProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -100,6 +101,9 @@ public class JavabinLoader extends ContentStreamLoader {
       if (update.getDeleteById() != null || update.getDeleteQuery() != null) {
         delete(req, update, processor);
       }
+      if (update.getNumericDocValueUpdates() != null) {
+        updateNumericDocValues(req, update, processor);
+      }
     }
   }
 
@@ -133,4 +137,18 @@ public class JavabinLoader extends ContentStreamLoader {
       }
     }
   }
+
+  private void updateNumericDocValues(SolrQueryRequest req, UpdateRequest update, UpdateRequestProcessor processor) throws IOException {
+    SolrParams params = update.getParams();
+    for (UpdateRequest.NumericDocValueUpdate u : update.getNumericDocValueUpdates()) {
+      UpdateNumericDocValueCommand cmd = new UpdateNumericDocValueCommand(req);
+      if(params != null) {
+        cmd.commitWithin = params.getInt(UpdateParams.COMMIT_WITHIN, -1);
+      }
+      cmd.id = u.getId();
+      cmd.field = u.getField();
+      cmd.value = u.getValue();
+      processor.processUpdateNumericDocValue(cmd);
+    }
+  }
 }
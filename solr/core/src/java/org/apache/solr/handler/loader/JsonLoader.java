@@ -37,6 +37,7 @@ import org.apache.solr.update.AddUpdateCommand;
 import org.apache.solr.update.CommitUpdateCommand;
 import org.apache.solr.update.DeleteUpdateCommand;
 import org.apache.solr.update.RollbackUpdateCommand;
+import org.apache.solr.update.UpdateNumericDocValueCommand;
 import org.apache.solr.update.processor.UpdateRequestProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -142,6 +143,9 @@ public class JsonLoader extends ContentStreamLoader {
             else if( v.equals( UpdateRequestHandler.ROLLBACK ) ) {
               processor.processRollback( parseRollback() );
             }
+            else if( v.equals( UpdateRequestHandler.UPDATE_NUMERIC_DOC_VALUE ) ) {
+              handleUpdateNumericDocValueCommand();
+            }
             else {
               throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Unknown command: "+v+" ["+parser.getPosition()+"]" );
             }
@@ -278,6 +282,69 @@ public class JsonLoader extends ContentStreamLoader {
       }
     }
 
+    //
+    // "updateNumericDocValue":{"id":"1","field":"price","value":42}
+    // "updateNumericDocValue":[{"id":"1","field":"price","value":42},{"id":"2","field":"price","value":7}]
+    //
+    void handleUpdateNumericDocValueCommand() throws IOException {
+      int ev = parser.nextEvent();
+      if (ev == JSONParser.ARRAY_START) {
+        for (;;) {
+          ev = parser.nextEvent();
+          if (ev == JSONParser.ARRAY_END) return;
+          handleUpdateNumericDocValueMap(ev);
+        }
+      } else {
+        handleUpdateNumericDocValueMap(ev);
+      }
+    }
+
+    void handleUpdateNumericDocValueMap(int ev) throws IOException {
+      assertEvent(ev, JSONParser.OBJECT_START);
+
+      UpdateNumericDocValueCommand cmd = new UpdateNumericDocValueCommand(req);
+      cmd.commitWithin = commitWithin;
+      boolean hasValue = false;
+
+      while( true ) {
+        ev = parser.nextEvent();
+        if( ev == JSONParser.STRING ) {
+          String key = parser.getString();
+          if( parser.wasKey() ) {
+            if( "id".equals( key ) ) {
+              cmd.id = getString(parser.nextEvent());
+            } else if( "field".equals(key) ) {
+              cmd.field = getString(parser.nextEvent());
+            } else if( "value".equals(key) ) {
+              cmd.value = parser.getLong();
+              hasValue = true;
+            } else if( "commitWithin".equals(key) ) {
+              cmd.commitWithin = (int)parser.getLong();
+            } else {
+              throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Unknown key: "+key+" ["+parser.getPosition()+"]" );
+            }
+          }
+          else {
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+                "invalid string: " + key
+                    +" at ["+parser.getPosition()+"]" );
+          }
+        }
+        else if( ev == JSONParser.OBJECT_END ) {
+          if( cmd.id == null || cmd.field == null || !hasValue ) {
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Missing id, field or value for updateNumericDocValue ["+parser.getPosition()+"]" );
+          }
+
+          processor.processUpdateNumericDocValue(cmd);
+          return;
+        }
+        else {
+          throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+              "Got: "+JSONParser.getEventString( ev  )
+                  +" at ["+parser.getPosition()+"]" );
+        }
+      }
+    }
 
 
     
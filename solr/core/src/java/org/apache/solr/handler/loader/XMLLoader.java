@@ -22,6 +22,7 @@ import org.apache.solr.update.AddUpdateCommand;
 import org.apache.solr.update.CommitUpdateCommand;
 import org.apache.solr.update.RollbackUpdateCommand;
 import org.apache.solr.update.DeleteUpdateCommand;
+import org.apache.solr.update.UpdateNumericDocValueCommand;
 import org.apache.solr.util.xslt.TransformerProvider;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
@@ -263,6 +264,10 @@ public class XMLLoader extends ContentStreamLoader {
             log.trace("parsing delete");
             processDelete(req, processor, parser);
           } // end delete
+          else if (UpdateRequestHandler.UPDATE_NUMERIC_DOC_VALUE.equals(currTag)) {
+            log.trace("parsing " + currTag);
+            processUpdateNumericDocValue(req, processor, parser);
+          } // end updateNumericDocValue
           break;
       }
     }
@@ -345,6 +350,90 @@ public class XMLLoader extends ContentStreamLoader {
   }
 
 
+  /**
+   * Parses <code>&lt;updateNumericDocValue&gt;</code>, which holds one or more
+   * <code>&lt;id&gt;..&lt;/id&gt;&lt;field&gt;..&lt;/field&gt;&lt;value&gt;..&lt;/value&gt;</code>
+   * sequences: each <code>&lt;value&gt;</code> updates the document and field
+   * that precede it.
+   */
+  void processUpdateNumericDocValue(SolrQueryRequest req, UpdateRequestProcessor processor, XMLStreamReader parser) throws XMLStreamException, IOException {
+    // First look for commitWithin parameter on the request, will be overwritten by the commitWithin attribute
+    SolrParams params = req.getParams();
+    int commitWithin = params.getInt(UpdateParams.COMMIT_WITHIN, -1);
+
+    for (int i = 0; i < parser.getAttributeCount(); i++) {
+      String attrName = parser.getAttributeLocalName(i);
+      String attrVal = parser.getAttributeValue(i);
+      if (UpdateRequestHandler.COMMIT_WITHIN.equals(attrName)) {
+        commitWithin = Integer.parseInt(attrVal);
+      } else {
+        log.warn("unexpected attribute updateNumericDocValue/@" + attrName);
+      }
+    }
+
+    String id = null;
+    String field = null;
+    StringBuilder text = new StringBuilder();
+    while (true) {
+      int event = parser.next();
+      switch (event) {
+        case XMLStreamConstants.START_ELEMENT:
+          String mode = parser.getLocalName();
+          if (!("id".equals(mode) || "field".equals(mode) || "value".equals(mode))) {
+            log.warn("unexpected XML tag /updateNumericDocValue/" + mode);
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+                    "unexpected XML tag /updateNumericDocValue/" + mode);
+          }
+          text.setLength(0);
+          break;
+
+        case XMLStreamConstants.END_ELEMENT:
+          String currTag = parser.getLocalName();
+          if ("id".equals(currTag)) {
+            id = text.toString();
+          } else if ("field".equals(currTag)) {
+            field = text.toString();
+          } else if ("value".equals(currTag)) {
+            if (id == null || field == null) {
+              throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+                      "updateNumericDocValue requires an id and a field before each value");
+            }
+            UpdateNumericDocValueCommand cmd = new UpdateNumericDocValueCommand(req);
+            cmd.commitWithin = commitWithin;
+            cmd.id = id;
+            cmd.field = field;
+            try {
+              cmd.value = Long.parseLong(text.toString().trim());
+            } catch (NumberFormatException e) {
+              throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+                      "invalid value for updateNumericDocValue: " + text, e);
+            }
+            processor.processUpdateNumericDocValue(cmd);
+            id = field = null;
+          } else if (UpdateRequestHandler.UPDATE_NUMERIC_DOC_VALUE.equals(currTag)) {
+            if (id != null || field != null) {
+              throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+                      "updateNumericDocValue requires a value for id " + id + " and field " + field);
+            }
+            return;
+          } else {
+            log.warn("unexpected XML tag /updateNumericDocValue/" + currTag);
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+                    "unexpected XML tag /updateNumericDocValue/" + currTag);
+          }
+          break;
+
+          // Add everything to the text
+        case XMLStreamConstants.SPACE:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.CHARACTERS:
+          text.append(parser.getText());
+          break;
+      }
+    }
+  }
+
+
   /**
    * Given the input stream, read a document
    *
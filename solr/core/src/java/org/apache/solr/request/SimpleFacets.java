@@ -674,6 +674,8 @@ public class SimpleFacets {
     if (minDfFilterCache>0 && docs instanceof SortedIntDocSet) {
       SortedIntDocSet sset = (SortedIntDocSet)docs;
       fastForRandomSet = new HashDocSet(sset.getDocs(), 0, sset.size());
+    } else if (minDfFilterCache>0 && docs instanceof WAHDocSet) {
+      fastForRandomSet = new BitDocSet(docs.getBits(), docs.size());
     }
 
 
@@ -244,6 +244,7 @@ public class BitDocSet extends DocSetBase {
   @Override
   public Filter getTopFilter() {
     final OpenBitSet bs = bits;
+    final int size = this.size; // -1 if not cached
     // TODO: if cardinality isn't cached, do a quick measure of sparseness
     // and return null from bits() if too sparse.
 
@@ -255,7 +256,7 @@ public class BitDocSet extends DocSetBase {
         final Bits acceptDocs2 = acceptDocs == null ? null : (reader.getLiveDocs() == acceptDocs ? null : acceptDocs);
 
         if (context.isTopLevel) {
-          return BitsFilteredDocIdSet.wrap(bs, acceptDocs);
+          return BitsFilteredDocIdSet.wrap(topLevelDocIdSet(bs, size), acceptDocs);
         }
 
         final int base = context.docBase;
@@ -268,6 +269,7 @@ public class BitDocSet extends DocSetBase {
             return new DocIdSetIterator() {
               int pos=base-1;
               int adjustedDoc=-1;
+              long cost=-1; // lazily computed
 
               @Override
               public int docID() {
@@ -286,6 +288,14 @@ public class BitDocSet extends DocSetBase {
                 pos = bs.nextSetBit(target+base);
                 return adjustedDoc = (pos>=0 && pos<max) ? pos-base : NO_MORE_DOCS;
               }
+
+              @Override
+              public long cost() {
+                if (cost == -1) {
+                  cost = estimateCardinality(bs, base, max);
+                }
+                return cost;
+              }
             };
           }
 
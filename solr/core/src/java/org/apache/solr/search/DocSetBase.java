@@ -19,8 +19,10 @@ package org.apache.solr.search;
 
 import org.apache.lucene.index.AtomicReader;
 import org.apache.solr.common.SolrException;
+import org.apache.lucene.util.BitUtil;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.OpenBitSet;
+import org.apache.lucene.util.OpenBitSetIterator;
 import org.apache.lucene.search.DocIdSet;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.DocIdSetIterator;
@@ -146,7 +148,7 @@ abstract class DocSetBase implements DocSet {
         final Bits acceptDocs2 = acceptDocs == null ? null : (reader.getLiveDocs() == acceptDocs ? null : acceptDocs);
 
         if (context.isTopLevel) {
-          return BitsFilteredDocIdSet.wrap(bs, acceptDocs);
+          return BitsFilteredDocIdSet.wrap(topLevelDocIdSet(bs, size()), acceptDocs);
         }
 
         final int base = context.docBase;
@@ -159,6 +161,7 @@ abstract class DocSetBase implements DocSet {
             return new DocIdSetIterator() {
               int pos=base-1;
               int adjustedDoc=-1;
+              long cost=-1; // lazily computed
 
               @Override
               public int docID() {
@@ -177,6 +180,14 @@ abstract class DocSetBase implements DocSet {
                 pos = bs.nextSetBit(target+base);
                 return adjustedDoc = (pos>=0 && pos<max) ? pos-base : NO_MORE_DOCS;
               }
+
+              @Override
+              public long cost() {
+                if (cost == -1) {
+                  cost = estimateCardinality(bs, base, max);
+                }
+                return cost;
+              }
             };
           }
 
@@ -196,6 +207,54 @@ abstract class DocSetBase implements DocSet {
     };
   }
 
+  // number of words whose bits are counted to estimate the cost of a large range
+  private static final int COST_SAMPLED_WORDS = 128;
+
+  /** Returns a top-level DocIdSet over <code>bs</code>, whose iterator reports
+   *  <code>size</code> as its cost, or estimates it if <code>size</code> is -1. */
+  static DocIdSet topLevelDocIdSet(final OpenBitSet bs, final long size) {
+    return new DocIdSet() {
+      @Override
+      public DocIdSetIterator iterator() {
+        return new OpenBitSetIterator(bs.getBits(), bs.getNumWords(), size);
+      }
+
+      @Override
+      public Bits bits() {
+        return bs;
+      }
+
+      @Override
+      public boolean isCacheable() {
+        return true;
+      }
+    };
+  }
+
+  /** Estimates the number of bits set in <code>bs</code> between <code>from</code>
+   *  (inclusive) and <code>to</code> (exclusive), from a sample of the words of
+   *  large ranges. */
+  static long estimateCardinality(OpenBitSet bs, int from, int to) {
+    final long[] bits = bs.getBits();
+    final int startWord = from >>> 6;
+    final int endWord = Math.min((to + 63) >>> 6, bs.getNumWords()); // exclusive
+    if (startWord >= endWord) {
+      return 0;
+    }
+    if (endWord - startWord > COST_SAMPLED_WORDS) {
+      // the bits of the first and last words outside of the range do not matter
+      return BitUtil.pop_array_sampled(bits, startWord, endWord - startWord, COST_SAMPLED_WORDS);
+    }
+    long count = BitUtil.pop_array(bits, startWord, endWord - startWord);
+    // remove the bits before from and from to on in the first and last words
+    count -= Long.bitCount(bits[startWord] & ((1L << from) - 1));
+    final int lastWord = (to - 1) >>> 6;
+    if ((to & 0x3f) != 0 && lastWord < endWord) {
+      count -= Long.bitCount(bits[lastWord] & -(1L << to));
+    }
+    return count;
+  }
+
   public void setBitsOn(OpenBitSet target) {
     DocIterator iter = iterator();
     while (iter.hasNext()) {
@@ -286,6 +286,8 @@ class JoinQuery extends Query {
       if (minDocFreqFrom>0 && fromSet instanceof SortedIntDocSet) {
         SortedIntDocSet sset = (SortedIntDocSet)fromSet;
         fastForRandomSet = new HashDocSet(sset.getDocs(), 0, sset.size());
+      } else if (minDocFreqFrom>0 && fromSet instanceof WAHDocSet) {
+        fastForRandomSet = new BitDocSet(fromSet.getBits(), fromSet.size());
       }
 
       Fields fromFields = fromSearcher.getAtomicReader().fields();
@@ -56,6 +56,7 @@ public class SolrFieldCacheMBean implements SolrInfoMBean {
     NamedList stats = new SimpleOrderedMap();
     CacheEntry[] entries = FieldCache.DEFAULT.getCacheEntries();
     stats.add("entries_count", entries.length);
+    stats.add("ram_bytes_used", FieldCache.DEFAULT.ramBytesUsed());
     for (int i = 0; i < entries.length; i++) {
       CacheEntry e = entries[i];
       stats.add("entry#" + i, e.toString());
@@ -21,6 +21,10 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.lucene.document.Document;
@@ -39,7 +43,9 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Counter;
 import org.apache.lucene.util.OpenBitSet;
+import org.apache.lucene.util.ThreadInterruptedException;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
@@ -55,6 +61,7 @@ import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.update.SolrIndexConfig;
+import org.apache.solr.update.UpdateHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -90,6 +97,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
   private final int queryResultMaxDocsCached;
   private final boolean useFilterForSortedQuery;
   public final boolean enableLazyFieldLoading;
+  private final ExecutorService segmentSearchExecutor;
+  private final boolean compressFilterCache;
   
   private final boolean cachingEnabled;
   private final SolrCache<Query,DocSet> filterCache;
@@ -150,6 +159,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
     queryResultMaxDocsCached = solrConfig.queryResultMaxDocsCached;
     useFilterForSortedQuery = solrConfig.useFilterForSortedQuery;
     enableLazyFieldLoading = solrConfig.enableLazyFieldLoading;
+    segmentSearchExecutor = core.getSegmentSearchExecutor();
+    compressFilterCache = solrConfig.compressFilterCache;
     
     cachingEnabled=enableCache;
     if (cachingEnabled) {
@@ -379,10 +390,59 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
   }
 
   public QueryResult search(QueryResult qr, QueryCommand cmd) throws IOException {
+    final long startNS = System.nanoTime();
     getDocListC(qr,cmd);
+    // lets an AdaptiveMergeScheduler slow down merges while searches are slow
+    final UpdateHandler updateHandler = core.getUpdateHandler();
+    if (updateHandler != null) {
+      updateHandler.getSolrCoreState().recordSearchLatency((System.nanoTime() - startNS) / 1000000.0);
+    }
     return qr;
   }
 
+  /**
+   * Executes the search like {@link #search(QueryResult, QueryCommand)} while
+   * a {@link QueryProfiler} is started, and returns the profile of every
+   * query node for debugging purposes. The query result cache is bypassed so
+   * that the query is always executed.
+   */
+  public NamedList<Object> profile(QueryResult qr, QueryCommand cmd) throws IOException {
+    cmd.setFlags(NO_CHECK_QCACHE | NO_SET_QCACHE);
+    final QueryProfiler profiler = QueryProfiler.start();
+    try {
+      getDocListC(qr, cmd);
+    } finally {
+      profiler.stop();
+    }
+    final NamedList<Object> profile = new SimpleOrderedMap<Object>();
+    for (QueryProfiler.Node root : profiler.getRoots()) {
+      profile.add(root.getQuery().getClass().getSimpleName(), toNamedList(root));
+    }
+    return profile;
+  }
+
+  private static NamedList<Object> toNamedList(QueryProfiler.Node node) {
+    final NamedList<Object> nl = new SimpleOrderedMap<Object>();
+    nl.add("query", node.getQuery().toString());
+    for (QueryProfiler.Operation operation : QueryProfiler.Operation.values()) {
+      final long count = node.getCount(operation);
+      if (count > 0) {
+        final NamedList<Object> op = new SimpleOrderedMap<Object>();
+        op.add("count", count);
+        op.add("nanos", node.getNanos(operation));
+        nl.add(operation.name().toLowerCase(Locale.ROOT), op);
+      }
+    }
+    if (!node.getChildren().isEmpty()) {
+      final List<NamedList<Object>> children = new ArrayList<NamedList<Object>>(node.getChildren().size());
+      for (QueryProfiler.Node child : node.getChildren()) {
+        children.add(toNamedList(child));
+      }
+      nl.add("children", children);
+    }
+    return nl;
+  }
+
 //  FIXME: This option has been dead/noop since 3.1, should we re-enable or remove it?
 //  public Hits search(Query query, Filter filter, Sort sort) throws IOException {
 //    // todo - when Solr starts accepting filters, need to
@@ -646,7 +706,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
     // or OS disk cache.
     if (optionalAnswer != null) {
       if (filterCache!=null) {
-        filterCache.put(query,optionalAnswer);
+        filterCache.put(query,compressForCache(optionalAnswer));
       }
       return;
     }
@@ -697,7 +757,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
 
     if (filterCache != null) {
       // cache negative queries as positive
-      filterCache.put(absQ, absAnswer);
+      filterCache.put(absQ, compressForCache(absAnswer));
     }
 
     return answer;
@@ -712,17 +772,33 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
     }
     answer = getDocSetNC(q,null);
     if (filterCache != null) filterCache.put(
-        q,answer);
+        q,compressForCache(answer));
     return answer;
   }
 
   private static Query matchAllDocsQuery = new MatchAllDocsQuery();
 
+  /**
+   * Returns the form in which a DocSet is stored in the filterCache: if
+   * compressFilterCache is enabled, {@link BitDocSet}s are replaced with a
+   * {@link WAHDocSet} when this saves memory.
+   */
+  private DocSet compressForCache(DocSet docSet) {
+    if (compressFilterCache && docSet instanceof BitDocSet) {
+      DocSet compressed = WAHDocSet.compress(((BitDocSet)docSet).getBits(), maxDoc());
+      if (compressed.memSize() < docSet.memSize()) {
+        return compressed;
+      }
+    }
+    return docSet;
+  }
+
 
   public static class ProcessedFilter {
     public DocSet answer;  // the answer, if non-null
     public Filter filter;
     public DelegatingCollector postFilter;
+    public List<Query> postFilters; // sorted by cost, to build one postFilter chain per concurrently searched segment
   }
 
 
@@ -885,16 +961,24 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
 
     if (postFilters != null) {
       Collections.sort(postFilters, sortByCost);
-      for (int i=postFilters.size()-1; i>=0; i--) {
-        DelegatingCollector prev = pf.postFilter;
-        pf.postFilter = ((PostFilter)postFilters.get(i)).getFilterCollector(this);
-        if (prev != null) pf.postFilter.setDelegate(prev);
-      }
+      pf.postFilters = postFilters;
+      pf.postFilter = newPostFilterChain(postFilters);
     }
 
     return pf;
   }
 
+  /** Chains new collectors for the given post filters, which must be sorted by cost. */
+  private DelegatingCollector newPostFilterChain(List<Query> postFilters) {
+    DelegatingCollector postFilter = null;
+    for (int i=postFilters.size()-1; i>=0; i--) {
+      DelegatingCollector prev = postFilter;
+      postFilter = ((PostFilter)postFilters.get(i)).getFilterCollector(this);
+      if (prev != null) postFilter.setDelegate(prev);
+    }
+    return postFilter;
+  }
+
   /** lucene.internal */
   public DocSet getDocSet(DocsEnumState deState) throws IOException {
     int largestPossible = deState.termsEnum.docFreq();
@@ -970,7 +1054,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
     }
 
     if (useCache) {
-      filterCache.put(key, result);
+      filterCache.put(key, compressForCache(result));
     }
     
     return result;
@@ -1052,7 +1136,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
       first = filterCache.get(absQ);
       if (first==null) {
         first = getDocSetNC(absQ,null);
-        filterCache.put(absQ,first);
+        filterCache.put(absQ,compressForCache(first));
       }
       return positive ? first.intersection(filter) : filter.andNot(first);
     }
@@ -1125,6 +1209,9 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
   public static final int GET_DOCSET            = 0x40000000;
   static final int NO_CHECK_FILTERCACHE  = 0x20000000;
   static final int NO_SET_QCACHE         = 0x10000000;
+  /** Records the {@link FilteredQuery.FilterStrategy} applied to each segment
+   *  in the {@link QueryResult}. The caches are bypassed, so that the query runs. */
+  public static final int GET_FILTER_STRATEGIES = 0x08000000;
 
   public static final int GET_DOCLIST           =        0x02; // get the documents actually returned in a response
   public static final int GET_SCORES             =       0x01;
@@ -1152,6 +1239,9 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
         flags |= (NO_CHECK_QCACHE | NO_SET_QCACHE | NO_CHECK_FILTERCACHE);
       }
     }
+    if ((flags & GET_FILTER_STRATEGIES) != 0) {
+      flags |= (NO_CHECK_QCACHE | NO_SET_QCACHE | NO_CHECK_FILTERCACHE);
+    }
 
 
     // we can try and look up the complete query in the cache.
@@ -1252,7 +1342,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
         // the base query and all filters.
         DocSet qDocSet = getDocListAndSetNC(qr,cmd);
         // cache the docSet matching the query w/o filtering
-        if (qDocSet!=null && filterCache!=null && !qr.isPartialResults()) filterCache.put(cmd.getQuery(),qDocSet);
+        if (qDocSet!=null && filterCache!=null && !qr.isPartialResults()) filterCache.put(cmd.getQuery(),compressForCache(qDocSet));
       } else {
         getDocListNC(qr,cmd);
         //Parameters: cmd.getQuery(),theFilt,cmd.getSort(),0,supersetMaxDoc,cmd.getFlags(),cmd.getTimeAllowed(),responseHeader);
@@ -1271,6 +1361,51 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
 
 
 
+  /**
+   * Applies the filter to the query like {@link #wrapFilter(Query, Filter)}, and records
+   * the filter strategy chosen for each segment in the result if the command has the
+   * {@link #GET_FILTER_STRATEGIES} flag.
+   */
+  private Query wrapFilter(Query query, Filter filter, QueryCommand cmd, QueryResult qr) {
+    if (filter == null || (cmd.getFlags() & GET_FILTER_STRATEGIES) == 0) {
+      return wrapFilter(query, filter);
+    }
+    final NamedList<Object> strategies = new SimpleOrderedMap<Object>();
+    qr.setFilterStrategies(strategies);
+    return new FilteredQuery(query, filter, new RecordingFilterStrategy(FilteredQuery.DEFAULT_FILTER_STRATEGY, strategies));
+  }
+
+  /** Delegates to a filter strategy, recording the strategy it picks for each segment. */
+  private static final class RecordingFilterStrategy extends FilteredQuery.FilterStrategy {
+    private final FilteredQuery.FilterStrategy delegate;
+    private final NamedList<Object> strategies;
+
+    RecordingFilterStrategy(FilteredQuery.FilterStrategy delegate, NamedList<Object> strategies) {
+      this.delegate = delegate;
+      this.strategies = strategies;
+    }
+
+    @Override
+    public Scorer filteredScorer(AtomicReaderContext context, boolean scoreDocsInOrder, boolean topScorer,
+        Weight weight, DocIdSet docIdSet) throws IOException {
+      final FilteredQuery.FilterStrategy selected = delegate.select(context, docIdSet);
+      synchronized (strategies) { // segments may be searched concurrently
+        strategies.add(context.reader().toString(), selected.toString());
+      }
+      return selected.filteredScorer(context, scoreDocsInOrder, topScorer, weight, docIdSet);
+    }
+
+    @Override
+    public FilteredQuery.FilterStrategy select(AtomicReaderContext context, DocIdSet docIdSet) throws IOException {
+      return delegate.select(context, docIdSet);
+    }
+
+    @Override
+    public String toString() {
+      return delegate.toString();
+    }
+  }
+
   private void getDocListNC(QueryResult qr,QueryCommand cmd) throws IOException {
     final long timeAllowed = cmd.getTimeAllowed();
     int len = cmd.getSupersetMaxDoc();
@@ -1290,6 +1425,11 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
     ProcessedFilter pf = getProcessedFilter(cmd.getFilter(), cmd.getFilterList());
     final Filter luceneFilter = pf.filter;
 
+    if (segmentSearchExecutor != null && leafContexts.size() > 1) {
+      getDocListConcurrently(qr, cmd, query, pf, lastDocRequested, false);
+      return;
+    }
+
     // handle zero case...
     if (lastDocRequested<=0) {
       final float[] topscore = new float[] { Float.NEGATIVE_INFINITY };
@@ -1346,7 +1486,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
       }
 
       try {
-        super.search(query, luceneFilter, collector);
+        super.search(wrapFilter(query, luceneFilter, cmd, qr), null, collector);
       }
       catch( TimeLimitingCollector.TimeExceededException x ) {
         log.warn( "Query: " + query + "; " + x.getMessage() );
@@ -1379,7 +1519,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
         collector = pf.postFilter;
       }
       try {
-        super.search(query, luceneFilter, collector);
+        super.search(wrapFilter(query, luceneFilter, cmd, qr), null, collector);
       }
       catch( TimeLimitingCollector.TimeExceededException x ) {
         log.warn( "Query: " + query + "; " + x.getMessage() );
@@ -1428,6 +1568,11 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
     Query query = QueryUtils.makeQueryable(cmd.getQuery());
     final long timeAllowed = cmd.getTimeAllowed();
 
+    if (segmentSearchExecutor != null && leafContexts.size() > 1) {
+      getDocListConcurrently(qr, cmd, query, pf, lastDocRequested, true);
+      return pf.filter==null && pf.postFilter==null ? qr.getDocSet() : null;
+    }
+
     // handle zero case...
     if (lastDocRequested<=0) {
       final float[] topscore = new float[] { Float.NEGATIVE_INFINITY };
@@ -1468,7 +1613,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
       }
 
        try {
-         super.search(query, luceneFilter, collector);
+         super.search(wrapFilter(query, luceneFilter, cmd, qr), null, collector);
        }
        catch( TimeLimitingCollector.TimeExceededException x ) {
          log.warn( "Query: " + query + "; " + x.getMessage() );
@@ -1503,7 +1648,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
         collector = pf.postFilter;
       }
       try {
-        super.search(query, luceneFilter, collector);
+        super.search(wrapFilter(query, luceneFilter, cmd, qr), null, collector);
       }
       catch( TimeLimitingCollector.TimeExceededException x ) {
         log.warn( "Query: " + query + "; " + x.getMessage() );
@@ -1542,6 +1687,242 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
   }
 
 
+  /**
+   * Concurrent version of getDocListNC / getDocListAndSetNC, used when
+   * parallelSegmentSearchThreads is configured. Every segment is searched
+   * as a separate task with its own collector chain (including time limiting
+   * and post filters, which get new collectors per segment), and the per
+   * segment top docs and doc sets are merged once all tasks are done.
+   * The results are the same as the serial code path.
+   */
+  private void getDocListConcurrently(QueryResult qr, QueryCommand cmd, Query query, ProcessedFilter pf, int lastDocRequested, boolean needDocSet) throws IOException {
+    final int len = cmd.getSupersetMaxDoc();
+    final long timeAllowed = cmd.getTimeAllowed();
+    final boolean needScores = (cmd.getFlags() & GET_SCORES) != 0;
+    final Sort sort = cmd.getSort() == null ? null : weightSort(cmd.getSort());
+    final int numLeaves = leafContexts.size();
+
+    final TopDocsCollector[] topCollectors = new TopDocsCollector[numLeaves];
+    final HitCountCollector[] hitCounters = new HitCountCollector[numLeaves];
+    final DocSetCollector[] setCollectors = new DocSetCollector[numLeaves];
+    final Collector[] collectors = new Collector[numLeaves];
+    for (int i = 0; i < numLeaves; i++) {
+      Collector collector;
+      if (lastDocRequested<=0) {
+        collector = hitCounters[i] = new HitCountCollector(needScores);
+      } else if (sort == null) {
+        if (cmd.getScoreDoc() != null && !needDocSet) {
+          collector = topCollectors[i] = TopScoreDocCollector.create(len, cmd.getScoreDoc(), true);
+        } else {
+          collector = topCollectors[i] = TopScoreDocCollector.create(len, true);
+        }
+      } else {
+        // fillFields is required to merge the per segment results
+        collector = topCollectors[i] = TopFieldCollector.create(sort, len, true, needScores, needScores, true);
+      }
+      if (needDocSet) {
+        collector = setCollectors[i] = newSegmentDocSetCollector(leafContexts.get(i).reader().maxDoc(), collector);
+      }
+      collectors[i] = collector;
+    }
+
+    final Weight weight = createNormalizedWeight(wrapFilter(query, pf.filter, cmd, qr));
+    if (searchLeavesConcurrently(weight, collectors, pf, timeAllowed)) {
+      log.warn( "Query: " + query + "; Elapsed time exceeded " + timeAllowed + " ms" );
+      qr.setPartialResults(true);
+    }
+
+    int nDocsReturned;
+    int totalHits;
+    float maxScore;
+    int[] ids;
+    float[] scores;
+    if (lastDocRequested<=0) {
+      totalHits = 0;
+      maxScore = Float.NEGATIVE_INFINITY;
+      for (HitCountCollector hitCounter : hitCounters) {
+        totalHits += hitCounter.numHits;
+        maxScore = Math.max(maxScore, hitCounter.maxScore);
+      }
+      if (totalHits == 0) maxScore = 0.0f;
+      nDocsReturned = 0;
+      ids = new int[nDocsReturned];
+      scores = new float[nDocsReturned];
+    } else {
+      final TopDocs[] shardHits = new TopDocs[numLeaves];
+      for (int i = 0; i < numLeaves; i++) {
+        shardHits[i] = topCollectors[i].topDocs();
+      }
+      final TopDocs topDocs = TopDocs.merge(sort, len, shardHits);
+      totalHits = topDocs.totalHits;
+      maxScore = totalHits>0 ? topDocs.getMaxScore() : 0.0f;
+      nDocsReturned = topDocs.scoreDocs.length;
+      ids = new int[nDocsReturned];
+      scores = needScores ? new float[nDocsReturned] : null;
+      for (int i=0; i<nDocsReturned; i++) {
+        ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+        ids[i] = scoreDoc.doc;
+        if (scores != null) scores[i] = scoreDoc.score;
+      }
+    }
+
+    int sliceLen = Math.min(lastDocRequested,nDocsReturned);
+    if (sliceLen < 0) sliceLen=0;
+    qr.setDocList(new DocSlice(0,sliceLen,ids,scores,totalHits,maxScore));
+
+    if (needDocSet) {
+      final DocSet[] sets = new DocSet[numLeaves];
+      for (int i = 0; i < numLeaves; i++) {
+        sets[i] = setCollectors[i].getDocSet();
+      }
+      qr.setDocSet(mergeSegmentDocSets(sets));
+    }
+  }
+
+  /**
+   * Runs <code>weight</code> against every segment, each with its own collector,
+   * on the segment search executor. The first segment is searched by the calling
+   * thread. Returns true if any segment exceeded <code>timeAllowed</code>.
+   */
+  private boolean searchLeavesConcurrently(final Weight weight, final Collector[] collectors, final ProcessedFilter pf, final long timeAllowed) throws IOException {
+    // all segments share one time budget, even those whose task waits in the executor's queue
+    final Counter clock = TimeLimitingCollector.getGlobalCounter();
+    final long start = clock.get();
+    final List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(collectors.length);
+    for (int i = 0; i < collectors.length; i++) {
+      final AtomicReaderContext leaf = leafContexts.get(i);
+      final Collector leafCollector = collectors[i];
+      tasks.add(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws IOException {
+          Collector collector = leafCollector;
+          if( timeAllowed > 0 ) {
+            TimeLimitingCollector timeLimitingCollector = new TimeLimitingCollector(collector, clock, timeAllowed);
+            timeLimitingCollector.setBaseline(start);
+            collector = timeLimitingCollector;
+          }
+          if (pf.postFilters != null) {
+            DelegatingCollector postFilter = newPostFilterChain(pf.postFilters);
+            postFilter.setLastDelegate(collector);
+            collector = postFilter;
+          }
+          try {
+            search(Collections.singletonList(leaf), weight, collector);
+          } catch( TimeLimitingCollector.TimeExceededException x ) {
+            return Boolean.TRUE;
+          }
+          return Boolean.FALSE;
+        }
+      });
+    }
+
+    final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(tasks.size() - 1);
+    for (Callable<Boolean> task : tasks.subList(1, tasks.size())) {
+      futures.add(segmentSearchExecutor.submit(task));
+    }
+
+    boolean timedOut = false;
+    Throwable failure = null;
+    try {
+      timedOut = tasks.get(0).call();
+    } catch (Throwable t) {
+      failure = t;
+    }
+    // wait for all tasks, even on failure, so that none is still running on return
+    for (Future<Boolean> future : futures) {
+      try {
+        timedOut |= future.get();
+      } catch (ExecutionException e) {
+        if (failure == null) failure = e.getCause();
+      } catch (InterruptedException e) {
+        if (failure == null) failure = new ThreadInterruptedException(e);
+      }
+    }
+
+    if (failure instanceof IOException) throw (IOException) failure;
+    if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+    if (failure instanceof Error) throw (Error) failure;
+    if (failure != null) throw new RuntimeException(failure);
+    return timedOut;
+  }
+
+  /** Collects doc IDs relative to the segment, so that every concurrently
+   *  searched segment only needs a bit set as large as the segment. */
+  private static DocSetCollector newSegmentDocSetCollector(int segmentMaxDoc, Collector delegate) {
+    return new DocSetDelegateCollector(segmentMaxDoc>>6, segmentMaxDoc, delegate) {
+      @Override
+      public void setNextReader(AtomicReaderContext context) throws IOException {
+        collector.setNextReader(context);
+        // base stays 0
+      }
+    };
+  }
+
+  /** Merges the segment relative DocSets of newSegmentDocSetCollector into a top level DocSet. */
+  private DocSet mergeSegmentDocSets(DocSet[] sets) {
+    int size = 0;
+    for (DocSet set : sets) {
+      size += set.size();
+    }
+    final int maxDoc = maxDoc();
+    if (size <= (maxDoc>>6)) {
+      final int[] docs = new int[size];
+      int upto = 0;
+      for (int i = 0; i < sets.length; i++) {
+        final int docBase = leafContexts.get(i).docBase;
+        for (DocIterator it = sets[i].iterator(); it.hasNext(); ) {
+          docs[upto++] = docBase + it.nextDoc();
+        }
+      }
+      return new SortedIntDocSet(docs);
+    } else {
+      final OpenBitSet bits = new OpenBitSet(maxDoc);
+      for (int i = 0; i < sets.length; i++) {
+        final int docBase = leafContexts.get(i).docBase;
+        for (DocIterator it = sets[i].iterator(); it.hasNext(); ) {
+          bits.fastSet(docBase + it.nextDoc());
+        }
+      }
+      return new BitDocSet(bits, size);
+    }
+  }
+
+  /** Counts hits and tracks the max score, for requests that don't need any document. */
+  private static class HitCountCollector extends Collector {
+    private final boolean needScores;
+    private Scorer scorer;
+    int numHits;
+    float maxScore = Float.NEGATIVE_INFINITY;
+
+    HitCountCollector(boolean needScores) {
+      this.needScores = needScores;
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) throws IOException {
+      this.scorer = scorer;
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+      numHits++;
+      if (needScores) {
+        float score = scorer.score();
+        if (score > maxScore) maxScore = score;
+      }
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext context) throws IOException {
+    }
+
+    @Override
+    public boolean acceptsDocsOutOfOrder() {
+      return true;
+    }
+  }
+
+
   /**
    * Returns documents matching both <code>query</code> and <code>filter</code>
    * and sorted by <code>sort</code>.
@@ -2139,6 +2520,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
   public static class QueryResult {
     private boolean partialResults;
     private DocListAndSet docListAndSet;
+    private NamedList<Object> filterStrategies;
 
     public Object groupedResults;   // TODO: currently for testing
     
@@ -2163,6 +2545,11 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
 
     public void setDocListAndSet( DocListAndSet listSet ) { docListAndSet = listSet; }
     public DocListAndSet getDocListAndSet() { return docListAndSet; }
+
+    /** The filter strategy applied to each segment, if the command had the
+     *  {@link SolrIndexSearcher#GET_FILTER_STRATEGIES} flag and filters were applied. */
+    public NamedList<Object> getFilterStrategies() { return filterStrategies; }
+    public void setFilterStrategies(NamedList<Object> filterStrategies) { this.filterStrategies = filterStrategies; }
   }
 
 }
@@ -748,6 +748,10 @@ public class SortedIntDocSet extends DocSetBase {
                 }
               }
 
+              @Override
+              public long cost() {
+                return endIdx - startIdx + 1;
+              }
             };
           }
 
@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.search;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.BitsFilteredDocIdSet;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.OpenBitSet;
+import org.apache.lucene.util.WAHDocIdSet;
+
+import java.io.IOException;
+
+/**
+ * <code>WAHDocSet</code> represents an immutable set of Lucene Document Ids
+ * using a compressed {@link WAHDocIdSet}. It uses much less memory than a
+ * {@link BitDocSet} when the set is sparse or its documents are clustered,
+ * and it can be intersected with other <code>WAHDocSet</code>s and with
+ * {@link BitDocSet}s without being decompressed. Random access through
+ * {@link #exists} is slower than on a {@link BitDocSet} though.
+ *
+ * @see SolrIndexSearcher
+ */
+public class WAHDocSet extends DocSetBase {
+  final WAHDocIdSet set;
+  final int maxDoc;
+
+  /** Construct a WAHDocSet from a compressed set whose documents are all
+   * less than <code>maxDoc</code>. */
+  public WAHDocSet(WAHDocIdSet set, int maxDoc) {
+    this.set = set;
+    this.maxDoc = maxDoc;
+  }
+
+  /** Compresses the given bits. */
+  public static WAHDocSet compress(OpenBitSet bits, int maxDoc) {
+    return new WAHDocSet(WAHDocIdSet.copyOf(bits.getBits(), bits.getNumWords()), maxDoc);
+  }
+
+  /** Returns the compressed set, which should <b>not</b> be modified. */
+  public WAHDocIdSet getDocIdSet() {
+    return set;
+  }
+
+  public DocIterator iterator() {
+    return new DocIterator() {
+      private final DocIdSetIterator iter = set.iterator();
+      private int pos = advanceIter();
+
+      private int advanceIter() {
+        try {
+          return iter.nextDoc();
+        } catch (IOException e) {
+          // cannot happen on an in-memory set
+          throw new RuntimeException(e);
+        }
+      }
+
+      public boolean hasNext() {
+        return pos != DocIdSetIterator.NO_MORE_DOCS;
+      }
+
+      public Integer next() {
+        return nextDoc();
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException("The remove  operation is not supported by this Iterator.");
+      }
+
+      public int nextDoc() {
+        int old=pos;
+        pos=advanceIter();
+        return old;
+      }
+
+      public float score() {
+        return 0.0f;
+      }
+    };
+  }
+
+  /**
+   * @return a new OpenBitSet with the documents of this set, of
+   * <code>maxDoc</code> bits.
+   */
+  @Override
+  public OpenBitSet getBits() {
+    OpenBitSet bits = new OpenBitSet(maxDoc);
+    set.orInto(bits.getBits());
+    return bits;
+  }
+
+  public int size() {
+    return set.cardinality();
+  }
+
+  public boolean exists(int doc) {
+    return set.get(doc);
+  }
+
+  // DocSets which are smaller than us and use exists() to intersect
+  private static boolean isSmall(DocSet other) {
+    return other instanceof SortedIntDocSet || other instanceof HashDocSet || other instanceof DocSlice;
+  }
+
+  @Override
+  public DocSet intersection(DocSet other) {
+    if (other instanceof WAHDocSet) {
+      return new WAHDocSet(WAHDocIdSet.intersect(set, ((WAHDocSet)other).set), Math.max(maxDoc, ((WAHDocSet)other).maxDoc));
+    } else if (other instanceof BitDocSet) {
+      OpenBitSet newbits = (OpenBitSet)(((BitDocSet)other).bits.clone());
+      set.andInto(newbits.getBits());
+      return new BitDocSet(newbits);
+    } else if (isSmall(other)) {
+      return other.intersection(this);
+    }
+    OpenBitSet newbits = getBits();
+    newbits.and(other.getBits());
+    return new BitDocSet(newbits);
+  }
+
+  @Override
+  public int intersectionSize(DocSet other) {
+    if (other instanceof WAHDocSet) {
+      return (int)WAHDocIdSet.intersectionCount(set, ((WAHDocSet)other).set);
+    } else if (other instanceof BitDocSet) {
+      OpenBitSet bits = ((BitDocSet)other).bits;
+      return (int)set.intersectionCount(bits.getBits(), bits.getNumWords());
+    } else if (isSmall(other)) {
+      return other.intersectionSize(this);
+    }
+    return intersection(other).size();
+  }
+
+  @Override
+  public boolean intersects(DocSet other) {
+    if (isSmall(other)) {
+      return other.intersects(this);
+    }
+    return intersectionSize(other) > 0;
+  }
+
+  @Override
+  public DocSet union(DocSet other) {
+    if (other instanceof WAHDocSet) {
+      return new WAHDocSet(WAHDocIdSet.union(set, ((WAHDocSet)other).set), Math.max(maxDoc, ((WAHDocSet)other).maxDoc));
+    }
+    return super.union(other);
+  }
+
+  @Override
+  public DocSet andNot(DocSet other) {
+    if (other instanceof WAHDocSet) {
+      return new WAHDocSet(WAHDocIdSet.andNot(set, ((WAHDocSet)other).set), maxDoc);
+    }
+    return super.andNot(other);
+  }
+
+  public long memSize() {
+    return set.ramBytesUsed() + 16;
+  }
+
+  @Override
+  public Filter getTopFilter() {
+    final WAHDocIdSet docIdSet = set;
+
+    return new Filter() {
+      @Override
+      public DocIdSet getDocIdSet(final AtomicReaderContext context, final Bits acceptDocs) throws IOException {
+        AtomicReader reader = context.reader();
+        // all Solr DocSets that are used as filters only include live docs
+        final Bits acceptDocs2 = acceptDocs == null ? null : (reader.getLiveDocs() == acceptDocs ? null : acceptDocs);
+
+        if (context.isTopLevel) {
+          return BitsFilteredDocIdSet.wrap(docIdSet, acceptDocs);
+        }
+
+        final int base = context.docBase;
+        final int max = base + reader.maxDoc();   // one past the max doc in this segment.
+
+        return BitsFilteredDocIdSet.wrap(new DocIdSet() {
+          @Override
+          public DocIdSetIterator iterator() throws IOException {
+            return new DocIdSetIterator() {
+              final DocIdSetIterator iter = docIdSet.iterator();
+              int adjustedDoc=-1;
+
+              @Override
+              public int docID() {
+                return adjustedDoc;
+              }
+
+              @Override
+              public int nextDoc() throws IOException {
+                int pos = adjustedDoc == -1 ? iter.advance(base) : iter.nextDoc();
+                return adjustedDoc = (pos<max) ? pos-base : NO_MORE_DOCS;
+              }
+
+              @Override
+              public int advance(int target) throws IOException {
+                if (target==NO_MORE_DOCS) return adjustedDoc=NO_MORE_DOCS;
+                int pos = iter.advance(target+base);
+                return adjustedDoc = (pos<max) ? pos-base : NO_MORE_DOCS;
+              }
+
+              @Override
+              public long cost() {
+                // the cardinality of the whole set, bounded by the size of the segment
+                return Math.min(iter.cost(), max - base);
+              }
+            };
+          }
+
+          @Override
+          public boolean isCacheable() {
+            return true;
+          }
+
+          @Override
+          public Bits bits() throws IOException {
+            // random access is slow on compressed sets
+            return null;
+          }
+
+        }, acceptDocs2);
+      }
+    };
+  }
+}
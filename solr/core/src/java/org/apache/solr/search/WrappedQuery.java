@@ -54,7 +54,7 @@ public class WrappedQuery extends ExtendedQueryBase {
 
   @Override
   public Weight createWeight(IndexSearcher searcher) throws IOException {
-    return q.createWeight(searcher);
+    return searcher.createWeight(q);
   }
 
   @Override
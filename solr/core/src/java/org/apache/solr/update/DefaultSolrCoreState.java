@@ -19,7 +19,9 @@ package org.apache.solr.update;
 
 import java.io.IOException;
 
+import org.apache.lucene.index.AdaptiveMergeScheduler;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.MergeScheduler;
 import org.apache.solr.cloud.RecoveryStrategy;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.core.CoreContainer;
@@ -36,6 +38,8 @@ public final class DefaultSolrCoreState extends SolrCoreState {
   private final Object recoveryLock = new Object();
   private int refCnt = 1;
   private SolrIndexWriter indexWriter = null;
+  // the merge scheduler of indexWriter, if it is adaptive
+  private volatile AdaptiveMergeScheduler adaptiveMergeScheduler;
   private DirectoryFactory directoryFactory;
 
   private boolean recoveryRunning;
@@ -109,9 +113,21 @@ public final class DefaultSolrCoreState extends SolrCoreState {
   
   protected SolrIndexWriter createMainIndexWriter(SolrCore core, String name,
       boolean removeAllExisting, boolean forceNewDirectory) throws IOException {
-    return new SolrIndexWriter(name, core.getNewIndexDir(),
+    final SolrIndexWriter writer = new SolrIndexWriter(name, core.getNewIndexDir(),
         core.getDirectoryFactory(), removeAllExisting, core.getSchema(),
         core.getSolrConfig().indexConfig, core.getDeletionPolicy(), core.getCodec(), forceNewDirectory);
+    final MergeScheduler mergeScheduler = writer.getConfig().getMergeScheduler();
+    adaptiveMergeScheduler = mergeScheduler instanceof AdaptiveMergeScheduler
+        ? (AdaptiveMergeScheduler) mergeScheduler : null;
+    return writer;
+  }
+
+  @Override
+  public void recordSearchLatency(double millis) {
+    final AdaptiveMergeScheduler scheduler = adaptiveMergeScheduler;
+    if (scheduler != null) {
+      scheduler.recordSearchLatency(millis);
+    }
   }
 
   @Override
@@ -80,6 +80,8 @@ public class DirectUpdateHandler2 extends UpdateHandler implements SolrCoreState
   AtomicLong deleteByIdCommandsCumulative= new AtomicLong();
   AtomicLong deleteByQueryCommands= new AtomicLong();
   AtomicLong deleteByQueryCommandsCumulative= new AtomicLong();
+  AtomicLong numericUpdateCommands= new AtomicLong();
+  AtomicLong numericUpdateCommandsCumulative= new AtomicLong();
   AtomicLong expungeDeleteCommands = new AtomicLong();
   AtomicLong mergeIndexesCommands = new AtomicLong();
   AtomicLong commitCommands= new AtomicLong();
@@ -212,9 +214,9 @@ public class DirectUpdateHandler2 extends UpdateHandler implements SolrCoreState
     return rc;
   }
 
-  private void updateDeleteTrackers(DeleteUpdateCommand cmd) {
+  private void updateDeleteTrackers(UpdateCommand cmd, int commitWithin) {
     if ((cmd.getFlags() & UpdateCommand.IGNORE_AUTOCOMMIT) == 0) {
-      softCommitTracker.deletedDocument( cmd.commitWithin );
+      softCommitTracker.deletedDocument( commitWithin );
 
       if (commitTracker.getTimeUpperBound() > 0) {
         commitTracker.scheduleCommitWithin(commitTracker.getTimeUpperBound());
@@ -242,7 +244,37 @@ public class DirectUpdateHandler2 extends UpdateHandler implements SolrCoreState
 
     if (ulog != null) ulog.delete(cmd);
 
-    updateDeleteTrackers(cmd);
+    updateDeleteTrackers(cmd, cmd.commitWithin);
+  }
+
+  // Like deletes, in place updates are buffered by the IndexWriter and
+  // become visible with the next (soft) commit.
+  // They can't be written to the update log: they would be lost on recovery
+  // and invisible to realtime get, so they are rejected when it is enabled,
+  // which it is in all the solrconfig.xml files shipped with Solr.
+  @Override
+  public void updateNumericDocValue(UpdateNumericDocValueCommand cmd) throws IOException {
+    if (ulog != null) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "updateNumericDocValue is not supported when the updateLog is enabled");
+    }
+    if (idField == null) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "updateNumericDocValue requires a uniqueKey field");
+    }
+    if (cmd.id == null) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "updateNumericDocValue requires an id");
+    }
+    if (cmd.field == null) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "updateNumericDocValue requires a field");
+    }
+
+    numericUpdateCommands.incrementAndGet();
+    numericUpdateCommandsCumulative.incrementAndGet();
+
+    IndexWriter writer = solrCoreState.getIndexWriter(core);
+    Term idTerm = new Term(idField.getName(), cmd.getIndexedId());
+    writer.updateNumericDocValue(idTerm, cmd.field, cmd.value);
+
+    updateDeleteTrackers(cmd, cmd.commitWithin);
   }
 
   // we don't return the number of docs deleted because it's not always possible to quickly know that info.
@@ -299,7 +331,7 @@ public class DirectUpdateHandler2 extends UpdateHandler implements SolrCoreState
 
       madeIt = true;
 
-      updateDeleteTrackers(cmd);
+      updateDeleteTrackers(cmd, cmd.commitWithin);
 
     } finally {
       if (!madeIt) {
@@ -469,6 +501,7 @@ public class DirectUpdateHandler2 extends UpdateHandler implements SolrCoreState
       addCommands.set(0);
       deleteByIdCommands.set(0);
       deleteByQueryCommands.set(0);
+      numericUpdateCommands.set(0);
       if (error) numErrors.incrementAndGet();
     }
 
@@ -521,6 +554,8 @@ public class DirectUpdateHandler2 extends UpdateHandler implements SolrCoreState
           deleteByIdCommandsCumulative.get() - deleteByIdCommands.getAndSet( 0 ) );
       deleteByQueryCommandsCumulative.set(
           deleteByQueryCommandsCumulative.get() - deleteByQueryCommands.getAndSet( 0 ) );
+      numericUpdateCommandsCumulative.set(
+          numericUpdateCommandsCumulative.get() - numericUpdateCommands.getAndSet( 0 ) );
       if (error) numErrors.incrementAndGet();
     }
   }
@@ -672,10 +707,12 @@ public class DirectUpdateHandler2 extends UpdateHandler implements SolrCoreState
     lst.add("adds", addCommands.get());
     lst.add("deletesById", deleteByIdCommands.get());
     lst.add("deletesByQuery", deleteByQueryCommands.get());
+    lst.add("numericUpdates", numericUpdateCommands.get());
     lst.add("errors", numErrors.get());
     lst.add("cumulative_adds", addCommandsCumulative.get());
     lst.add("cumulative_deletesById", deleteByIdCommandsCumulative.get());
     lst.add("cumulative_deletesByQuery", deleteByQueryCommandsCumulative.get());
+    lst.add("cumulative_numericUpdates", numericUpdateCommandsCumulative.get());
     lst.add("cumulative_errors", numErrorsCumulative.get());
     return lst;
   }
@@ -19,6 +19,7 @@ package org.apache.solr.update;
 
 import java.io.IOException;
 
+import org.apache.lucene.index.AdaptiveMergeScheduler; // javadocs
 import org.apache.lucene.index.IndexWriter;
 import org.apache.solr.core.CoreContainer;
 import org.apache.solr.core.DirectoryFactory;
@@ -76,6 +77,14 @@ public abstract class SolrCoreState {
    */
   public abstract DirectoryFactory getDirectoryFactory();
 
+  /**
+   * Reports the latency of a search to the merge scheduler of the current
+   * IndexWriter, if it is an {@link AdaptiveMergeScheduler}, so that it can
+   * slow down merges while searches are slow. This must be cheap, it is
+   * called after every search.
+   */
+  public abstract void recordSearchLatency(double millis);
+
 
   public interface IndexWriterCloser {
     public void closeWriter(IndexWriter writer) throws IOException;
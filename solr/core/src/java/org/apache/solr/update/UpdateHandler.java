@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Vector;
 
+import org.apache.solr.common.SolrException;
 import org.apache.solr.core.PluginInfo;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.core.SolrEventListener;
@@ -142,6 +143,14 @@ public abstract class UpdateHandler implements SolrInfoMBean {
   public abstract void close() throws IOException;
   public abstract UpdateLog getUpdateLog();
 
+  /**
+   * Sets a numeric DocValues field of a document in place.  Update handlers
+   * that can't do so should keep this implementation, which rejects the command.
+   */
+  public void updateNumericDocValue(UpdateNumericDocValueCommand cmd) throws IOException {
+    throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "updateNumericDocValue is not supported by " + getClass().getName());
+  }
+
   /**
    * NOTE: this function is not thread safe.  However, it is safe to call within the
    * <code>inform( SolrCore core )</code> function for <code>SolrCoreAware</code> classes.
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.update;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SchemaField;
+
+/**
+ * Sets a numeric DocValues field of the document with the given id to a
+ * new value, in place, without re-indexing the document.  See
+ * {@link org.apache.lucene.index.IndexWriter#updateNumericDocValue} for
+ * which fields can be updated.
+ * <p>
+ * <b>NOTE</b>: this doesn't work with the configurations shipped with
+ * Solr: they enable the updateLog, with which these commands are
+ * rejected, and none of the stock field types indexes DocValues, so
+ * there is no field to update.  It needs a core without an updateLog
+ * and a custom field type that indexes VAR_INTS or FIXED_INTS_64
+ * DocValues.
+ */
+public class UpdateNumericDocValueCommand extends UpdateCommand {
+  public String id;    // external (printable) id
+  public BytesRef indexedId;
+  public String field;
+  public long value;
+  public int commitWithin = -1;
+
+
+  public UpdateNumericDocValueCommand(SolrQueryRequest req) {
+    super(req);
+  }
+
+  @Override
+  public String name() {
+    return "updateNumericDocValue";
+  }
+
+  /** Returns the indexed ID of the document to update.  The returned BytesRef is retained across multiple calls, and should not be modified. */
+  public BytesRef getIndexedId() {
+    if (indexedId == null) {
+      IndexSchema schema = req.getSchema();
+      SchemaField sf = schema.getUniqueKeyField();
+      if (sf != null && id != null) {
+        indexedId = new BytesRef();
+        sf.getType().readableToIndexed(id, indexedId);
+      }
+    }
+    return indexedId;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(super.toString());
+    sb.append(",id=").append(id);
+    sb.append(",field=").append(field);
+    sb.append(",value=").append(value);
+    sb.append(",commitWithin=").append(commitWithin);
+    sb.append('}');
+    return sb.toString();
+  }
+
+}
@@ -60,6 +60,7 @@ import org.apache.solr.update.SolrCmdDistributor.StdNode;
 import org.apache.solr.update.UpdateCommand;
 import org.apache.solr.update.UpdateHandler;
 import org.apache.solr.update.UpdateLog;
+import org.apache.solr.update.UpdateNumericDocValueCommand;
 import org.apache.solr.update.VersionBucket;
 import org.apache.solr.update.VersionInfo;
 import org.slf4j.Logger;
@@ -585,7 +586,16 @@ public class DistributedUpdateProcessor extends UpdateRequestProcessor {
 
 
 
-  
+  // In place updates are neither versioned nor forwarded to replicas yet,
+  // so they are only supported on a single node
+  @Override
+  public void processUpdateNumericDocValue(UpdateNumericDocValueCommand cmd) throws IOException {
+    if (zkEnabled) {
+      throw new SolrException(ErrorCode.BAD_REQUEST, "updateNumericDocValue is not supported in SolrCloud mode");
+    }
+    super.processUpdateNumericDocValue(cmd);
+  }
+
   @Override
   public void processDelete(DeleteUpdateCommand cmd) throws IOException {
     if (!cmd.isDeleteById()) {
@@ -70,6 +70,13 @@ class RunUpdateProcessor extends UpdateRequestProcessor
     changesSinceCommit = true;
   }
 
+  @Override
+  public void processUpdateNumericDocValue(UpdateNumericDocValueCommand cmd) throws IOException {
+    updateHandler.updateNumericDocValue(cmd);
+    super.processUpdateNumericDocValue(cmd);
+    changesSinceCommit = true;
+  }
+
   @Override
   public void processMergeIndexes(MergeIndexesCommand cmd) throws IOException {
     updateHandler.mergeIndexes(cmd);
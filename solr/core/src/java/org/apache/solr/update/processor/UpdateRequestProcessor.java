@@ -26,6 +26,7 @@ import org.apache.solr.update.CommitUpdateCommand;
 import org.apache.solr.update.DeleteUpdateCommand;
 import org.apache.solr.update.MergeIndexesCommand;
 import org.apache.solr.update.RollbackUpdateCommand;
+import org.apache.solr.update.UpdateNumericDocValueCommand;
 
 
 /**
@@ -55,6 +56,10 @@ public abstract class UpdateRequestProcessor {
     if (next != null) next.processDelete(cmd);
   }
 
+  public void processUpdateNumericDocValue(UpdateNumericDocValueCommand cmd) throws IOException {
+    if (next != null) next.processUpdateNumericDocValue(cmd);
+  }
+
   public void processMergeIndexes(MergeIndexesCommand cmd) throws IOException {
     if (next != null) next.processMergeIndexes(cmd);
   }
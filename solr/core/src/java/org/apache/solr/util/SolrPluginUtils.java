@@ -186,6 +186,8 @@ public class SolrPluginUtils {
           rb.setDebugQuery(true);
         } else if (params[i].equals(CommonParams.RESULTS)){
           rb.setDebugResults(true);
+        } else if (params[i].equals(CommonParams.PROFILE)){
+          rb.setDebugProfile(true);
         }
       }
     }
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.core;
+
+import java.io.File;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.MergeInfo;
+import org.apache.lucene.store.NativeUnixDirectory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util._TestUtil;
+import org.apache.solr.common.util.NamedList;
+
+/**
+ * Test-case for NativeUnixDirectoryFactory
+ */
+public class NativeUnixDirectoryFactoryTest extends LuceneTestCase {
+
+  public void testMergeWrites() throws Exception {
+    NativeUnixDirectoryFactory factory = new NativeUnixDirectoryFactory();
+    NamedList<Object> args = new NamedList<Object>();
+    args.add("mergeBufferSize", 512 * 16);
+    args.add("minBytesDirect", "0");
+    factory.init(args);
+
+    File path = _TestUtil.getTempDir("NativeUnixDirectoryFactoryTest");
+    Directory dir = factory.get(path.getAbsolutePath(), null);
+    if (NativeUnixDirectoryFactory.NATIVE_AVAILABLE) {
+      assertTrue(dir instanceof NativeUnixDirectory);
+    } else {
+      assertTrue(dir instanceof MMapDirectory);
+    }
+
+    // merge writes must work whether or not direct IO is available
+    IOContext merge = new IOContext(new MergeInfo(10, 1 << 20, false, -1));
+    IndexOutput out = dir.createOutput("merged", merge);
+    for (int i = 0; i < 1000; i++) {
+      out.writeInt(i);
+    }
+    out.close();
+    IndexInput in = dir.openInput("merged", IOContext.DEFAULT);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, in.readInt());
+    }
+    in.close();
+    factory.release(dir);
+    factory.close();
+  }
+
+  public void testInvalidMergeBufferSize() throws Exception {
+    NativeUnixDirectoryFactory factory = new NativeUnixDirectoryFactory();
+    NamedList<Object> args = new NamedList<Object>();
+    args.add("mergeBufferSize", 1000);
+    try {
+      factory.init(args);
+      fail("mergeBufferSize must be a multiple of 512");
+    } catch (IllegalArgumentException expected) {
+      // pass
+    }
+  }
+}
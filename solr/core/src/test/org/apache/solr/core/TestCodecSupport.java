@@ -43,6 +43,8 @@ public class TestCodecSupport extends SolrTestCaseJ4 {
         format.getPostingsFormatForField(schemaField.getName()).getName());
     schemaField = fields.get("string_standard_f");
     assertEquals("Lucene40", format.getPostingsFormatForField(schemaField.getName()).getName());
+    schemaField = fields.get("string_bloom_f");
+    assertEquals("BloomFilter", format.getPostingsFormatForField(schemaField.getName()).getName());
     schemaField = fields.get("string_f");
     assertEquals("Lucene40", format.getPostingsFormatForField(schemaField.getName()).getName());
   }
@@ -57,6 +59,20 @@ public class TestCodecSupport extends SolrTestCaseJ4 {
     assertEquals("Pulsing40", format.getPostingsFormatForField("bar_pulsing").getName());
     assertEquals("Lucene40", format.getPostingsFormatForField("foo_standard").getName());
     assertEquals("Lucene40", format.getPostingsFormatForField("bar_standard").getName());
+    assertEquals("BloomFilter", format.getPostingsFormatForField("foo_bloom").getName());
+  }
+
+  public void testBloomFilteredLookups() throws Exception {
+    assertU(adoc("string_f", "1", "string_bloom_f", "a"));
+    assertU(adoc("string_f", "2", "string_bloom_f", "b"));
+    assertU(commit());
+    assertU(adoc("string_f", "3", "string_bloom_f", "c"));
+    assertU(commit());
+    assertQ(req("q", "string_bloom_f:b"), "//*[@numFound='1']", "//str[@name='string_f'][.='2']");
+    assertQ(req("q", "string_bloom_f:c"), "//*[@numFound='1']", "//str[@name='string_f'][.='3']");
+    assertQ(req("q", "string_bloom_f:d"), "//*[@numFound='0']");
+    assertU(delQ("*:*"));
+    assertU(commit());
   }
 
   public void testUnknownField() {
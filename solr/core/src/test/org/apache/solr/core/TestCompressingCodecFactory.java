@@ -0,0 +1,50 @@
+package org.apache.solr.core;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.perfield.PerFieldPostingsFormat;
+import org.apache.solr.SolrTestCaseJ4;
+import org.junit.BeforeClass;
+
+public class TestCompressingCodecFactory extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig-compressing-codec.xml", "schema_codec.xml");
+  }
+
+  public void testCodec() {
+    Codec codec = h.getCore().getCodec();
+    assertEquals("Compressing40", codec.getName());
+    assertTrue(codec.storedFieldsFormat().toString(), codec.storedFieldsFormat().toString().contains("chunkSize=512"));
+    PerFieldPostingsFormat format = (PerFieldPostingsFormat) codec.postingsFormat();
+    assertEquals("Pulsing40", format.getPostingsFormatForField("string_pulsing_f").getName());
+    assertEquals("Lucene40", format.getPostingsFormatForField("string_f").getName());
+  }
+
+  public void testStoredFields() {
+    for (int i = 0; i < 50; ++i) {
+      assertU(adoc("string_f", Integer.toString(i), "string_standard_f", "value" + i));
+    }
+    assertU(commit());
+    assertQ(req("q", "string_f:42", "fl", "string_f,string_standard_f"),
+        "//result[@numFound='1']",
+        "//str[@name='string_standard_f'][.='value42']");
+  }
+}
@@ -59,6 +59,44 @@ public class DebugComponentTest extends SolrTestCaseJ4 {
     );
   }
 
+  @Test
+  public void testFilterStrategy() throws Exception {
+    // the strategies are recorded by the search itself, so the query
+    // runs again rather than being served from the queryResultCache
+    for (int i = 0; i < 2; i++) {
+      assertQ(req("q", "title:title", "fq", "id:1", CommonParams.DEBUG_QUERY, "true"),
+              "//arr[@name='parsed_filter_queries']/str[.='id:1']",
+              "count(//lst[@name='filter_strategy']/str)>0",
+              "count(//lst[@name='filter_strategy']/str[.!='leap-frog' and .!='random-access'])=0"
+      );
+    }
+    // only recorded when debugging the query
+    assertQ(req("q", "title:title", "fq", "id:1"),
+            "count(//lst[@name='filter_strategy'])=0"
+    );
+    // no filters, no strategy
+    assertQ(req("q", "title:title", CommonParams.DEBUG_QUERY, "true"),
+            "count(//lst[@name='filter_strategy'])=0"
+    );
+  }
+
+  @Test
+  public void testProfile() throws Exception {
+    assertQ(req("q", "title:title title:lamb", "debug", CommonParams.PROFILE),
+            "//lst[@name='profile']/lst[@name='BooleanQuery']/str[@name='query']='title:title title:lamb'",
+            "//lst[@name='profile']/lst[@name='BooleanQuery']/lst[@name='rewrite']/long[@name='count']=1",
+            "//lst[@name='profile']/lst[@name='BooleanQuery']/lst[@name='create_weight']/long[@name='count']=1",
+            "count(//lst[@name='profile']/lst[@name='BooleanQuery']/arr[@name='children']/lst)=2",
+            "//arr[@name='children']/lst[str[@name='query']='title:lamb']/lst[@name='create_scorer']",
+            "count(//lst[@name='explain'])=0",
+            "count(//lst[@name='timing'])=0"
+    );
+    // profiling is never enabled implicitly
+    assertQ(req("q", "title:title", "debug", "all"),
+            "count(//lst[@name='profile'])=0"
+    );
+  }
+
   // Test the ability to specify which pieces to include
 
   @Test
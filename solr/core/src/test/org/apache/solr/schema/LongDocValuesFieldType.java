@@ -0,0 +1,65 @@
+package org.apache.solr.schema;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.document.PackedLongDocValuesField;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.queries.function.ValueSource;
+import org.apache.lucene.queries.function.valuesource.NumericIndexDocValueSource;
+import org.apache.lucene.search.SortField;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.response.TextResponseWriter;
+import org.apache.solr.search.QParser;
+
+/**
+ * Indexes its values as VAR_INTS DocValues only, so that they can be
+ * changed with in-place updates.  The values are neither indexed nor
+ * stored and can only be read through function queries.
+ */
+public class LongDocValuesFieldType extends FieldType {
+
+  @Override
+  public IndexableField createField(SchemaField field, Object value, float boost) {
+    try {
+      return new PackedLongDocValuesField(field.getName(), Long.parseLong(value.toString()));
+    } catch (NumberFormatException e) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Invalid value '" + value + "' for field " + field, e);
+    }
+  }
+
+  @Override
+  public ValueSource getValueSource(SchemaField field, QParser parser) {
+    return new NumericIndexDocValueSource(field.getName());
+  }
+
+  @Override
+  public SortField getSortField(SchemaField field, boolean top) {
+    try {
+      return getValueSource(field, null).getSortField(top);
+    } catch (IOException e) {
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
+    }
+  }
+
+  @Override
+  public void write(TextResponseWriter writer, String name, IndexableField f) throws IOException {
+    writer.writeLong(name, f.numericValue().longValue());
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.search;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.util.RefCounted;
+import org.junit.BeforeClass;
+
+/** Checks that compressed filterCache entries return the same results as bit sets. */
+public class TestCompressedFilterCache extends SolrTestCaseJ4 {
+
+  private static final int NUM_DOCS = 3000;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig-compressed-filtercache.xml", "schema.xml");
+    for (int i = 0; i < NUM_DOCS; i++) {
+      // cat_s is clustered, parity_s is not
+      assertU(adoc("id", Integer.toString(i), "val_i1", Integer.toString(i),
+          "cat_s", i < 1200 ? "a" : "b", "parity_s", i % 2 == 0 ? "even" : "odd"));
+    }
+    assertU(commit());
+  }
+
+  public void testCachedForms() throws Exception {
+    RefCounted<SolrIndexSearcher> ref = h.getCore().getSearcher();
+    try {
+      SolrIndexSearcher searcher = ref.get();
+      TermQuery clustered = new TermQuery(new Term("cat_s", "a"));
+      searcher.getDocSet(clustered);
+      DocSet cached = searcher.getDocSet(clustered);
+      assertTrue(cached instanceof WAHDocSet);
+      assertEquals(1200, cached.size());
+      DocSet uncompressed = searcher.getDocSetNC(clustered, null);
+      assertTrue(uncompressed instanceof BitDocSet);
+      assertEquals(uncompressed, cached);
+      assertTrue(cached.memSize() < uncompressed.memSize());
+
+      TermQuery scattered = new TermQuery(new Term("parity_s", "odd"));
+      searcher.getDocSet(scattered);
+      assertTrue(searcher.getDocSet(scattered) instanceof BitDocSet);
+
+      assertEquals(600, cached.intersectionSize(searcher.getDocSet(scattered)));
+      assertEquals(600, searcher.getDocSet(scattered).intersectionSize(cached));
+    } finally {
+      ref.decref();
+    }
+  }
+
+  public void testFilters() {
+    assertQ(req("q", "*:*", "fq", "cat_s:a", "fq", "parity_s:odd", "rows", "0"),
+        "//result[@numFound='600']");
+    assertQ(req("q", "val_i1:[1000 TO 1599]", "fq", "cat_s:b", "rows", "0"),
+        "//result[@numFound='400']");
+    assertQ(req("q", "*:*", "fq", "-cat_s:a", "rows", "0"),
+        "//result[@numFound='1800']");
+    assertQ(req("q", "*:*", "fq", "cat_s:a", "sort", "val_i1 desc", "rows", "1", "fl", "id"),
+        "//result[@numFound='1200']",
+        "//result/doc[1]/int[@name='id'][.='1199']");
+  }
+
+  public void testFacets() {
+    for (String method : new String[] {"enum", "fc"}) {
+      assertQ(req("q", "*:*", "fq", "cat_s:a", "facet", "true", "facet.field", "parity_s", "facet.method", method, "rows", "0"),
+          "//lst[@name='parity_s']/int[@name='even'][.='600']",
+          "//lst[@name='parity_s']/int[@name='odd'][.='600']");
+      assertQ(req("q", "*:*", "fq", "parity_s:odd", "facet", "true", "facet.field", "cat_s", "facet.method", method, "rows", "0"),
+          "//lst[@name='cat_s']/int[@name='a'][.='600']",
+          "//lst[@name='cat_s']/int[@name='b'][.='900']");
+    }
+  }
+}
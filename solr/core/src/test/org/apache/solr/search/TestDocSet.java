@@ -85,6 +85,10 @@ public class TestDocSet extends LuceneTestCase {
     return new BitDocSet(bs);
   }
 
+  public DocSet getWAHDocSet(OpenBitSet bs) {
+    return WAHDocSet.compress(bs, (int)bs.size());
+  }
+
   public DocSet getDocSlice(OpenBitSet bs) {
     int len = (int)bs.cardinality();
     int[] arr = new int[len+5];
@@ -103,7 +107,7 @@ public class TestDocSet extends LuceneTestCase {
 
 
   public DocSet getDocSet(OpenBitSet bs) {
-    switch(rand.nextInt(10)) {
+    switch(rand.nextInt(11)) {
       case 0: return getHashDocSet(bs);
 
       case 1: return getBitDocSet(bs);
@@ -117,6 +121,8 @@ public class TestDocSet extends LuceneTestCase {
       case 8: return getIntDocSet(bs);
 
       case 9: return getDocSlice(bs);
+
+      case 10: return getWAHDocSet(bs);
     }
     return null;
   }
@@ -459,9 +465,11 @@ public class TestDocSet extends LuceneTestCase {
     OpenBitSet bs = getRandomSet(reader.maxDoc(), rand.nextInt(reader.maxDoc()+1));
     DocSet a = new BitDocSet(bs);
     DocSet b = getIntDocSet(bs);
+    DocSet c = getWAHDocSet(bs);
 
     Filter fa = a.getTopFilter();
     Filter fb = b.getTopFilter();
+    Filter fc = c.getTopFilter();
 
     /*** top level filters are no longer supported
     // test top-level
@@ -472,13 +480,24 @@ public class TestDocSet extends LuceneTestCase {
 
     DocIdSet da;
     DocIdSet db;
+    DocIdSet dc;
     List<AtomicReaderContext> leaves = topLevelContext.leaves();
 
     // first test in-sequence sub readers
     for (AtomicReaderContext readerContext : leaves) {
       da = fa.getDocIdSet(readerContext, null);
       db = fb.getDocIdSet(readerContext, null);
+      dc = fc.getDocIdSet(readerContext, null);
       doTestIteratorEqual(da, db);
+      doTestIteratorEqual(da, dc);
+
+      int count = 0;
+      for (int doc = 0; doc < readerContext.reader().maxDoc(); doc++) {
+        if (bs.get(readerContext.docBase + doc)) count++;
+      }
+      assertEquals(count, da.iterator().cost());
+      assertEquals(count, db.iterator().cost());
+      assertTrue(dc.iterator().cost() >= count);
     }  
 
     int nReaders = leaves.size();
@@ -487,8 +506,32 @@ public class TestDocSet extends LuceneTestCase {
       AtomicReaderContext readerContext = leaves.get(rand.nextInt(nReaders));
       da = fa.getDocIdSet(readerContext, null);
       db = fb.getDocIdSet(readerContext, null);
+      dc = fc.getDocIdSet(readerContext, null);
       doTestIteratorEqual(da, db);
+      doTestIteratorEqual(da, dc);
+    }
+  }
+
+  public void testRangeCardinality() {
+    // small ranges are counted exactly
+    for (int i=0; i<1000; i++) {
+      int sz = rand.nextInt(300);
+      OpenBitSet bs = getRandomSet(sz, rand.nextInt(sz+1));
+      int from = rand.nextInt(sz+1);
+      int to = from + rand.nextInt(sz+100-from);
+      int count = 0;
+      for (int doc = from; doc < to; doc++) {
+        if (bs.get(doc)) count++;
+      }
+      assertEquals(count, DocSetBase.estimateCardinality(bs, from, to));
+    }
+
+    // large ones are sampled
+    OpenBitSet large = new OpenBitSet(1 << 20);
+    for (int i=0; i<(1 << 20); i+=4) {
+      large.set(i);
     }
+    assertEquals(1 << 16, DocSetBase.estimateCardinality(large, 1 << 18, 1 << 19));
   }
 
   public void testFilter() throws IOException {
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.util.RefCounted;
+import org.junit.BeforeClass;
+
+/** Checks that concurrent per segment collection returns the same results as serial collection. */
+public class TestParallelSegmentSearch extends SolrTestCaseJ4 {
+
+  private static final int NUM_DOCS = 100;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig-parallel-search.xml", "schema.xml");
+    for (int i = 0; i < NUM_DOCS; i++) {
+      assertU(adoc("id", Integer.toString(i), "val_i1", Integer.toString(val(i)), "cat_s", "c" + (i % 3)));
+      if (i % 20 == 19) {
+        assertU(commit()); // one segment per commit
+      }
+    }
+  }
+
+  private static int val(int id) {
+    return (id * 7) % NUM_DOCS; // a permutation of the ids
+  }
+
+  /** ids of the docs in category cat (or all docs if cat &lt; 0) sorted by val_i1 */
+  private static List<Integer> idsByVal(int cat, boolean reverse) {
+    List<Integer> ids = new ArrayList<Integer>();
+    for (int v = 0; v < NUM_DOCS; v++) {
+      final int value = reverse ? NUM_DOCS - 1 - v : v;
+      for (int id = 0; id < NUM_DOCS; id++) {
+        if (val(id) == value && (cat < 0 || id % 3 == cat)) ids.add(id);
+      }
+    }
+    return ids;
+  }
+
+  private static String[] expectIds(int numFound, List<Integer> ids, int start, int rows) {
+    String[] tests = new String[rows + 1];
+    tests[0] = "//result[@numFound='" + numFound + "']";
+    for (int i = 0; i < rows; i++) {
+      tests[i + 1] = "//result/doc[" + (i + 1) + "]/int[@name='id'][.='" + ids.get(start + i) + "']";
+    }
+    return tests;
+  }
+
+  public void testMultipleSegments() {
+    RefCounted<SolrIndexSearcher> searcher = h.getCore().getSearcher();
+    try {
+      assertTrue(searcher.get().getIndexReader().getTopReaderContext().leaves().size() > 1);
+    } finally {
+      searcher.decref();
+    }
+  }
+
+  public void testSort() {
+    assertQ(req("q", "*:*", "sort", "val_i1 asc", "rows", "5", "fl", "id"),
+        expectIds(NUM_DOCS, idsByVal(-1, false), 0, 5));
+    assertQ(req("q", "*:*", "fq", "cat_s:c1", "sort", "val_i1 desc", "start", "2", "rows", "3", "fl", "id"),
+        expectIds(33, idsByVal(1, true), 2, 3));
+  }
+
+  public void testRelevance() {
+    List<Integer> ids = new ArrayList<Integer>();
+    for (int id = 0; id < NUM_DOCS; id++) ids.add(id);
+    // constant scores, ties are broken by doc ID
+    assertQ(req("q", "*:*", "start", "38", "rows", "5", "fl", "id,score"),
+        expectIds(NUM_DOCS, ids, 38, 5));
+    assertQ(req("q", "*:*", "rows", "0", "fl", "id,score", "fq", "cat_s:c2"),
+        "//result[@numFound='33']");
+  }
+
+  public void testPostFilter() {
+    assertQ(req("q", "*:*", "fq", "{!frange l=10 u=20 cache=false cost=200}val_i1", "sort", "val_i1 asc", "rows", "2", "fl", "id"),
+        "//result[@numFound='11']",
+        "//result/doc[1]/int[@name='id'][.='30']",
+        "//result/doc[2]/int[@name='id'][.='73']");
+    assertQ(req("q", "*:*", "fq", "{!frange l=10 u=20 cache=false cost=200}val_i1", "rows", "0"),
+        "//result[@numFound='11']");
+  }
+
+  public void testDocSet() {
+    int[] counts = new int[3];
+    for (int id = 0; id < NUM_DOCS; id++) {
+      if (val(id) < 50) counts[id % 3]++;
+    }
+    assertQ(req("q", "val_i1:[0 TO 49]", "facet", "true", "facet.field", "cat_s", "sort", "val_i1 asc", "rows", "1", "fl", "id"),
+        "//result[@numFound='50']",
+        "//result/doc[1]/int[@name='id'][.='0']",
+        "//lst[@name='cat_s']/int[@name='c0'][.='" + counts[0] + "']",
+        "//lst[@name='cat_s']/int[@name='c1'][.='" + counts[1] + "']",
+        "//lst[@name='cat_s']/int[@name='c2'][.='" + counts[2] + "']");
+    // with a post filter the DocSet can't come from the filter cache
+    assertQ(req("q", "*:*", "fq", "{!frange l=0 u=49 cache=false cost=200}val_i1", "facet", "true", "facet.field", "cat_s", "rows", "0"),
+        "//result[@numFound='50']",
+        "//lst[@name='cat_s']/int[@name='c0'][.='" + counts[0] + "']",
+        "//lst[@name='cat_s']/int[@name='c2'][.='" + counts[2] + "']");
+  }
+}
@@ -0,0 +1,58 @@
+package org.apache.solr.update;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AdaptiveMergeScheduler;
+import org.apache.lucene.index.MergeScheduler;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.core.SolrCore;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that searches report their latencies to an {@link AdaptiveMergeScheduler}.
+ */
+public class AdaptiveMergeSchedulerTest extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    System.setProperty("solr.tests.mergeScheduler", AdaptiveMergeScheduler.class.getName());
+    initCore("solrconfig.xml", "schema.xml");
+  }
+
+  @AfterClass
+  public static void afterClass() throws Exception {
+    System.clearProperty("solr.tests.mergeScheduler");
+  }
+
+  @Test
+  public void testSearchLatencyIsRecorded() throws Exception {
+    SolrCore core = h.getCore();
+    MergeScheduler scheduler = core.getUpdateHandler().getSolrCoreState()
+        .getIndexWriter(core).getConfig().getMergeScheduler();
+    assertTrue(scheduler instanceof AdaptiveMergeScheduler);
+    AdaptiveMergeScheduler ams = (AdaptiveMergeScheduler) scheduler;
+
+    assertU(adoc("id", "1"));
+    assertU(adoc("id", "2"));
+    assertU(commit());
+    assertQ(req("q", "*:*", "fq", "id:1"), "//*[@numFound='1']");
+    assertTrue(ams.getAverageSearchLatencyMillis() > 0);
+  }
+}
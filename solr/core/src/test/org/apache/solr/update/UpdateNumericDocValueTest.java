@@ -0,0 +1,179 @@
+package org.apache.solr.update;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.client.solrj.request.JavaBinUpdateRequestCodec;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.ContentStreamBase;
+import org.apache.solr.handler.loader.JavabinLoader;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class UpdateNumericDocValueTest extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig.xml", "schema-docvalues-updates.xml");
+  }
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    clearIndex();
+    assertU(commit());
+  }
+
+  private void addDocs() {
+    assertU(adoc("id", "1", "name", "a", "price", "10"));
+    assertU(adoc("id", "2", "name", "b", "price", "20"));
+    assertU(adoc("id", "3", "name", "c", "price", "30"));
+    assertU(commit());
+  }
+
+  private void assertPrices(float... prices) {
+    String[] tests = new String[prices.length + 1];
+    tests[0] = "//*[@numFound='" + prices.length + "']";
+    for (int i = 0; i < prices.length; i++) {
+      tests[i + 1] = "//result/doc[" + (i + 1) + "]/float[@name='score'][.='" + prices[i] + "']";
+    }
+    assertQ(req("q", "{!func}price", "fl", "id,score", "sort", "id asc"), tests);
+  }
+
+  @Test
+  public void testXML() throws Exception {
+    addDocs();
+    assertPrices(10, 20, 30);
+
+    assertU("<updateNumericDocValue><id>2</id><field>price</field><value>25</value></updateNumericDocValue>");
+    // not visible before the commit
+    assertPrices(10, 20, 30);
+    assertU(commit());
+    assertPrices(10, 25, 30);
+
+    UpdateRequest update = new UpdateRequest();
+    update.updateNumericDocValue("1", "price", 11);
+    update.updateNumericDocValue("3", "price", -3);
+    assertU(update.getXML());
+    assertU(commit());
+    assertPrices(11, 25, -3);
+
+    // the other fields of the documents are untouched
+    assertQ(req("q", "name:b", "fl", "id"), "//*[@numFound='1']", "//result/doc[1]/str[@name='id'][.='2']");
+
+    // unknown ids are ignored
+    assertU("<updateNumericDocValue><id>4</id><field>price</field><value>40</value></updateNumericDocValue>");
+    assertU(commit());
+    assertPrices(11, 25, -3);
+
+    ignoreException("updateNumericDocValue");
+    try {
+      assertFailedU("<updateNumericDocValue><id>1</id><field>price</field></updateNumericDocValue>");
+      assertFailedU("<updateNumericDocValue><id>1</id><field>price</field><value>x</value></updateNumericDocValue>");
+    } finally {
+      resetExceptionIgnores();
+    }
+  }
+
+  @Test
+  public void testJSON() throws Exception {
+    addDocs();
+
+    updateJ("{\"updateNumericDocValue\":{\"id\":\"1\",\"field\":\"price\",\"value\":15}}", null);
+    updateJ("{\"updateNumericDocValue\":[{\"id\":\"2\",\"field\":\"price\",\"value\":0},"
+        + "{\"id\":\"3\",\"field\":\"price\",\"value\":35}]}", null);
+    assertU(commit());
+    assertPrices(15, 0, 35);
+  }
+
+  @Test
+  public void testJavabin() throws Exception {
+    addDocs();
+
+    UpdateRequest update = new UpdateRequest();
+    update.updateNumericDocValue("2", "price", 22);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new JavaBinUpdateRequestCodec().marshal(update, out);
+    final byte[] bytes = out.toByteArray();
+
+    SolrQueryRequest req = req();
+    try {
+      SolrQueryResponse rsp = new SolrQueryResponse();
+      UpdateRequestProcessor processor = h.getCore().getUpdateProcessingChain(null).createProcessor(req, rsp);
+      new JavabinLoader().load(req, rsp, new ContentStreamBase() {
+        @Override
+        public InputStream getStream() throws IOException {
+          return new ByteArrayInputStream(bytes);
+        }
+      }, processor);
+      processor.finish();
+    } finally {
+      req.close();
+    }
+    assertU(commit());
+    assertPrices(10, 22, 30);
+  }
+
+  @Test
+  public void testUpdateLogIsRejected() throws Exception {
+    System.setProperty("enable.update.log", "true");
+    try {
+      deleteCore();
+      initCore("solrconfig.xml", "schema-docvalues-updates.xml");
+      assertNotNull(h.getCore().getUpdateHandler().getUpdateLog());
+
+      addDocs();
+      ignoreException("updateLog");
+      try {
+        SolrQueryRequest req = req();
+        try {
+          UpdateNumericDocValueCommand cmd = new UpdateNumericDocValueCommand(req);
+          cmd.id = "1";
+          cmd.field = "price";
+          cmd.value = 100;
+          h.getCore().getUpdateHandler().updateNumericDocValue(cmd);
+          fail("updateNumericDocValue must be rejected when the updateLog is enabled");
+        } catch (SolrException e) {
+          assertEquals(SolrException.ErrorCode.BAD_REQUEST.code, e.code());
+        } finally {
+          req.close();
+        }
+        assertFailedU("<updateNumericDocValue><id>1</id><field>price</field><value>100</value></updateNumericDocValue>");
+      } finally {
+        resetExceptionIgnores();
+      }
+      assertU(commit());
+      assertPrices(10, 20, 30);
+    } finally {
+      System.clearProperty("enable.update.log");
+      deleteCore();
+      initCore("solrconfig.xml", "schema-docvalues-updates.xml");
+    }
+  }
+}
@@ -42,7 +42,8 @@ public class BinaryRequestWriter extends RequestWriter {
       UpdateRequest updateRequest = (UpdateRequest) req;
       if (isNull(updateRequest.getDocuments()) &&
               isNull(updateRequest.getDeleteById()) &&
-              isNull(updateRequest.getDeleteQuery())
+              isNull(updateRequest.getDeleteQuery()) &&
+              isNull(updateRequest.getNumericDocValueUpdates())
               && (updateRequest.getDocIterator() == null) ) {
         return null;
       }
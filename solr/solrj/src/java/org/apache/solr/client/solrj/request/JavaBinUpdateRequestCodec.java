@@ -64,6 +64,7 @@ public class JavaBinUpdateRequestCodec {
     nl.add("params", params);// 0: params
     nl.add("delById", updateRequest.getDeleteById());
     nl.add("delByQ", updateRequest.getDeleteQuery());
+    nl.add("numericDVUpdates", numericDocValueUpdatesToList(updateRequest.getNumericDocValueUpdates()));
     nl.add("docs", docIter);
     JavaBinCodec codec = new JavaBinCodec();
     codec.marshal(nl, os);
@@ -85,6 +86,7 @@ public class JavaBinUpdateRequestCodec {
     List<List<NamedList>> doclist;
     List<String> delById;
     List<String> delByQ;
+    List<List> numericDVUpdates;
     final NamedList[] namedList = new NamedList[1];
     JavaBinCodec codec = new JavaBinCodec() {
 
@@ -156,6 +158,7 @@ public class JavaBinUpdateRequestCodec {
     }
     delById = (List<String>) namedList[0].get("delById");
     delByQ = (List<String>) namedList[0].get("delByQ");
+    numericDVUpdates = (List<List>) namedList[0].get("numericDVUpdates");
     doclist = (List) namedList[0].get("docs");
 
     if (doclist != null && !doclist.isEmpty()) {
@@ -179,6 +182,11 @@ public class JavaBinUpdateRequestCodec {
         updateRequest.deleteByQuery(s);
       }
     }
+    if (numericDVUpdates != null) {
+      for (List update : numericDVUpdates) {
+        updateRequest.updateNumericDocValue((String) update.get(0), (String) update.get(1), ((Number) update.get(2)).longValue());
+      }
+    }
     return updateRequest;
 
   }
@@ -198,6 +206,16 @@ public class JavaBinUpdateRequestCodec {
     return doc;
   }
 
+  // each update is written as [id, field, value]
+  private List<List> numericDocValueUpdatesToList(List<UpdateRequest.NumericDocValueUpdate> updates) {
+    if (updates == null) return null;
+    List<List> l = new ArrayList<List>(updates.size());
+    for (UpdateRequest.NumericDocValueUpdate update : updates) {
+      l.add(Arrays.asList(update.getId(), update.getField(), update.getValue()));
+    }
+    return l;
+  }
+
   private NamedList solrParamsToNamedList(SolrParams params) {
     if (params == null) return new NamedList();
     return params.toNamedList();
@@ -54,6 +54,7 @@ public class RequestWriter {
     return isNull(updateRequest.getDocuments()) &&
             isNull(updateRequest.getDeleteById()) &&
             isNull(updateRequest.getDeleteQuery()) &&
+            isNull(updateRequest.getNumericDocValueUpdates()) &&
             updateRequest.getDocIterator() == null;
   }
 
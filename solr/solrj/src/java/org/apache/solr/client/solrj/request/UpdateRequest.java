@@ -41,6 +41,7 @@ public class UpdateRequest extends AbstractUpdateRequest {
   private Iterator<SolrInputDocument> docIterator = null;
   private List<String> deleteById = null;
   private List<String> deleteQuery = null;
+  private List<NumericDocValueUpdate> numericDocValueUpdates = null;
 
   public UpdateRequest()
   {
@@ -55,7 +56,7 @@ public class UpdateRequest extends AbstractUpdateRequest {
   //---------------------------------------------------------------------------
   
   /**
-   * clear the pending documents and delete commands
+   * clear the pending documents, delete and update commands
    */
   public void clear()
   {
@@ -68,6 +69,9 @@ public class UpdateRequest extends AbstractUpdateRequest {
     if( deleteQuery != null ) {
       deleteQuery.clear();
     }
+    if( numericDocValueUpdates != null ) {
+      numericDocValueUpdates.clear();
+    }
   }
   
   //---------------------------------------------------------------------------
@@ -118,6 +122,23 @@ public class UpdateRequest extends AbstractUpdateRequest {
     return this;
   }
 
+  /**
+   * Sets the numeric DocValues field <code>field</code> of the document
+   * with the given id to <code>value</code>, without re-indexing the
+   * document.  The server must not have an updateLog configured, and the
+   * field must have a custom type which indexes numeric DocValues; the
+   * configurations shipped with Solr have neither, so they reject or
+   * ignore these updates.
+   */
+  public UpdateRequest updateNumericDocValue( String id, String field, long value )
+  {
+    if( numericDocValueUpdates == null ) {
+      numericDocValueUpdates = new ArrayList<NumericDocValueUpdate>();
+    }
+    numericDocValueUpdates.add( new NumericDocValueUpdate( id, field, value ) );
+    return this;
+  }
+
   public void setDocIterator(Iterator<SolrInputDocument> docIterator) {
     this.docIterator = docIterator;
   }
@@ -195,6 +216,25 @@ public class UpdateRequest extends AbstractUpdateRequest {
       }
       writer.append( "</delete>" );
     }
+
+    // Add the numeric DocValues updates
+    if( numericDocValueUpdates != null && numericDocValueUpdates.size() > 0 ) {
+      if(commitWithin>0) {
+        writer.append( "<updateNumericDocValue commitWithin=\"" + commitWithin + "\">" );
+      } else {
+        writer.append( "<updateNumericDocValue>" );
+      }
+      for( NumericDocValueUpdate update : numericDocValueUpdates ) {
+        writer.append( "<id>" );
+        XML.escapeCharData( update.getId(), writer );
+        writer.append( "</id><field>" );
+        XML.escapeCharData( update.getField(), writer );
+        writer.append( "</field><value>" );
+        writer.append( Long.toString( update.getValue() ) );
+        writer.append( "</value>" );
+      }
+      writer.append( "</updateNumericDocValue>" );
+    }
   }
 
 
@@ -221,4 +261,36 @@ public class UpdateRequest extends AbstractUpdateRequest {
     return deleteQuery;
   }
 
+  public List<NumericDocValueUpdate> getNumericDocValueUpdates() {
+    return numericDocValueUpdates;
+  }
+
+  /**
+   * A pending update of a numeric DocValues field.
+   * @see #updateNumericDocValue(String, String, long)
+   */
+  public static class NumericDocValueUpdate {
+    private final String id;
+    private final String field;
+    private final long value;
+
+    public NumericDocValueUpdate(String id, String field, long value) {
+      this.id = id;
+      this.field = field;
+      this.value = value;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getField() {
+      return field;
+    }
+
+    public long getValue() {
+      return value;
+    }
+  }
+
 }
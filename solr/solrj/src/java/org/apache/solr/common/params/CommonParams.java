@@ -105,6 +105,12 @@ public interface CommonParams {
    * {@link #DEBUG} value indicating an interest in debug output related to the Query (parsing, etc.)
    */
   public static final String QUERY = "query";
+  /**
+   * {@link #DEBUG} value indicating an interest in a per query node profile of
+   * the main query (call counts and durations of its weights and scorers).
+   * Profiling is not enabled by <code>debug=all</code>.
+   */
+  public static final String PROFILE = "profile";
   
   /** 
    * boolean indicating whether score explanations should structured (true), 
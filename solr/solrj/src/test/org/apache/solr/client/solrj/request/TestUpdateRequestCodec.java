@@ -109,6 +109,28 @@ public class TestUpdateRequestCodec extends LuceneTestCase {
     assertEquals("b", updateUnmarshalled.getParams().get("a"));
   }
 
+  @Test
+  public void testNumericDocValueUpdates() throws IOException {
+    UpdateRequest updateRequest = new UpdateRequest();
+    updateRequest.deleteById("1");
+    updateRequest.updateNumericDocValue("2", "price", 42L);
+    updateRequest.updateNumericDocValue("3", "price", Long.MIN_VALUE);
+
+    JavaBinUpdateRequestCodec codec = new JavaBinUpdateRequestCodec();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    codec.marshal(updateRequest, baos);
+    UpdateRequest updateUnmarshalled = codec.unmarshal(new ByteArrayInputStream(baos.toByteArray()), null);
+
+    Assert.assertEquals("1", updateUnmarshalled.getDeleteById().get(0));
+    List<UpdateRequest.NumericDocValueUpdate> updates = updateUnmarshalled.getNumericDocValueUpdates();
+    Assert.assertEquals(2, updates.size());
+    Assert.assertEquals("2", updates.get(0).getId());
+    Assert.assertEquals("price", updates.get(0).getField());
+    Assert.assertEquals(42L, updates.get(0).getValue());
+    Assert.assertEquals("3", updates.get(1).getId());
+    Assert.assertEquals(Long.MIN_VALUE, updates.get(1).getValue());
+  }
+
   @Test
   public void testIteratable() throws IOException {
     final List<String> values = new ArrayList<String>();